@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.proxy.model.ProxyContextExt;
+import com.automq.rocketmq.proxy.util.FlatMessageUtil;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion between RocketMQ messages and flat messages on the send and the receive path of the proxy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatMessageUtilBenchmark {
+    @Param({"1024", "16384"})
+    private int payloadSize;
+
+    private ProxyContextExt context;
+    private byte[] payload;
+    private Map<String, String> properties;
+    private FlatMessageExt flatMessageExt;
+
+    @Setup
+    public void setUp() {
+        context = ProxyContextExt.create();
+        payload = new byte[payloadSize];
+
+        Message message = new Message("topic", "tag", "key-1 key-2", payload);
+        MessageClientIDSetter.setUniqID(message);
+        message.putUserProperty("region", "us-east-1");
+        message.putUserProperty("tenant", "automq");
+        MessageAccessor.putProperty(message, MessageConst.PROPERTY_BORN_HOST, "127.0.0.1:8081");
+        MessageAccessor.putProperty(message, MessageConst.PROPERTY_BORN_TIMESTAMP,
+            String.valueOf(System.currentTimeMillis()));
+        properties = new HashMap<>(message.getProperties());
+
+        FlatMessage flatMessage = FlatMessageUtil.convertTo(context, 1, 0, "127.0.0.1", newMessage());
+        flatMessageExt = FlatMessageExt.Builder.builder().message(flatMessage).offset(100).build();
+    }
+
+    @Benchmark
+    public FlatMessage toFlatMessage() {
+        return FlatMessageUtil.convertTo(context, 1, 0, "127.0.0.1", newMessage());
+    }
+
+    @Benchmark
+    public MessageExt toMessageExt() {
+        return FlatMessageUtil.convertTo(flatMessageExt, "topic", 30_000, "127.0.0.1", 8081);
+    }
+
+    /**
+     * System properties are removed from the message during conversion, so every conversion takes a fresh copy.
+     */
+    private Message newMessage() {
+        Message message = new Message();
+        message.setTopic("topic");
+        message.setBody(payload);
+        MessageAccessor.setProperties(message, new HashMap<>(properties));
+        return message;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import apache.rocketmq.controller.v1.ConsumerGroup;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.S3StreamObject;
+import apache.rocketmq.controller.v1.S3StreamSetObject;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
+import apache.rocketmq.controller.v1.StreamMetadata;
+import apache.rocketmq.controller.v1.Topic;
+import com.automq.rocketmq.common.config.BrokerConfig;
+import com.automq.rocketmq.common.config.ControllerConfig;
+import com.automq.rocketmq.metadata.api.StoreMetadataService;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A {@link StoreMetadataService} serving the metadata the store needs from memory, which stands in for the controller
+ * together with {@link com.automq.rocketmq.store.MemoryStreamStore}.
+ * <p>
+ * All queues are owned by this node and streams are allocated on first access. S3 object APIs are not supported, as
+ * they are only used by the S3 stream store.
+ */
+public class MemoryStoreMetadataService implements StoreMetadataService {
+    private final ControllerConfig nodeConfig = new BrokerConfig();
+    private final int maxDeliveryAttempts;
+
+    private final AtomicLong streamIdAlloc = new AtomicLong();
+    private final ConcurrentMap<StreamKey, Long> streamIds = new ConcurrentHashMap<>();
+
+    private enum StreamType {
+        DATA,
+        OPERATION,
+        SNAPSHOT,
+        RETRY,
+        HALF
+    }
+
+    private record StreamKey(StreamType type, long topicId, int queueId, long consumerGroupId) {
+    }
+
+    public MemoryStoreMetadataService(int maxDeliveryAttempts) {
+        this.maxDeliveryAttempts = maxDeliveryAttempts;
+    }
+
+    private CompletableFuture<StreamMetadata> streamOf(StreamType type, long topicId, int queueId,
+        long consumerGroupId) {
+        long streamId = streamIds.computeIfAbsent(new StreamKey(type, topicId, queueId, consumerGroupId),
+            key -> streamIdAlloc.getAndIncrement());
+        return CompletableFuture.completedFuture(StreamMetadata.newBuilder().setStreamId(streamId).build());
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> dataStreamOf(long topicId, int queueId) {
+        return streamOf(StreamType.DATA, topicId, queueId, 0);
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> operationStreamOf(long topicId, int queueId) {
+        return streamOf(StreamType.OPERATION, topicId, queueId, 0);
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> snapshotStreamOf(long topicId, int queueId) {
+        return streamOf(StreamType.SNAPSHOT, topicId, queueId, 0);
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> retryStreamOf(long consumerGroupId, long topicId, int queueId) {
+        return streamOf(StreamType.RETRY, topicId, queueId, consumerGroupId);
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> halfStreamOf(long topicId, int queueId) {
+        return streamOf(StreamType.HALF, topicId, queueId, 0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> maxDeliveryAttemptsOf(long consumerGroupId) {
+        return CompletableFuture.completedFuture(maxDeliveryAttempts);
+    }
+
+    @Override
+    public CompletableFuture<Void> trimStream(long streamId, long streamEpoch, long newStartOffset) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<StreamMetadata> openStream(long streamId, long streamEpoch) {
+        return CompletableFuture.completedFuture(StreamMetadata.newBuilder().setStreamId(streamId).setEpoch(streamEpoch).build());
+    }
+
+    @Override
+    public CompletableFuture<Void> closeStream(long streamId, long streamEpoch) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<List<StreamMetadata>> listOpenStreams() {
+        return CompletableFuture.completedFuture(List.of());
+    }
+
+    @Override
+    public CompletableFuture<Long> prepareS3Objects(int count, int ttlInMinutes) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<Void> commitStreamSetObject(S3StreamSetObject streamSetObject,
+        List<S3StreamObject> streamObjects, List<Long> compactedObjects) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<Void> compactStreamObject(S3StreamObject streamObject, List<Long> compactedObjects) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<List<S3StreamSetObject>> listStreamSetObjects() {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<List<S3StreamSetObject>> listStreamSetObjects(long streamId, long startOffset,
+        long endOffset, int limit) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<List<S3StreamObject>> listStreamObjects(long streamId, long startOffset, long endOffset,
+        int limit) {
+        return unsupported();
+    }
+
+    @Override
+    public CompletableFuture<Pair<List<S3StreamObject>, List<S3StreamSetObject>>> listObjects(long streamId,
+        long startOffset, long endOffset, int limit) {
+        return unsupported();
+    }
+
+    @Override
+    public Optional<Integer> ownerNode(long topicId, int queueId) {
+        return Optional.of(nodeConfig.nodeId());
+    }
+
+    @Override
+    public ControllerConfig nodeConfig() {
+        return nodeConfig;
+    }
+
+    @Override
+    public CompletableFuture<List<StreamMetadata>> getStreams(List<Long> streamIds) {
+        return CompletableFuture.completedFuture(streamIds.stream()
+            .map(streamId -> StreamMetadata.newBuilder().setStreamId(streamId).build())
+            .toList());
+    }
+
+    @Override
+    public CompletableFuture<Topic> topicOf(String topicName) {
+        return CompletableFuture.completedFuture(Topic.newBuilder().setName(topicName).setTopicId(Math.abs((long) topicName.hashCode())).build());
+    }
+
+    @Override
+    public CompletableFuture<Topic> topicOf(long topicId) {
+        return CompletableFuture.completedFuture(Topic.newBuilder().setName("topic-" + topicId).setTopicId(topicId).build());
+    }
+
+    @Override
+    public CompletableFuture<ConsumerGroup> consumerGroupOf(String groupName) {
+        return CompletableFuture.completedFuture(ConsumerGroup.newBuilder().setName(groupName).setGroupId(Math.abs((long) groupName.hashCode())).build());
+    }
+
+    @Override
+    public CompletableFuture<ConsumerGroup> consumerGroupOf(long consumerGroupId) {
+        return CompletableFuture.completedFuture(ConsumerGroup.newBuilder().setName("group-" + consumerGroupId).setGroupId(consumerGroupId).build());
+    }
+
+    private static <T> CompletableFuture<T> unsupported() {
+        return CompletableFuture.failedFuture(new UnsupportedOperationException("S3 objects are not managed in memory"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.generated.CheckPoint;
+import com.automq.rocketmq.store.model.generated.ReceiptHandle;
+import com.automq.rocketmq.store.model.operation.AckOperation;
+import com.automq.rocketmq.store.model.operation.Operation;
+import com.automq.rocketmq.store.model.operation.PopOperation;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
+import com.automq.rocketmq.store.util.SerializeUtil;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of the records written to the operation stream and the KV service on every pop and ack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeUtilBenchmark {
+    private static final long TOPIC_ID = 1024;
+    private static final int QUEUE_ID = 8;
+    private static final long CONSUMER_GROUP_ID = 4096;
+    private static final long OPERATION_ID = 123456789;
+
+    private PopOperation popOperation;
+    private AckOperation ackOperation;
+    private byte[] encodedPopOperation;
+    private byte[] encodedAckOperation;
+    private byte[] encodedCheckPoint;
+    private String legacyReceiptHandle;
+    private String compactReceiptHandle;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        popOperation = new PopOperation(TOPIC_ID, QUEUE_ID, 1, 2, null, CONSUMER_GROUP_ID, 1000, 32, 30_000, now,
+            false, PopOperation.PopOperationType.POP_NORMAL);
+        ackOperation = new AckOperation(TOPIC_ID, QUEUE_ID, 1, 2, null, CONSUMER_GROUP_ID, OPERATION_ID, now,
+            AckOperation.AckOperationType.ACK_NORMAL);
+        encodedPopOperation = SerializeUtil.encodePopOperation(popOperation);
+        encodedAckOperation = SerializeUtil.encodeAckOperation(ackOperation);
+        encodedCheckPoint = SerializeUtil.buildCheckPointValue(TOPIC_ID, QUEUE_ID, 1000, 32, CONSUMER_GROUP_ID,
+            OPERATION_ID, PopOperation.PopOperationType.POP_NORMAL, now, now + 30_000);
+        legacyReceiptHandle = SerializeUtil.encodeReceiptHandle(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID, OPERATION_ID);
+        compactReceiptHandle = ReceiptHandleCodec.encode(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID, OPERATION_ID, now,
+            30_000);
+    }
+
+    @Benchmark
+    public byte[] encodePopOperation() {
+        return SerializeUtil.encodePopOperation(popOperation);
+    }
+
+    @Benchmark
+    public Operation decodePopOperation() throws StoreException {
+        return SerializeUtil.decodeOperation(ByteBuffer.wrap(encodedPopOperation), null, 1, 2);
+    }
+
+    @Benchmark
+    public byte[] encodeAckOperation() {
+        return SerializeUtil.encodeAckOperation(ackOperation);
+    }
+
+    @Benchmark
+    public Operation decodeAckOperation() throws StoreException {
+        return SerializeUtil.decodeOperation(ByteBuffer.wrap(encodedAckOperation), null, 1, 2);
+    }
+
+    @Benchmark
+    public byte[] encodeCheckPoint() {
+        return SerializeUtil.buildCheckPointValue(TOPIC_ID, QUEUE_ID, 1000, 32, CONSUMER_GROUP_ID, OPERATION_ID,
+            PopOperation.PopOperationType.POP_NORMAL, popOperation.operationTimestamp(),
+            popOperation.operationTimestamp() + 30_000);
+    }
+
+    @Benchmark
+    public long decodeCheckPoint() {
+        // Flatbuffers decode lazily, read the fields ack and revive look at.
+        CheckPoint checkPoint = SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(encodedCheckPoint));
+        return checkPoint.messageOffset() + checkPoint.operationId() + checkPoint.nextVisibleTimestamp();
+    }
+
+    @Benchmark
+    public String encodeLegacyReceiptHandle() {
+        return SerializeUtil.encodeReceiptHandle(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID, OPERATION_ID);
+    }
+
+    @Benchmark
+    public long decodeLegacyReceiptHandle() {
+        ReceiptHandle handle = SerializeUtil.decodeReceiptHandle(legacyReceiptHandle);
+        return handle.consumerGroupId() + handle.topicId() + handle.queueId() + handle.operationId();
+    }
+
+    @Benchmark
+    public String encodeCompactReceiptHandle() {
+        return ReceiptHandleCodec.encode(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID, OPERATION_ID,
+            popOperation.operationTimestamp(), 30_000);
+    }
+
+    @Benchmark
+    public ReceiptHandleCodec.Handle decodeCompactReceiptHandle() {
+        return ReceiptHandleCodec.decode(compactReceiptHandle);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.operation.AckOperation;
+import com.automq.rocketmq.store.model.operation.Operation;
+import com.automq.rocketmq.store.model.operation.PopOperation;
+import com.automq.rocketmq.store.queue.DefaultLogicQueueStateMachine;
+import com.automq.rocketmq.store.service.RocksDBKVService;
+import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.util.SerializeUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replay of an operation stream of pops, each followed later by its ack, against a RocksDB backed state machine.
+ * <p>
+ * The encoded operations are decoded on every invocation just like the operation stream is recovered. Pops and acks
+ * use the same operation offsets in every invocation, so the check points written by the pops are deleted by the acks
+ * and the state stays steady across iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateMachineReplayBenchmark {
+    private static final long TOPIC_ID = 1024;
+    private static final int QUEUE_ID = 8;
+    private static final long CONSUMER_GROUP_ID = 4096;
+    private static final long OPERATION_STREAM_ID = 1;
+    private static final long SNAPSHOT_STREAM_ID = 2;
+    private static final String TIMER_NAMESPACE = "timer_0";
+    private static final int BATCH_SIZE = 128;
+
+    private RocksDBKVService kvService;
+    private DefaultLogicQueueStateMachine stateMachine;
+    private byte[][] popOperations;
+    private byte[][] ackOperations;
+
+    @Setup
+    public void setUp() throws IOException, StoreException {
+        String path = Files.createTempDirectory("state_machine_replay_benchmark").toString();
+        kvService = new RocksDBKVService(path);
+        TimerService timerService = new TimerService(TIMER_NAMESPACE, kvService);
+        stateMachine = new DefaultLogicQueueStateMachine(TOPIC_ID, QUEUE_ID, kvService, timerService);
+
+        long now = System.currentTimeMillis();
+        popOperations = new byte[BATCH_SIZE][];
+        ackOperations = new byte[BATCH_SIZE][];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            popOperations[i] = SerializeUtil.encodePopOperation(new PopOperation(TOPIC_ID, QUEUE_ID,
+                OPERATION_STREAM_ID, SNAPSHOT_STREAM_ID, stateMachine, CONSUMER_GROUP_ID, i, 1, 30_000, now, false,
+                PopOperation.PopOperationType.POP_NORMAL));
+            // The operation id of a check point is the offset of its pop operation.
+            ackOperations[i] = SerializeUtil.encodeAckOperation(new AckOperation(TOPIC_ID, QUEUE_ID,
+                OPERATION_STREAM_ID, SNAPSHOT_STREAM_ID, stateMachine, CONSUMER_GROUP_ID, i, now,
+                AckOperation.AckOperationType.ACK_NORMAL));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws StoreException {
+        kvService.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * BATCH_SIZE)
+    public void replayPopAndAck() throws StoreException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Operation operation = SerializeUtil.decodeOperation(ByteBuffer.wrap(popOperations[i]), stateMachine,
+                OPERATION_STREAM_ID, SNAPSHOT_STREAM_ID);
+            stateMachine.replayPopOperation(i, (PopOperation) operation);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Operation operation = SerializeUtil.decodeOperation(ByteBuffer.wrap(ackOperations[i]), stateMachine,
+                OPERATION_STREAM_ID, SNAPSHOT_STREAM_ID);
+            stateMachine.replayAckOperation(BATCH_SIZE + i, (AckOperation) operation);
+        }
+    }
+}
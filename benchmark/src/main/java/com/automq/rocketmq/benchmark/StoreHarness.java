@@ -0,0 +1,308 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
+import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
+import com.automq.rocketmq.store.MemoryStreamStore;
+import com.automq.rocketmq.store.MessageStoreBuilder;
+import com.automq.rocketmq.store.MessageStoreImpl;
+import com.automq.rocketmq.store.api.DeadLetterSender;
+import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.message.AckResult;
+import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.PopResult;
+import com.automq.rocketmq.store.model.message.TagFilter;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import picocli.CommandLine;
+
+/**
+ * Drive a message store wired with {@link MemoryStreamStore} and {@link MemoryStoreMetadataService} with a mix of
+ * producers and consumers, then report the throughput and latency percentiles of every operation.
+ * <p>
+ * Producers put messages into the queues of one topic in turn, tagged with one of several tags. Consumers of each
+ * kind pop the queues in turn with their own consumer group:
+ * <ul>
+ *     <li>normal consumers ack a part of the popped messages, the rest are revived into the retry stream once their
+ *     invisible duration elapses;</li>
+ *     <li>retry consumers pop and ack the retry stream of the normal consumer group;</li>
+ *     <li>FIFO consumers pop in order and ack all popped messages;</li>
+ *     <li>filtered consumers only pop messages of the first tag.</li>
+ * </ul>
+ */
+@CommandLine.Command(name = "store-harness", mixinStandardHelpOptions = true,
+    description = "Measure pop/ack throughput of the message store on an in-memory stream store")
+public class StoreHarness implements Callable<Integer> {
+    private static final long TOPIC_ID = 1;
+    private static final long NORMAL_GROUP_ID = 1;
+    private static final long FIFO_GROUP_ID = 2;
+    private static final long FILTERED_GROUP_ID = 3;
+
+    @CommandLine.Option(names = {"--queues"}, description = "Number of queues of the topic")
+    int queueNums = 4;
+
+    @CommandLine.Option(names = {"-d", "--duration"}, description = "Duration of the run in seconds")
+    int durationSeconds = 60;
+
+    @CommandLine.Option(names = {"-p", "--producers"}, description = "Number of producer threads")
+    int producerNums = 4;
+
+    @CommandLine.Option(names = {"--normal-consumers"}, description = "Number of normal consumer threads")
+    int normalConsumerNums = 2;
+
+    @CommandLine.Option(names = {"--retry-consumers"}, description = "Number of consumer threads of retry messages")
+    int retryConsumerNums = 0;
+
+    @CommandLine.Option(names = {"--fifo-consumers"}, description = "Number of FIFO consumer threads")
+    int fifoConsumerNums = 0;
+
+    @CommandLine.Option(names = {"--filtered-consumers"}, description = "Number of consumer threads filtering by tag")
+    int filteredConsumerNums = 0;
+
+    @CommandLine.Option(names = {"-s", "--message-size"}, description = "Payload size of messages in bytes")
+    int messageSize = 1024;
+
+    @CommandLine.Option(names = {"--tags"}, description = "Number of distinct tags of messages")
+    int tagNums = 8;
+
+    @CommandLine.Option(names = {"-b", "--batch-size"}, description = "Max messages per pop")
+    int batchSize = 32;
+
+    @CommandLine.Option(names = {"--invisible-duration"}, description = "Invisible duration of popped messages in milliseconds")
+    long invisibleDurationMillis = 10_000;
+
+    @CommandLine.Option(names = {"--ack-ratio"}, description = "Ratio of messages acked by normal consumers, in [0, 1]")
+    double ackRatio = 1.0;
+
+    @CommandLine.Option(names = {"--max-delivery-attempts"}, description = "Max delivery attempts before dead lettering")
+    int maxDeliveryAttempts = 16;
+
+    @CommandLine.Option(names = {"--append-latency"}, description = "Latency injected to appends in microseconds")
+    long appendLatencyMicros = 0;
+
+    @CommandLine.Option(names = {"--fetch-latency"}, description = "Latency injected to fetches in microseconds")
+    long fetchLatencyMicros = 0;
+
+    @CommandLine.Option(names = {"--memory-budget"}, description = "Max bytes of records kept by the stream store")
+    long memoryBudget = 4L * 1024 * 1024 * 1024;
+
+    enum OperationType {
+        PUT,
+        POP_NORMAL,
+        POP_RETRY,
+        POP_FIFO,
+        POP_FILTERED,
+        ACK
+    }
+
+    static class OperationStats {
+        final Recorder latency = new Recorder(3);
+        final LongAdder messages = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void record(long startNanos, int messageCount) {
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            messages.add(messageCount);
+        }
+    }
+
+    private final Map<OperationType, OperationStats> stats = new EnumMap<>(OperationType.class);
+    private final AtomicLong deadLetters = new AtomicLong();
+    private MessageStoreImpl messageStore;
+    private long deadline;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new StoreHarness()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        for (OperationType type : OperationType.values()) {
+            stats.put(type, new OperationStats());
+        }
+
+        Path kvPath = Files.createTempDirectory("store_harness");
+        StoreConfig storeConfig = new StoreConfig();
+        storeConfig.setKvPath(kvPath.toString());
+        MemoryStreamStore streamStore = new MemoryStreamStore(appendLatencyMicros, fetchLatencyMicros, memoryBudget);
+        DeadLetterSender deadLetterSender = (context, consumerGroupId, message) -> {
+            deadLetters.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        };
+        messageStore = MessageStoreBuilder.build(storeConfig, streamStore, CompletableFuture::completedFuture,
+            new MemoryStoreMetadataService(maxDeliveryAttempts), deadLetterSender);
+        messageStore.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producerNums; i++) {
+            threads.add(new Thread(this::produce, "producer-" + i));
+        }
+        for (int i = 0; i < normalConsumerNums; i++) {
+            threads.add(new Thread(() -> consume(OperationType.POP_NORMAL, NORMAL_GROUP_ID, Filter.DEFAULT_FILTER, ackRatio), "normal-consumer-" + i));
+        }
+        for (int i = 0; i < retryConsumerNums; i++) {
+            threads.add(new Thread(() -> consume(OperationType.POP_RETRY, NORMAL_GROUP_ID, Filter.DEFAULT_FILTER, 1.0), "retry-consumer-" + i));
+        }
+        for (int i = 0; i < fifoConsumerNums; i++) {
+            threads.add(new Thread(() -> consume(OperationType.POP_FIFO, FIFO_GROUP_ID, Filter.DEFAULT_FILTER, 1.0), "fifo-consumer-" + i));
+        }
+        for (int i = 0; i < filteredConsumerNums; i++) {
+            threads.add(new Thread(() -> consume(OperationType.POP_FILTERED, FILTERED_GROUP_ID, new TagFilter(tag(0)), 1.0), "filtered-consumer-" + i));
+        }
+
+        long startNanos = System.nanoTime();
+        deadline = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        report(elapsedNanos, streamStore);
+
+        messageStore.shutdown();
+        try (Stream<Path> paths = Files.walk(kvPath)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        return 0;
+    }
+
+    private void produce() {
+        OperationStats putStats = stats.get(OperationType.PUT);
+        byte[] payload = new byte[messageSize];
+        int queueId = ThreadLocalRandom.current().nextInt(queueNums);
+        while (System.nanoTime() < deadline) {
+            queueId = (queueId + 1) % queueNums;
+            FlatMessage message = buildMessage(queueId, tag(ThreadLocalRandom.current().nextInt(tagNums)), payload);
+            long start = System.nanoTime();
+            try {
+                messageStore.put(StoreContext.EMPTY, message).join();
+                putStats.record(start, 1);
+            } catch (Exception e) {
+                putStats.errors.increment();
+            }
+        }
+    }
+
+    private void consume(OperationType type, long consumerGroupId, Filter filter, double ackRatio) {
+        OperationStats popStats = stats.get(type);
+        OperationStats ackStats = stats.get(OperationType.ACK);
+        boolean fifo = type == OperationType.POP_FIFO;
+        boolean retry = type == OperationType.POP_RETRY;
+        int queueId = ThreadLocalRandom.current().nextInt(queueNums);
+        while (System.nanoTime() < deadline) {
+            queueId = (queueId + 1) % queueNums;
+            PopResult result;
+            long start = System.nanoTime();
+            try {
+                result = messageStore.pop(StoreContext.EMPTY, consumerGroupId, TOPIC_ID, queueId, filter, batchSize,
+                    fifo, retry, invisibleDurationMillis).join();
+            } catch (Exception e) {
+                popStats.errors.increment();
+                continue;
+            }
+            if (result.status() == PopResult.Status.ERROR
+                || result.status() == PopResult.Status.INFLIGHT_QUOTA_EXCEEDED) {
+                popStats.errors.increment();
+                // Back off a little instead of spinning on a rejected consumer group.
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            popStats.record(start, result.messageList().size());
+
+            for (FlatMessageExt messageExt : result.messageList()) {
+                if (ackRatio < 1.0 && ThreadLocalRandom.current().nextDouble() >= ackRatio) {
+                    continue;
+                }
+                long ackStart = System.nanoTime();
+                try {
+                    AckResult ackResult = messageStore.ack(messageExt.receiptHandle().orElseThrow()).join();
+                    if (ackResult.status() == AckResult.Status.SUCCESS) {
+                        ackStats.record(ackStart, 1);
+                    } else {
+                        ackStats.errors.increment();
+                    }
+                } catch (Exception e) {
+                    ackStats.errors.increment();
+                }
+            }
+
+            if (result.messageList().isEmpty()) {
+                // Back off a little instead of spinning on drained queues.
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private FlatMessage buildMessage(int queueId, String tag, byte[] payload) {
+        FlatMessageT flatMessageT = new FlatMessageT();
+        flatMessageT.setTopicId(TOPIC_ID);
+        flatMessageT.setQueueId(queueId);
+        flatMessageT.setTag(tag);
+        flatMessageT.setPayload(payload);
+
+        SystemPropertiesT systemPropertiesT = new SystemPropertiesT();
+        systemPropertiesT.setMessageId(UUID.randomUUID().toString());
+        long now = System.currentTimeMillis();
+        systemPropertiesT.setBornTimestamp(now);
+        systemPropertiesT.setStoreTimestamp(now);
+        systemPropertiesT.setDeliveryAttempts(1);
+        flatMessageT.setSystemProperties(systemPropertiesT);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(payload.length + 256);
+        builder.finish(FlatMessage.pack(builder, flatMessageT));
+        return FlatMessage.getRootAsFlatMessage(builder.dataBuffer());
+    }
+
+    private static String tag(int index) {
+        return "Tag" + index;
+    }
+
+    private void report(long elapsedNanos, MemoryStreamStore streamStore) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        System.out.printf("Elapsed %.1f s, %d bytes kept by the stream store, %d dead letters%n", elapsedSeconds,
+            streamStore.usedBytes(), deadLetters.get());
+        System.out.printf("%-14s %12s %12s %12s %10s %10s %10s %10s%n", "operation", "ops/s", "msgs/s", "errors",
+            "p50(us)", "p99(us)", "p999(us)", "max(us)");
+        for (Map.Entry<OperationType, OperationStats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().latency.getIntervalHistogram();
+            if (histogram.getTotalCount() == 0 && entry.getValue().errors.sum() == 0) {
+                continue;
+            }
+            System.out.printf("%-14s %12.1f %12.1f %12d %10d %10d %10d %10d%n", entry.getKey().name().toLowerCase(),
+                histogram.getTotalCount() / elapsedSeconds, entry.getValue().messages.sum() / elapsedSeconds,
+                entry.getValue().errors.sum(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
+import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
+import com.automq.rocketmq.store.model.message.TagFilter;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tag filtering of a fetched batch, the tags of messages are drawn from a small set and a part of the messages carries
+ * no tag at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagFilterBenchmark {
+    private static final int TAG_COUNT = 16;
+
+    @Param({"32", "256"})
+    private int batchSize;
+
+    @Param({"Tag0", "Tag0 || Tag1 || Tag2"})
+    private String expression;
+
+    private TagFilter filter;
+    private List<FlatMessageExt> batch;
+
+    @Setup
+    public void setUp() {
+        filter = new TagFilter(expression);
+
+        Random random = new Random(0);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            // One in ten messages is sent without tag.
+            int tag = random.nextInt(TAG_COUNT + TAG_COUNT / 10);
+            batch.add(message(i, tag < TAG_COUNT ? "Tag" + tag : null));
+        }
+    }
+
+    @Benchmark
+    public List<FlatMessageExt> doFilter() {
+        return filter.doFilter(batch);
+    }
+
+    private static FlatMessageExt message(long offset, String tag) {
+        FlatMessageT flatMessageT = new FlatMessageT();
+        flatMessageT.setTopicId(1);
+        flatMessageT.setQueueId(0);
+        flatMessageT.setTag(tag);
+        flatMessageT.setKeys("key-" + offset);
+        flatMessageT.setPayload(new byte[1024]);
+
+        SystemPropertiesT systemPropertiesT = new SystemPropertiesT();
+        systemPropertiesT.setMessageId("message-" + offset);
+        systemPropertiesT.setStoreTimestamp(System.currentTimeMillis());
+        flatMessageT.setSystemProperties(systemPropertiesT);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(2048);
+        builder.finish(FlatMessage.pack(builder, flatMessageT));
+        return FlatMessageExt.Builder.builder()
+            .message(FlatMessage.getRootAsFlatMessage(builder.dataBuffer()))
+            .offset(offset)
+            .build();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.benchmark;
+
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.generated.TimerHandlerType;
+import com.automq.rocketmq.store.service.RocksDBKVService;
+import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.api.KVService;
+import com.google.common.base.Ticker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One round of {@link TimerService} dequeue with a large number of pending timer tags.
+ * <p>
+ * Tags are due one per millisecond of a manual ticker, every invocation advances the ticker to make
+ * {@value #BATCH_SIZE} tags due. The dequeued tags are enqueued again at the tail before the next invocation, so the
+ * number of pending tags stays the same during the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TimerServiceBenchmark {
+    private static final String TIMER_NAMESPACE = "timer_0";
+    private static final int BATCH_SIZE = 1000;
+    private static final byte[] PAYLOAD = new byte[32];
+
+    @Param({"1000000"})
+    private int pendingTags;
+
+    private KVService kvService;
+    private BenchmarkTimerService timerService;
+    private long now;
+    private long enqueuedTimestamp;
+    private long dequeuedTimestamp;
+    private long handledTags;
+
+    /**
+     * Expose the dequeue round which is run by the service thread otherwise.
+     */
+    static class BenchmarkTimerService extends TimerService {
+        BenchmarkTimerService(String namespace, KVService kvService, Ticker ticker) {
+            super(namespace, kvService, ticker);
+        }
+
+        void dequeueOnce() throws StoreException {
+            dequeue();
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException, StoreException {
+        String path = Files.createTempDirectory("timer_service_benchmark").toString();
+        kvService = new RocksDBKVService(path);
+        timerService = new BenchmarkTimerService(TIMER_NAMESPACE, kvService, new Ticker() {
+            @Override
+            public long read() {
+                return now;
+            }
+        });
+        timerService.registerHandler(TimerHandlerType.POP_REVIVE, timerTag -> handledTags++);
+
+        enqueuedTimestamp = 0;
+        dequeuedTimestamp = 0;
+        while (enqueuedTimestamp < pendingTags) {
+            enqueue(++enqueuedTimestamp);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() throws StoreException {
+        while (enqueuedTimestamp - dequeuedTimestamp < pendingTags) {
+            enqueue(++enqueuedTimestamp);
+        }
+        dequeuedTimestamp += BATCH_SIZE;
+        now = dequeuedTimestamp;
+    }
+
+    @TearDown
+    public void tearDown() throws StoreException {
+        if (handledTags == 0) {
+            throw new IllegalStateException("No timer tag is dequeued");
+        }
+        kvService.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void dequeue() throws StoreException {
+        timerService.dequeueOnce();
+    }
+
+    private void enqueue(long deliveryTimestamp) throws StoreException {
+        byte[] identity = ByteBuffer.allocate(Long.BYTES).putLong(deliveryTimestamp).array();
+        timerService.enqueue(deliveryTimestamp, identity, TimerHandlerType.POP_REVIVE, PAYLOAD);
+    }
+}
@@ -20,7 +20,6 @@ import com.automq.rocketmq.controller.server.ControllerServiceImpl;
 import com.automq.rocketmq.controller.server.MetadataStoreBuilder;
 import com.automq.rocketmq.metadata.DefaultProxyMetadataService;
 import com.automq.rocketmq.metadata.DefaultStoreMetadataService;
-import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.metadata.service.DefaultS3MetadataService;
 import com.automq.rocketmq.metadata.service.S3MetadataService;
@@ -65,7 +64,7 @@ public class BrokerController implements Lifecycle {
     private final MetadataStore metadataStore;
     private final MessageStore messageStore;
     private final StoreMetadataService storeMetadataService;
-    private final ProxyMetadataService proxyMetadataService;
+    private final DefaultProxyMetadataService proxyMetadataService;
     private final ExtendMessagingProcessor messagingProcessor;
     private final TelemetryExporter telemetryExporter;
     private final MetricsExporter metricsExporter;
@@ -96,7 +95,8 @@ public class BrokerController implements Lifecycle {
         messageStore.registerMessageArriveListener((source, topic, queueId, offset, tag) -> suspendRequestService.notifyMessageArrival(topic.getName(), queueId, tag));
         this.messageStore = messageStore;
 
-        DataStore dataStore = new DataStoreFacade(messageStore.streamStore(), messageStore.s3ObjectOperator(), messageStore.topicQueueManager());
+        DataStore dataStore = new DataStoreFacade(messageStore.streamStore(), messageStore.s3ObjectOperator(), messageStore.topicQueueManager(),
+            messageStore.queueLoadService(), proxyMetadataService);
         metadataStore.setDataStore(dataStore);
         dlqService.init(messageStore);
 
@@ -140,6 +140,7 @@ public class BrokerController implements Lifecycle {
     public void start() throws Exception {
         // Start the node registrar first, so that the node is registered before the proxy starts.
         metadataStore.start();
+        proxyMetadataService.start();
 
         messageStore.start();
         messagingProcessor.start();
@@ -158,6 +159,7 @@ public class BrokerController implements Lifecycle {
         remotingServer.shutdown();
         messagingProcessor.shutdown();
         messageStore.shutdown();
+        proxyMetadataService.shutdown();
         metadataStore.close();
         metricsExporter.shutdown();
         telemetryExporter.close();
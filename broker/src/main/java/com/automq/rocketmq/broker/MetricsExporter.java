@@ -13,9 +13,12 @@ package com.automq.rocketmq.broker;
 
 import com.automq.rocketmq.common.config.BrokerConfig;
 import com.automq.rocketmq.common.config.MetricsConfig;
+import com.automq.rocketmq.common.metrics.ExecutorMetricsManager;
 import com.automq.rocketmq.common.util.Lifecycle;
 import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.controller.server.ReclaimMetricsManager;
 import com.automq.rocketmq.controller.server.TopicMetricsManager;
+import com.automq.rocketmq.metadata.metrics.S3MetadataMetricsManager;
 import com.automq.rocketmq.metadata.service.S3MetadataService;
 import com.automq.rocketmq.proxy.metrics.ProxyMetricsManager;
 import com.automq.rocketmq.proxy.processor.ExtendMessagingProcessor;
@@ -63,6 +66,9 @@ public class MetricsExporter implements Lifecycle {
     private final StreamMetricsManager streamMetricsManager;
 
     private final TopicMetricsManager topicMetricsManager;
+    private final ExecutorMetricsManager executorMetricsManager;
+    private final S3MetadataMetricsManager s3MetadataMetricsManager;
+    private final ReclaimMetricsManager reclaimMetricsManager;
 
     public static Supplier<AttributesBuilder> attributesBuilderSupplier = Attributes::builder;
 
@@ -76,6 +82,9 @@ public class MetricsExporter implements Lifecycle {
         this.storeMetricsManager = new StoreMetricsManager(metricsConfig, messageStore);
         this.streamMetricsManager = new StreamMetricsManager();
         this.topicMetricsManager = new TopicMetricsManager(metadataStore, s3MetadataService);
+        this.executorMetricsManager = new ExecutorMetricsManager();
+        this.s3MetadataMetricsManager = new S3MetadataMetricsManager();
+        this.reclaimMetricsManager = new ReclaimMetricsManager();
         init();
     }
 
@@ -147,6 +156,9 @@ public class MetricsExporter implements Lifecycle {
         storeMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
         proxyMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
         topicMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
+        executorMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
+        s3MetadataMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
+        reclaimMetricsManager.initAttributesBuilder(MetricsExporter::newAttributesBuilder);
     }
 
     private void initStaticMetrics() {
@@ -154,6 +166,9 @@ public class MetricsExporter implements Lifecycle {
         storeMetricsManager.initStaticMetrics(brokerMeter);
         proxyMetricsManager.initStaticMetrics(brokerMeter);
         topicMetricsManager.initStaticMetrics(brokerMeter);
+        executorMetricsManager.initStaticMetrics(brokerMeter);
+        s3MetadataMetricsManager.initStaticMetrics(brokerMeter);
+        reclaimMetricsManager.initStaticMetrics(brokerMeter);
     }
 
     private void initDynamicMetrics() {
@@ -161,6 +176,9 @@ public class MetricsExporter implements Lifecycle {
         storeMetricsManager.initDynamicMetrics(brokerMeter);
         proxyMetricsManager.initDynamicMetrics(brokerMeter);
         topicMetricsManager.initDynamicMetrics(brokerMeter);
+        executorMetricsManager.initDynamicMetrics(brokerMeter);
+        s3MetadataMetricsManager.initDynamicMetrics(brokerMeter);
+        reclaimMetricsManager.initDynamicMetrics(brokerMeter);
         storeMetricsManager.start();
     }
 
@@ -184,6 +202,14 @@ public class MetricsExporter implements Lifecycle {
         for (Pair<InstrumentSelector, View> selectorViewPair : StreamMetricsManager.getMetricsView()) {
             providerBuilder.registerView(selectorViewPair.getLeft(), selectorViewPair.getRight());
         }
+
+        for (Pair<InstrumentSelector, View> selectorViewPair : ExecutorMetricsManager.getMetricsView()) {
+            providerBuilder.registerView(selectorViewPair.getLeft(), selectorViewPair.getRight());
+        }
+
+        for (Pair<InstrumentSelector, View> selectorViewPair : S3MetadataMetricsManager.getMetricsView()) {
+            providerBuilder.registerView(selectorViewPair.getLeft(), selectorViewPair.getRight());
+        }
     }
 
     @Override
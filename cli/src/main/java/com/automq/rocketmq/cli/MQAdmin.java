@@ -29,6 +29,7 @@ import com.automq.rocketmq.cli.topic.DeleteTopic;
 import com.automq.rocketmq.cli.topic.DescribeTopic;
 import com.automq.rocketmq.cli.topic.ListTopic;
 import com.automq.rocketmq.cli.topic.PrintTopicStats;
+import com.automq.rocketmq.cli.topic.QueryMessage;
 import com.automq.rocketmq.cli.topic.ReassignTopic;
 import com.automq.rocketmq.cli.topic.UpdateTopic;
 import picocli.CommandLine;
@@ -46,6 +47,7 @@ import picocli.CommandLine;
         DeleteTopic.class,
         ListTopic.class,
         PrintTopicStats.class,
+        QueryMessage.class,
         ReassignTopic.class,
         DescribeStream.class,
         CreateGroup.class,
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.cli.benchmark;
+
+import com.automq.rocketmq.common.PrefixThreadFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Report latency of benchmark operations periodically to the console, and write a summary of the measured phase in
+ * JSON or CSV once the benchmark is done, so that runs can be compared with each other.
+ * <p>
+ * Everything recorded during the warm-up phase is dropped from the summary.
+ */
+public class BenchmarkReporter implements AutoCloseable {
+    public enum SummaryFormat {
+        JSON,
+        CSV
+    }
+
+    private final String benchmark;
+    private final List<LatencyRecorder> recorders;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(new PrefixThreadFactory("Benchmark-Reporter"));
+
+    private long measureStartNanos;
+    private long lastReportNanos;
+    private boolean measuring;
+
+    public BenchmarkReporter(String benchmark, List<LatencyRecorder> recorders) {
+        this.benchmark = benchmark;
+        this.recorders = recorders;
+    }
+
+    /**
+     * Parameters of the run are written to the JSON summary to tell runs apart.
+     */
+    public BenchmarkReporter parameter(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public synchronized void start(int warmupInSeconds, int reportIntervalInSeconds) {
+        lastReportNanos = System.nanoTime();
+        if (warmupInSeconds > 0) {
+            System.out.printf("Warming up for %d seconds%n", warmupInSeconds);
+            scheduler.schedule(() -> {
+                startMeasuring();
+                System.out.println("Warm-up finished, start measuring");
+            }, warmupInSeconds, TimeUnit.SECONDS);
+        } else {
+            startMeasuring();
+        }
+        scheduler.scheduleAtFixedRate(this::report, reportIntervalInSeconds, reportIntervalInSeconds, TimeUnit.SECONDS);
+    }
+
+    private synchronized void startMeasuring() {
+        recorders.forEach(LatencyRecorder::startMeasuring);
+        measureStartNanos = System.nanoTime();
+        lastReportNanos = measureStartNanos;
+        measuring = true;
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        lastReportNanos = now;
+        for (LatencyRecorder recorder : recorders) {
+            Histogram interval = recorder.nextInterval(measuring);
+            long errors = recorder.nextIntervalErrors();
+            if (interval.getTotalCount() == 0 && errors == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%s%-12s rate: %10.1f/s, errors: %6d, p50: %9.3f ms, p99: %9.3f ms, p999: %9.3f ms, max: %9.3f ms%n",
+                measuring ? "" : "[warm-up] ", recorder.name(), interval.getTotalCount() / seconds, errors,
+                millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)),
+                millis(interval.getValueAtPercentile(99.9)), millis(interval.getMaxValue()));
+        }
+    }
+
+    /**
+     * Stop reporting, then print the summary and write it to the output file if any.
+     */
+    public void close(Path output, SummaryFormat format) throws IOException {
+        close();
+        synchronized (this) {
+            // Flush latency recorded since the last report.
+            report();
+            double seconds = measuring ? (System.nanoTime() - measureStartNanos) / 1e9 : 0;
+            String json = json(seconds);
+            System.out.println(json);
+            if (output != null) {
+                String content = format == SummaryFormat.CSV ? csv(seconds) : json;
+                Files.writeString(output, content, StandardCharsets.UTF_8);
+                System.out.printf("Summary written to %s%n", output);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private String json(double seconds) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n  \"benchmark\": \"").append(escape(benchmark)).append("\",\n");
+        builder.append(String.format(Locale.ROOT, "  \"durationSeconds\": %.3f,%n", seconds));
+        builder.append("  \"parameters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            builder.append(separator).append("    \"").append(escape(entry.getKey())).append("\": ");
+            if (entry.getValue() instanceof Number || entry.getValue() instanceof Boolean) {
+                builder.append(entry.getValue());
+            } else {
+                builder.append('"').append(escape(String.valueOf(entry.getValue()))).append('"');
+            }
+            separator = ",\n";
+        }
+        builder.append("\n  },\n  \"operations\": [");
+        separator = "\n";
+        for (LatencyRecorder recorder : recorders) {
+            Histogram histogram = recorder.measured();
+            builder.append(separator).append(String.format(Locale.ROOT,
+                "    {\"name\": \"%s\", \"count\": %d, \"errors\": %d, \"throughput\": %.1f, \"meanMicros\": %.1f, "
+                    + "\"p50Micros\": %.1f, \"p90Micros\": %.1f, \"p99Micros\": %.1f, \"p999Micros\": %.1f, \"maxMicros\": %.1f}",
+                escape(recorder.name()), histogram.getTotalCount(), recorder.measuredErrors(),
+                throughput(histogram, seconds), histogram.getMean() / 1000, micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(90)), micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMaxValue())));
+            separator = ",\n";
+        }
+        builder.append("\n  ]\n}\n");
+        return builder.toString();
+    }
+
+    private String csv(double seconds) {
+        StringBuilder builder = new StringBuilder(
+            "benchmark,operation,duration_seconds,count,errors,throughput,mean_us,p50_us,p90_us,p99_us,p999_us,max_us\n");
+        for (LatencyRecorder recorder : recorders) {
+            Histogram histogram = recorder.measured();
+            builder.append(String.format(Locale.ROOT, "%s,%s,%.3f,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                benchmark, recorder.name(), seconds, histogram.getTotalCount(), recorder.measuredErrors(),
+                throughput(histogram, seconds), histogram.getMean() / 1000, micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(90)), micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMaxValue())));
+        }
+        return builder.toString();
+    }
+
+    private static double throughput(Histogram histogram, double seconds) {
+        return seconds > 0 ? histogram.getTotalCount() / seconds : 0;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.cli.benchmark;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Record latency of one kind of operation into HDR histograms in nanoseconds, safe to be recorded by multiple threads.
+ * <p>
+ * Latency recorded during the warm-up phase is dropped, see {@link BenchmarkReporter}.
+ */
+public class LatencyRecorder {
+    private final String name;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram measured = new Histogram(3);
+    private final LongAdder errors = new LongAdder();
+
+    private Histogram interval;
+    private long reportedErrors;
+    private long measureStartErrors;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void record(long latencyNanos) {
+        recorder.recordValue(Math.max(latencyNanos, 0));
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Take the latency recorded since the last interval, which is added to the measured histogram unless warming up.
+     */
+    synchronized Histogram nextInterval(boolean measuring) {
+        interval = recorder.getIntervalHistogram(interval);
+        if (measuring) {
+            measured.add(interval);
+        }
+        return interval;
+    }
+
+    /**
+     * @return errors since the last call
+     */
+    synchronized long nextIntervalErrors() {
+        long total = errors.sum();
+        long result = total - reportedErrors;
+        reportedErrors = total;
+        return result;
+    }
+
+    /**
+     * Drop everything recorded so far at the end of the warm-up phase.
+     */
+    synchronized void startMeasuring() {
+        recorder.reset();
+        measured.reset();
+        measureStartErrors = errors.sum();
+    }
+
+    synchronized Histogram measured() {
+        return measured.copy();
+    }
+
+    long measuredErrors() {
+        return errors.sum() - measureStartErrors;
+    }
+}
@@ -17,15 +17,15 @@ import apache.rocketmq.controller.v1.GroupType;
 import apache.rocketmq.controller.v1.SubscriptionMode;
 import com.automq.rocketmq.cli.CliClientConfig;
 import com.automq.rocketmq.cli.MQAdmin;
+import com.automq.rocketmq.cli.benchmark.BenchmarkReporter;
+import com.automq.rocketmq.cli.benchmark.LatencyRecorder;
 import com.automq.rocketmq.cli.tools.CliUtils;
 import com.automq.rocketmq.common.PrefixThreadFactory;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.client.GrpcControllerClient;
-import com.codahale.metrics.ConsoleReporter;
-import com.codahale.metrics.Meter;
-import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.RateLimiter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +37,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientException;
@@ -48,13 +49,18 @@ import org.apache.rocketmq.client.apis.consumer.SimpleConsumer;
 import org.apache.rocketmq.client.apis.message.MessageView;
 import picocli.CommandLine;
 
+/**
+ * Receive and ack messages with simple consumers, measuring the latency of receives and acks, and the end-to-end
+ * latency of every message from its born timestamp, or its delivery timestamp for delay messages, until it is
+ * received. The end-to-end latency relies on the clocks of producers and consumers being synchronized.
+ */
 @CommandLine.Command(name = "consumeMessage", mixinStandardHelpOptions = true, showDefaultValues = true)
 public class ConsumeMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-t", "--topicNums"}, description = "Number of topics")
     int topicNums = 1;
 
-    @CommandLine.Option(names = {"-r", "--rate"}, description = "Consume message rate per second across all topics")
-    int messageRate = 100;
+    @CommandLine.Option(names = {"-r", "--rate"}, description = "Max receive requests per second across all consumers, 0 for unlimited")
+    int messageRate = 0;
 
     @CommandLine.Option(names = {"-m", "--messageNums"}, description = "Number of messages")
     int numMessages = Integer.MAX_VALUE;
@@ -65,7 +71,10 @@ public class ConsumeMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-c", "--consumerNums"}, description = "Number of consumers, scale out consumer to improve throughput")
     int consumerNums = 1;
 
-    @CommandLine.Option(names = {"-d", "--duration"}, description = "Duration in seconds")
+    @CommandLine.Option(names = {"-w", "--warmupInSeconds"}, description = "Warm-up duration in seconds, which is not measured")
+    int warmupInSeconds = 5;
+
+    @CommandLine.Option(names = {"-d", "--duration"}, description = "Duration in seconds, excluding warm-up")
     int durationInSeconds = 10;
 
     @CommandLine.Option(names = {"-i", "--reportIntervalInSeconds"}, description = "Report interval in seconds")
@@ -74,7 +83,7 @@ public class ConsumeMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-g", "--groupName"}, description = "Group name")
     String groupName = "Benchmark_Group";
 
-    @CommandLine.Option(names = {"-gt", "--groupType"}, description = "Group type")
+    @CommandLine.Option(names = {"-gt", "--groupType"}, description = "Group type, GROUP_TYPE_FIFO to consume FIFO messages in order")
     GroupType groupType = GroupType.GROUP_TYPE_STANDARD;
 
     @CommandLine.Option(names = {"-lt", "--longPollingTimeoutInSeconds"}, description = "Long polling timeout in seconds")
@@ -86,12 +95,23 @@ public class ConsumeMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-im", "--inflightMessageNums"}, description = "Inflight message number")
     int inflightMessageNums = 100;
 
+    @CommandLine.Option(names = {"-na", "--noAck"}, description = "Do not ack received messages, which are received again once invisible duration elapses")
+    boolean noAck = false;
+
+    @CommandLine.Option(names = {"-o", "--output"}, description = "File to write the summary of the measured phase to")
+    Path output;
+
+    @CommandLine.Option(names = {"-of", "--outputFormat"}, description = "Format of the summary: JSON or CSV")
+    BenchmarkReporter.SummaryFormat outputFormat = BenchmarkReporter.SummaryFormat.JSON;
+
     @CommandLine.ParentCommand
     MQAdmin mqAdmin;
 
-    private final MetricRegistry metrics = new MetricRegistry();
+    private final LatencyRecorder receiveLatency = new LatencyRecorder("receive");
+    private final LatencyRecorder ackLatency = new LatencyRecorder("ack");
+    private final LatencyRecorder endToEndLatency = new LatencyRecorder("end-to-end");
 
-    @SuppressWarnings({"ResultOfMethodCallIgnored", "UnstableApiUsage"})
+    @SuppressWarnings("UnstableApiUsage")
     @Override
     public Void call() throws Exception {
         prepareConsumerGroup(groupName);
@@ -99,72 +119,85 @@ public class ConsumeMessage implements Callable<Void> {
         SimpleConsumer[] consumers = IntStream.range(0, consumerNums)
             .mapToObj(i -> prepareConsumer(provider, groupName)).toArray(SimpleConsumer[]::new);
 
-        ExecutorService executor = Executors.newCachedThreadPool(new PrefixThreadFactory("Benchmark-Consumer"));
-        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
-            .build();
-        reporter.start(reportIntervalInSeconds, TimeUnit.SECONDS);
-        Meter consumeMeter = metrics.meter("Meter for consuming messages");
-        Meter ackMeter = metrics.meter("Meter for acking messages");
-        long startTimestamp = System.currentTimeMillis();
-
-        executor.submit(() -> {
-            RateLimiter rateLimiter = RateLimiter.create(messageRate);
-            AtomicInteger messageReceived = new AtomicInteger();
-            AtomicInteger currentInflightMessages = new AtomicInteger();
-            int index = 0;
-            while (true) {
-                if (System.currentTimeMillis() - startTimestamp > durationInSeconds * 1000L) {
-                    break;
-                }
-                if (messageReceived.get() >= numMessages) {
-                    break;
-                }
+        ExecutorService executor = Executors.newFixedThreadPool(consumerNums, new PrefixThreadFactory("Benchmark-Consumer"));
+        BenchmarkReporter reporter = new BenchmarkReporter("consumeMessage", List.of(receiveLatency, ackLatency, endToEndLatency))
+            .parameter("groupType", groupType)
+            .parameter("topicNums", topicNums)
+            .parameter("consumerNums", consumerNums)
+            .parameter("batchSize", batchSize)
+            .parameter("inflightMessageNums", inflightMessageNums)
+            .parameter("noAck", noAck)
+            .parameter("warmupInSeconds", warmupInSeconds)
+            .parameter("durationInSeconds", durationInSeconds);
+        reporter.start(warmupInSeconds, reportIntervalInSeconds);
+
+        RateLimiter rateLimiter = messageRate > 0 ? RateLimiter.create(messageRate) : null;
+        AtomicLong messageReceived = new AtomicLong();
+        AtomicInteger currentInflightMessages = new AtomicInteger();
+        long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupInSeconds + durationInSeconds);
+
+        // Each consumer receives in a loop of its own, so that a slow receive does not hold back the others.
+        for (SimpleConsumer consumer : consumers) {
+            executor.execute(() -> {
+                while (System.nanoTime() - endNanos < 0 && messageReceived.get() < numMessages) {
+                    if (currentInflightMessages.get() >= inflightMessageNums) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(1);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (rateLimiter != null) {
+                        rateLimiter.acquire();
+                    }
 
-                if (currentInflightMessages.get() >= inflightMessageNums) {
+                    List<MessageView> messageViews;
+                    long start = System.nanoTime();
                     try {
-                        TimeUnit.MILLISECONDS.sleep(1);
-                    } catch (InterruptedException ignored) {
+                        messageViews = consumer.receive(batchSize, Duration.ofSeconds(10));
+                        receiveLatency.record(System.nanoTime() - start);
+                    } catch (Exception e) {
+                        receiveLatency.recordError();
+                        continue;
                     }
-                    continue;
-                }
-
-                rateLimiter.acquire();
-
-                SimpleConsumer selectedConsumer = consumers[index++ % consumerNums];
-                CompletableFuture<List<MessageView>> receiveCf = selectedConsumer.receiveAsync(batchSize, Duration.ofSeconds(10));
-                receiveCf.whenComplete((messageViews, throwable) -> {
 
-                    if (throwable != null) {
-                        System.out.println("Failed to receive messages: " + throwable.getMessage());
-                        return;
-                    }
-                    if (messageViews != null) {
-                        for (MessageView messageView : messageViews) {
-                            consumeMeter.mark();
-                            selectedConsumer.ackAsync(messageView).whenComplete((ackReceipt, ackThrowable) -> {
-                                currentInflightMessages.decrementAndGet();
-                                if (ackThrowable != null) {
-                                    System.out.println("Failed to ack message: " + ackThrowable.getMessage());
-                                } else {
-                                    ackMeter.mark();
-                                }
-                            });
+                    long now = System.currentTimeMillis();
+                    for (MessageView messageView : messageViews) {
+                        // Delay messages are expected to arrive at the delivery timestamp.
+                        long expectedTimestamp = messageView.getDeliveryTimestamp().orElse(messageView.getBornTimestamp());
+                        endToEndLatency.record(TimeUnit.MILLISECONDS.toNanos(now - expectedTimestamp));
+                        if (!noAck) {
+                            ack(consumer, messageView, currentInflightMessages);
                         }
-                        currentInflightMessages.addAndGet(messageViews.size());
-                        messageReceived.addAndGet(messageViews.size());
                     }
-                });
-            }
-        });
+                    messageReceived.addAndGet(messageViews.size());
+                }
+            });
+        }
 
-        executor.awaitTermination(durationInSeconds + 1, TimeUnit.SECONDS);
+        executor.shutdown();
+        executor.awaitTermination(warmupInSeconds + durationInSeconds + longPollingTimeoutInSeconds, TimeUnit.SECONDS);
         for (SimpleConsumer consumer : consumers) {
             consumer.close();
         }
-        reporter.close();
+        reporter.close(output, outputFormat);
         return null;
     }
 
+    private void ack(SimpleConsumer consumer, MessageView messageView, AtomicInteger currentInflightMessages) {
+        currentInflightMessages.incrementAndGet();
+        long start = System.nanoTime();
+        consumer.ackAsync(messageView).whenComplete((ackReceipt, throwable) -> {
+            currentInflightMessages.decrementAndGet();
+            if (throwable != null) {
+                ackLatency.recordError();
+            } else {
+                ackLatency.record(System.nanoTime() - start);
+            }
+        });
+    }
+
     private void prepareConsumerGroup(String consumerGroup) throws IOException {
         GrpcControllerClient client = new GrpcControllerClient(new CliClientConfig());
         CreateGroupRequest request = CreateGroupRequest.newBuilder()
@@ -17,32 +17,43 @@ import apache.rocketmq.controller.v1.CreateTopicRequest;
 import apache.rocketmq.controller.v1.MessageType;
 import com.automq.rocketmq.cli.CliClientConfig;
 import com.automq.rocketmq.cli.MQAdmin;
+import com.automq.rocketmq.cli.benchmark.BenchmarkReporter;
+import com.automq.rocketmq.cli.benchmark.LatencyRecorder;
 import com.automq.rocketmq.cli.tools.CliUtils;
 import com.automq.rocketmq.common.PrefixThreadFactory;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.client.GrpcControllerClient;
-import com.codahale.metrics.ConsoleReporter;
-import com.codahale.metrics.Counter;
-import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
-import com.google.common.util.concurrent.RateLimiter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.IntStream;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientException;
 import org.apache.rocketmq.client.apis.ClientServiceProvider;
 import org.apache.rocketmq.client.apis.StaticSessionCredentialsProvider;
 import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
 import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.Transaction;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
 import picocli.CommandLine;
 
+/**
+ * Publish messages on an open-loop schedule: the i-th message is due at <code>start + i / rate</code> no matter how
+ * long previous sends take, and its latency is measured from the due time rather than the time it is actually sent.
+ * So a slow server delays the following sends and shows up in the latency, instead of silently lowering the rate,
+ * which is known as coordinated omission.
+ */
 @CommandLine.Command(name = "produceMessage", mixinStandardHelpOptions = true, showDefaultValues = true)
 public class ProduceMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-t", "--topicNums"}, description = "Number of topics")
@@ -66,71 +77,144 @@ public class ProduceMessage implements Callable<Void> {
     @CommandLine.Option(names = {"-tp", "--topicPrefix"}, description = "The prefix of the created topics")
     String topicPrefix = "Benchmark_Topic_";
 
-    @CommandLine.Option(names = {"-mt", "--messageType"}, description = "Message type")
+    @CommandLine.Option(names = {"-mt", "--messageType"}, description = "Message type, which is also the workload: NORMAL, FIFO, DELAY or TRANSACTION")
     MessageType messageType = MessageType.NORMAL;
 
-    @CommandLine.Option(names = {"-d", "--duration"}, description = "Duration in seconds")
+    @CommandLine.Option(names = {"-mg", "--messageGroupNums"}, description = "Number of message groups of FIFO messages")
+    int messageGroupNums = 16;
+
+    @CommandLine.Option(names = {"-dl", "--delayInSeconds"}, description = "Delivery delay of DELAY messages in seconds")
+    int delayInSeconds = 10;
+
+    @CommandLine.Option(names = {"-st", "--sendThreads"}, description = "Number of threads sending TRANSACTION messages, which are sent synchronously")
+    int sendThreads = 32;
+
+    @CommandLine.Option(names = {"-w", "--warmupInSeconds"}, description = "Warm-up duration in seconds, which is not measured")
+    int warmupInSeconds = 5;
+
+    @CommandLine.Option(names = {"-d", "--duration"}, description = "Duration in seconds, excluding warm-up")
     int durationInSeconds = 10;
 
     @CommandLine.Option(names = {"-i", "--reportIntervalInSeconds"}, description = "Report interval in seconds")
     int reportIntervalInSeconds = 3;
 
+    @CommandLine.Option(names = {"-o", "--output"}, description = "File to write the summary of the measured phase to")
+    Path output;
+
+    @CommandLine.Option(names = {"-of", "--outputFormat"}, description = "Format of the summary: JSON or CSV")
+    BenchmarkReporter.SummaryFormat outputFormat = BenchmarkReporter.SummaryFormat.JSON;
+
     @CommandLine.ParentCommand
     MQAdmin mqAdmin;
 
-    private final MetricRegistry metrics = new MetricRegistry();
+    // Latency from the time a message is due to be sent until it is acknowledged, i.e. corrected for coordinated omission.
+    private final LatencyRecorder sendLatency = new LatencyRecorder("send");
+    // Latency from the time a message is actually sent until it is acknowledged.
+    private final LatencyRecorder serviceLatency = new LatencyRecorder("send-service");
 
-    @SuppressWarnings({"ResultOfMethodCallIgnored", "UnstableApiUsage"})
     @Override
     public Void call() throws Exception {
+        if (messageRate <= 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "Rate must be positive");
+        }
         prepareTopics();
         ClientServiceProvider provider = ClientServiceProvider.loadService();
         Producer[] producers = IntStream.range(0, producerNums).mapToObj(i -> prepareProducer(provider)).toArray(Producer[]::new);
 
-        ExecutorService executor = Executors.newCachedThreadPool(new PrefixThreadFactory("Benchmark-Producer"));
-        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
-            .build();
-        reporter.start(reportIntervalInSeconds, TimeUnit.SECONDS);
-        Counter counter = metrics.counter("Counter for sending messages failed");
-        Timer timer = metrics.timer("Timer for sending messages");
-        long startTimestamp = System.currentTimeMillis();
-
-        executor.submit(() -> {
-            RateLimiter rateLimiter = RateLimiter.create(messageRate);
-            byte[] payload = randomPayload();
-
-            for (int i = 0; i < numMessages; i++) {
-                if (System.currentTimeMillis() - startTimestamp > durationInSeconds * 1000L) {
-                    break;
-                }
-                try {
-                    String topic = topicPrefix + (i % topicNums);
-                    Message message = provider.newMessageBuilder()
-                        .setTopic(topic)
-                        .setBody(payload)
-                        .build();
-
-                    rateLimiter.acquire();
-                    long start = System.currentTimeMillis();
-                    producers[i % producerNums].sendAsync(message).thenAccept(sendReceipt -> {
-                        timer.update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
-                    }).exceptionally(throwable -> {
-                        counter.inc();
+        ExecutorService executor = Executors.newFixedThreadPool(sendThreads, new PrefixThreadFactory("Benchmark-Producer"));
+        BenchmarkReporter reporter = new BenchmarkReporter("produceMessage", List.of(sendLatency, serviceLatency))
+            .parameter("messageType", messageType)
+            .parameter("topicNums", topicNums)
+            .parameter("producerNums", producerNums)
+            .parameter("size", messageSize)
+            .parameter("rate", messageRate)
+            .parameter("warmupInSeconds", warmupInSeconds)
+            .parameter("durationInSeconds", durationInSeconds);
+        reporter.start(warmupInSeconds, reportIntervalInSeconds);
+
+        // Async sends still in flight, which must complete before the producers are closed.
+        Set<CompletableFuture<Void>> inflightSends = ConcurrentHashMap.newKeySet();
+        byte[] payload = randomPayload();
+        double intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / messageRate;
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupInSeconds + durationInSeconds);
+        for (long i = 0; i < numMessages; i++) {
+            long intendedStartNanos = startNanos + (long) (i * intervalNanos);
+            if (intendedStartNanos - endNanos >= 0) {
+                break;
+            }
+            long now = System.nanoTime();
+            while (intendedStartNanos - now > 0) {
+                LockSupport.parkNanos(intendedStartNanos - now);
+                now = System.nanoTime();
+            }
+
+            try {
+                Producer producer = producers[(int) (i % producerNums)];
+                Message message = buildMessage(provider, i, payload);
+                if (messageType == MessageType.TRANSACTION) {
+                    executor.execute(() -> sendTransaction(producer, message, intendedStartNanos));
+                } else {
+                    long sendNanos = System.nanoTime();
+                    CompletableFuture<Void> future = producer.sendAsync(message).handle((sendReceipt, throwable) -> {
+                        if (throwable != null) {
+                            sendLatency.recordError();
+                        } else {
+                            record(intendedStartNanos, sendNanos);
+                        }
                         return null;
                     });
-                } catch (Exception ignore) {
-                    counter.inc();
+                    inflightSends.add(future);
+                    future.whenComplete((v, throwable) -> inflightSends.remove(future));
                 }
+            } catch (Exception e) {
+                sendLatency.recordError();
             }
-        });
-        executor.awaitTermination(durationInSeconds + 1, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        CompletableFuture.allOf(inflightSends.toArray(CompletableFuture[]::new))
+            .completeOnTimeout(null, 30, TimeUnit.SECONDS)
+            .join();
         for (Producer producer : producers) {
             producer.close();
         }
-        reporter.close();
+        reporter.close(output, outputFormat);
         return null;
     }
 
+    private Message buildMessage(ClientServiceProvider provider, long index, byte[] payload) {
+        MessageBuilder builder = provider.newMessageBuilder()
+            .setTopic(topicPrefix + (index % topicNums))
+            .setBody(payload);
+        switch (messageType) {
+            case FIFO -> builder.setMessageGroup("Benchmark_Group_" + (index % messageGroupNums));
+            case DELAY -> builder.setDeliveryTimestamp(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delayInSeconds));
+            default -> {
+            }
+        }
+        return builder.build();
+    }
+
+    private void sendTransaction(Producer producer, Message message, long intendedStartNanos) {
+        long sendNanos = System.nanoTime();
+        try {
+            Transaction transaction = producer.beginTransaction();
+            producer.send(message, transaction);
+            transaction.commit();
+            record(intendedStartNanos, sendNanos);
+        } catch (Exception e) {
+            sendLatency.recordError();
+        }
+    }
+
+    private void record(long intendedStartNanos, long sendNanos) {
+        long now = System.nanoTime();
+        sendLatency.record(now - intendedStartNanos);
+        serviceLatency.record(now - sendNanos);
+    }
+
     private void prepareTopics() throws IOException, ControllerException {
         GrpcControllerClient client = new GrpcControllerClient(new CliClientConfig());
 
@@ -175,6 +259,8 @@ public class ProduceMessage implements Callable<Void> {
             return provider.newProducerBuilder()
                 .setTopics(IntStream.range(0, topicNums).mapToObj(i -> topicPrefix + i).toArray(String[]::new))
                 .setClientConfiguration(clientConfiguration)
+                // Transactions are always committed before the check.
+                .setTransactionChecker(messageView -> TransactionResolution.COMMIT)
                 .build();
         } catch (ClientException e) {
             throw new CompletionException(e);
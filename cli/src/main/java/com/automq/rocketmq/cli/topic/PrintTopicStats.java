@@ -134,6 +134,7 @@ public class PrintTopicStats implements Callable<Void> {
             case STREAM_ROLE_OPS -> "OPERATION";
             case STREAM_ROLE_SNAPSHOT -> "SNAPSHOT";
             case STREAM_ROLE_RETRY -> "RETRY for " + consumerGroup;
+            case STREAM_ROLE_HALF -> "HALF";
             default -> "UNKNOWN";
         };
     }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.cli.topic;
+
+import apache.rocketmq.controller.v1.Cluster;
+import apache.rocketmq.controller.v1.DescribeClusterRequest;
+import apache.rocketmq.controller.v1.MessageQueueAssignment;
+import apache.rocketmq.controller.v1.Node;
+import apache.rocketmq.controller.v1.Topic;
+import apache.rocketmq.proxy.v1.QueriedMessage;
+import apache.rocketmq.proxy.v1.QueryMessageRequest;
+import com.automq.rocketmq.cli.CliClientConfig;
+import com.automq.rocketmq.cli.MQAdmin;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.controller.client.GrpcControllerClient;
+import com.automq.rocketmq.proxy.grpc.client.GrpcProxyClient;
+import de.vandermeer.asciitable.AT_Row;
+import de.vandermeer.asciitable.AsciiTable;
+import de.vandermeer.asciitable.CWC_LongestLine;
+import de.vandermeer.skb.interfaces.transformers.textformat.TextAlignment;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "queryMessage", mixinStandardHelpOptions = true, showDefaultValues = true)
+public class QueryMessage implements Callable<Void> {
+    @CommandLine.Option(names = {"-t", "--topic"}, description = "Topic name", required = true)
+    String topicName;
+
+    @CommandLine.Option(names = {"-q", "--queueId"}, description = "Queue id, -1 means all queues of given topic", defaultValue = "-1")
+    int queueId;
+
+    @CommandLine.Option(names = {"-k", "--key"}, description = "Message key, or message id if --byMessageId is set", required = true)
+    String key;
+
+    @CommandLine.Option(names = {"-i", "--byMessageId"}, description = "Query by message id instead of message key")
+    boolean byMessageId;
+
+    @CommandLine.Option(names = {"-b", "--beginTimestamp"}, description = "Inclusive begin of the store timestamp range in milliseconds", defaultValue = "0")
+    long beginTimestamp;
+
+    @CommandLine.Option(names = {"-d", "--endTimestamp"}, description = "Inclusive end of the store timestamp range in milliseconds, 0 means now", defaultValue = "0")
+    long endTimestamp;
+
+    @CommandLine.Option(names = {"-c", "--maxCount"}, description = "Max number of messages to return", defaultValue = "32")
+    int maxCount;
+
+    @CommandLine.ParentCommand
+    MQAdmin mqAdmin;
+
+    @Override
+    public Void call() throws Exception {
+        if (maxCount <= 0) {
+            throw new IllegalArgumentException("Max count must be positive: " + maxCount);
+        }
+
+        GrpcControllerClient controllerClient = new GrpcControllerClient(new CliClientConfig());
+        GrpcProxyClient proxyClient = new GrpcProxyClient(new CliClientConfig());
+
+        CompletableFuture<Cluster> clusterFuture = controllerClient.describeCluster(mqAdmin.getEndpoint(), DescribeClusterRequest.newBuilder().build());
+        CompletableFuture<Topic> topicFuture = controllerClient.describeTopic(mqAdmin.getEndpoint(), null, topicName);
+
+        clusterFuture.thenCombine(topicFuture, (cluster, topic) -> {
+            if (topic == null) {
+                System.out.println("Topic " + topicName + " does not exist");
+                return null;
+            }
+
+            Map<Integer/*node id*/, Node> nodeMap = cluster.getNodesList().stream().collect(Collectors.toMap(Node::getId, node -> node));
+
+            List<Integer> nodeList;
+            if (queueId == -1) {
+                nodeList = topic.getAssignmentsList().stream().map(MessageQueueAssignment::getNodeId).distinct().toList();
+            } else {
+                Optional<MessageQueueAssignment> optional = topic.getAssignmentsList().stream().filter(assignment -> assignment.getQueue().getQueueId() == queueId).findFirst();
+                if (optional.isEmpty()) {
+                    throw new IllegalArgumentException("Queue " + queueId + " does not exist");
+                }
+                nodeList = List.of(optional.get().getNodeId());
+            }
+
+            QueryMessageRequest request = QueryMessageRequest.newBuilder()
+                .setTopic(topicName)
+                .setQueueId(queueId)
+                .setKey(key)
+                .setByMessageId(byMessageId)
+                .setBeginTimestamp(beginTimestamp)
+                .setEndTimestamp(endTimestamp)
+                .setMaxCount(maxCount)
+                .build();
+            List<QueriedMessage> messages = new ArrayList<>();
+            for (int nodeId : nodeList) {
+                String nodeAddress = nodeMap.get(nodeId).getAddress();
+                messages.addAll(proxyClient.queryMessage(nodeAddress, request).join());
+            }
+            printMessages(topic, messages);
+            return null;
+        }).get();
+        return null;
+    }
+
+    private void printMessages(Topic topic, List<QueriedMessage> messages) {
+        if (messages.isEmpty()) {
+            System.out.println("No message found");
+            return;
+        }
+
+        // Each node returns its latest messages, keep the latest ones of all nodes
+        List<FlatMessage> flatMessages = messages.stream()
+            .map(message -> FlatMessage.getRootAsFlatMessage(message.getFlatMessage().asReadOnlyByteBuffer()))
+            .toList();
+        List<Integer> indexes = IntStream.range(0, messages.size())
+            .boxed()
+            .sorted(Comparator.comparingLong((Integer i) -> flatMessages.get(i).systemProperties().storeTimestamp()).reversed())
+            .limit(maxCount)
+            .toList();
+
+        AsciiTable messageTable = new AsciiTable();
+        messageTable.addRule();
+        AT_Row row = messageTable.addRow("TOPIC", "QUEUE ID", "OFFSET", "MESSAGE ID", "KEYS", "TAG", "STORE TIME");
+        centralize(row);
+        messageTable.addRule();
+
+        for (int i : indexes) {
+            QueriedMessage message = messages.get(i);
+            FlatMessage flatMessage = flatMessages.get(i);
+            row = messageTable.addRow(topic.getName(), message.getQueueId(), message.getOffset(),
+                flatMessage.systemProperties().messageId(), Optional.ofNullable(flatMessage.keys()).orElse(""),
+                Optional.ofNullable(flatMessage.tag()).orElse(""),
+                Instant.ofEpochMilli(flatMessage.systemProperties().storeTimestamp()).toString());
+            centralize(row);
+            messageTable.addRule();
+        }
+
+        CWC_LongestLine cwc = new CWC_LongestLine();
+        IntStream.range(0, row.getCells().size()).forEach((i) -> cwc.add(10, 0));
+        messageTable.getRenderer().setCWC(cwc);
+
+        String render = messageTable.render();
+        System.out.println(render);
+    }
+
+    private void centralize(AT_Row row) {
+        row.getCells().forEach((cell -> cell.getContext().setTextAlignment(TextAlignment.CENTER)));
+    }
+}
@@ -11,6 +11,8 @@
 
 package com.automq.rocketmq.common.api;
 
+import apache.rocketmq.controller.v1.QueueLoad;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -38,6 +40,23 @@ public interface DataStore {
      */
     CompletableFuture<List<Long>> batchDeleteS3Objects(List<Long> objectIds);
 
+    /**
+     * Get the traffic of queues served by this node since the last call, reported to the leader controller to balance
+     * workload among nodes.
+     *
+     * @return load of the queues served by this node.
+     */
+    default List<QueueLoad> queueLoads() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Acknowledge that the queue loads returned by the last call of {@link #queueLoads()} have been reported, so the
+     * next call starts a new window. Until then, the traffic keeps accumulating.
+     */
+    default void acknowledgeQueueLoads() {
+    }
+
     default void blockingShutdown() {
 
     }
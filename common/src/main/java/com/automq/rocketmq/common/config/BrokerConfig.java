@@ -17,9 +17,13 @@ import com.google.common.base.Strings;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import org.apache.rocketmq.common.utils.NetworkUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @SuppressWarnings({"FieldMayBeFinal", "FieldCanBeLocal"})
 public class BrokerConfig implements ControllerConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BrokerConfig.class);
+
     /**
      * Node ID
      */
@@ -136,6 +140,11 @@ public class BrokerConfig implements ControllerConfig {
 
         proxy.setHostName(parseHost(advertiseAddress));
 
+        if (null != controller.getWorkloadTolerance()) {
+            LOGGER.warn("controller.workloadTolerance is deprecated and ignored, queues are balanced by traffic " +
+                "within controller.workloadImbalanceRatio");
+        }
+
         // Use the main port as the Remoting port
         proxy.setRemotingListenPort(mainPort);
 
@@ -292,8 +301,73 @@ public class BrokerConfig implements ControllerConfig {
     }
 
     @Override
-    public int workloadTolerance() {
-        return controller.getWorkloadTolerance();
+    public long flushConsumerOffsetIntervalInMillis() {
+        return controller.getFlushConsumerOffsetIntervalInMillis();
+    }
+
+    @Override
+    public boolean balanceWorkloadEnabled() {
+        return controller.isBalanceWorkloadEnabled();
+    }
+
+    @Override
+    public double workloadImbalanceRatio() {
+        return controller.getWorkloadImbalanceRatio();
+    }
+
+    @Override
+    public int maxConcurrentReassignments() {
+        return controller.getMaxConcurrentReassignments();
+    }
+
+    @Override
+    public long reassignmentCooldownInSecs() {
+        return controller.getReassignmentCooldownInSecs();
+    }
+
+    @Override
+    public boolean changeFeedEnabled() {
+        return controller.isChangeFeedEnabled();
+    }
+
+    @Override
+    public long changeFeedScanIntervalInMillis() {
+        return controller.getChangeFeedScanIntervalInMillis();
+    }
+
+    @Override
+    public int changeLogCapacity() {
+        return controller.getChangeLogCapacity();
+    }
+
+    @Override
+    public int reclaimS3ObjectPageSize() {
+        return controller.getReclaimS3ObjectPageSize();
+    }
+
+    @Override
+    public int reclaimS3ObjectBatchSize() {
+        return controller.getReclaimS3ObjectBatchSize();
+    }
+
+    @Override
+    public int reclaimS3ObjectConcurrency() {
+        return controller.getReclaimS3ObjectConcurrency();
+    }
+
+    @Override
+    public int reclaimS3ObjectRate() {
+        return controller.getReclaimS3ObjectRate();
+    }
+
+    @Override
+    public int dataRetentionBatchSize() {
+        return controller.getDataRetentionBatchSize();
+    }
+
+    @Override
+    public long dataRetentionRebuildIntervalInSecs() {
+        return controller.getDataRetentionRebuildIntervalInSecs();
     }
 
     @Override
@@ -26,7 +26,40 @@ public class Controller {
 
     private long balanceWorkloadIntervalInSecs = 10;
 
-    private int workloadTolerance = 2;
+    /**
+     * Tolerance of workload unfairness in terms of stream number. Queues are balanced by traffic now, see
+     * {@link #workloadImbalanceRatio}, so it is ignored and only kept for existing config files that still set it.
+     */
+    @Deprecated
+    private Integer workloadTolerance;
+
+    private boolean balanceWorkloadEnabled = false;
+
+    private double workloadImbalanceRatio = 0.2;
+
+    private int maxConcurrentReassignments = 4;
+
+    private long reassignmentCooldownInSecs = 300;
+
+    private boolean changeFeedEnabled = false;
+
+    private long changeFeedScanIntervalInMillis = 1000;
+
+    private int changeLogCapacity = 10000;
+
+    private int reclaimS3ObjectPageSize = 1000;
+
+    private int reclaimS3ObjectBatchSize = 100;
+
+    private int reclaimS3ObjectConcurrency = 4;
+
+    private int reclaimS3ObjectRate = 1000;
+
+    private int dataRetentionBatchSize = 100;
+
+    private long dataRetentionRebuildIntervalInSecs = 3600;
+
+    private long flushConsumerOffsetIntervalInMillis = 1000;
 
     /**
      * Flag whether system should dump heap on fatal error.
@@ -89,14 +122,128 @@ public class Controller {
         this.balanceWorkloadIntervalInSecs = balanceWorkloadIntervalInSecs;
     }
 
-    public int getWorkloadTolerance() {
+    @Deprecated
+    public Integer getWorkloadTolerance() {
         return workloadTolerance;
     }
 
-    public void setWorkloadTolerance(int workloadTolerance) {
+    @Deprecated
+    public void setWorkloadTolerance(Integer workloadTolerance) {
         this.workloadTolerance = workloadTolerance;
     }
 
+    public boolean isBalanceWorkloadEnabled() {
+        return balanceWorkloadEnabled;
+    }
+
+    public void setBalanceWorkloadEnabled(boolean balanceWorkloadEnabled) {
+        this.balanceWorkloadEnabled = balanceWorkloadEnabled;
+    }
+
+    public double getWorkloadImbalanceRatio() {
+        return workloadImbalanceRatio;
+    }
+
+    public void setWorkloadImbalanceRatio(double workloadImbalanceRatio) {
+        this.workloadImbalanceRatio = workloadImbalanceRatio;
+    }
+
+    public int getMaxConcurrentReassignments() {
+        return maxConcurrentReassignments;
+    }
+
+    public void setMaxConcurrentReassignments(int maxConcurrentReassignments) {
+        this.maxConcurrentReassignments = maxConcurrentReassignments;
+    }
+
+    public long getReassignmentCooldownInSecs() {
+        return reassignmentCooldownInSecs;
+    }
+
+    public void setReassignmentCooldownInSecs(long reassignmentCooldownInSecs) {
+        this.reassignmentCooldownInSecs = reassignmentCooldownInSecs;
+    }
+
+    public boolean isChangeFeedEnabled() {
+        return changeFeedEnabled;
+    }
+
+    public void setChangeFeedEnabled(boolean changeFeedEnabled) {
+        this.changeFeedEnabled = changeFeedEnabled;
+    }
+
+    public long getChangeFeedScanIntervalInMillis() {
+        return changeFeedScanIntervalInMillis;
+    }
+
+    public void setChangeFeedScanIntervalInMillis(long changeFeedScanIntervalInMillis) {
+        this.changeFeedScanIntervalInMillis = changeFeedScanIntervalInMillis;
+    }
+
+    public int getChangeLogCapacity() {
+        return changeLogCapacity;
+    }
+
+    public void setChangeLogCapacity(int changeLogCapacity) {
+        this.changeLogCapacity = changeLogCapacity;
+    }
+
+    public int getReclaimS3ObjectPageSize() {
+        return reclaimS3ObjectPageSize;
+    }
+
+    public void setReclaimS3ObjectPageSize(int reclaimS3ObjectPageSize) {
+        this.reclaimS3ObjectPageSize = reclaimS3ObjectPageSize;
+    }
+
+    public int getReclaimS3ObjectBatchSize() {
+        return reclaimS3ObjectBatchSize;
+    }
+
+    public void setReclaimS3ObjectBatchSize(int reclaimS3ObjectBatchSize) {
+        this.reclaimS3ObjectBatchSize = reclaimS3ObjectBatchSize;
+    }
+
+    public int getReclaimS3ObjectConcurrency() {
+        return reclaimS3ObjectConcurrency;
+    }
+
+    public void setReclaimS3ObjectConcurrency(int reclaimS3ObjectConcurrency) {
+        this.reclaimS3ObjectConcurrency = reclaimS3ObjectConcurrency;
+    }
+
+    public int getReclaimS3ObjectRate() {
+        return reclaimS3ObjectRate;
+    }
+
+    public void setReclaimS3ObjectRate(int reclaimS3ObjectRate) {
+        this.reclaimS3ObjectRate = reclaimS3ObjectRate;
+    }
+
+    public int getDataRetentionBatchSize() {
+        return dataRetentionBatchSize;
+    }
+
+    public void setDataRetentionBatchSize(int dataRetentionBatchSize) {
+        this.dataRetentionBatchSize = dataRetentionBatchSize;
+    }
+
+    public long getDataRetentionRebuildIntervalInSecs() {
+        return dataRetentionRebuildIntervalInSecs;
+    }
+
+    public void setDataRetentionRebuildIntervalInSecs(long dataRetentionRebuildIntervalInSecs) {
+        this.dataRetentionRebuildIntervalInSecs = dataRetentionRebuildIntervalInSecs;
+    }
+
+    public long getFlushConsumerOffsetIntervalInMillis() {
+        return flushConsumerOffsetIntervalInMillis;
+    }
+
+    public void setFlushConsumerOffsetIntervalInMillis(long flushConsumerOffsetIntervalInMillis) {
+        this.flushConsumerOffsetIntervalInMillis = flushConsumerOffsetIntervalInMillis;
+    }
+
     public boolean isDumpHeapOnError() {
         return dumpHeapOnError;
     }
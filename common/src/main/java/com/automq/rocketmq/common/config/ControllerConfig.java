@@ -58,10 +58,103 @@ public interface ControllerConfig extends GrpcClientConfig {
     }
 
     /**
-     * @return Tolerance of workload unfairness among nodes in terms of stream number.
+     * @return Interval to flush consumer offsets of pull-mode groups, which are coalesced in memory, to the leader.
      */
-    default int workloadTolerance() {
-        return 1;
+    default long flushConsumerOffsetIntervalInMillis() {
+        return 1000L;
+    }
+
+    /**
+     * @return Flag whether the leader reassigns queues to balance traffic among nodes.
+     */
+    default boolean balanceWorkloadEnabled() {
+        return false;
+    }
+
+    /**
+     * @return Tolerance of workload unfairness among nodes in terms of traffic. Queues are only moved off a node whose
+     * load exceeds the average by more than this ratio.
+     */
+    default double workloadImbalanceRatio() {
+        return 0.2;
+    }
+
+    /**
+     * @return Max number of queues being reassigned at the same time.
+     */
+    default int maxConcurrentReassignments() {
+        return 4;
+    }
+
+    /**
+     * @return Min interval before a reassigned queue is considered for balancing again.
+     */
+    default long reassignmentCooldownInSecs() {
+        return 300;
+    }
+
+    /**
+     * @return Flag whether only the leader scans metadata tables and publishes changes to the other nodes through the
+     * change feed, instead of each node scanning the tables periodically.
+     */
+    default boolean changeFeedEnabled() {
+        return false;
+    }
+
+    /**
+     * @return Interval the leader scans metadata tables at when the change feed is enabled.
+     */
+    default long changeFeedScanIntervalInMillis() {
+        return 1000;
+    }
+
+    /**
+     * @return Max number of changes retained by the leader for watchers to catch up, beyond which they have to resync.
+     */
+    default int changeLogCapacity() {
+        return 10000;
+    }
+
+    /**
+     * @return Max number of objects to be reclaimed loaded from database per page.
+     */
+    default int reclaimS3ObjectPageSize() {
+        return 1000;
+    }
+
+    /**
+     * @return Max number of objects to delete from object storage in one request.
+     */
+    default int reclaimS3ObjectBatchSize() {
+        return 100;
+    }
+
+    /**
+     * @return Max number of delete requests in flight while reclaiming objects.
+     */
+    default int reclaimS3ObjectConcurrency() {
+        return 4;
+    }
+
+    /**
+     * @return Max number of objects to delete from object storage per second.
+     */
+    default int reclaimS3ObjectRate() {
+        return 1000;
+    }
+
+    /**
+     * @return Max number of streams to look up expired objects for in one query while enforcing retention.
+     */
+    default int dataRetentionBatchSize() {
+        return 100;
+    }
+
+    /**
+     * @return Interval to rebuild the expiry schedule of streams from scratch, which picks up changes of retention policies.
+     */
+    default long dataRetentionRebuildIntervalInSecs() {
+        return 3600;
     }
 
     String dbUrl();
@@ -23,13 +23,33 @@ public class ProxyConfig extends BaseConfig {
 
     private String hostName;
 
-    // The proportion of messages that are popped from the retry queue first,
-    // default is 20, available value from 0 to 100.
+    // The weight of the retry queue when both the retry queue and the normal queue have backlog,
+    // the retry queue is popped first once it has waited (100 - weight) / weight times as long as the normal queue.
+    // Default is 20, available value from 0 to 100.
     private int retryPriorityPercentage = 20;
 
     // lock expire time, default is 15min, unit in milliseconds.
     private long lockExpireTime = Duration.ofMinutes(15).toMillis();
 
+    // Max total batch size of concurrent pop requests on the same queue that are served by one store pop.
+    private int maxCoalescedPopBatchSize = 64;
+
+    // Max count of transaction checks sent to producers in one round, requests on the same connection are flushed once.
+    private int maxTransactionCheckBatchSize = 256;
+
+    // Run background tasks of the proxy, e.g. delivering messages to the dead letter queue, on virtual threads
+    // if supported by the JVM.
+    private boolean enableVirtualThreads = false;
+    private int deadLetterThreadPoolNums = 4;
+    private int deadLetterThreadPoolQueueCapacity = 10000;
+    // Threads completing acks and invisible duration changes, so that store threads are not held by the responses
+    // and the lock bookkeeping after acks.
+    private int ackThreadPoolNums = 4;
+    // Max count of dead letters appended to one DLQ queue in one round.
+    private int maxDeadLetterBatchSize = 128;
+    // How long the DLQ routing of a consumer group is cached, unit in milliseconds.
+    private long deadLetterRouteExpireMillis = Duration.ofSeconds(30).toMillis();
+
     private int grpcThreadPoolNums = 16 + PROCESSOR_NUMBER * 2;
     private int grpcThreadPoolQueueCapacity = 100000;
     private int grpcListenPort = 8081;
@@ -71,6 +91,38 @@ public class ProxyConfig extends BaseConfig {
         return lockExpireTime;
     }
 
+    public int maxCoalescedPopBatchSize() {
+        return maxCoalescedPopBatchSize;
+    }
+
+    public int maxTransactionCheckBatchSize() {
+        return maxTransactionCheckBatchSize;
+    }
+
+    public boolean enableVirtualThreads() {
+        return enableVirtualThreads;
+    }
+
+    public int deadLetterThreadPoolNums() {
+        return deadLetterThreadPoolNums;
+    }
+
+    public int ackThreadPoolNums() {
+        return ackThreadPoolNums;
+    }
+
+    public int deadLetterThreadPoolQueueCapacity() {
+        return deadLetterThreadPoolQueueCapacity;
+    }
+
+    public int maxDeadLetterBatchSize() {
+        return maxDeadLetterBatchSize;
+    }
+
+    public long deadLetterRouteExpireMillis() {
+        return deadLetterRouteExpireMillis;
+    }
+
     public int grpcThreadPoolNums() {
         return grpcThreadPoolNums;
     }
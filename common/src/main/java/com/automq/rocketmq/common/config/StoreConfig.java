@@ -34,16 +34,50 @@ public class StoreConfig {
 
     // DEFAULT is 1000 * 1000, unit in records
     private int operationSnapshotInterval = 1000 * 1000;
+    // Also take a snapshot once operations logged since the last snapshot exceed the bytes or the age, whichever comes
+    // first. Default is 64MB and 10 minutes.
+    private long operationSnapshotIntervalBytes = 64L * 1024 * 1024;
+    private long operationSnapshotIntervalMillis = 10L * 60 * 1000;
+    // Snapshots record only check points changed since the previous one, the chain is compacted into a full snapshot
+    // every N delta snapshots.
+    private int operationSnapshotDeltaChainLength = 16;
+    // Threads taking snapshots, snapshots of the same queue are always taken by the same thread.
+    private int snapshotTakerThreadNums = 4;
 
     private int workingThreadPoolNums = PROCESSOR_NUMBER;
     private int workingThreadQueueCapacity = 10000;
 
+    // Run background tasks of the store, e.g. reviving timed out messages, on virtual threads if supported by the JVM.
+    private boolean enableVirtualThreads = false;
+    private int reviveThreadPoolNums = 1;
+
     private long transactionTimeoutMillis = 6 * 1000;
 
     private long transactionCheckInterval = 30 * 1000;
 
     private int transactionCheckMaxTimes = 15;
 
+    // Sample the store timestamp of data streams every N messages or M milliseconds, whichever comes first.
+    // The former also bounds messages to fetch while searching offset by timestamp.
+    private int timestampIndexIntervalMessages = 1024;
+    private long timestampIndexIntervalMillis = 10 * 1000;
+
+    // Messages to index per batch while indexing keys and message ids of data streams.
+    private int messageIndexBatchSize = 256;
+    // Index entries are partitioned by store timestamp into segments, which are purged once fully trimmed.
+    // Default is 1 hour, unit in milliseconds
+    private long messageIndexSegmentMillis = 60 * 60 * 1000;
+    // Latest retained messages to index once a queue is opened without index checkpoint, e.g. on a new owner.
+    private long messageIndexMaxBackfillMessages = 100_000;
+
+    // Threads trimming retry streams. Requests to trim the same stream are coalesced, so one thread per stream at most.
+    private int streamReclaimThreadPoolNums = 2;
+
+    // Pops are rejected once a consumer group has so many inflight messages, i.e. popped but not acked, on this node
+    // or on a single queue. Every inflight message costs a check point, a timer tag and a later revive task.
+    private long maxInflightMessagesPerGroup = 1000 * 1000;
+    private long maxInflightMessagesPerQueue = 100 * 1000;
+
     public int maxFetchCount() {
         return maxFetchCount;
     }
@@ -64,6 +98,10 @@ public class StoreConfig {
         return kvPath;
     }
 
+    public void setKvPath(String kvPath) {
+        this.kvPath = kvPath;
+    }
+
     public int operationSnapshotInterval() {
         return operationSnapshotInterval;
     }
@@ -72,6 +110,38 @@ public class StoreConfig {
         this.operationSnapshotInterval = operationSnapshotInterval;
     }
 
+    public long operationSnapshotIntervalBytes() {
+        return operationSnapshotIntervalBytes;
+    }
+
+    public void setOperationSnapshotIntervalBytes(long operationSnapshotIntervalBytes) {
+        this.operationSnapshotIntervalBytes = operationSnapshotIntervalBytes;
+    }
+
+    public long operationSnapshotIntervalMillis() {
+        return operationSnapshotIntervalMillis;
+    }
+
+    public void setOperationSnapshotIntervalMillis(long operationSnapshotIntervalMillis) {
+        this.operationSnapshotIntervalMillis = operationSnapshotIntervalMillis;
+    }
+
+    public int operationSnapshotDeltaChainLength() {
+        return operationSnapshotDeltaChainLength;
+    }
+
+    public void setOperationSnapshotDeltaChainLength(int operationSnapshotDeltaChainLength) {
+        this.operationSnapshotDeltaChainLength = operationSnapshotDeltaChainLength;
+    }
+
+    public int snapshotTakerThreadNums() {
+        return snapshotTakerThreadNums;
+    }
+
+    public void setSnapshotTakerThreadNums(int snapshotTakerThreadNums) {
+        this.snapshotTakerThreadNums = snapshotTakerThreadNums;
+    }
+
     public int workingThreadPoolNums() {
         return workingThreadPoolNums;
     }
@@ -88,6 +158,18 @@ public class StoreConfig {
         this.workingThreadQueueCapacity = workingThreadQueueCapacity;
     }
 
+    public boolean enableVirtualThreads() {
+        return enableVirtualThreads;
+    }
+
+    public void setEnableVirtualThreads(boolean enableVirtualThreads) {
+        this.enableVirtualThreads = enableVirtualThreads;
+    }
+
+    public int reviveThreadPoolNums() {
+        return reviveThreadPoolNums;
+    }
+
     public long transactionTimeoutMillis() {
         return transactionTimeoutMillis;
     }
@@ -99,4 +181,52 @@ public class StoreConfig {
     public int transactionCheckMaxTimes() {
         return transactionCheckMaxTimes;
     }
+
+    public int timestampIndexIntervalMessages() {
+        return timestampIndexIntervalMessages;
+    }
+
+    public void setTimestampIndexIntervalMessages(int timestampIndexIntervalMessages) {
+        this.timestampIndexIntervalMessages = timestampIndexIntervalMessages;
+    }
+
+    public long timestampIndexIntervalMillis() {
+        return timestampIndexIntervalMillis;
+    }
+
+    public int messageIndexBatchSize() {
+        return messageIndexBatchSize;
+    }
+
+    public long messageIndexSegmentMillis() {
+        return messageIndexSegmentMillis;
+    }
+
+    public long messageIndexMaxBackfillMessages() {
+        return messageIndexMaxBackfillMessages;
+    }
+
+    public void setMessageIndexMaxBackfillMessages(long messageIndexMaxBackfillMessages) {
+        this.messageIndexMaxBackfillMessages = messageIndexMaxBackfillMessages;
+    }
+
+    public int streamReclaimThreadPoolNums() {
+        return streamReclaimThreadPoolNums;
+    }
+
+    public long maxInflightMessagesPerGroup() {
+        return maxInflightMessagesPerGroup;
+    }
+
+    public void setMaxInflightMessagesPerGroup(long maxInflightMessagesPerGroup) {
+        this.maxInflightMessagesPerGroup = maxInflightMessagesPerGroup;
+    }
+
+    public long maxInflightMessagesPerQueue() {
+        return maxInflightMessagesPerQueue;
+    }
+
+    public void setMaxInflightMessagesPerQueue(long maxInflightMessagesPerQueue) {
+        this.maxInflightMessagesPerQueue = maxInflightMessagesPerQueue;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.common.metrics;
+
+import com.automq.rocketmq.common.MetricsManager;
+import com.automq.rocketmq.common.util.ExecutorFactory;
+import com.automq.rocketmq.common.util.MeteredExecutorService;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.View;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Metrics of the executors created by {@link ExecutorFactory}.
+ */
+public class ExecutorMetricsManager implements MetricsManager {
+    public static final String GAUGE_EXECUTOR_PENDING_TASKS = "rocketmq_executor_pending_tasks";
+    public static final String GAUGE_EXECUTOR_ACTIVE_TASKS = "rocketmq_executor_active_tasks";
+    public static final String GAUGE_EXECUTOR_COMPLETED_TASKS = "rocketmq_executor_completed_tasks";
+    public static final String HISTOGRAM_EXECUTOR_QUEUE_TIME = "rocketmq_executor_queue_time";
+
+    public static final String LABEL_EXECUTOR = "executor";
+
+    public static ObservableLongGauge executorPendingTasks = new NopObservableLongGauge();
+    public static ObservableLongGauge executorActiveTasks = new NopObservableLongGauge();
+    public static ObservableLongGauge executorCompletedTasks = new NopObservableLongGauge();
+    public static LongHistogram executorQueueTime = new NopLongHistogram();
+
+    private static Supplier<AttributesBuilder> attributesBuilderSupplier;
+
+    // Attributes are bound once per executor, so that recording the queue time of each task does not allocate.
+    private static final ConcurrentMap<String, Attributes> EXECUTOR_ATTRIBUTES = new ConcurrentHashMap<>();
+
+    public static AttributesBuilder newAttributesBuilder() {
+        if (attributesBuilderSupplier == null) {
+            return Attributes.builder();
+        }
+        return attributesBuilderSupplier.get();
+    }
+
+    private static Attributes buildAttributes(String executor) {
+        return newAttributesBuilder().put(LABEL_EXECUTOR, executor).build();
+    }
+
+    private static Attributes attributesOf(String executor) {
+        return EXECUTOR_ATTRIBUTES.computeIfAbsent(executor, ExecutorMetricsManager::buildAttributes);
+    }
+
+    /**
+     * Record the time a task waited in the queue of the executor before it started running.
+     */
+    public static void recordQueueTime(String executor, long nanos) {
+        executorQueueTime.record(nanos, attributesOf(executor));
+    }
+
+    @Override
+    public void initAttributesBuilder(Supplier<AttributesBuilder> attributesBuilderSupplier) {
+        ExecutorMetricsManager.attributesBuilderSupplier = attributesBuilderSupplier;
+        EXECUTOR_ATTRIBUTES.clear();
+    }
+
+    @Override
+    public void initStaticMetrics(Meter meter) {
+        executorQueueTime = meter.histogramBuilder(HISTOGRAM_EXECUTOR_QUEUE_TIME)
+            .setDescription("Time tasks wait in the executor queue")
+            .setUnit("nanoseconds")
+            .ofLongs()
+            .build();
+    }
+
+    @Override
+    public void initDynamicMetrics(Meter meter) {
+        executorPendingTasks = meter.gaugeBuilder(GAUGE_EXECUTOR_PENDING_TASKS)
+            .setDescription("Tasks waiting in the executor queue")
+            .ofLongs()
+            .buildWithCallback(measurement -> {
+                for (MeteredExecutorService executor : ExecutorFactory.executors()) {
+                    measurement.record(executor.pendingTasks(), attributesOf(executor.name()));
+                }
+            });
+
+        executorActiveTasks = meter.gaugeBuilder(GAUGE_EXECUTOR_ACTIVE_TASKS)
+            .setDescription("Tasks running in the executor")
+            .ofLongs()
+            .buildWithCallback(measurement -> {
+                for (MeteredExecutorService executor : ExecutorFactory.executors()) {
+                    measurement.record(executor.activeTasks(), attributesOf(executor.name()));
+                }
+            });
+
+        executorCompletedTasks = meter.gaugeBuilder(GAUGE_EXECUTOR_COMPLETED_TASKS)
+            .setDescription("Tasks completed by the executor")
+            .ofLongs()
+            .buildWithCallback(measurement -> {
+                for (MeteredExecutorService executor : ExecutorFactory.executors()) {
+                    measurement.record(executor.completedTasks(), attributesOf(executor.name()));
+                }
+            });
+    }
+
+    public static List<Pair<InstrumentSelector, View>> getMetricsView() {
+        List<Double> queueTimeBuckets = Arrays.asList(
+            (double) Duration.ofNanos(1000).toNanos(),
+            (double) Duration.ofNanos(10_000).toNanos(),
+            (double) Duration.ofNanos(100_000).toNanos(),
+            (double) Duration.ofMillis(1).toNanos(),
+            (double) Duration.ofMillis(5).toNanos(),
+            (double) Duration.ofMillis(10).toNanos(),
+            (double) Duration.ofMillis(50).toNanos(),
+            (double) Duration.ofMillis(100).toNanos(),
+            (double) Duration.ofMillis(500).toNanos(),
+            (double) Duration.ofSeconds(1).toNanos(),
+            (double) Duration.ofSeconds(5).toNanos()
+        );
+        InstrumentSelector selector = InstrumentSelector.builder()
+            .setType(InstrumentType.HISTOGRAM)
+            .setName(HISTOGRAM_EXECUTOR_QUEUE_TIME)
+            .build();
+        View view = View.builder()
+            .setAggregation(Aggregation.explicitBucketHistogram(queueTimeBuckets))
+            .build();
+        return List.of(Pair.of(selector, view));
+    }
+}
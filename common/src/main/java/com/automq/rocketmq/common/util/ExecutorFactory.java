@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.common.util;
+
+import com.automq.rocketmq.common.PrefixThreadFactory;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Create named, metered executors for background services.
+ * <p>
+ * Executors may run their tasks on virtual threads if requested and supported by the running JVM, so that tasks
+ * blocking on I/O do not starve each other. Otherwise, they fall back to a fixed pool of platform threads.
+ * <p>
+ * Names of executors alive are unique, a name in use is suffixed with a sequence number, so that the metrics of one
+ * executor never shadow those of another.
+ */
+public final class ExecutorFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorFactory.class);
+
+    private static final ConcurrentMap<String, MeteredExecutorService> EXECUTORS = new ConcurrentHashMap<>();
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    private ExecutorFactory() {
+    }
+
+    /**
+     * Create an executor.
+     *
+     * @param requestedName name of the executor, also used as the prefix of thread names
+     * @param threads       number of platform threads, ignored when running on virtual threads
+     * @param queueCapacity capacity of the task queue of platform threads
+     * @param virtual       whether to run tasks on virtual threads if supported
+     * @return the executor, named {@code requestedName} if not in use
+     */
+    public static synchronized MeteredExecutorService newExecutor(String requestedName, int threads,
+        int queueCapacity, boolean virtual) {
+        String name = requestedName;
+        for (int i = 1; EXECUTORS.containsKey(name); i++) {
+            name = requestedName + "-" + i;
+        }
+        if (!name.equals(requestedName)) {
+            LOGGER.warn("Executor name {} is in use, the new executor is named {}", requestedName, name);
+        }
+
+        ExecutorService delegate = null;
+        if (virtual) {
+            delegate = newVirtualThreadPerTaskExecutor(name);
+            if (delegate == null) {
+                LOGGER.warn("Virtual threads are not supported by the JVM, executor {} falls back to platform threads", name);
+            }
+        }
+        boolean runOnVirtualThreads = delegate != null;
+        if (delegate == null) {
+            delegate = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(queueCapacity), new PrefixThreadFactory(name));
+        }
+
+        MeteredExecutorService executor = new MeteredExecutorService(name, delegate, runOnVirtualThreads);
+        EXECUTORS.put(name, executor);
+        return executor;
+    }
+
+    public static MeteredExecutorService newExecutor(String name, int threads, boolean virtual) {
+        return newExecutor(name, threads, Integer.MAX_VALUE, virtual);
+    }
+
+    /**
+     * Get all executors that are not shutdown yet.
+     */
+    public static Collection<MeteredExecutorService> executors() {
+        return Collections.unmodifiableCollection(EXECUTORS.values());
+    }
+
+    public static boolean virtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    static void unregister(MeteredExecutorService executor) {
+        EXECUTORS.remove(executor.name(), executor);
+    }
+
+    /**
+     * Equivalent to {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "_", 0).factory())}, which
+     * is looked up reflectively since the code base targets a JDK without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        if (OF_VIRTUAL == null) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "_", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = java.util.concurrent.Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads may be disabled even if the API exists, e.g. as a preview feature.
+            LOGGER.debug("Failed to create virtual thread executor {}", name, e);
+            return null;
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.common.util;
+
+import com.automq.rocketmq.common.metrics.ExecutorMetricsManager;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+
+/**
+ * A named executor that tracks the number of pending, active and completed tasks, as well as the time tasks spend
+ * waiting in the queue. Created by {@link ExecutorFactory}.
+ */
+public class MeteredExecutorService extends AbstractExecutorService {
+    private final String name;
+    private final ExecutorService delegate;
+    private final boolean virtual;
+
+    private final LongAdder submittedTasks = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    MeteredExecutorService(String name, ExecutorService delegate, boolean virtual) {
+        this.name = name;
+        this.delegate = delegate;
+        this.virtual = virtual;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Whether the tasks run on virtual threads.
+     */
+    public boolean virtual() {
+        return virtual;
+    }
+
+    public long pendingTasks() {
+        return Math.max(0, submittedTasks.sum() - completedTasks.sum() - activeTasks.get());
+    }
+
+    public int activeTasks() {
+        return activeTasks.get();
+    }
+
+    public long completedTasks() {
+        return completedTasks.sum();
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command) {
+        long enqueueTime = System.nanoTime();
+        submittedTasks.increment();
+        try {
+            delegate.execute(() -> {
+                activeTasks.incrementAndGet();
+                ExecutorMetricsManager.recordQueueTime(name, System.nanoTime() - enqueueTime);
+                try {
+                    command.run();
+                } finally {
+                    activeTasks.decrementAndGet();
+                    completedTasks.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            submittedTasks.decrement();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        ExecutorFactory.unregister(this);
+        delegate.shutdown();
+    }
+
+    @Override
+    @Nonnull
+    public List<Runnable> shutdownNow() {
+        ExecutorFactory.unregister(this);
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -48,4 +48,17 @@ class YamlConfigTest {
         assertEquals("/tmp/s3stream_wal", config.s3Stream().s3WALPath());
 
     }
+
+    @Test
+    void loadDeprecated() {
+        Yaml yaml = new Yaml();
+        yaml.setBeanAccess(BeanAccess.FIELD);
+        // Config files written for previous versions still load.
+        BrokerConfig config = yaml.loadAs(CONFIG_STR + """
+            controller:
+              workloadTolerance: 2
+              workloadImbalanceRatio: 0.3
+            """, BrokerConfig.class);
+        assertEquals(0.3, config.workloadImbalanceRatio());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.common.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutorFactoryTest {
+
+    @Test
+    void metered() throws Exception {
+        MeteredExecutorService executor = ExecutorFactory.newExecutor("executor-factory-test", 1, false);
+        assertFalse(executor.virtual());
+        assertTrue(ExecutorFactory.executors().contains(executor));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<?> blocking = executor.submit(() -> {
+            latch.await();
+            return null;
+        });
+        Future<?> pending = executor.submit(() -> {
+        });
+
+        // Wait until the first task starts running.
+        while (executor.activeTasks() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, executor.activeTasks());
+        assertEquals(1, executor.pendingTasks());
+
+        latch.countDown();
+        blocking.get(1, TimeUnit.SECONDS);
+        pending.get(1, TimeUnit.SECONDS);
+        while (executor.completedTasks() < 2) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, executor.pendingTasks());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(ExecutorFactory.executors().contains(executor));
+    }
+
+    @Test
+    void uniqueName() {
+        MeteredExecutorService first = ExecutorFactory.newExecutor("executor-factory-name-test", 1, false);
+        MeteredExecutorService second = ExecutorFactory.newExecutor("executor-factory-name-test", 1, false);
+        assertEquals("executor-factory-name-test", first.name());
+        assertEquals("executor-factory-name-test-1", second.name());
+        assertTrue(ExecutorFactory.executors().contains(first));
+        assertTrue(ExecutorFactory.executors().contains(second));
+
+        // The name can be taken again once the executor is shutdown.
+        first.shutdown();
+        MeteredExecutorService third = ExecutorFactory.newExecutor("executor-factory-name-test", 1, false);
+        assertEquals("executor-factory-name-test", third.name());
+        second.shutdown();
+        third.shutdown();
+    }
+
+    @Test
+    void virtual() throws Exception {
+        MeteredExecutorService executor = ExecutorFactory.newExecutor("executor-factory-virtual-test", 1, true);
+        // Fall back to platform threads if virtual threads are not available.
+        assertEquals(executor.virtual(), executor.virtual() && ExecutorFactory.virtualThreadSupported());
+        assertEquals(42, executor.submit(() -> 42).get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
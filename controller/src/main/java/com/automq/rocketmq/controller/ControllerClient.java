@@ -12,7 +12,9 @@
 package com.automq.rocketmq.controller;
 
 import apache.rocketmq.controller.v1.CloseStreamRequest;
+import apache.rocketmq.controller.v1.CloseStreamsRequest;
 import apache.rocketmq.controller.v1.Cluster;
+import apache.rocketmq.controller.v1.CommitOffsetsRequest;
 import apache.rocketmq.controller.v1.ConsumerGroup;
 import apache.rocketmq.controller.v1.CreateGroupRequest;
 import apache.rocketmq.controller.v1.DescribeClusterRequest;
@@ -23,6 +25,10 @@ import apache.rocketmq.controller.v1.ListOpenStreamsRequest;
 import apache.rocketmq.controller.v1.ListTopicsReply;
 import apache.rocketmq.controller.v1.ListTopicsRequest;
 import apache.rocketmq.controller.v1.OpenStreamRequest;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.OpenStreamsRequest;
+import apache.rocketmq.controller.v1.QueueLoad;
+import apache.rocketmq.controller.v1.Status;
 import apache.rocketmq.controller.v1.StreamDescription;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.TerminateNodeReply;
@@ -31,6 +37,8 @@ import apache.rocketmq.controller.v1.Topic;
 import apache.rocketmq.controller.v1.CreateTopicRequest;
 import apache.rocketmq.controller.v1.UpdateGroupRequest;
 import apache.rocketmq.controller.v1.UpdateTopicRequest;
+import apache.rocketmq.controller.v1.WatchReply;
+import apache.rocketmq.controller.v1.WatchRequest;
 import com.automq.rocketmq.metadata.dao.Node;
 
 import io.grpc.stub.StreamObserver;
@@ -52,7 +60,8 @@ public interface ControllerClient extends Closeable {
 
     void listTopics(String target, ListTopicsRequest request, StreamObserver<ListTopicsReply> observer);
 
-    CompletableFuture<Void> heartbeat(String target, int nodeId, long epoch, boolean goingAway);
+    CompletableFuture<Void> heartbeat(String target, int nodeId, long epoch, boolean goingAway,
+        List<QueueLoad> queueLoads);
 
     CompletableFuture<Void> reassignMessageQueue(String target, long topicId, int queueId, int dstNodeId);
 
@@ -70,10 +79,16 @@ public interface ControllerClient extends Closeable {
 
     CompletableFuture<Void> commitOffset(String target, long groupId, long topicId, int queueId, long offset);
 
+    CompletableFuture<Void> commitOffsets(String target, CommitOffsetsRequest request);
+
     CompletableFuture<StreamMetadata> openStream(String target, OpenStreamRequest request);
 
     CompletableFuture<Void> closeStream(String target, CloseStreamRequest request);
 
+    CompletableFuture<List<OpenStreamResult>> openStreams(String target, OpenStreamsRequest request);
+
+    CompletableFuture<List<Status>> closeStreams(String target, CloseStreamsRequest request);
+
     CompletableFuture<List<StreamMetadata>> listOpenStreams(String target, ListOpenStreamsRequest request);
 
     CompletableFuture<StreamDescription> describeStream(String target, DescribeStreamRequest request);
@@ -81,4 +96,13 @@ public interface ControllerClient extends Closeable {
     CompletableFuture<Topic> updateTopic(String target, UpdateTopicRequest request);
 
     void terminateNode(String target, TerminateNodeRequest request, StreamObserver<TerminateNodeReply> observer);
+
+    /**
+     * Watch metadata changes published by the leader controller.
+     *
+     * @param target   Address of the leader controller
+     * @param request  Watch request, carrying the version of the last change applied by the watcher
+     * @param observer Observer of the changes
+     */
+    void watch(String target, WatchRequest request, StreamObserver<WatchReply> observer);
 }
@@ -19,6 +19,10 @@ import apache.rocketmq.controller.v1.CreateTopicRequest;
 import apache.rocketmq.controller.v1.DescribeClusterRequest;
 import apache.rocketmq.controller.v1.DescribeStreamReply;
 import apache.rocketmq.controller.v1.DescribeStreamRequest;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.QueueLoad;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.TerminationStage;
@@ -29,9 +33,11 @@ import com.automq.rocketmq.common.api.DataStore;
 import com.automq.rocketmq.common.config.ControllerConfig;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.server.store.BrokerNode;
+import com.automq.rocketmq.controller.server.store.ChangeLog;
 import com.automq.rocketmq.controller.server.store.ElectionService;
 import com.automq.rocketmq.controller.server.store.impl.TopicManager;
 import com.automq.rocketmq.metadata.dao.Group;
+import com.automq.rocketmq.metadata.dao.GroupProgress;
 import com.automq.rocketmq.metadata.dao.Node;
 import com.automq.rocketmq.metadata.dao.QueueAssignment;
 import com.automq.rocketmq.metadata.dao.Stream;
@@ -74,6 +80,11 @@ public interface MetadataStore extends Closeable {
 
     ElectionService electionService();
 
+    /**
+     * @return Changes of metadata tables published by the leader through the change feed.
+     */
+    ChangeLog changeLog();
+
     List<QueueAssignment> assignmentsOf(int nodeId);
 
     List<Long> streamsOf(long topicId, int queueId);
@@ -106,6 +117,14 @@ public interface MetadataStore extends Closeable {
      */
     void keepAlive(int nodeId, long epoch, boolean goingAway);
 
+    /**
+     * Record load of queues served by the given node, which are reported through heartbeat.
+     *
+     * @param nodeId     Node ID
+     * @param queueLoads Load of the queues served by the node
+     */
+    void reportQueueLoads(int nodeId, List<QueueLoad> queueLoads);
+
     /**
      * Send heartbeat request to leader to keep current node alive.
      */
@@ -150,6 +169,15 @@ public interface MetadataStore extends Closeable {
 
     CompletableFuture<Void> commitOffset(long groupId, long topicId, int queueId, long offset);
 
+    /**
+     * Commit consumer offsets of multiple groups/queues within a single transaction. Offsets are only moved forward,
+     * use {@link #commitOffset(long, long, int, long)} to rewind.
+     *
+     * @param progresses Consumer offsets to commit
+     * @return Future completed once all offsets are persisted
+     */
+    CompletableFuture<Void> commitOffsets(List<GroupProgress> progresses);
+
     CompletableFuture<Long> createGroup(CreateGroupRequest request);
 
     CompletableFuture<ConsumerGroup> describeGroup(Long groupId, String groupName);
@@ -180,6 +208,24 @@ public interface MetadataStore extends Closeable {
 
     CompletableFuture<Void> closeStream(long streamId, long streamEpoch, int nodeId);
 
+    /**
+     * Open streams of a node in one transaction.
+     *
+     * @param streams Streams to open, with the epochs held by the node
+     * @param nodeId Node ID
+     * @return Results in the order of the streams
+     */
+    CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams, int nodeId);
+
+    /**
+     * Close streams of a node in one transaction.
+     *
+     * @param streams Streams to close, with the epochs held by the node
+     * @param nodeId Node ID
+     * @return Status of each stream in the order of the streams
+     */
+    CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams, int nodeId);
+
     CompletableFuture<List<StreamMetadata>> listOpenStreams(int nodeId);
 
 
@@ -13,9 +13,13 @@ package com.automq.rocketmq.controller.client;
 
 import apache.rocketmq.controller.v1.CloseStreamReply;
 import apache.rocketmq.controller.v1.CloseStreamRequest;
+import apache.rocketmq.controller.v1.CloseStreamsReply;
+import apache.rocketmq.controller.v1.CloseStreamsRequest;
 import apache.rocketmq.controller.v1.Cluster;
 import apache.rocketmq.controller.v1.CommitOffsetReply;
 import apache.rocketmq.controller.v1.CommitOffsetRequest;
+import apache.rocketmq.controller.v1.CommitOffsetsReply;
+import apache.rocketmq.controller.v1.CommitOffsetsRequest;
 import apache.rocketmq.controller.v1.ConsumerGroup;
 import apache.rocketmq.controller.v1.CreateGroupReply;
 import apache.rocketmq.controller.v1.CreateGroupRequest;
@@ -50,8 +54,13 @@ import apache.rocketmq.controller.v1.NotifyMessageQueuesAssignableReply;
 import apache.rocketmq.controller.v1.NotifyMessageQueuesAssignableRequest;
 import apache.rocketmq.controller.v1.OpenStreamReply;
 import apache.rocketmq.controller.v1.OpenStreamRequest;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.OpenStreamsReply;
+import apache.rocketmq.controller.v1.OpenStreamsRequest;
+import apache.rocketmq.controller.v1.QueueLoad;
 import apache.rocketmq.controller.v1.ReassignMessageQueueReply;
 import apache.rocketmq.controller.v1.ReassignMessageQueueRequest;
+import apache.rocketmq.controller.v1.Status;
 import apache.rocketmq.controller.v1.StreamDescription;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.TerminateNodeReply;
@@ -61,6 +70,8 @@ import apache.rocketmq.controller.v1.UpdateGroupReply;
 import apache.rocketmq.controller.v1.UpdateGroupRequest;
 import apache.rocketmq.controller.v1.UpdateTopicReply;
 import apache.rocketmq.controller.v1.UpdateTopicRequest;
+import apache.rocketmq.controller.v1.WatchReply;
+import apache.rocketmq.controller.v1.WatchRequest;
 import com.automq.rocketmq.common.config.GrpcClientConfig;
 import com.automq.rocketmq.controller.ControllerClient;
 import com.automq.rocketmq.common.exception.ControllerException;
@@ -241,6 +252,19 @@ public class GrpcControllerClient implements ControllerClient {
             .terminateNode(request, observer);
     }
 
+    @Override
+    public void watch(String target, WatchRequest request, StreamObserver<WatchReply> observer) {
+        Channel channel;
+        try {
+            channel = getOrCreateStubForTarget(target).getChannel();
+        } catch (ControllerException e) {
+            observer.onError(e);
+            return;
+        }
+        // The stream lasts as long as the watcher follows the leader, thus no deadline.
+        ControllerServiceGrpc.newStub(channel).watch(request, observer);
+    }
+
     @Override
     public CompletableFuture<Topic> updateTopic(String target, UpdateTopicRequest request) {
         ControllerServiceGrpc.ControllerServiceFutureStub stub;
@@ -353,7 +377,8 @@ public class GrpcControllerClient implements ControllerClient {
     }
 
     @Override
-    public CompletableFuture<Void> heartbeat(String target, int nodeId, long epoch, boolean goingAway) {
+    public CompletableFuture<Void> heartbeat(String target, int nodeId, long epoch, boolean goingAway,
+        List<QueueLoad> queueLoads) {
 
         ControllerServiceGrpc.ControllerServiceFutureStub stub;
         try {
@@ -367,6 +392,7 @@ public class GrpcControllerClient implements ControllerClient {
             .setId(nodeId)
             .setEpoch(epoch)
             .setGoingAway(goingAway)
+            .addAllQueueLoads(queueLoads)
             .build();
         CompletableFuture<Void> future = new CompletableFuture<>();
         Futures.addCallback(stub.heartbeat(request), new FutureCallback<>() {
@@ -660,6 +686,35 @@ public class GrpcControllerClient implements ControllerClient {
         return future;
     }
 
+    @Override
+    public CompletableFuture<Void> commitOffsets(String target, CommitOffsetsRequest request) {
+        ControllerServiceGrpc.ControllerServiceFutureStub stub;
+        try {
+            stub = getOrCreateStubForTarget(target);
+        } catch (ControllerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Futures.addCallback(stub.commitOffsets(request), new FutureCallback<>() {
+            @Override
+            public void onSuccess(CommitOffsetsReply result) {
+                if (result.getStatus().getCode() == Code.OK) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(
+                        new ControllerException(result.getStatus().getCodeValue(), result.getStatus().getMessage()));
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
     @Override
     public CompletableFuture<StreamMetadata> openStream(String target,
         OpenStreamRequest request) {
@@ -720,6 +775,64 @@ public class GrpcControllerClient implements ControllerClient {
         return future;
     }
 
+    @Override
+    public CompletableFuture<List<OpenStreamResult>> openStreams(String target, OpenStreamsRequest request) {
+        ControllerServiceGrpc.ControllerServiceFutureStub stub;
+        try {
+            stub = getOrCreateStubForTarget(target);
+        } catch (ControllerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<List<OpenStreamResult>> future = new CompletableFuture<>();
+        Futures.addCallback(stub.openStreams(request), new FutureCallback<>() {
+            @Override
+            public void onSuccess(OpenStreamsReply result) {
+                if (result.getStatus().getCode() == Code.OK) {
+                    future.complete(result.getResultsList());
+                } else {
+                    future.completeExceptionally(new ControllerException(result.getStatus().getCodeValue(),
+                        result.getStatus().getMessage()));
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<Status>> closeStreams(String target, CloseStreamsRequest request) {
+        ControllerServiceGrpc.ControllerServiceFutureStub stub;
+        try {
+            stub = getOrCreateStubForTarget(target);
+        } catch (ControllerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<List<Status>> future = new CompletableFuture<>();
+        Futures.addCallback(stub.closeStreams(request), new FutureCallback<>() {
+            @Override
+            public void onSuccess(CloseStreamsReply result) {
+                if (result.getStatus().getCode() == Code.OK) {
+                    future.complete(result.getResultsList());
+                } else {
+                    future.completeExceptionally(new ControllerException(result.getStatus().getCodeValue(),
+                        result.getStatus().getMessage()));
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
     @Override
     public CompletableFuture<List<StreamMetadata>> listOpenStreams(String target, ListOpenStreamsRequest request) {
         ControllerServiceGrpc.ControllerServiceFutureStub stub;
@@ -13,10 +13,15 @@ package com.automq.rocketmq.controller.server;
 
 import apache.rocketmq.controller.v1.CloseStreamReply;
 import apache.rocketmq.controller.v1.CloseStreamRequest;
+import apache.rocketmq.controller.v1.CloseStreamsReply;
+import apache.rocketmq.controller.v1.CloseStreamsRequest;
 import apache.rocketmq.common.v1.Code;
 import apache.rocketmq.controller.v1.CommitOffsetReply;
 import apache.rocketmq.controller.v1.CommitOffsetRequest;
+import apache.rocketmq.controller.v1.CommitOffsetsReply;
+import apache.rocketmq.controller.v1.CommitOffsetsRequest;
 import apache.rocketmq.controller.v1.ConsumerGroup;
+import apache.rocketmq.controller.v1.ConsumerOffset;
 import apache.rocketmq.controller.v1.ControllerServiceGrpc;
 import apache.rocketmq.controller.v1.CreateGroupReply;
 import apache.rocketmq.controller.v1.CreateGroupRequest;
@@ -53,6 +58,8 @@ import apache.rocketmq.controller.v1.NotifyMessageQueuesAssignableReply;
 import apache.rocketmq.controller.v1.NotifyMessageQueuesAssignableRequest;
 import apache.rocketmq.controller.v1.OpenStreamReply;
 import apache.rocketmq.controller.v1.OpenStreamRequest;
+import apache.rocketmq.controller.v1.OpenStreamsReply;
+import apache.rocketmq.controller.v1.OpenStreamsRequest;
 import apache.rocketmq.controller.v1.ReassignMessageQueueReply;
 import apache.rocketmq.controller.v1.ReassignMessageQueueRequest;
 import apache.rocketmq.controller.v1.Status;
@@ -65,14 +72,21 @@ import apache.rocketmq.controller.v1.UpdateGroupReply;
 import apache.rocketmq.controller.v1.UpdateGroupRequest;
 import apache.rocketmq.controller.v1.UpdateTopicReply;
 import apache.rocketmq.controller.v1.UpdateTopicRequest;
+import apache.rocketmq.controller.v1.WatchReply;
+import apache.rocketmq.controller.v1.WatchRequest;
 import com.automq.rocketmq.common.PrefixThreadFactory;
 import com.automq.rocketmq.controller.MetadataStore;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.server.tasks.TerminationStageTask;
+import com.automq.rocketmq.metadata.dao.GroupProgress;
 import com.google.protobuf.TextFormat;
 import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -162,6 +176,7 @@ public class ControllerServiceImpl extends ControllerServiceGrpc.ControllerServi
         LOGGER.debug("Received HeartbeatRequest {}", TextFormat.shortDebugString(request));
 
         metadataStore.keepAlive(request.getId(), request.getEpoch(), request.getGoingAway());
+        metadataStore.reportQueueLoads(request.getId(), request.getQueueLoadsList());
 
         Status status = Status.newBuilder().setCode(Code.OK).build();
         HeartbeatReply reply = HeartbeatReply.newBuilder().setStatus(status).build();
@@ -391,6 +406,42 @@ public class ControllerServiceImpl extends ControllerServiceGrpc.ControllerServi
             });
     }
 
+    @Override
+    public void commitOffsets(CommitOffsetsRequest request, StreamObserver<CommitOffsetsReply> responseObserver) {
+        List<GroupProgress> progresses = new ArrayList<>(request.getOffsetsCount());
+        for (ConsumerOffset offset : request.getOffsetsList()) {
+            GroupProgress progress = new GroupProgress();
+            progress.setGroupId(offset.getGroupId());
+            progress.setTopicId(offset.getQueue().getTopicId());
+            progress.setQueueId(offset.getQueue().getQueueId());
+            progress.setQueueOffset(offset.getOffset());
+            progresses.add(progress);
+        }
+
+        metadataStore.commitOffsets(progresses)
+            .whenComplete((res, e) -> {
+                if (null != e) {
+                    if (e instanceof ControllerException ex) {
+                        CommitOffsetsReply reply = CommitOffsetsReply.newBuilder()
+                            .setStatus(Status.newBuilder()
+                                .setCode(Code.forNumber(ex.getErrorCode()))
+                                .setMessage(e.getMessage()).build())
+                            .build();
+                        responseObserver.onNext(reply);
+                        responseObserver.onCompleted();
+                    } else {
+                        responseObserver.onError(e);
+                    }
+                } else {
+                    CommitOffsetsReply reply = CommitOffsetsReply.newBuilder()
+                        .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                        .build();
+                    responseObserver.onNext(reply);
+                    responseObserver.onCompleted();
+                }
+            });
+    }
+
     @Override
     public void createGroup(CreateGroupRequest request, StreamObserver<CreateGroupReply> responseObserver) {
         if (request.getSubMode() == SubscriptionMode.SUB_MODE_UNSPECIFIED) {
@@ -568,6 +619,58 @@ public class ControllerServiceImpl extends ControllerServiceGrpc.ControllerServi
         });
     }
 
+    @Override
+    public void openStreams(OpenStreamsRequest request, StreamObserver<OpenStreamsReply> responseObserver) {
+        metadataStore.openStreams(request.getStreamsList(), request.getBrokerId()).whenComplete((results, e) -> {
+            if (null != e) {
+                if (e instanceof ControllerException ex) {
+                    OpenStreamsReply reply = OpenStreamsReply.newBuilder()
+                        .setStatus(Status.newBuilder()
+                            .setCode(Code.forNumber(ex.getErrorCode()))
+                            .setMessage(e.getMessage()).build())
+                        .build();
+                    responseObserver.onNext(reply);
+                    responseObserver.onCompleted();
+                } else {
+                    responseObserver.onError(e);
+                }
+            } else {
+                OpenStreamsReply reply = OpenStreamsReply.newBuilder()
+                    .addAllResults(results)
+                    .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                    .build();
+                responseObserver.onNext(reply);
+                responseObserver.onCompleted();
+            }
+        });
+    }
+
+    @Override
+    public void closeStreams(CloseStreamsRequest request, StreamObserver<CloseStreamsReply> responseObserver) {
+        metadataStore.closeStreams(request.getStreamsList(), request.getBrokerId()).whenComplete((results, e) -> {
+            if (null != e) {
+                if (e instanceof ControllerException ex) {
+                    CloseStreamsReply reply = CloseStreamsReply.newBuilder()
+                        .setStatus(Status.newBuilder()
+                            .setCode(Code.forNumber(ex.getErrorCode()))
+                            .setMessage(e.getMessage()).build())
+                        .build();
+                    responseObserver.onNext(reply);
+                    responseObserver.onCompleted();
+                } else {
+                    responseObserver.onError(e);
+                }
+            } else {
+                CloseStreamsReply reply = CloseStreamsReply.newBuilder()
+                    .addAllResults(results)
+                    .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                    .build();
+                responseObserver.onNext(reply);
+                responseObserver.onCompleted();
+            }
+        });
+    }
+
     @Override
     public void listOpenStreams(ListOpenStreamsRequest request,
         StreamObserver<ListOpenStreamsReply> responseObserver) {
@@ -625,4 +728,27 @@ public class ControllerServiceImpl extends ControllerServiceGrpc.ControllerServi
             responseObserver.onCompleted();
         });
     }
+
+    @Override
+    public void watch(WatchRequest request, StreamObserver<WatchReply> responseObserver) {
+        LOGGER.info("Node[node-id={}] starts to watch changes: {}", request.getNodeId(),
+            TextFormat.shortDebugString(request));
+        Optional<Integer> leaderEpoch = metadataStore.electionService().leaderEpoch();
+        if (!metadataStore.isLeader() || leaderEpoch.isEmpty()) {
+            WatchReply reply = WatchReply.newBuilder()
+                .setStatus(Status.newBuilder().setCode(Code.NO_LEADER).setMessage("Current node is not leader").build())
+                .build();
+            responseObserver.onNext(reply);
+            responseObserver.onCompleted();
+            return;
+        }
+
+        if (responseObserver instanceof ServerCallStreamObserver<WatchReply> observer) {
+            observer.setOnCancelHandler(() -> {
+                LOGGER.info("Node[node-id={}] stops watching changes", request.getNodeId());
+                metadataStore.changeLog().unwatch(responseObserver);
+            });
+        }
+        metadataStore.changeLog().watch(leaderEpoch.get(), request.getEpoch(), request.getVersion(), responseObserver);
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server;
+
+import com.automq.rocketmq.common.MetricsManager;
+import com.automq.rocketmq.common.metrics.NopLongCounter;
+import com.automq.rocketmq.common.metrics.NopObservableLongGauge;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of reclaiming S3 objects marked for deletion.
+ */
+public class ReclaimMetricsManager implements MetricsManager {
+    public static final String GAUGE_RECLAIM_PENDING_OBJECTS = "rocketmq_reclaim_pending_objects";
+    public static final String COUNTER_RECLAIM_DELETED_OBJECTS_TOTAL = "rocketmq_reclaim_deleted_objects_total";
+    public static final String COUNTER_RECLAIM_FAILED_OBJECTS_TOTAL = "rocketmq_reclaim_failed_objects_total";
+
+    public static ObservableLongGauge reclaimPendingObjects = new NopObservableLongGauge();
+    public static LongCounter reclaimDeletedObjects = new NopLongCounter();
+    public static LongCounter reclaimFailedObjects = new NopLongCounter();
+
+    /**
+     * Objects marked for deletion but not reclaimed yet, as of the latest reclaim round.
+     */
+    private static final AtomicLong PENDING_OBJECTS = new AtomicLong();
+
+    private static Supplier<AttributesBuilder> attributesBuilderSupplier;
+
+    public static AttributesBuilder newAttributesBuilder() {
+        if (attributesBuilderSupplier == null) {
+            return Attributes.builder();
+        }
+        return attributesBuilderSupplier.get();
+    }
+
+    public static void recordPending(long pending) {
+        PENDING_OBJECTS.set(pending);
+    }
+
+    public static void recordDeleted(long deleted) {
+        PENDING_OBJECTS.addAndGet(-deleted);
+        reclaimDeletedObjects.add(deleted, newAttributesBuilder().build());
+    }
+
+    public static void recordFailed(long failed) {
+        reclaimFailedObjects.add(failed, newAttributesBuilder().build());
+    }
+
+    @Override
+    public void initAttributesBuilder(Supplier<AttributesBuilder> attributesBuilderSupplier) {
+        ReclaimMetricsManager.attributesBuilderSupplier = attributesBuilderSupplier;
+    }
+
+    @Override
+    public void initStaticMetrics(Meter meter) {
+        reclaimDeletedObjects = meter.counterBuilder(COUNTER_RECLAIM_DELETED_OBJECTS_TOTAL)
+            .setDescription("Objects deleted from object storage and reclaimed from metadata")
+            .build();
+
+        reclaimFailedObjects = meter.counterBuilder(COUNTER_RECLAIM_FAILED_OBJECTS_TOTAL)
+            .setDescription("Objects failed to delete from object storage, which will be retried")
+            .build();
+    }
+
+    @Override
+    public void initDynamicMetrics(Meter meter) {
+        reclaimPendingObjects = meter.gaugeBuilder(GAUGE_RECLAIM_PENDING_OBJECTS)
+            .setDescription("Objects marked for deletion but not reclaimed yet")
+            .ofLongs()
+            .buildWithCallback(measurement ->
+                measurement.record(Math.max(0, PENDING_OBJECTS.get()), newAttributesBuilder().build()));
+    }
+}
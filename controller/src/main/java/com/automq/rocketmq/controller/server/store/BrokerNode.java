@@ -11,11 +11,17 @@
 
 package com.automq.rocketmq.controller.server.store;
 
+import apache.rocketmq.controller.v1.QueueLoad;
 import com.automq.rocketmq.common.config.ControllerConfig;
 import com.automq.rocketmq.metadata.dao.Node;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +41,11 @@ public class BrokerNode {
     private final long baseNano;
     private final Date baseTime;
 
+    /**
+     * Load of queues served by the node, keyed by topic-id and queue-id, as of the last heartbeat.
+     */
+    private volatile Map<Pair<Long, Integer>, QueueLoad> queueLoads;
+
     public BrokerNode(Node node) {
         this.node = node;
         this.lastKeepAlive = System.nanoTime();
@@ -73,6 +84,29 @@ public class BrokerNode {
         return TimeUnit.NANOSECONDS.toMillis(nanos) <= TimeUnit.SECONDS.toMillis(config.nodeAliveIntervalInSecs());
     }
 
+    public void updateQueueLoads(List<QueueLoad> loads) {
+        Map<Pair<Long, Integer>, QueueLoad> map = new HashMap<>();
+        for (QueueLoad load : loads) {
+            map.put(Pair.of(load.getTopicId(), load.getQueueId()), load);
+        }
+        this.queueLoads = map;
+    }
+
+    /**
+     * @return Flag whether the node has reported load of its queues since the current node became leader.
+     */
+    public boolean hasQueueLoads() {
+        return null != queueLoads;
+    }
+
+    public Optional<QueueLoad> queueLoad(long topicId, int queueId) {
+        Map<Pair<Long, Integer>, QueueLoad> map = queueLoads;
+        if (null == map) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(map.get(Pair.of(topicId, queueId)));
+    }
+
     public Node getNode() {
         return node;
     }
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.store;
+
+import apache.rocketmq.common.v1.Code;
+import apache.rocketmq.controller.v1.AssignmentRow;
+import apache.rocketmq.controller.v1.ChangeEvent;
+import apache.rocketmq.controller.v1.GroupRow;
+import apache.rocketmq.controller.v1.NodeRow;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamRow;
+import apache.rocketmq.controller.v1.TopicRow;
+import apache.rocketmq.controller.v1.WatchReply;
+import com.automq.rocketmq.metadata.dao.Group;
+import com.automq.rocketmq.metadata.dao.Node;
+import com.automq.rocketmq.metadata.dao.QueueAssignment;
+import com.automq.rocketmq.metadata.dao.Stream;
+import com.automq.rocketmq.metadata.dao.Topic;
+import com.google.common.base.Strings;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Changes of metadata tables observed by the leader, retained in a bounded buffer and streamed to watchers.
+ * <p>
+ * Changes are versioned within a leader epoch. A watcher resumes from the version it applied last; if changes
+ * following that version are no longer retained or the version belongs to another epoch, the watcher is told to
+ * reload metadata from the database.
+ * <p>
+ * Replies are queued per watcher and sent outside the lock of the change log, only while the transport of the watcher
+ * is ready. A watcher lagging behind by more than the retained changes is completed, such that it watches again and
+ * either catches up or reloads.
+ */
+public class ChangeLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLog.class);
+
+    private final int capacity;
+
+    private final ArrayDeque<ChangeEvent> events;
+
+    private final List<Watcher> watchers;
+
+    private int epoch = -1;
+
+    private long version;
+
+    public ChangeLog(int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>();
+        this.watchers = new ArrayList<>();
+    }
+
+    public synchronized int epoch() {
+        return epoch;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized int watcherQuantity() {
+        return watchers.size();
+    }
+
+    /**
+     * Append changes observed by the leader of the given epoch and stream them to watchers.
+     *
+     * @param epoch   Leader epoch
+     * @param changes Changes to append, versions of which are assigned by the change log
+     */
+    public void append(int epoch, List<ChangeEvent.Builder> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        List<Watcher> pending = new ArrayList<>();
+        synchronized (this) {
+            rollover(epoch, pending);
+            WatchReply.Builder reply = WatchReply.newBuilder()
+                .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                .setEpoch(epoch);
+            for (ChangeEvent.Builder change : changes) {
+                ChangeEvent event = change.setVersion(++version).build();
+                events.addLast(event);
+                if (events.size() > capacity) {
+                    events.removeFirst();
+                }
+                reply.addEvents(event);
+            }
+
+            WatchReply watchReply = reply.build();
+            Iterator<Watcher> iterator = watchers.iterator();
+            while (iterator.hasNext()) {
+                Watcher watcher = iterator.next();
+                if (!watcher.offer(watchReply, capacity)) {
+                    iterator.remove();
+                }
+                pending.add(watcher);
+            }
+        }
+        pending.forEach(Watcher::drain);
+    }
+
+    /**
+     * Start streaming changes following the given version to the watcher.
+     *
+     * @param leaderEpoch Current epoch of the leader
+     * @param epoch       Leader epoch of the changes the watcher has applied
+     * @param version     Version of the last change the watcher has applied
+     * @param observer    Stream of the watcher
+     */
+    public void watch(int leaderEpoch, int epoch, long version, StreamObserver<WatchReply> observer) {
+        Watcher watcher = new Watcher(observer);
+        if (observer instanceof ServerCallStreamObserver<WatchReply> serverObserver) {
+            // Resume draining once the transport is able to take more replies.
+            serverObserver.setOnReadyHandler(watcher::drain);
+        }
+
+        List<Watcher> pending = new ArrayList<>();
+        synchronized (this) {
+            rollover(leaderEpoch, pending);
+            WatchReply.Builder reply = WatchReply.newBuilder()
+                .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                .setEpoch(this.epoch);
+            long first = events.isEmpty() ? this.version + 1 : events.peekFirst().getVersion();
+            if (epoch != this.epoch || version < first - 1 || version > this.version) {
+                LOGGER.info("Watcher needs to reload metadata as changes since epoch={}, version={} are unavailable, " +
+                    "current epoch={}, first version={}", epoch, version, this.epoch, first);
+                reply.setReset(true).setVersion(this.version);
+            } else {
+                for (ChangeEvent event : events) {
+                    if (event.getVersion() > version) {
+                        reply.addEvents(event);
+                    }
+                }
+            }
+
+            // The catch-up reply is queued regardless of its size, as it holds retained changes only.
+            watcher.offer(reply.build(), Integer.MAX_VALUE);
+            watchers.add(watcher);
+            pending.add(watcher);
+        }
+        pending.forEach(Watcher::drain);
+    }
+
+    public synchronized void unwatch(StreamObserver<WatchReply> observer) {
+        watchers.removeIf(watcher -> {
+            if (watcher.observer == observer) {
+                watcher.cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void rollover(int epoch, List<Watcher> pending) {
+        if (epoch == this.epoch) {
+            return;
+        }
+
+        LOGGER.info("Change log rolls over from epoch {} to {}", this.epoch, epoch);
+        // Watchers shall start over, reloading metadata published by prior leaders.
+        for (Watcher watcher : watchers) {
+            watcher.complete();
+            pending.add(watcher);
+        }
+        watchers.clear();
+        events.clear();
+        this.epoch = epoch;
+        this.version = 0;
+    }
+
+    /**
+     * Replies queued for a watcher. Only one thread streams them to the observer at a time.
+     */
+    static class Watcher {
+        private final StreamObserver<WatchReply> observer;
+
+        private final ArrayDeque<WatchReply> replies = new ArrayDeque<>();
+
+        private int pendingEvents;
+
+        // No more replies are accepted, the observer is completed once queued replies are sent.
+        private boolean completed;
+
+        // The observer has been completed or has failed.
+        private boolean closed;
+
+        private boolean draining;
+
+        Watcher(StreamObserver<WatchReply> observer) {
+            this.observer = observer;
+        }
+
+        /**
+         * Queue a reply for the watcher.
+         *
+         * @return false if the watcher no longer accepts replies
+         */
+        synchronized boolean offer(WatchReply reply, int maxPendingEvents) {
+            if (completed) {
+                return false;
+            }
+            replies.addLast(reply);
+            pendingEvents += reply.getEventsCount();
+            if (pendingEvents > maxPendingEvents) {
+                LOGGER.warn("Watcher lags behind by {} changes, let it watch again", pendingEvents);
+                replies.clear();
+                pendingEvents = 0;
+                completed = true;
+                return false;
+            }
+            return true;
+        }
+
+        synchronized void complete() {
+            completed = true;
+        }
+
+        synchronized void cancel() {
+            replies.clear();
+            pendingEvents = 0;
+            completed = true;
+            closed = true;
+        }
+
+        private boolean ready() {
+            return !(observer instanceof ServerCallStreamObserver<WatchReply> serverObserver) || serverObserver.isReady();
+        }
+
+        void drain() {
+            while (true) {
+                WatchReply reply;
+                synchronized (this) {
+                    if (draining || closed) {
+                        return;
+                    }
+                    reply = replies.peekFirst();
+                    if (null == reply) {
+                        if (!completed) {
+                            return;
+                        }
+                        closed = true;
+                    } else {
+                        if (!ready()) {
+                            return;
+                        }
+                        replies.removeFirst();
+                        pendingEvents -= reply.getEventsCount();
+                    }
+                    draining = true;
+                }
+
+                try {
+                    if (null == reply) {
+                        observer.onCompleted();
+                    } else {
+                        observer.onNext(reply);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to stream changes to watcher", e);
+                    cancel();
+                } finally {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long toMillis(Date date) {
+        return null == date ? 0 : date.getTime();
+    }
+
+    private static Date toDate(long millis) {
+        return 0 == millis ? null : new Date(millis);
+    }
+
+    public static ChangeEvent.Builder topicEvent(Topic topic) {
+        TopicRow.Builder row = TopicRow.newBuilder()
+            .setId(topic.getId())
+            .setName(topic.getName())
+            .setStatus(topic.getStatus())
+            .setAcceptMessageTypes(Strings.nullToEmpty(topic.getAcceptMessageTypes()))
+            .setCreateTime(toMillis(topic.getCreateTime()))
+            .setUpdateTime(toMillis(topic.getUpdateTime()));
+        if (null != topic.getQueueNum()) {
+            row.setQueueNum(topic.getQueueNum());
+        }
+        if (null != topic.getRetentionHours()) {
+            row.setRetentionHours(topic.getRetentionHours());
+        }
+        if (null != topic.getRetentionBytes()) {
+            row.setRetentionBytes(topic.getRetentionBytes());
+        }
+        return ChangeEvent.newBuilder().setTopic(row);
+    }
+
+    public static Topic toTopic(TopicRow row) {
+        Topic topic = new Topic();
+        topic.setId(row.getId());
+        topic.setName(row.getName());
+        if (row.hasQueueNum()) {
+            topic.setQueueNum(row.getQueueNum());
+        }
+        if (row.hasRetentionHours()) {
+            topic.setRetentionHours(row.getRetentionHours());
+        }
+        if (row.hasRetentionBytes()) {
+            topic.setRetentionBytes(row.getRetentionBytes());
+        }
+        topic.setStatus(row.getStatus());
+        topic.setAcceptMessageTypes(row.getAcceptMessageTypes());
+        topic.setCreateTime(toDate(row.getCreateTime()));
+        topic.setUpdateTime(toDate(row.getUpdateTime()));
+        return topic;
+    }
+
+    public static ChangeEvent.Builder groupEvent(Group group) {
+        GroupRow.Builder row = GroupRow.newBuilder()
+            .setId(group.getId())
+            .setName(group.getName())
+            .setStatus(group.getStatus())
+            .setMaxDeliveryAttempt(group.getMaxDeliveryAttempt())
+            .setGroupType(group.getGroupType())
+            .setSubMode(group.getSubMode())
+            .setCreateTime(toMillis(group.getCreateTime()))
+            .setUpdateTime(toMillis(group.getUpdateTime()));
+        if (null != group.getDeadLetterTopicId()) {
+            row.setDeadLetterTopicId(group.getDeadLetterTopicId());
+        }
+        return ChangeEvent.newBuilder().setGroup(row);
+    }
+
+    public static Group toGroup(GroupRow row) {
+        Group group = new Group();
+        group.setId(row.getId());
+        group.setName(row.getName());
+        group.setStatus(row.getStatus());
+        if (row.hasDeadLetterTopicId()) {
+            group.setDeadLetterTopicId(row.getDeadLetterTopicId());
+        }
+        group.setMaxDeliveryAttempt(row.getMaxDeliveryAttempt());
+        group.setGroupType(row.getGroupType());
+        group.setSubMode(row.getSubMode());
+        group.setCreateTime(toDate(row.getCreateTime()));
+        group.setUpdateTime(toDate(row.getUpdateTime()));
+        return group;
+    }
+
+    public static ChangeEvent.Builder assignmentEvent(QueueAssignment assignment) {
+        AssignmentRow row = AssignmentRow.newBuilder()
+            .setTopicId(assignment.getTopicId())
+            .setQueueId(assignment.getQueueId())
+            .setSrcNodeId(assignment.getSrcNodeId())
+            .setDstNodeId(assignment.getDstNodeId())
+            .setStatus(assignment.getStatus())
+            .setCreateTime(toMillis(assignment.getCreateTime()))
+            .setUpdateTime(toMillis(assignment.getUpdateTime()))
+            .build();
+        return ChangeEvent.newBuilder().setAssignment(row);
+    }
+
+    public static QueueAssignment toAssignment(AssignmentRow row) {
+        QueueAssignment assignment = new QueueAssignment();
+        assignment.setTopicId(row.getTopicId());
+        assignment.setQueueId(row.getQueueId());
+        assignment.setSrcNodeId(row.getSrcNodeId());
+        assignment.setDstNodeId(row.getDstNodeId());
+        assignment.setStatus(row.getStatus());
+        assignment.setCreateTime(toDate(row.getCreateTime()));
+        assignment.setUpdateTime(toDate(row.getUpdateTime()));
+        return assignment;
+    }
+
+    public static ChangeEvent.Builder streamEvent(Stream stream) {
+        StreamRow.Builder row = StreamRow.newBuilder()
+            .setId(stream.getId())
+            .setStreamRole(stream.getStreamRole())
+            .setState(stream.getState())
+            .setCreateTime(toMillis(stream.getCreateTime()))
+            .setUpdateTime(toMillis(stream.getUpdateTime()));
+        if (null != stream.getEpoch()) {
+            row.setEpoch(stream.getEpoch());
+        }
+        if (null != stream.getRangeId()) {
+            row.setRangeId(stream.getRangeId());
+        }
+        if (null != stream.getStartOffset()) {
+            row.setStartOffset(stream.getStartOffset());
+        }
+        if (null != stream.getTopicId()) {
+            row.setTopicId(stream.getTopicId());
+        }
+        if (null != stream.getQueueId()) {
+            row.setQueueId(stream.getQueueId());
+        }
+        if (null != stream.getGroupId()) {
+            row.setGroupId(stream.getGroupId());
+        }
+        if (null != stream.getSrcNodeId()) {
+            row.setSrcNodeId(stream.getSrcNodeId());
+        }
+        if (null != stream.getDstNodeId()) {
+            row.setDstNodeId(stream.getDstNodeId());
+        }
+        return ChangeEvent.newBuilder().setStream(row);
+    }
+
+    public static Stream toStream(StreamRow row) {
+        Stream stream = new Stream();
+        stream.setId(row.getId());
+        if (row.hasEpoch()) {
+            stream.setEpoch(row.getEpoch());
+        }
+        if (row.hasRangeId()) {
+            stream.setRangeId(row.getRangeId());
+        }
+        if (row.hasStartOffset()) {
+            stream.setStartOffset(row.getStartOffset());
+        }
+        if (row.hasTopicId()) {
+            stream.setTopicId(row.getTopicId());
+        }
+        if (row.hasQueueId()) {
+            stream.setQueueId(row.getQueueId());
+        }
+        stream.setStreamRole(row.getStreamRole());
+        if (row.hasGroupId()) {
+            stream.setGroupId(row.getGroupId());
+        }
+        if (row.hasSrcNodeId()) {
+            stream.setSrcNodeId(row.getSrcNodeId());
+        }
+        if (row.hasDstNodeId()) {
+            stream.setDstNodeId(row.getDstNodeId());
+        }
+        stream.setState(row.getState());
+        stream.setCreateTime(toDate(row.getCreateTime()));
+        stream.setUpdateTime(toDate(row.getUpdateTime()));
+        return stream;
+    }
+
+    public static ChangeEvent.Builder nodeEvent(Node node) {
+        NodeRow row = NodeRow.newBuilder()
+            .setId(node.getId())
+            .setName(Strings.nullToEmpty(node.getName()))
+            .setInstanceId(Strings.nullToEmpty(node.getInstanceId()))
+            .setVolumeId(Strings.nullToEmpty(node.getVolumeId()))
+            .setHostName(Strings.nullToEmpty(node.getHostName()))
+            .setVpcId(Strings.nullToEmpty(node.getVpcId()))
+            .setAddress(Strings.nullToEmpty(node.getAddress()))
+            .setEpoch(node.getEpoch())
+            .setCreateTime(toMillis(node.getCreateTime()))
+            .setUpdateTime(toMillis(node.getUpdateTime()))
+            .build();
+        return ChangeEvent.newBuilder().setNode(row);
+    }
+
+    public static Node toNode(NodeRow row) {
+        Node node = new Node();
+        node.setId(row.getId());
+        node.setName(row.getName());
+        node.setInstanceId(row.getInstanceId());
+        node.setVolumeId(row.getVolumeId());
+        node.setHostName(row.getHostName());
+        node.setVpcId(row.getVpcId());
+        node.setAddress(row.getAddress());
+        node.setEpoch(row.getEpoch());
+        node.setCreateTime(toDate(row.getCreateTime()));
+        node.setUpdateTime(toDate(row.getUpdateTime()));
+        return node;
+    }
+}
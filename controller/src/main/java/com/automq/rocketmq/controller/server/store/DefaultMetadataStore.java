@@ -13,14 +13,22 @@ package com.automq.rocketmq.controller.server.store;
 
 import apache.rocketmq.common.v1.Code;
 import apache.rocketmq.controller.v1.AssignmentStatus;
+import apache.rocketmq.controller.v1.ChangeEvent;
 import apache.rocketmq.controller.v1.Cluster;
 import apache.rocketmq.controller.v1.ClusterSummary;
+import apache.rocketmq.controller.v1.CommitOffsetsRequest;
 import apache.rocketmq.controller.v1.ConsumerGroup;
+import apache.rocketmq.controller.v1.ConsumerOffset;
 import apache.rocketmq.controller.v1.CreateGroupRequest;
 import apache.rocketmq.controller.v1.CreateTopicRequest;
 import apache.rocketmq.controller.v1.DescribeClusterRequest;
 import apache.rocketmq.controller.v1.DescribeStreamReply;
 import apache.rocketmq.controller.v1.DescribeStreamRequest;
+import apache.rocketmq.controller.v1.MessageQueue;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.QueueLoad;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.StreamState;
@@ -37,6 +45,7 @@ import com.automq.rocketmq.controller.server.store.impl.ElectionServiceImpl;
 import com.automq.rocketmq.controller.server.store.impl.GroupManager;
 import com.automq.rocketmq.controller.server.store.impl.StreamManager;
 import com.automq.rocketmq.controller.server.store.impl.TopicManager;
+import com.automq.rocketmq.controller.server.tasks.ChangeFeedTask;
 import com.automq.rocketmq.controller.server.tasks.DataRetentionTask;
 import com.automq.rocketmq.controller.server.tasks.HeartbeatTask;
 import com.automq.rocketmq.controller.server.tasks.ReclaimS3ObjectTask;
@@ -48,6 +57,7 @@ import com.automq.rocketmq.controller.server.tasks.ScanNodeTask;
 import com.automq.rocketmq.controller.server.tasks.ScanStreamTask;
 import com.automq.rocketmq.controller.server.tasks.ScanTopicTask;
 import com.automq.rocketmq.controller.server.tasks.ScanYieldingQueueTask;
+import com.automq.rocketmq.controller.server.tasks.SchedulerTask;
 import com.automq.rocketmq.metadata.dao.Group;
 import com.automq.rocketmq.metadata.dao.GroupProgress;
 import com.automq.rocketmq.metadata.dao.Lease;
@@ -65,6 +75,7 @@ import com.google.common.base.Strings;
 import com.google.protobuf.Timestamp;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -80,6 +91,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.slf4j.Logger;
@@ -107,6 +119,8 @@ public class DefaultMetadataStore implements MetadataStore {
 
     private final StreamManager streamManager;
 
+    private final ChangeLog changeLog;
+
     private DataStore dataStore;
 
     private ElectionService electionService;
@@ -122,6 +136,7 @@ public class DefaultMetadataStore implements MetadataStore {
         this.topicManager = new TopicManager(this);
         this.groupManager = new GroupManager(this);
         this.streamManager = new StreamManager(this);
+        this.changeLog = new ChangeLog(config.changeLogCapacity());
         this.electionService = new ElectionServiceImpl(this, scheduledExecutorService);
     }
 
@@ -164,6 +179,11 @@ public class DefaultMetadataStore implements MetadataStore {
         return electionService;
     }
 
+    @Override
+    public ChangeLog changeLog() {
+        return changeLog;
+    }
+
     @Override
     public List<QueueAssignment> assignmentsOf(int nodeId) {
         return topicManager.getAssignmentCache().byNode(nodeId);
@@ -185,13 +205,17 @@ public class DefaultMetadataStore implements MetadataStore {
 
     public void start() {
         electionService.start();
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanNodeTask(this), 1,
-            config.scanIntervalInSecs(), TimeUnit.SECONDS);
+        // With the change feed enabled, only the leader scans metadata tables and it does so more frequently.
+        long scanIntervalInMillis = config.changeFeedEnabled() ? config.changeFeedScanIntervalInMillis() :
+            TimeUnit.SECONDS.toMillis(config.scanIntervalInSecs());
+        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanNodeTask(this), 1000,
+            scanIntervalInMillis, TimeUnit.MILLISECONDS);
         this.scheduledExecutorService.scheduleWithFixedDelay(new ScanYieldingQueueTask(this), 1,
             config.scanIntervalInSecs(), TimeUnit.SECONDS);
-        // Disable balance workload for now
-//        this.scheduledExecutorService.scheduleWithFixedDelay(new SchedulerTask(this), 1,
-//            config.balanceWorkloadIntervalInSecs(), TimeUnit.SECONDS);
+        if (config.balanceWorkloadEnabled()) {
+            this.scheduledExecutorService.scheduleWithFixedDelay(new SchedulerTask(this), 1,
+                config.balanceWorkloadIntervalInSecs(), TimeUnit.SECONDS);
+        }
         this.scheduledExecutorService.scheduleAtFixedRate(new HeartbeatTask(this), 3,
             Math.max(config().nodeAliveIntervalInSecs() / 2, 10), TimeUnit.SECONDS);
         this.scheduledExecutorService.scheduleWithFixedDelay(new RecycleTopicTask(this), 1,
@@ -200,14 +224,18 @@ public class DefaultMetadataStore implements MetadataStore {
             config.deletedGroupLingersInSecs(), TimeUnit.SECONDS);
         this.scheduledExecutorService.scheduleWithFixedDelay(new ReclaimS3ObjectTask(this), 1,
             config.scanIntervalInSecs(), TimeUnit.SECONDS);
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanTopicTask(this), 1,
-            config.scanIntervalInSecs(), TimeUnit.SECONDS);
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanGroupTask(this), 1,
-            config.scanIntervalInSecs(), TimeUnit.SECONDS);
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanAssignmentTask(this), 1,
-            config.scanIntervalInSecs(), TimeUnit.SECONDS);
-        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanStreamTask(this), 1,
-            config.scanIntervalInSecs(), TimeUnit.SECONDS);
+        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanTopicTask(this), 1000,
+            scanIntervalInMillis, TimeUnit.MILLISECONDS);
+        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanGroupTask(this), 1000,
+            scanIntervalInMillis, TimeUnit.MILLISECONDS);
+        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanAssignmentTask(this), 1000,
+            scanIntervalInMillis, TimeUnit.MILLISECONDS);
+        this.scheduledExecutorService.scheduleWithFixedDelay(new ScanStreamTask(this), 1000,
+            scanIntervalInMillis, TimeUnit.MILLISECONDS);
+        if (config.changeFeedEnabled()) {
+            this.scheduledExecutorService.scheduleWithFixedDelay(new ChangeFeedTask(this), 1000,
+                scanIntervalInMillis, TimeUnit.MILLISECONDS);
+        }
         this.scheduledExecutorService.scheduleWithFixedDelay(new DataRetentionTask(this),
             config.recycleS3IntervalInSecs(), config.recycleS3IntervalInSecs(), TimeUnit.SECONDS);
         LOGGER.info("MetadataStore tasks scheduled");
@@ -363,10 +391,42 @@ public class DefaultMetadataStore implements MetadataStore {
         }
     }
 
+    @Override
+    public void reportQueueLoads(int nodeId, List<QueueLoad> queueLoads) {
+        if (!isLeader()) {
+            LOGGER.warn("Non-leader node cannot accept queue loads of node[node-id={}]", nodeId);
+            return;
+        }
+        BrokerNode brokerNode = nodes.get(nodeId);
+        if (null != brokerNode) {
+            brokerNode.updateQueueLoads(queueLoads);
+        }
+    }
+
+    private List<QueueLoad> queueLoads() {
+        if (null == dataStore) {
+            return Collections.emptyList();
+        }
+        try {
+            return dataStore.queueLoads();
+        } catch (Throwable e) {
+            LOGGER.error("Failed to collect queue loads", e);
+            return Collections.emptyList();
+        }
+    }
+
+    private void acknowledgeQueueLoads() {
+        if (null != dataStore) {
+            dataStore.acknowledgeQueueLoads();
+        }
+    }
+
     @Override
     public void heartbeat() {
         if (isLeader()) {
             LOGGER.debug("Node of leader does not need to send heartbeat request");
+            reportQueueLoads(config.nodeId(), queueLoads());
+            acknowledgeQueueLoads();
             return;
         }
 
@@ -377,12 +437,14 @@ public class DefaultMetadataStore implements MetadataStore {
         }
 
         String target = leaderAddress.get();
-        controllerClient.heartbeat(target, config.nodeId(), config.epoch(), config.goingAway())
+        controllerClient.heartbeat(target, config.nodeId(), config.epoch(), config.goingAway(), queueLoads())
             .whenComplete((r, e) -> {
                 if (null != e) {
                     LOGGER.error("Failed to maintain heartbeat to {}", target);
                     return;
                 }
+                // Traffic of a failed heartbeat is reported along with the next one.
+                acknowledgeQueueLoads();
                 LOGGER.debug("Heartbeat to {} OK", target);
             });
     }
@@ -661,6 +723,44 @@ public class DefaultMetadataStore implements MetadataStore {
         return future;
     }
 
+    @Override
+    public CompletableFuture<Void> commitOffsets(List<GroupProgress> progresses) {
+        if (progresses.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        for (; ; ) {
+            if (isLeader()) {
+                try (SqlSession session = openSession()) {
+                    if (!maintainLeadershipWithSharedLock(session)) {
+                        continue;
+                    }
+                    GroupProgressMapper groupProgressMapper = session.getMapper(GroupProgressMapper.class);
+                    groupProgressMapper.batchCreateOrUpdate(progresses);
+                    session.commit();
+                }
+                return CompletableFuture.completedFuture(null);
+            } else {
+                Optional<String> leaderAddress = electionService.leaderAddress();
+                if (leaderAddress.isEmpty()) {
+                    return CompletableFuture.failedFuture(new ControllerException(Code.NO_LEADER_VALUE, "No leader is elected yet"));
+                }
+                CommitOffsetsRequest.Builder builder = CommitOffsetsRequest.newBuilder();
+                for (GroupProgress progress : progresses) {
+                    builder.addOffsets(ConsumerOffset.newBuilder()
+                        .setGroupId(progress.getGroupId())
+                        .setQueue(MessageQueue.newBuilder()
+                            .setTopicId(progress.getTopicId())
+                            .setQueueId(progress.getQueueId())
+                            .build())
+                        .setOffset(progress.getQueueOffset())
+                        .build());
+                }
+                return controllerClient.commitOffsets(leaderAddress.get(), builder.build());
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<Long> getConsumerOffset(long consumerGroupId, long topicId, int queueId) {
         try (SqlSession session = openSession()) {
@@ -748,6 +848,16 @@ public class DefaultMetadataStore implements MetadataStore {
         return streamManager.closeStream(streamId, streamEpoch, nodeId);
     }
 
+    @Override
+    public CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams, int nodeId) {
+        return streamManager.openStreams(streams, nodeId);
+    }
+
+    @Override
+    public CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams, int nodeId) {
+        return streamManager.closeStreams(streams, nodeId);
+    }
+
     @Override
     public CompletableFuture<List<StreamMetadata>> listOpenStreams(int nodeId) {
         return streamManager.listOpenStreams(nodeId);
@@ -809,6 +919,7 @@ public class DefaultMetadataStore implements MetadataStore {
 
     public void addBrokerNode(Node node) {
         this.nodes.put(node.getId(), new BrokerNode(node));
+        publish(List.of(node), ChangeLog::nodeEvent);
     }
 
     public ConcurrentMap<Integer, BrokerNode> getNodes() {
@@ -838,24 +949,42 @@ public class DefaultMetadataStore implements MetadataStore {
         }, asyncExecutorService);
     }
 
+    /**
+     * Publish changes through the change feed if current node is leader.
+     */
+    private <T> void publish(List<T> rows, Function<T, ChangeEvent.Builder> mapper) {
+        if (!config.changeFeedEnabled() || null == rows || rows.isEmpty() || !isLeader()) {
+            return;
+        }
+        Optional<Integer> epoch = electionService.leaderEpoch();
+        if (epoch.isEmpty()) {
+            return;
+        }
+        changeLog.append(epoch.get(), rows.stream().map(mapper).toList());
+    }
+
     @Override
     public void applyTopicChange(List<Topic> topics) {
         topicManager.getTopicCache().apply(topics);
+        publish(topics, ChangeLog::topicEvent);
     }
 
     @Override
     public void applyAssignmentChange(List<QueueAssignment> assignments) {
         topicManager.getAssignmentCache().apply(assignments);
+        publish(assignments, ChangeLog::assignmentEvent);
     }
 
     @Override
     public void applyGroupChange(List<Group> groups) {
         this.groupManager.getGroupCache().apply(groups);
+        publish(groups, ChangeLog::groupEvent);
     }
 
     @Override
     public void applyStreamChange(List<Stream> streams) {
         this.topicManager.getStreamCache().apply(streams);
+        publish(streams, ChangeLog::streamEvent);
 
         // delete associated S3 assets
         if (isLeader()) {
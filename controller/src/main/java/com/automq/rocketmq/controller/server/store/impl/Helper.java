@@ -38,6 +38,7 @@ public class Helper {
             .setName(topic.getName())
             .setCount(topic.getQueueNum())
             .setRetentionHours(topic.getRetentionHours())
+            .setRetentionBytes(topic.getRetentionBytes())
             .setAcceptTypes(builder.build());
         setAssignments(topicBuilder, assignments);
         return topicBuilder.build();
@@ -13,13 +13,17 @@ package com.automq.rocketmq.controller.server.store.impl;
 
 import apache.rocketmq.common.v1.Code;
 import apache.rocketmq.controller.v1.CloseStreamRequest;
+import apache.rocketmq.controller.v1.CloseStreamsRequest;
 import apache.rocketmq.controller.v1.DescribeStreamReply;
 import apache.rocketmq.controller.v1.DescribeStreamRequest;
 import apache.rocketmq.controller.v1.GroupStatus;
 import apache.rocketmq.controller.v1.ListOpenStreamsRequest;
 import apache.rocketmq.controller.v1.OpenStreamRequest;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.OpenStreamsRequest;
 import apache.rocketmq.controller.v1.Status;
 import apache.rocketmq.controller.v1.StreamDescription;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.StreamState;
@@ -73,7 +77,8 @@ public class StreamManager {
                     .stream()
                     .filter(stream -> stream.getStreamRole() == streamRole).toList();
                 if (streams.isEmpty()) {
-                    if (streamRole == StreamRole.STREAM_ROLE_RETRY) {
+                    // Retry streams and half streams are created on demand.
+                    if (streamRole == StreamRole.STREAM_ROLE_RETRY || streamRole == StreamRole.STREAM_ROLE_HALF) {
                         QueueAssignmentMapper assignmentMapper = session.getMapper(QueueAssignmentMapper.class);
                         List<QueueAssignment> assignments = assignmentMapper
                             .list(topicId, null, null, null, null)
@@ -96,7 +101,7 @@ public class StreamManager {
                         switch (assignment.getStatus()) {
                             case ASSIGNMENT_STATUS_YIELDING -> {
                                 String msg = String.format("Queue[topic-id=%d queue-id=%d] is under migration. " +
-                                    "Please create retry stream later", topicId, queueId);
+                                    "Please create %s stream later", topicId, queueId, streamRole.name());
                                 throw new CompletionException(new ControllerException(Code.ILLEGAL_STATE_VALUE, msg));
                             }
                             case ASSIGNMENT_STATUS_DELETED -> {
@@ -115,14 +120,16 @@ public class StreamManager {
                         }
 
                         // Verify Group exists.
-                        GroupMapper groupMapper = session.getMapper(GroupMapper.class);
-                        List<Group> groups = groupMapper.byCriteria(GroupCriteria.newBuilder()
-                            .setGroupId(groupId)
-                            .setStatus(GroupStatus.GROUP_STATUS_ACTIVE)
-                            .build());
-                        if (groups.size() != 1) {
-                            String msg = String.format("Group[group-id=%d] is not found", groupId);
-                            throw new CompletionException(new ControllerException(Code.NOT_FOUND_VALUE, msg));
+                        if (streamRole == StreamRole.STREAM_ROLE_RETRY) {
+                            GroupMapper groupMapper = session.getMapper(GroupMapper.class);
+                            List<Group> groups = groupMapper.byCriteria(GroupCriteria.newBuilder()
+                                .setGroupId(groupId)
+                                .setStatus(GroupStatus.GROUP_STATUS_ACTIVE)
+                                .build());
+                            if (groups.size() != 1) {
+                                String msg = String.format("Group[group-id=%d] is not found", groupId);
+                                throw new CompletionException(new ControllerException(Code.NOT_FOUND_VALUE, msg));
+                            }
                         }
 
                         int nodeId = assignment.getDstNodeId();
@@ -184,139 +191,21 @@ public class StreamManager {
     }
 
     public CompletableFuture<StreamMetadata> openStream(long streamId, long epoch, int nodeId) {
-        CompletableFuture<StreamMetadata> future = new CompletableFuture<>();
         for (; ; ) {
             if (metadataStore.isLeader()) {
                 try (SqlSession session = metadataStore.openSession()) {
                     if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
                         continue;
                     }
-                    StreamMapper streamMapper = session.getMapper(StreamMapper.class);
-                    RangeMapper rangeMapper = session.getMapper(RangeMapper.class);
-                    Stream stream = streamMapper.getByStreamId(streamId);
-                    // Verify target stream exists
-                    if (null == stream || stream.getState() == StreamState.DELETED) {
-                        ControllerException e = new ControllerException(Code.NOT_FOUND_VALUE,
-                            String.format("Stream[stream-id=%d] is not found", streamId)
-                        );
-                        future.completeExceptionally(e);
-                        return future;
-                    }
-
-                    // Verify stream owner is correct
-                    switch (stream.getState()) {
-                        case CLOSING -> {
-                            // nodeId should be equal to stream.srcNodeId
-                            if (nodeId != stream.getSrcNodeId()) {
-                                LOGGER.warn("State of Stream[stream-id={}] is {}. Current owner should be {}, while {} " +
-                                        "is attempting to open. Fenced!", stream.getId(), stream.getState(), stream.getSrcNodeId(),
-                                    nodeId);
-                                ControllerException e = new ControllerException(Code.FENCED_VALUE, "Node does not match");
-                                future.completeExceptionally(e);
-                                return future;
-                            }
-                        }
-                        case OPEN, CLOSED, UNINITIALIZED -> {
-                            // nodeId should be equal to stream.dstNodeId
-                            if (nodeId != stream.getDstNodeId()) {
-                                LOGGER.warn("State of Stream[stream-id={}] is {}. Its current owner is {}, {} is attempting to open. Fenced!",
-                                    streamId, stream.getState(), stream.getDstNodeId(), nodeId);
-                                ControllerException e = new ControllerException(Code.FENCED_VALUE, "Node does not match");
-                                future.completeExceptionally(e);
-                                return future;
-                            }
-                        }
-                    }
-
-                    // Verify epoch
-                    if (epoch != stream.getEpoch()) {
-                        LOGGER.warn("Epoch of Stream[stream-id={}] is {}, while the open stream request epoch is {}",
-                            streamId, stream.getEpoch(), epoch);
-                        ControllerException e = new ControllerException(Code.FENCED_VALUE, "Epoch of stream is deprecated");
-                        future.completeExceptionally(e);
-                        return future;
-                    }
-
-                    // Verify that current stream state allows open ops
-                    switch (stream.getState()) {
-                        case CLOSING, OPEN -> {
-                            LOGGER.warn("Stream[stream-id={}] is already OPEN with epoch={}", streamId, stream.getEpoch());
-                            Range range = rangeMapper.get(stream.getRangeId(), streamId, null);
-                            StreamMetadata metadata = StreamMetadata.newBuilder()
-                                .setStreamId(streamId)
-                                .setEpoch(epoch)
-                                .setRangeId(stream.getRangeId())
-                                .setStartOffset(stream.getStartOffset())
-                                .setEndOffset(range.getEndOffset())
-                                .setState(stream.getState())
-                                .build();
-                            future.complete(metadata);
-                            return future;
-                        }
-                        case UNINITIALIZED, CLOSED -> {
-                        }
-                        default -> {
-                            String msg = String.format("State of Stream[stream-id=%d] is %s, which is not supported",
-                                stream.getId(), stream.getState());
-                            future.completeExceptionally(new ControllerException(Code.ILLEGAL_STATE_VALUE, msg));
-                            return future;
-                        }
-                    }
-
-                    // Now that the request is valid, update the stream's epoch and create a new range for this broker
-
-                    // If stream.state == uninitialized, its stream.rangeId will be -1;
-                    // If stream.state == closed, stream.rangeId will be the previous one;
-
-                    // get new range's start offset
-                    long startOffset;
-                    if (StreamState.UNINITIALIZED == stream.getState()) {
-                        // default regard this range is the first range in stream, use 0 as start offset
-                        startOffset = 0;
-                    } else {
-                        assert StreamState.CLOSED == stream.getState();
-                        Range prevRange = rangeMapper.get(stream.getRangeId(), streamId, null);
-                        // if stream is closed, use previous range's end offset as start offset
-                        startOffset = prevRange.getEndOffset();
-                    }
-
-                    // Increase stream epoch
-                    stream.setEpoch(epoch + 1);
-                    // Increase range-id
-                    stream.setRangeId(stream.getRangeId() + 1);
-                    stream.setStartOffset(stream.getStartOffset());
-                    stream.setState(StreamState.OPEN);
-                    streamMapper.update(stream);
-
-                    // Create a new range for the stream
-                    Range range = new Range();
-                    range.setStreamId(streamId);
-                    range.setNodeId(stream.getDstNodeId());
-                    range.setStartOffset(startOffset);
-                    range.setEndOffset(startOffset);
-                    range.setEpoch(epoch + 1);
-                    range.setRangeId(stream.getRangeId());
-                    rangeMapper.create(range);
-                    LOGGER.info("Node[node-id={}] opens stream [stream-id={}] with epoch={}",
-                        metadataStore.config().nodeId(), streamId, epoch + 1);
+                    StreamMetadata metadata = openStream(session, streamId, epoch, nodeId);
                     // Commit transaction
                     session.commit();
-
-                    // Build open stream response
-                    StreamMetadata metadata = StreamMetadata.newBuilder()
-                        .setStreamId(streamId)
-                        .setEpoch(epoch + 1)
-                        .setRangeId(stream.getRangeId())
-                        .setStartOffset(stream.getStartOffset())
-                        .setEndOffset(range.getEndOffset())
-                        .setState(StreamState.OPEN)
-                        .build();
-                    future.complete(metadata);
-                    return future;
+                    return CompletableFuture.completedFuture(metadata);
+                } catch (ControllerException e) {
+                    return CompletableFuture.failedFuture(e);
                 } catch (Throwable e) {
                     LOGGER.error("Unexpected exception raised while open stream", e);
-                    future.completeExceptionally(e);
-                    return future;
+                    return CompletableFuture.failedFuture(e);
                 }
             } else {
                 Optional<String> leaderAddress = metadataStore.electionService().leaderAddress();
@@ -333,67 +222,180 @@ public class StreamManager {
         }
     }
 
-    public CompletableFuture<Void> closeStream(long streamId, long streamEpoch, int nodeId) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
+    /**
+     * Open streams of a node in one transaction.
+     * <p>
+     * Each stream is verified on its own, so a fenced stream is reported in its result without failing the others.
+     *
+     * @return results in the order of the streams
+     */
+    public CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams, int nodeId) {
+        if (streams.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
         for (; ; ) {
             if (metadataStore.isLeader()) {
                 try (SqlSession session = metadataStore.openSession()) {
                     if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
                         continue;
                     }
-                    StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+                    List<OpenStreamResult> results = new ArrayList<>(streams.size());
+                    for (StreamEpoch stream : streams) {
+                        try {
+                            StreamMetadata metadata = openStream(session, stream.getStreamId(), stream.getStreamEpoch(), nodeId);
+                            results.add(OpenStreamResult.newBuilder()
+                                .setStatus(Status.newBuilder().setCode(Code.OK).build())
+                                .setStreamMetadata(metadata)
+                                .build());
+                        } catch (ControllerException e) {
+                            results.add(OpenStreamResult.newBuilder()
+                                .setStatus(statusOf(e))
+                                .build());
+                        }
+                    }
+                    // Commit transaction
+                    session.commit();
+                    return CompletableFuture.completedFuture(results);
+                } catch (Throwable e) {
+                    LOGGER.error("Unexpected exception raised while open streams", e);
+                    return CompletableFuture.failedFuture(e);
+                }
+            } else {
+                Optional<String> leaderAddress = metadataStore.electionService().leaderAddress();
+                if (leaderAddress.isEmpty()) {
+                    return CompletableFuture.failedFuture(new ControllerException(Code.NO_LEADER_VALUE, "No leader is elected yet"));
+                }
+                OpenStreamsRequest request = OpenStreamsRequest.newBuilder()
+                    .setBrokerId(nodeId)
+                    .addAllStreams(streams)
+                    .build();
+                return metadataStore.controllerClient().openStreams(leaderAddress.get(), request);
+            }
+        }
+    }
 
-                    Stream stream = streamMapper.getByStreamId(streamId);
+    private StreamMetadata openStream(SqlSession session, long streamId, long epoch,
+        int nodeId) throws ControllerException {
+        StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+        RangeMapper rangeMapper = session.getMapper(RangeMapper.class);
+        Stream stream = streamMapper.getByStreamId(streamId);
+        // Verify target stream exists
+        if (null == stream || stream.getState() == StreamState.DELETED) {
+            throw new ControllerException(Code.NOT_FOUND_VALUE,
+                String.format("Stream[stream-id=%d] is not found", streamId));
+        }
 
-                    // Verify resource existence
-                    if (null == stream) {
-                        ControllerException e = new ControllerException(Code.NOT_FOUND_VALUE,
-                            String.format("Stream[stream-id=%d] is not found", streamId));
-                        future.completeExceptionally(e);
-                        break;
-                    }
+        // Verify stream owner is correct
+        switch (stream.getState()) {
+            case CLOSING -> {
+                // nodeId should be equal to stream.srcNodeId
+                if (nodeId != stream.getSrcNodeId()) {
+                    LOGGER.warn("State of Stream[stream-id={}] is {}. Current owner should be {}, while {} " +
+                            "is attempting to open. Fenced!", stream.getId(), stream.getState(), stream.getSrcNodeId(),
+                        nodeId);
+                    throw new ControllerException(Code.FENCED_VALUE, "Node does not match");
+                }
+            }
+            case OPEN, CLOSED, UNINITIALIZED -> {
+                // nodeId should be equal to stream.dstNodeId
+                if (nodeId != stream.getDstNodeId()) {
+                    LOGGER.warn("State of Stream[stream-id={}] is {}. Its current owner is {}, {} is attempting to open. Fenced!",
+                        streamId, stream.getState(), stream.getDstNodeId(), nodeId);
+                    throw new ControllerException(Code.FENCED_VALUE, "Node does not match");
+                }
+            }
+        }
 
-                    // Verify stream owner
-                    switch (stream.getState()) {
-                        case CLOSING -> {
-                            if (nodeId != stream.getSrcNodeId()) {
-                                LOGGER.warn("State of Stream[stream-id={}] is {}, stream.srcNodeId={} while close stream request from Node[node-id={}]. Fenced",
-                                    streamId, stream.getState(), stream.getDstNodeId(), nodeId);
-                                ControllerException e = new ControllerException(Code.FENCED_VALUE,
-                                    "Close stream op is fenced by non-owner");
-                                future.completeExceptionally(e);
-                            }
-                        }
-                        case OPEN -> {
-                            if (nodeId != stream.getDstNodeId()) {
-                                LOGGER.warn("dst-node-id of stream {} is {}, fencing close stream request from Node[node-id={}]",
-                                    streamId, stream.getDstNodeId(), nodeId);
-                                ControllerException e = new ControllerException(Code.FENCED_VALUE,
-                                    "Close stream op is fenced by non-owner");
-                                future.completeExceptionally(e);
-                            }
-                        }
-                    }
+        // Verify epoch
+        if (epoch != stream.getEpoch()) {
+            LOGGER.warn("Epoch of Stream[stream-id={}] is {}, while the open stream request epoch is {}",
+                streamId, stream.getEpoch(), epoch);
+            throw new ControllerException(Code.FENCED_VALUE, "Epoch of stream is deprecated");
+        }
 
-                    // Verify epoch
-                    if (streamEpoch != stream.getEpoch()) {
-                        ControllerException e = new ControllerException(Code.FENCED_VALUE, "Stream epoch is deprecated");
-                        future.completeExceptionally(e);
-                        break;
-                    }
+        // Verify that current stream state allows open ops
+        switch (stream.getState()) {
+            case CLOSING, OPEN -> {
+                LOGGER.warn("Stream[stream-id={}] is already OPEN with epoch={}", streamId, stream.getEpoch());
+                Range range = rangeMapper.get(stream.getRangeId(), streamId, null);
+                return StreamMetadata.newBuilder()
+                    .setStreamId(streamId)
+                    .setEpoch(epoch)
+                    .setRangeId(stream.getRangeId())
+                    .setStartOffset(stream.getStartOffset())
+                    .setEndOffset(range.getEndOffset())
+                    .setState(stream.getState())
+                    .build();
+            }
+            case UNINITIALIZED, CLOSED -> {
+            }
+            default -> {
+                String msg = String.format("State of Stream[stream-id=%d] is %s, which is not supported",
+                    stream.getId(), stream.getState());
+                throw new ControllerException(Code.ILLEGAL_STATE_VALUE, msg);
+            }
+        }
 
-                    // Make closeStream reentrant
-                    if (stream.getState() == StreamState.CLOSED) {
-                        future.complete(null);
-                        break;
-                    }
+        // Now that the request is valid, update the stream's epoch and create a new range for this broker
+
+        // If stream.state == uninitialized, its stream.rangeId will be -1;
+        // If stream.state == closed, stream.rangeId will be the previous one;
+
+        // get new range's start offset
+        long startOffset;
+        if (StreamState.UNINITIALIZED == stream.getState()) {
+            // default regard this range is the first range in stream, use 0 as start offset
+            startOffset = 0;
+        } else {
+            assert StreamState.CLOSED == stream.getState();
+            Range prevRange = rangeMapper.get(stream.getRangeId(), streamId, null);
+            // if stream is closed, use previous range's end offset as start offset
+            startOffset = prevRange.getEndOffset();
+        }
 
-                    // Flag state as closed
-                    stream.setState(StreamState.CLOSED);
-                    streamMapper.update(stream);
+        // Increase stream epoch
+        stream.setEpoch(epoch + 1);
+        // Increase range-id
+        stream.setRangeId(stream.getRangeId() + 1);
+        stream.setStartOffset(stream.getStartOffset());
+        stream.setState(StreamState.OPEN);
+        streamMapper.update(stream);
+
+        // Create a new range for the stream
+        Range range = new Range();
+        range.setStreamId(streamId);
+        range.setNodeId(stream.getDstNodeId());
+        range.setStartOffset(startOffset);
+        range.setEndOffset(startOffset);
+        range.setEpoch(epoch + 1);
+        range.setRangeId(stream.getRangeId());
+        rangeMapper.create(range);
+        LOGGER.info("Node[node-id={}] opens stream [stream-id={}] with epoch={}",
+            metadataStore.config().nodeId(), streamId, epoch + 1);
+
+        // Build open stream response
+        return StreamMetadata.newBuilder()
+            .setStreamId(streamId)
+            .setEpoch(epoch + 1)
+            .setRangeId(stream.getRangeId())
+            .setStartOffset(stream.getStartOffset())
+            .setEndOffset(range.getEndOffset())
+            .setState(StreamState.OPEN)
+            .build();
+    }
+
+    public CompletableFuture<Void> closeStream(long streamId, long streamEpoch, int nodeId) {
+        for (; ; ) {
+            if (metadataStore.isLeader()) {
+                try (SqlSession session = metadataStore.openSession()) {
+                    if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
+                        continue;
+                    }
+                    closeStream(session, streamId, streamEpoch, nodeId);
                     session.commit();
-                    future.complete(null);
-                    break;
+                    return CompletableFuture.completedFuture(null);
+                } catch (ControllerException e) {
+                    return CompletableFuture.failedFuture(e);
                 }
             } else {
                 Optional<String> leaderAddress = metadataStore.electionService().leaderAddress();
@@ -409,7 +411,101 @@ public class StreamManager {
                 return metadataStore.controllerClient().closeStream(leaderAddress.get(), request);
             }
         }
-        return future;
+    }
+
+    /**
+     * Close streams of a node in one transaction.
+     *
+     * @return status of each stream in the order of the streams
+     */
+    public CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams, int nodeId) {
+        if (streams.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        for (; ; ) {
+            if (metadataStore.isLeader()) {
+                try (SqlSession session = metadataStore.openSession()) {
+                    if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
+                        continue;
+                    }
+                    List<Status> results = new ArrayList<>(streams.size());
+                    for (StreamEpoch stream : streams) {
+                        try {
+                            closeStream(session, stream.getStreamId(), stream.getStreamEpoch(), nodeId);
+                            results.add(Status.newBuilder().setCode(Code.OK).build());
+                        } catch (ControllerException e) {
+                            results.add(statusOf(e));
+                        }
+                    }
+                    session.commit();
+                    return CompletableFuture.completedFuture(results);
+                } catch (Throwable e) {
+                    LOGGER.error("Unexpected exception raised while close streams", e);
+                    return CompletableFuture.failedFuture(e);
+                }
+            } else {
+                Optional<String> leaderAddress = metadataStore.electionService().leaderAddress();
+                if (leaderAddress.isEmpty()) {
+                    return CompletableFuture.failedFuture(new ControllerException(Code.NO_LEADER_VALUE, "No leader is elected yet"));
+                }
+                CloseStreamsRequest request = CloseStreamsRequest.newBuilder()
+                    .setBrokerId(nodeId)
+                    .addAllStreams(streams)
+                    .build();
+                return metadataStore.controllerClient().closeStreams(leaderAddress.get(), request);
+            }
+        }
+    }
+
+    private void closeStream(SqlSession session, long streamId, long streamEpoch,
+        int nodeId) throws ControllerException {
+        StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+        Stream stream = streamMapper.getByStreamId(streamId);
+
+        // Verify resource existence
+        if (null == stream) {
+            throw new ControllerException(Code.NOT_FOUND_VALUE,
+                String.format("Stream[stream-id=%d] is not found", streamId));
+        }
+
+        // Verify stream owner
+        switch (stream.getState()) {
+            case CLOSING -> {
+                if (nodeId != stream.getSrcNodeId()) {
+                    LOGGER.warn("State of Stream[stream-id={}] is {}, stream.srcNodeId={} while close stream request from Node[node-id={}]. Fenced",
+                        streamId, stream.getState(), stream.getDstNodeId(), nodeId);
+                    throw new ControllerException(Code.FENCED_VALUE, "Close stream op is fenced by non-owner");
+                }
+            }
+            case OPEN -> {
+                if (nodeId != stream.getDstNodeId()) {
+                    LOGGER.warn("dst-node-id of stream {} is {}, fencing close stream request from Node[node-id={}]",
+                        streamId, stream.getDstNodeId(), nodeId);
+                    throw new ControllerException(Code.FENCED_VALUE, "Close stream op is fenced by non-owner");
+                }
+            }
+        }
+
+        // Verify epoch
+        if (streamEpoch != stream.getEpoch()) {
+            throw new ControllerException(Code.FENCED_VALUE, "Stream epoch is deprecated");
+        }
+
+        // Make closeStream reentrant
+        if (stream.getState() == StreamState.CLOSED) {
+            return;
+        }
+
+        // Flag state as closed
+        stream.setState(StreamState.CLOSED);
+        streamMapper.update(stream);
+    }
+
+    private static Status statusOf(ControllerException e) {
+        return Status.newBuilder()
+            .setCode(Code.forNumber(e.getErrorCode()))
+            .setMessage(e.getMessage())
+            .build();
     }
 
     public CompletableFuture<List<StreamMetadata>> getStreams(List<Long> streamIds) {
@@ -149,6 +149,7 @@ public class TopicManager {
                     topic.setStatus(TopicStatus.TOPIC_STATUS_ACTIVE);
                     topic.setAcceptMessageTypes(JsonFormat.printer().print(request.getAcceptTypes()));
                     topic.setRetentionHours(request.getRetentionHours());
+                    topic.setRetentionBytes(request.getRetentionBytes());
                     topicMapper.create(topic);
                     long topicId = topic.getId();
                     List<QueueAssignment> assignments = createQueues(IntStream.range(0, request.getCount()),
@@ -219,6 +220,12 @@ public class TopicManager {
                         changed = true;
                     }
 
+                    // Update size-based retention
+                    if (request.hasRetentionBytes() && request.getRetentionBytes() != topic.getRetentionBytes()) {
+                        topic.setRetentionBytes(request.getRetentionBytes());
+                        changed = true;
+                    }
+
                     // Update queue number
                     if (request.getCount() > 0 && request.getCount() != topic.getQueueNum()) {
                         if (request.getCount() > topic.getQueueNum()) {
@@ -244,6 +251,7 @@ public class TopicManager {
                         .setTopicId(topic.getId())
                         .setCount(topic.getQueueNum())
                         .setName(topic.getName())
+                        .setRetentionBytes(topic.getRetentionBytes())
                         .setAcceptTypes(request.getAcceptTypes())
                         .build();
                     future.complete(uTopic);
@@ -452,6 +460,7 @@ public class TopicManager {
                     .setName(topic.getName())
                     .setCount(topic.getQueueNum())
                     .setRetentionHours(topic.getRetentionHours())
+                    .setRetentionBytes(topic.getRetentionBytes())
                     .setAcceptTypes(builder.build())
                     .build();
                 result.add(t);
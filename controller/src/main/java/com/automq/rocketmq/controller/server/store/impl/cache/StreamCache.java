@@ -38,6 +38,10 @@ public class StreamCache {
         return count;
     }
 
+    public Stream get(long streamId) {
+        return streams.get(streamId);
+    }
+
     public List<Long> streamsOf(long topicId, int queueId) {
         List<Long> result = new ArrayList<>();
         for (Map.Entry<Long, Stream> entry : streams.entrySet()) {
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.tasks;
+
+import apache.rocketmq.common.v1.Code;
+import apache.rocketmq.controller.v1.ChangeEvent;
+import apache.rocketmq.controller.v1.WatchReply;
+import apache.rocketmq.controller.v1.WatchRequest;
+import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.controller.server.store.ChangeLog;
+import com.automq.rocketmq.metadata.dao.Group;
+import com.automq.rocketmq.metadata.dao.QueueAssignment;
+import com.automq.rocketmq.metadata.dao.Stream;
+import com.automq.rocketmq.metadata.dao.Topic;
+import com.google.protobuf.TextFormat;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keep caches of a follower up to date by watching the change feed of the leader.
+ * <p>
+ * The task is scheduled periodically to establish the watch again once the stream breaks or the leadership changes.
+ * Changes are applied in the order of their versions. Metadata is only reloaded from the database if the leader no
+ * longer retains the changes following the last applied version, or if a gap of versions is found.
+ */
+public class ChangeFeedTask extends ControllerTask {
+
+    private Watch watch;
+
+    // Leader epoch and version of the last applied change, guarded by this task.
+    private int epoch = -1;
+
+    private long version;
+
+    public ChangeFeedTask(MetadataStore metadataStore) {
+        super(metadataStore);
+    }
+
+    @Override
+    public synchronized void process() throws ControllerException {
+        if (metadataStore.isLeader()) {
+            cancelWatch("Current node is leader");
+            return;
+        }
+
+        Optional<String> leaderAddress = metadataStore.leaderAddress();
+        if (leaderAddress.isEmpty()) {
+            return;
+        }
+
+        if (null != watch && !watch.closed && watch.target.equals(leaderAddress.get())) {
+            return;
+        }
+        cancelWatch("Leader changed");
+
+        WatchRequest request = WatchRequest.newBuilder()
+            .setNodeId(metadataStore.config().nodeId())
+            .setEpoch(epoch)
+            .setVersion(version)
+            .build();
+        LOGGER.info("Start to watch changes from leader {}: {}", leaderAddress.get(),
+            TextFormat.shortDebugString(request));
+        watch = new Watch(leaderAddress.get());
+        metadataStore.controllerClient().watch(leaderAddress.get(), request, watch);
+    }
+
+    private void cancelWatch(String reason) {
+        if (null != watch) {
+            watch.cancel(reason);
+            watch = null;
+        }
+    }
+
+    /**
+     * Apply a reply from the leader.
+     *
+     * @return false if the changes are not contiguous to those applied, such that the watch shall start over
+     */
+    private synchronized boolean apply(Watch source, WatchReply reply) throws ControllerException {
+        if (source != watch) {
+            // Reply of a stale watch
+            return true;
+        }
+
+        if (reply.getStatus().getCode() != Code.OK) {
+            LOGGER.warn("Leader refused to stream changes: {}", TextFormat.shortDebugString(reply.getStatus()));
+            return false;
+        }
+
+        if (reply.getReset()) {
+            resync();
+            epoch = reply.getEpoch();
+            version = reply.getVersion();
+        } else if (reply.getEpoch() != epoch) {
+            LOGGER.warn("Changes of epoch {} are received while epoch {} is expected", reply.getEpoch(), epoch);
+            return false;
+        }
+
+        List<Topic> topics = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        List<QueueAssignment> assignments = new ArrayList<>();
+        List<Stream> streams = new ArrayList<>();
+        long expected = version;
+        boolean contiguous = true;
+        for (ChangeEvent event : reply.getEventsList()) {
+            if (event.getVersion() != expected + 1) {
+                LOGGER.warn("Gap of changes found, expected version={}, actual version={}", expected + 1,
+                    event.getVersion());
+                contiguous = false;
+                break;
+            }
+            expected = event.getVersion();
+            switch (event.getRowCase()) {
+                case TOPIC -> topics.add(ChangeLog.toTopic(event.getTopic()));
+                case GROUP -> groups.add(ChangeLog.toGroup(event.getGroup()));
+                case ASSIGNMENT -> assignments.add(ChangeLog.toAssignment(event.getAssignment()));
+                case STREAM -> streams.add(ChangeLog.toStream(event.getStream()));
+                case NODE -> metadataStore.addBrokerNode(ChangeLog.toNode(event.getNode()));
+                default -> LOGGER.warn("Unknown change: {}", TextFormat.shortDebugString(event));
+            }
+        }
+
+        // Caches of different tables are independent of each other, changes of each table are still applied in order.
+        metadataStore.applyTopicChange(topics);
+        metadataStore.applyGroupChange(groups);
+        metadataStore.applyAssignmentChange(assignments);
+        metadataStore.applyStreamChange(streams);
+        version = expected;
+        return contiguous;
+    }
+
+    /**
+     * Reload all metadata from the database.
+     */
+    private void resync() throws ControllerException {
+        LOGGER.info("Reload metadata from database as changes since epoch={}, version={} are unavailable", epoch,
+            version);
+        new ScanNodeTask(metadataStore).scan();
+        new ScanTopicTask(metadataStore).scan();
+        new ScanGroupTask(metadataStore).scan();
+        new ScanAssignmentTask(metadataStore).scan();
+        new ScanStreamTask(metadataStore).scan();
+    }
+
+    private class Watch implements ClientResponseObserver<WatchRequest, WatchReply> {
+        private final String target;
+
+        private ClientCallStreamObserver<WatchRequest> call;
+
+        private volatile boolean closed;
+
+        Watch(String target) {
+            this.target = target;
+        }
+
+        void cancel(String reason) {
+            closed = true;
+            if (null != call) {
+                call.cancel(reason, null);
+            }
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<WatchRequest> requestStream) {
+            this.call = requestStream;
+        }
+
+        @Override
+        public void onNext(WatchReply reply) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (!apply(this, reply)) {
+                    cancel("Changes are not contiguous");
+                }
+            } catch (Throwable e) {
+                LOGGER.error("Failed to apply changes from leader {}", target, e);
+                cancel("Failed to apply changes");
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            closed = true;
+            LOGGER.warn("Watch of changes from leader {} failed", target, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            closed = true;
+            LOGGER.info("Watch of changes from leader {} completed", target);
+        }
+    }
+}
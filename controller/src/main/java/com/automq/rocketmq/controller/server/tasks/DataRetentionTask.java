@@ -12,88 +12,168 @@
 package com.automq.rocketmq.controller.server.tasks;
 
 import apache.rocketmq.common.v1.Code;
+import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.StreamState;
-import apache.rocketmq.controller.v1.TopicStatus;
+import apache.rocketmq.controller.v1.SubStream;
+import apache.rocketmq.controller.v1.Topic;
 import com.automq.rocketmq.controller.MetadataStore;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.metadata.dao.S3StreamObject;
+import com.automq.rocketmq.metadata.dao.S3StreamSetObject;
 import com.automq.rocketmq.metadata.dao.Stream;
-import com.automq.rocketmq.metadata.dao.StreamCriteria;
-import com.automq.rocketmq.metadata.dao.Topic;
 import com.automq.rocketmq.metadata.mapper.S3StreamObjectMapper;
-import com.automq.rocketmq.metadata.mapper.StreamMapper;
-import com.automq.rocketmq.metadata.mapper.TopicMapper;
+import com.automq.rocketmq.metadata.mapper.S3StreamSetObjectMapper;
+import com.automq.rocketmq.metadata.service.Helper;
+import com.google.common.collect.Lists;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.ibatis.session.SqlSession;
 
 /**
- * Scan and trim streams to enforce topic retention policy
+ * Trim streams to enforce topic retention policy.
+ * <p>
+ * A min-heap of streams keyed by the time their oldest data expires is maintained, derived from base data timestamps
+ * of stream objects and StreamSet objects, so that each run only touches streams whose oldest data has crossed the
+ * retention threshold. Objects committed since the previous run are merged into the heap incrementally, and the heap
+ * is rebuilt from scratch periodically to pick up changes of retention policies.
+ * <p>
+ * Besides, data streams of topics with size-based retention are trimmed such that stream objects retained per queue
+ * do not exceed the configured bytes. Only streams with objects committed since the previous run, streams over the
+ * limit at the previous run and streams whose limit is lowered are checked, as others cannot have grown over it.
  */
 public class DataRetentionTask extends ControllerTask {
+
+    /**
+     * Tolerance of clock skew among nodes while looking up objects committed since the previous run.
+     */
+    private static final long CLOCK_SKEW_TOLERANCE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    record Expiry(long expireAt, long streamId) {
+    }
+
+    private final PriorityQueue<Expiry> heap = new PriorityQueue<>(Comparator.comparingLong(Expiry::expireAt));
+
+    /**
+     * Stream-id --> Expiry time of the stream in the heap. Entries of the heap not matching are stale.
+     */
+    private final Map<Long, Long> scheduled = new HashMap<>();
+
+    /**
+     * Objects committed since this time are merged into the heap in the next run; null to load all of them.
+     */
+    private Date watermark;
+
+    /**
+     * Stream-id --> Retention bytes of data streams with size-based retention, as of the previous run.
+     */
+    private final Map<Long, Long> retentionBytes = new HashMap<>();
+
+    /**
+     * Data streams exceeding their retention bytes at the previous run, checked again until they are within it.
+     */
+    private final Set<Long> oversized = new HashSet<>();
+
+    private long rebuildTime;
+
     public DataRetentionTask(MetadataStore metadataStore) {
         super(metadataStore);
     }
 
     @Override
     public void process() throws ControllerException {
+        long now = System.currentTimeMillis();
+        if (now - rebuildTime >= TimeUnit.SECONDS.toMillis(metadataStore.config().dataRetentionRebuildIntervalInSecs())) {
+            heap.clear();
+            scheduled.clear();
+            retentionBytes.clear();
+            oversized.clear();
+            watermark = null;
+            rebuildTime = now;
+        }
+
         // Determine offset to trim stream up to
         final Map<Long, Long> trimTo = new HashMap<>();
 
-        // Recyclable S3 Object IDs
-        List<Long> recyclable = new ArrayList<>();
+        // Streams to schedule again once trimmed
+        final Set<Long> due = new HashSet<>();
+
+        // Streams with stream objects committed since the previous run
+        final Set<Long> changed = new HashSet<>();
 
+        List<S3StreamSetObject> streamSetObjects;
         try (SqlSession session = metadataStore.openSession()) {
-            TopicMapper topicMapper = session.getMapper(TopicMapper.class);
-            StreamMapper streamMapper = session.getMapper(StreamMapper.class);
             S3StreamObjectMapper streamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
-            List<Topic> topics = topicMapper.list(TopicStatus.TOPIC_STATUS_ACTIVE, null);
-            for (Topic topic : topics) {
-                Calendar calendar = Calendar.getInstance();
-                calendar.add(Calendar.HOUR, -topic.getRetentionHours());
-                Date threshold = calendar.getTime();
-                StreamCriteria criteria = StreamCriteria.newBuilder()
-                    .withTopicId(topic.getId())
-                    .withState(StreamState.OPEN)
-                    .withDstNodeId(metadataStore.config().nodeId())
-                    .build();
-                List<Long> streamIds = streamMapper.byCriteria(criteria)
-                    .stream()
-                    .map(Stream::getId)
-                    .toList();
-
-                if (streamIds.isEmpty()) {
+            S3StreamSetObjectMapper streamSetObjectMapper = session.getMapper(S3StreamSetObjectMapper.class);
+
+            // StreamSet objects of a node are kept few by compaction
+            streamSetObjects = streamSetObjectMapper.list(metadataStore.config().nodeId(), null);
+
+            for (S3StreamObject earliest : streamObjectMapper.earliest(null, watermark)) {
+                changed.add(earliest.getStreamId());
+                schedule(earliest.getStreamId(), earliest.getBaseDataTimestamp().getTime());
+            }
+            watermark = new Date(now - CLOCK_SKEW_TOLERANCE_IN_MILLIS);
+            scheduleStreamSetObjects(streamSetObjects, null);
+
+            while (!heap.isEmpty() && heap.peek().expireAt() <= now) {
+                Expiry expiry = heap.poll();
+                Long expireAt = scheduled.get(expiry.streamId());
+                if (null == expireAt || expireAt != expiry.expireAt()) {
                     continue;
                 }
+                scheduled.remove(expiry.streamId());
+                due.add(expiry.streamId());
+            }
 
-                // Lookup and add recyclable S3 object IDs
-                List<S3StreamObject> list = streamObjectMapper.recyclable(streamIds, threshold);
-                recyclable.addAll(list.stream().mapToLong(S3StreamObject::getObjectId).boxed().toList());
+            for (List<Long> batch : Lists.partition(new ArrayList<>(due), batchSize())) {
+                Map<Long, Long> thresholds = new HashMap<>();
+                for (long streamId : batch) {
+                    long retention = retentionInMillis(streamId);
+                    if (retention > 0) {
+                        thresholds.put(streamId, now - retention);
+                    }
+                }
+                if (thresholds.isEmpty()) {
+                    continue;
+                }
 
-                list.forEach(s3StreamObject -> {
-                    trimTo.computeIfAbsent(s3StreamObject.getStreamId(), streamId -> s3StreamObject.getEndOffset());
-                    trimTo.computeIfPresent(s3StreamObject.getStreamId(), (streamId, prev) -> {
-                        if (prev < s3StreamObject.getEndOffset()) {
-                            return s3StreamObject.getEndOffset();
+                // Look up with the latest threshold of the batch, then filter by threshold of each stream
+                long latest = thresholds.values().stream().mapToLong(Long::longValue).max().getAsLong();
+                for (S3StreamObject object : streamObjectMapper.expired(thresholds.keySet(), new Date(latest))) {
+                    if (object.getBaseDataTimestamp().getTime() < thresholds.get(object.getStreamId())) {
+                        trimTo.merge(object.getStreamId(), object.getEndOffset(), Math::max);
+                    }
+                }
+
+                for (S3StreamSetObject object : streamSetObjects) {
+                    for (SubStream subStream : subStreamsOf(object)) {
+                        Long threshold = thresholds.get(subStream.getStreamId());
+                        if (null != threshold && object.getBaseDataTimestamp().getTime() < threshold) {
+                            trimTo.merge(subStream.getStreamId(), subStream.getEndOffset(), Math::max);
                         }
-                        return prev;
-                    });
-                });
+                    }
+                }
             }
 
-            if (recyclable.isEmpty()) {
-                LOGGER.debug("No recyclable S3 objects");
-                return;
-            }
+            enforceRetentionSize(streamObjectMapper, changed, trimTo);
         } catch (Exception e) {
-            LOGGER.error("Failed to screen recyclable S3 Objects", e);
+            LOGGER.error("Failed to screen expired streams", e);
             throw new ControllerException(Code.INTERNAL_VALUE, e);
         }
 
+        if (!trimTo.isEmpty()) {
+            LOGGER.info("Trim {} streams to enforce retention policy", trimTo.size());
+        }
+
         // Request data store to trim streams
         trimTo.forEach((streamId, offset) -> {
             try {
@@ -103,5 +183,146 @@ public class DataRetentionTask extends ControllerTask {
                 LOGGER.warn("DataStore fails to trim stream[stream-id={}] to {}", streamId, offset, e);
             }
         });
+
+        // Schedule due streams again by their remaining data
+        due.addAll(trimTo.keySet());
+        if (!due.isEmpty()) {
+            try (SqlSession session = metadataStore.openSession()) {
+                S3StreamObjectMapper streamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
+                for (List<Long> batch : Lists.partition(new ArrayList<>(due), batchSize())) {
+                    for (S3StreamObject earliest : streamObjectMapper.earliest(batch, null)) {
+                        schedule(earliest.getStreamId(), earliest.getBaseDataTimestamp().getTime());
+                    }
+                }
+            }
+            scheduleStreamSetObjects(streamSetObjects, due);
+        }
+    }
+
+    private int batchSize() {
+        return Math.max(1, metadataStore.config().dataRetentionBatchSize());
+    }
+
+    /**
+     * @return Retention of the topic the stream belongs to, or 0 if the stream is not served by this node any longer.
+     */
+    private long retentionInMillis(long streamId) {
+        Stream stream = metadataStore.topicManager().getStreamCache().get(streamId);
+        if (null == stream || stream.getState() != StreamState.OPEN || null == stream.getDstNodeId()
+            || stream.getDstNodeId() != metadataStore.config().nodeId()) {
+            return 0;
+        }
+        Topic topic = metadataStore.topicManager().getTopicCache().byId(stream.getTopicId());
+        if (null == topic) {
+            return 0;
+        }
+        return TimeUnit.HOURS.toMillis(topic.getRetentionHours());
+    }
+
+    private void schedule(long streamId, long baseDataTimestamp) {
+        long retention = retentionInMillis(streamId);
+        if (retention <= 0) {
+            return;
+        }
+        long expireAt = baseDataTimestamp + retention;
+        Long prev = scheduled.get(streamId);
+        if (null != prev && prev <= expireAt) {
+            return;
+        }
+        scheduled.put(streamId, expireAt);
+        heap.offer(new Expiry(expireAt, streamId));
+    }
+
+    private void scheduleStreamSetObjects(List<S3StreamSetObject> objects, Set<Long> streamIds) {
+        for (S3StreamSetObject object : objects) {
+            for (SubStream subStream : subStreamsOf(object)) {
+                if (null == streamIds || streamIds.contains(subStream.getStreamId())) {
+                    schedule(subStream.getStreamId(), object.getBaseDataTimestamp().getTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Sub-streams of the given StreamSet object that are not trimmed yet.
+     */
+    private List<SubStream> subStreamsOf(S3StreamSetObject object) {
+        List<SubStream> result = new ArrayList<>();
+        try {
+            for (SubStream subStream : Helper.buildS3StreamSetObject(object).getSubStreams().getSubStreamsMap().values()) {
+                Stream stream = metadataStore.topicManager().getStreamCache().get(subStream.getStreamId());
+                if (null != stream && null != stream.getStartOffset()
+                    && subStream.getEndOffset() <= stream.getStartOffset()) {
+                    continue;
+                }
+                result.add(subStream);
+            }
+        } catch (InvalidProtocolBufferException e) {
+            LOGGER.error("Failed to decode sub-streams of StreamSet object[object-id={}]", object.getObjectId(), e);
+        }
+        return result;
+    }
+
+    /**
+     * @return Retention bytes of the topic the data stream belongs to, or 0 if unlimited or the stream is not a data
+     * stream served by this node.
+     */
+    private long retentionBytesOf(long streamId) {
+        Stream stream = metadataStore.topicManager().getStreamCache().get(streamId);
+        if (null == stream || stream.getState() != StreamState.OPEN || stream.getStreamRole() != StreamRole.STREAM_ROLE_DATA
+            || null == stream.getDstNodeId() || stream.getDstNodeId() != metadataStore.config().nodeId()) {
+            return 0;
+        }
+        Topic topic = metadataStore.topicManager().getTopicCache().byId(stream.getTopicId());
+        return null == topic ? 0 : topic.getRetentionBytes();
+    }
+
+    /**
+     * Trim the oldest stream objects of data streams exceeding the size limit of their topics.
+     *
+     * @param changed Streams with stream objects committed since the previous run
+     */
+    private void enforceRetentionSize(S3StreamObjectMapper streamObjectMapper, Set<Long> changed,
+        Map<Long, Long> trimTo) {
+        Set<Long> candidates = new HashSet<>(changed);
+        candidates.addAll(retentionBytes.keySet());
+
+        Map<Long, Long> limits = new HashMap<>();
+        for (long streamId : candidates) {
+            long limit = retentionBytesOf(streamId);
+            if (limit <= 0) {
+                retentionBytes.remove(streamId);
+                continue;
+            }
+            Long prev = retentionBytes.put(streamId, limit);
+            if (changed.contains(streamId) || oversized.contains(streamId) || (null != prev && limit < prev)) {
+                limits.put(streamId, limit);
+            }
+        }
+        oversized.clear();
+
+        for (List<Long> batch : Lists.partition(new ArrayList<>(limits.keySet()), batchSize())) {
+            for (S3StreamObject total : streamObjectMapper.dataSize(batch)) {
+                long streamId = total.getStreamId();
+                long excess = total.getObjectSize() - limits.get(streamId);
+                if (excess <= 0) {
+                    continue;
+                }
+                // Checked again until the trim takes effect
+                oversized.add(streamId);
+
+                List<S3StreamObject> objects = new ArrayList<>(streamObjectMapper.listByStreamId(streamId));
+                objects.sort(Comparator.comparingLong(S3StreamObject::getStartOffset));
+                for (S3StreamObject object : objects) {
+                    if (excess <= 0) {
+                        break;
+                    }
+                    excess -= object.getObjectSize();
+                    trimTo.merge(streamId, object.getEndOffset(), Math::max);
+                }
+                LOGGER.info("Stream[stream-id={}] exceeds retention size {}, trim to {}", streamId, limits.get(streamId),
+                    trimTo.get(streamId));
+            }
+        }
     }
 }
@@ -12,61 +12,159 @@
 package com.automq.rocketmq.controller.server.tasks;
 
 import apache.rocketmq.controller.v1.S3ObjectState;
+import com.automq.rocketmq.common.config.ControllerConfig;
 import com.automq.rocketmq.controller.MetadataStore;
 import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.controller.server.ReclaimMetricsManager;
 import com.automq.rocketmq.metadata.dao.S3Object;
 import com.automq.rocketmq.metadata.dao.S3ObjectCriteria;
 import com.automq.rocketmq.metadata.mapper.S3ObjectMapper;
 import com.automq.rocketmq.metadata.mapper.S3StreamObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 import org.apache.ibatis.session.SqlSession;
 
+/**
+ * Delete S3 objects marked for deletion from object storage, then remove them from metadata.
+ * <p>
+ * Objects are paged through in the order of id. Each page is deleted from object storage in batches, several of which
+ * are kept in flight, throttled to the configured objects per second. Progress is checkpointed once a page completes,
+ * in a short transaction of its own, so that no transaction is held open across requests to object storage. Objects
+ * that failed to delete remain marked and are retried in the next round.
+ */
 public class ReclaimS3ObjectTask extends ControllerTask {
 
+    private final RateLimiter rateLimiter;
+
     public ReclaimS3ObjectTask(MetadataStore metadataStore) {
         super(metadataStore);
+        this.rateLimiter = RateLimiter.create(Math.max(1, metadataStore.config().reclaimS3ObjectRate()));
     }
 
     @Override
     public void process() throws ControllerException {
-        try (SqlSession session = metadataStore.openSession()) {
-            if (!metadataStore.isLeader()) {
-                return;
-            }
+        if (!metadataStore.isLeader()) {
+            return;
+        }
 
+        try (SqlSession session = metadataStore.openSession()) {
             if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
                 return;
             }
 
-            S3StreamObjectMapper streamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
             S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
             rollbackExpiredS3Object(session, s3ObjectMapper);
+            ReclaimMetricsManager.recordPending(s3ObjectMapper.count(S3ObjectCriteria.newBuilder()
+                .withState(S3ObjectState.BOS_WILL_DELETE)
+                .build()));
+            session.commit();
+        }
+
+        ControllerConfig config = metadataStore.config();
+        int pageSize = Math.max(1, config.reclaimS3ObjectPageSize());
+        long reclaimed = 0;
+        long failed = 0;
+        Long cursor = null;
+        while (true) {
+            List<Long> page = nextPage(cursor, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            cursor = page.get(page.size() - 1);
+
+            List<Long> deleted = delete(page, config);
+            failed += page.size() - deleted.size();
+            if (!checkpoint(deleted)) {
+                LOGGER.info("Stop reclaiming S3 objects as leadership is lost");
+                break;
+            }
+            reclaimed += deleted.size();
+
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        if (reclaimed > 0 || failed > 0) {
+            LOGGER.info("Reclaimed {} S3 objects, {} failed to delete and will be retried", reclaimed, failed);
+        }
+    }
 
-            S3ObjectCriteria criteria = S3ObjectCriteria.newBuilder()
+    private List<Long> nextPage(Long cursor, int pageSize) {
+        try (SqlSession session = metadataStore.openSession()) {
+            S3ObjectCriteria.S3ObjectCriteriaBuilder builder = S3ObjectCriteria.newBuilder()
                 .withState(S3ObjectState.BOS_WILL_DELETE)
-                .build();
-            List<S3Object> s3Objects = s3ObjectMapper.list(criteria);
-            List<Long> ids = s3Objects.stream().mapToLong(S3Object::getId).boxed().toList();
-            if (!ids.isEmpty()) {
-                List<Long> result = metadataStore.getDataStore().batchDeleteS3Objects(ids).join();
-                HashSet<Long> expired = new HashSet<>(ids);
-                result.forEach(expired::remove);
-                LOGGER.info("Reclaim {} S3 objects: deleted: [{}], expired but not deleted: [{}]",
-                    result.size(),
-                    result.stream().map(String::valueOf).collect(Collectors.joining(", ")),
-                    expired.stream().map(String::valueOf).collect(Collectors.joining(", "))
-                );
-
-                if (!result.isEmpty()) {
-                    s3ObjectMapper.deleteByCriteria(S3ObjectCriteria.newBuilder().addObjectIds(result).build());
-                    streamObjectMapper.batchDelete(result);
-                }
+                .withLimit(pageSize);
+            if (null != cursor) {
+                builder.withAfterId(cursor);
+            }
+            return session.getMapper(S3ObjectMapper.class).list(builder.build())
+                .stream()
+                .map(S3Object::getId)
+                .toList();
+        }
+    }
+
+    /**
+     * Delete a page of objects from object storage.
+     *
+     * @return Objects that are deleted
+     */
+    private List<Long> delete(List<Long> ids, ControllerConfig config) {
+        Semaphore inflight = new Semaphore(Math.max(1, config.reclaimS3ObjectConcurrency()));
+        ConcurrentLinkedQueue<Long> deleted = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (List<Long> partition : Lists.partition(ids, Math.max(1, config.reclaimS3ObjectBatchSize()))) {
+            List<Long> batch = List.copyOf(partition);
+            rateLimiter.acquire(batch.size());
+            inflight.acquireUninterruptibly();
+            CompletableFuture<Void> future = metadataStore.getDataStore().batchDeleteS3Objects(batch)
+                .handle((result, e) -> {
+                    inflight.release();
+                    if (null != e) {
+                        LOGGER.warn("Failed to delete {} S3 objects, starting from object-id={}", batch.size(),
+                            batch.get(0), e);
+                        ReclaimMetricsManager.recordFailed(batch.size());
+                        return null;
+                    }
+                    deleted.addAll(result);
+                    if (result.size() < batch.size()) {
+                        ReclaimMetricsManager.recordFailed(batch.size() - result.size());
+                    }
+                    return null;
+                });
+            futures.add(future);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return new ArrayList<>(deleted);
+    }
+
+    /**
+     * Remove deleted objects from metadata.
+     *
+     * @return false if leadership is lost
+     */
+    private boolean checkpoint(List<Long> deleted) {
+        try (SqlSession session = metadataStore.openSession()) {
+            if (!metadataStore.maintainLeadershipWithSharedLock(session)) {
+                return false;
+            }
+            if (!deleted.isEmpty()) {
+                session.getMapper(S3ObjectMapper.class)
+                    .deleteByCriteria(S3ObjectCriteria.newBuilder().addObjectIds(deleted).build());
+                session.getMapper(S3StreamObjectMapper.class).batchDelete(deleted);
             }
             session.commit();
         }
+        ReclaimMetricsManager.recordDeleted(deleted.size());
+        return true;
     }
 
     public void rollbackExpiredS3Object(SqlSession session, S3ObjectMapper s3ObjectMapper) {
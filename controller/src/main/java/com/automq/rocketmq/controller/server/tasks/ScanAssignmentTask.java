@@ -26,6 +26,13 @@ public class ScanAssignmentTask extends ScanTask {
 
     @Override
     public void process() throws ControllerException {
+        if (!followsChangeFeed()) {
+            scan();
+        }
+    }
+
+    @Override
+    void scan() throws ControllerException {
         try (SqlSession session = metadataStore.openSession()) {
             QueueAssignmentMapper mapper = session.getMapper(QueueAssignmentMapper.class);
             List<QueueAssignment> assignments = mapper.list(null, null, null, null, lastScanTime);
@@ -26,6 +26,13 @@ public class ScanGroupTask extends ScanTask {
 
     @Override
     public void process() throws ControllerException {
+        if (!followsChangeFeed()) {
+            scan();
+        }
+    }
+
+    @Override
+    void scan() throws ControllerException {
         try (SqlSession session = metadataStore.openSession()) {
             GroupMapper mapper = session.getMapper(GroupMapper.class);
             List<Group> groups = mapper.byCriteria(GroupCriteria.newBuilder().setLastUpdateTime(lastScanTime).build());
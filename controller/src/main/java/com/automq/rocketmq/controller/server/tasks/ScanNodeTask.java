@@ -26,6 +26,13 @@ public class ScanNodeTask extends ScanTask {
 
     @Override
     public void process() throws ControllerException {
+        if (!followsChangeFeed()) {
+            scan();
+        }
+    }
+
+    @Override
+    void scan() throws ControllerException {
         try (SqlSession session = this.metadataStore.openSession()) {
             NodeMapper mapper = session.getMapper(NodeMapper.class);
             List<Node> nodes = mapper.list(this.lastScanTime);
@@ -26,6 +26,13 @@ public class ScanStreamTask extends ScanTask {
 
     @Override
     public void process() throws ControllerException {
+        if (!followsChangeFeed()) {
+            scan();
+        }
+    }
+
+    @Override
+    void scan() throws ControllerException {
         try (SqlSession session = metadataStore.openSession()) {
             StreamMapper mapper = session.getMapper(StreamMapper.class);
             StreamCriteria criteria = StreamCriteria.newBuilder()
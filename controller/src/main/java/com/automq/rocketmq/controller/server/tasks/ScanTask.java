@@ -11,6 +11,7 @@
 
 package com.automq.rocketmq.controller.server.tasks;
 
+import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.MetadataStore;
 import java.util.Date;
 
@@ -21,4 +22,18 @@ public abstract class ScanTask extends ControllerTask {
     public ScanTask(MetadataStore metadataStore) {
         super(metadataStore);
     }
+
+    /**
+     * With the change feed enabled, only the leader scans metadata tables, followers apply changes it publishes.
+     */
+    protected boolean followsChangeFeed() {
+        return metadataStore.config().changeFeedEnabled() && !metadataStore.isLeader();
+    }
+
+    /**
+     * Scan changes since the last scan time and apply them.
+     */
+    void scan() throws ControllerException {
+        process();
+    }
 }
@@ -26,6 +26,13 @@ public class ScanTopicTask extends ScanTask {
 
     @Override
     public void process() throws ControllerException {
+        if (!followsChangeFeed()) {
+            scan();
+        }
+    }
+
+    @Override
+    void scan() throws ControllerException {
         try (SqlSession session = metadataStore.openSession()) {
             TopicMapper mapper = session.getMapper(TopicMapper.class);
             List<Topic> topics = mapper.list(null, lastScanTime);
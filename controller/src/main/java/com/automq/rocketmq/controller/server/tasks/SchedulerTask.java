@@ -15,20 +15,57 @@ import apache.rocketmq.controller.v1.AssignmentStatus;
 import apache.rocketmq.controller.v1.StreamState;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.controller.server.store.BrokerNode;
 import com.automq.rocketmq.metadata.dao.QueueAssignment;
 import com.automq.rocketmq.metadata.dao.StreamCriteria;
 import com.automq.rocketmq.metadata.mapper.QueueAssignmentMapper;
 import com.automq.rocketmq.metadata.mapper.StreamMapper;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.ibatis.session.SqlSession;
 
+/**
+ * Balance traffic of queues among alive nodes.
+ * <p>
+ * The load of a queue is its ingress plus egress bytes per second, as reported by the serving node through heartbeat.
+ * Queues of dead or going-away nodes are placed greedily, the heaviest first, onto the least loaded node. Queues are
+ * then moved from the most to the least loaded node until the most loaded one is within
+ * {@link com.automq.rocketmq.common.config.ControllerConfig#workloadImbalanceRatio()} of the average. A queue is only
+ * moved if the projected load of the destination does not exceed that of the source afterward, so that a hot queue is not
+ * bounced between nodes.
+ * <p>
+ * To avoid flapping, a queue is not moved again within the cool-down period, and the number of queues being reassigned
+ * at the same time is capped. The traffic window of a queue restarts on its new node, so within the cool-down period
+ * the load it had when moved is taken into account as well.
+ */
 public class SchedulerTask extends ControllerTask {
+    /**
+     * Queues without traffic still count, so that they are spread among nodes.
+     */
+    static final long MIN_QUEUE_LOAD = 1;
+
+    record Reassignment(long nanos, long load) {
+    }
+
+    /**
+     * Last reassignment of queues, keyed by topic-id and queue-id, for balance. The task is scheduled with fixed
+     * delay, so it is never run concurrently.
+     */
+    private final Map<Pair<Long, Integer>, Reassignment> lastReassignments = new HashMap<>();
+
+    /**
+     * Reassignments planned in the current round, which start their cool-down only once committed.
+     */
+    private final Map<Pair<Long, Integer>, Reassignment> plannedReassignments = new HashMap<>();
+
     public SchedulerTask(MetadataStore metadataStore) {
         super(metadataStore);
     }
@@ -55,19 +92,21 @@ public class SchedulerTask extends ControllerTask {
                 .filter(assignment -> assignment.getStatus() != AssignmentStatus.ASSIGNMENT_STATUS_DELETED)
                 .toList();
 
+            Map<Integer, BrokerNode> nodes = metadataStore.allNodes();
             Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
             // Assignment that is orphan or about to be orphan.
             Map<Integer, List<QueueAssignment>> orphan = new HashMap<>();
-            metadataStore
-                .allNodes()
-                .values()
-                .forEach(node -> {
-                    if (node.isAlive(metadataStore.config()) && !node.isGoingAway()) {
-                        workload.put(node.getNode().getId(), new ArrayList<>());
-                    } else {
-                        orphan.put(node.getNode().getId(), new ArrayList<>());
-                    }
-                });
+            // Balance only if all serving nodes have reported their load, which is not the case shortly after
+            // leadership changes.
+            boolean loadReported = true;
+            for (BrokerNode node : nodes.values()) {
+                if (node.isAlive(metadataStore.config()) && !node.isGoingAway()) {
+                    workload.put(node.getNode().getId(), new ArrayList<>());
+                    loadReported &= node.hasQueueLoads();
+                } else {
+                    orphan.put(node.getNode().getId(), new ArrayList<>());
+                }
+            }
 
             assignments
                 .forEach(assignment -> {
@@ -80,111 +119,209 @@ public class SchedulerTask extends ControllerTask {
                     }
                 });
 
-            if (doSchedule(session, workload, orphan)) {
+            if (doSchedule(session, workload, orphan, assignment -> loadOf(nodes, assignment), loadReported)) {
                 session.commit();
+                commitReassignments();
             }
         }
     }
 
-    private int pick(Map<Integer, List<QueueAssignment>> workload) {
-        int id = 0;
-        int load = Integer.MAX_VALUE;
-        for (Map.Entry<Integer, List<QueueAssignment>> entry : workload.entrySet()) {
-            if (entry.getValue().size() <= load) {
+    /**
+     * Start the cool-down of the queues reassigned in the current round, once the reassignment is persisted.
+     */
+    void commitReassignments() {
+        lastReassignments.putAll(plannedReassignments);
+        plannedReassignments.clear();
+    }
+
+    static long loadOf(Map<Integer, BrokerNode> nodes, QueueAssignment assignment) {
+        // A yielding queue is still served by its source node.
+        int nodeId = assignment.getStatus() == AssignmentStatus.ASSIGNMENT_STATUS_YIELDING ?
+            assignment.getSrcNodeId() : assignment.getDstNodeId();
+        BrokerNode node = nodes.get(nodeId);
+        if (null == node) {
+            return MIN_QUEUE_LOAD;
+        }
+        return node.queueLoad(assignment.getTopicId(), assignment.getQueueId())
+            .map(load -> Math.max(MIN_QUEUE_LOAD, load.getIngressBytes() + load.getEgressBytes()))
+            .orElse(MIN_QUEUE_LOAD);
+    }
+
+    private static Map<Integer, Long> nodeLoads(Map<Integer, List<QueueAssignment>> workload,
+        ToLongFunction<QueueAssignment> loadOf) {
+        Map<Integer, Long> loads = new HashMap<>();
+        workload.forEach((nodeId, list) -> loads.put(nodeId, list.stream().mapToLong(loadOf).sum()));
+        return loads;
+    }
+
+    private static int lightest(Map<Integer, Long> nodeLoads) {
+        int id = -1;
+        long load = Long.MAX_VALUE;
+        for (Map.Entry<Integer, Long> entry : nodeLoads.entrySet()) {
+            if (entry.getValue() < load) {
                 id = entry.getKey();
-                load = entry.getValue().size();
+                load = entry.getValue();
             }
         }
         return id;
     }
 
-    private boolean doSchedule(SqlSession session,
-        Map<Integer, List<QueueAssignment>> workload,
-        Map<Integer, List<QueueAssignment>> orphan) {
-        AtomicBoolean changed = new AtomicBoolean(false);
-
-        QueueAssignmentMapper assignmentMapper = session.getMapper(QueueAssignmentMapper.class);
-        StreamMapper streamMapper = session.getMapper(StreamMapper.class);
-
-        if (!orphan.isEmpty()) {
-            if (workload.isEmpty()) {
-                LOGGER.warn("No serving node is available");
-                return false;
-            }
+    private static void reassign(QueueAssignment assignment, int dst) {
+        assignment.setSrcNodeId(assignment.getDstNodeId());
+        assignment.setDstNodeId(dst);
+        assignment.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_YIELDING);
+    }
 
-            orphan.values().stream().flatMap(Collection::stream)
-                .filter(assignment -> assignment.getStatus() == AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED)
-                .forEach(assignment -> {
-                    // Pick a destination node that serves the fewest queues and streams.
-                    int dst = pick(workload);
-                    assignment.setSrcNodeId(assignment.getDstNodeId());
-                    assignment.setDstNodeId(dst);
-                    assignment.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_YIELDING);
-                    assignmentMapper.update(assignment);
-                    workload.get(dst).add(assignment);
-                    LOGGER.info("Let Node[node-id={}] yield queue[topic-id={}, queue-id={}] to Node[node-id={}]",
-                        assignment.getSrcNodeId(), assignment.getTopicId(), assignment.getQueueId(),
-                        assignment.getDstNodeId());
-                    moveStreams(changed, streamMapper, assignment);
-                });
+    /**
+     * Place orphan queues onto serving nodes, the heaviest queue first onto the least loaded node.
+     *
+     * @return Reassigned queues
+     */
+    static List<QueueAssignment> planOrphans(Map<Integer, List<QueueAssignment>> workload,
+        Collection<QueueAssignment> orphans, ToLongFunction<QueueAssignment> loadOf) {
+        List<QueueAssignment> moves = new ArrayList<>();
+        if (workload.isEmpty()) {
+            return moves;
         }
+        Map<Integer, Long> nodeLoads = nodeLoads(workload, loadOf);
+        orphans.stream()
+            .filter(assignment -> assignment.getStatus() == AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED)
+            .sorted(Comparator.comparingLong(loadOf).reversed())
+            .forEach(assignment -> {
+                long load = loadOf.applyAsLong(assignment);
+                int dst = lightest(nodeLoads);
+                reassign(assignment, dst);
+                workload.get(dst).add(assignment);
+                nodeLoads.merge(dst, load, Long::sum);
+                moves.add(assignment);
+            });
+        return moves;
+    }
 
-        // Ensure workload among active nodes are balanced.
-        for (; ; ) {
+    /**
+     * Move queues from the most to the least loaded node until workload is balanced or no more queue may be moved.
+     * Each move is planned against the projected load of nodes after the previous ones.
+     *
+     * @return Reassigned queues
+     */
+    List<QueueAssignment> planBalance(Map<Integer, List<QueueAssignment>> workload,
+        ToLongFunction<QueueAssignment> reportedLoadOf) {
+        List<QueueAssignment> moves = new ArrayList<>();
+        // Reassignments planned in a previous round that failed to commit are abandoned.
+        plannedReassignments.clear();
+        if (workload.size() <= 1) {
+            return moves;
+        }
 
-            if (workload.isEmpty()) {
-                break;
-            }
+        long inflight = workload.values().stream()
+            .flatMap(Collection::stream)
+            .filter(assignment -> assignment.getStatus() == AssignmentStatus.ASSIGNMENT_STATUS_YIELDING)
+            .count();
+        long budget = metadataStore.config().maxConcurrentReassignments() - inflight;
 
-            if (workload.size() == 1) {
-                break;
-            }
+        long now = System.nanoTime();
+        long coolDownNanos = TimeUnit.SECONDS.toNanos(metadataStore.config().reassignmentCooldownInSecs());
+        lastReassignments.values().removeIf(reassignment -> now - reassignment.nanos() >= coolDownNanos);
 
-            int dst = -1;
+        // Load reported for a queue just moved covers only part of the traffic window on its new node.
+        ToLongFunction<QueueAssignment> loadOf = assignment -> {
+            long load = reportedLoadOf.applyAsLong(assignment);
+            Reassignment reassignment = lastReassignments.get(Pair.of(assignment.getTopicId(), assignment.getQueueId()));
+            return null == reassignment ? load : Math.max(load, reassignment.load());
+        };
+        Map<Integer, Long> nodeLoads = nodeLoads(workload, loadOf);
 
-            // Find nodes that has the most and fewest queues assigned or yielded to
-            List<QueueAssignment> max = null;
-            List<QueueAssignment> min = null;
-            for (Map.Entry<Integer, List<QueueAssignment>> entry : workload.entrySet()) {
-                if (null == max || entry.getValue().size() > max.size()) {
+        while (budget > 0) {
+            int src = -1;
+            long max = Long.MIN_VALUE;
+            long total = 0;
+            for (Map.Entry<Integer, Long> entry : nodeLoads.entrySet()) {
+                total += entry.getValue();
+                if (entry.getValue() > max) {
+                    src = entry.getKey();
                     max = entry.getValue();
                 }
-
-                if (null == min || entry.getValue().size() < min.size()) {
-                    min = entry.getValue();
-                    dst = entry.getKey();
-                }
             }
+            int dst = lightest(nodeLoads);
+            long min = nodeLoads.get(dst);
+            double average = (double) total / nodeLoads.size();
 
-            if (max.size() <= min.size() + metadataStore.config().workloadTolerance()) {
-                LOGGER.debug("Workload are already balanced, delta: {}, tolerance: {}", max.size() - min.size(),
-                    metadataStore.config().workloadTolerance());
+            if (max <= average * (1 + metadataStore.config().workloadImbalanceRatio())) {
+                LOGGER.debug("Workload are already balanced, max: {}, average: {}, tolerance: {}", max, average,
+                    metadataStore.config().workloadImbalanceRatio());
                 break;
             }
 
-            boolean reassign = false;
-            Iterator<QueueAssignment> itr = max.iterator();
-            while (itr.hasNext()) {
-                QueueAssignment assignment = itr.next();
-                if (assignment.getStatus() == AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED) {
-                    itr.remove();
-                    assignment.setSrcNodeId(assignment.getDstNodeId());
-                    assert dst != -1;
-                    assignment.setDstNodeId(dst);
-                    assignment.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_YIELDING);
-                    min.add(assignment);
-
-                    assignmentMapper.update(assignment);
-                    moveStreams(changed, streamMapper, assignment);
-                    reassign = true;
-                    break;
+            // Moving a queue of load w narrows the gap only if w < max - min. Take the heaviest queue with w no more
+            // than half of the gap, so that the destination does not become more loaded than the source.
+            long gap = max - min;
+            QueueAssignment candidate = null;
+            long candidateLoad = 0;
+            for (QueueAssignment assignment : workload.get(src)) {
+                if (assignment.getStatus() != AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED) {
+                    continue;
+                }
+                if (lastReassignments.containsKey(Pair.of(assignment.getTopicId(), assignment.getQueueId()))) {
+                    continue;
+                }
+                long load = loadOf.applyAsLong(assignment);
+                if (2 * load > gap) {
+                    continue;
+                }
+                if (null == candidate || load > candidateLoad) {
+                    candidate = assignment;
+                    candidateLoad = load;
                 }
             }
 
-            if (!reassign) {
-                // One of the node is not working properly, let's wait till the cluster stabilizes.
+            if (null == candidate) {
+                LOGGER.debug("No queue of Node[node-id={}] can be moved to balance workload", src);
                 break;
             }
+
+            workload.get(src).remove(candidate);
+            reassign(candidate, dst);
+            workload.get(dst).add(candidate);
+            nodeLoads.merge(src, -candidateLoad, Long::sum);
+            nodeLoads.merge(dst, candidateLoad, Long::sum);
+            plannedReassignments.put(Pair.of(candidate.getTopicId(), candidate.getQueueId()),
+                new Reassignment(now, candidateLoad));
+            moves.add(candidate);
+            budget--;
+        }
+        return moves;
+    }
+
+    private boolean doSchedule(SqlSession session,
+        Map<Integer, List<QueueAssignment>> workload,
+        Map<Integer, List<QueueAssignment>> orphan,
+        ToLongFunction<QueueAssignment> loadOf,
+        boolean loadReported) {
+        AtomicBoolean changed = new AtomicBoolean(false);
+
+        QueueAssignmentMapper assignmentMapper = session.getMapper(QueueAssignmentMapper.class);
+        StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+
+        List<QueueAssignment> moves = new ArrayList<>();
+        if (!orphan.isEmpty()) {
+            if (workload.isEmpty()) {
+                LOGGER.warn("No serving node is available");
+                return false;
+            }
+            moves.addAll(planOrphans(workload, orphan.values().stream().flatMap(Collection::stream).toList(), loadOf));
+        }
+
+        // Ensure workload among active nodes are balanced.
+        if (loadReported) {
+            moves.addAll(planBalance(workload, loadOf));
+        }
+
+        for (QueueAssignment assignment : moves) {
+            assignmentMapper.update(assignment);
+            LOGGER.info("Let Node[node-id={}] yield queue[topic-id={}, queue-id={}, load={}] to Node[node-id={}]",
+                assignment.getSrcNodeId(), assignment.getTopicId(), assignment.getQueueId(),
+                loadOf.applyAsLong(assignment), assignment.getDstNodeId());
+            moveStreams(changed, streamMapper, assignment);
         }
 
         return changed.get();
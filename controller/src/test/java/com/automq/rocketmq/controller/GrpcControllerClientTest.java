@@ -22,6 +22,7 @@ import com.automq.rocketmq.controller.client.GrpcControllerClient;
 import com.automq.rocketmq.controller.server.ControllerServiceImpl;
 import com.automq.rocketmq.metadata.dao.Node;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.Assertions;
@@ -112,7 +113,7 @@ class GrpcControllerClientTest {
         ) {
             testServer.start();
             int port = testServer.getPort();
-            Assertions.assertDoesNotThrow(() -> client.heartbeat(String.format("localhost:%d", port), 1, 1, false).get());
+            Assertions.assertDoesNotThrow(() -> client.heartbeat(String.format("localhost:%d", port), 1, 1, false, List.of()).get());
         }
     }
 
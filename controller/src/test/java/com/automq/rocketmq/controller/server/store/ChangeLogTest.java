@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.store;
+
+import apache.rocketmq.controller.v1.ChangeEvent;
+import apache.rocketmq.controller.v1.StreamRole;
+import apache.rocketmq.controller.v1.StreamState;
+import apache.rocketmq.controller.v1.TopicStatus;
+import apache.rocketmq.controller.v1.WatchReply;
+import com.automq.rocketmq.metadata.dao.Stream;
+import com.automq.rocketmq.metadata.dao.Topic;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+class ChangeLogTest {
+
+    private static class Watcher implements StreamObserver<WatchReply> {
+        final List<WatchReply> replies = new ArrayList<>();
+        boolean completed;
+
+        @Override
+        public void onNext(WatchReply value) {
+            replies.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+
+    private static List<ChangeEvent.Builder> topics(int count) {
+        List<ChangeEvent.Builder> changes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Topic topic = new Topic();
+            topic.setId(i);
+            topic.setName("T" + i);
+            topic.setQueueNum(1);
+            topic.setRetentionHours(72);
+            topic.setStatus(TopicStatus.TOPIC_STATUS_ACTIVE);
+            topic.setUpdateTime(new Date());
+            changes.add(ChangeLog.topicEvent(topic));
+        }
+        return changes;
+    }
+
+    @Test
+    public void testCatchUp() {
+        ChangeLog changeLog = new ChangeLog(10);
+        changeLog.append(1, topics(3));
+
+        Watcher watcher = new Watcher();
+        changeLog.watch(1, 1, 1, watcher);
+        Assertions.assertEquals(1, watcher.replies.size());
+        WatchReply reply = watcher.replies.get(0);
+        Assertions.assertFalse(reply.getReset());
+        Assertions.assertEquals(2, reply.getEventsCount());
+        Assertions.assertEquals(2, reply.getEvents(0).getVersion());
+        Assertions.assertEquals(3, reply.getEvents(1).getVersion());
+
+        // Changes appended afterwards are streamed.
+        changeLog.append(1, topics(1));
+        Assertions.assertEquals(2, watcher.replies.size());
+        Assertions.assertEquals(4, watcher.replies.get(1).getEvents(0).getVersion());
+        Assertions.assertEquals(1, changeLog.watcherQuantity());
+
+        changeLog.unwatch(watcher);
+        Assertions.assertEquals(0, changeLog.watcherQuantity());
+    }
+
+    @Test
+    public void testResetOnGap() {
+        ChangeLog changeLog = new ChangeLog(2);
+        changeLog.append(1, topics(5));
+
+        // Change of version 3 has been evicted.
+        Watcher watcher = new Watcher();
+        changeLog.watch(1, 1, 2, watcher);
+        WatchReply reply = watcher.replies.get(0);
+        Assertions.assertTrue(reply.getReset());
+        Assertions.assertEquals(5, reply.getVersion());
+        Assertions.assertEquals(0, reply.getEventsCount());
+
+        // Still retained.
+        watcher = new Watcher();
+        changeLog.watch(1, 1, 3, watcher);
+        Assertions.assertFalse(watcher.replies.get(0).getReset());
+        Assertions.assertEquals(2, watcher.replies.get(0).getEventsCount());
+
+        // Version ahead of the leader.
+        watcher = new Watcher();
+        changeLog.watch(1, 1, 6, watcher);
+        Assertions.assertTrue(watcher.replies.get(0).getReset());
+    }
+
+    @Test
+    public void testRollover() {
+        ChangeLog changeLog = new ChangeLog(10);
+        changeLog.append(1, topics(2));
+        Watcher watcher = new Watcher();
+        changeLog.watch(1, 1, 2, watcher);
+        Assertions.assertFalse(watcher.replies.get(0).getReset());
+
+        // A new leader epoch starts over.
+        changeLog.append(2, topics(1));
+        Assertions.assertTrue(watcher.completed);
+        Assertions.assertEquals(0, changeLog.watcherQuantity());
+        Assertions.assertEquals(2, changeLog.epoch());
+        Assertions.assertEquals(1, changeLog.version());
+
+        watcher = new Watcher();
+        changeLog.watch(2, 1, 2, watcher);
+        WatchReply reply = watcher.replies.get(0);
+        Assertions.assertTrue(reply.getReset());
+        Assertions.assertEquals(2, reply.getEpoch());
+        Assertions.assertEquals(1, reply.getVersion());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBackpressure() {
+        ChangeLog changeLog = new ChangeLog(3);
+        ServerCallStreamObserver<WatchReply> observer = Mockito.mock(ServerCallStreamObserver.class);
+        Mockito.when(observer.isReady()).thenReturn(false);
+        changeLog.watch(1, 1, 0, observer);
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(observer).setOnReadyHandler(onReady.capture());
+
+        // Replies are queued while the transport is not ready.
+        changeLog.append(1, topics(2));
+        Mockito.verify(observer, Mockito.never()).onNext(ArgumentMatchers.any());
+
+        Mockito.when(observer.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        Mockito.verify(observer, Mockito.times(2)).onNext(ArgumentMatchers.any());
+
+        // A watcher lagging behind by more than the retained changes is let go.
+        Mockito.when(observer.isReady()).thenReturn(false);
+        changeLog.append(1, topics(2));
+        Assertions.assertEquals(1, changeLog.watcherQuantity());
+        changeLog.append(1, topics(2));
+        Assertions.assertEquals(0, changeLog.watcherQuantity());
+        Mockito.when(observer.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        Mockito.verify(observer, Mockito.times(2)).onNext(ArgumentMatchers.any());
+        Mockito.verify(observer).onCompleted();
+    }
+
+    @Test
+    public void testTopicRow() {
+        Topic topic = new Topic();
+        topic.setId(1);
+        topic.setName("T");
+        topic.setQueueNum(2);
+        Topic copy = ChangeLog.toTopic(ChangeLog.topicEvent(topic).getTopic());
+        Assertions.assertEquals(2, copy.getQueueNum());
+        // Unset fields stay unset.
+        Assertions.assertNull(copy.getRetentionHours());
+        Assertions.assertNull(copy.getRetentionBytes());
+    }
+
+    @Test
+    public void testStreamRow() {
+        Stream stream = new Stream();
+        stream.setId(1L);
+        stream.setEpoch(2L);
+        stream.setRangeId(3);
+        stream.setStartOffset(4L);
+        stream.setTopicId(5L);
+        stream.setQueueId(6);
+        stream.setStreamRole(StreamRole.STREAM_ROLE_DATA);
+        stream.setSrcNodeId(7);
+        stream.setDstNodeId(8);
+        stream.setState(StreamState.OPEN);
+        stream.setUpdateTime(new Date());
+
+        Stream copy = ChangeLog.toStream(ChangeLog.streamEvent(stream).getStream());
+        Assertions.assertEquals(stream.getId(), copy.getId());
+        Assertions.assertEquals(stream.getEpoch(), copy.getEpoch());
+        Assertions.assertEquals(stream.getRangeId(), copy.getRangeId());
+        Assertions.assertEquals(stream.getStartOffset(), copy.getStartOffset());
+        Assertions.assertEquals(stream.getTopicId(), copy.getTopicId());
+        Assertions.assertEquals(stream.getQueueId(), copy.getQueueId());
+        Assertions.assertEquals(stream.getStreamRole(), copy.getStreamRole());
+        Assertions.assertNull(copy.getGroupId());
+        Assertions.assertEquals(stream.getState(), copy.getState());
+        Assertions.assertEquals(stream.getUpdateTime(), copy.getUpdateTime());
+    }
+}
@@ -20,6 +20,9 @@ import apache.rocketmq.controller.v1.DescribeClusterRequest;
 import apache.rocketmq.controller.v1.GroupStatus;
 import apache.rocketmq.controller.v1.GroupType;
 import apache.rocketmq.controller.v1.MessageType;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.StreamState;
@@ -118,7 +121,7 @@ class DefaultMetadataStoreTest extends DatabaseTestBase {
     @Test
     public void testHeartbeat() throws IOException {
 
-        Mockito.when(client.heartbeat(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyBoolean()))
+        Mockito.when(client.heartbeat(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.anyList()))
             .thenReturn(CompletableFuture.completedFuture(null));
 
         ElectionService electionService = Mockito.mock(ElectionService.class);
@@ -554,6 +557,67 @@ class DefaultMetadataStoreTest extends DatabaseTestBase {
 
     }
 
+    @Test
+    public void testOpenCloseStreams() throws IOException, ExecutionException, InterruptedException {
+        List<Long> streamIds = new ArrayList<>();
+        List<Long> streamEpochs = new ArrayList<>();
+        try (SqlSession session = this.getSessionFactory().openSession()) {
+            StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+            for (int i = 0; i < 3; i++) {
+                Stream stream = new Stream();
+                stream.setRangeId(-1);
+                // The last stream is owned by another node
+                stream.setSrcNodeId(i < 2 ? 1 : 2);
+                stream.setDstNodeId(i < 2 ? 1 : 2);
+                stream.setTopicId(1L);
+                stream.setQueueId(i);
+                stream.setState(StreamState.UNINITIALIZED);
+                stream.setStreamRole(StreamRole.STREAM_ROLE_DATA);
+                streamMapper.create(stream);
+                streamIds.add(stream.getId());
+                streamEpochs.add(stream.getEpoch());
+            }
+            session.commit();
+        }
+
+        try (DefaultMetadataStore metadataStore = new DefaultMetadataStore(client, getSessionFactory(), config)) {
+            metadataStore.start();
+            Awaitility.await().with().atMost(10, TimeUnit.SECONDS)
+                .pollInterval(100, TimeUnit.MILLISECONDS)
+                .until(metadataStore::isLeader);
+
+            List<StreamEpoch> streams = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                streams.add(StreamEpoch.newBuilder().setStreamId(streamIds.get(i)).setStreamEpoch(streamEpochs.get(i)).build());
+            }
+            List<OpenStreamResult> results = metadataStore.openStreams(streams, 1).get();
+            assertEquals(3, results.size());
+            streams.clear();
+            for (int i = 0; i < 2; i++) {
+                StreamMetadata metadata = results.get(i).getStreamMetadata();
+                assertEquals(Code.OK, results.get(i).getStatus().getCode());
+                assertEquals(streamIds.get(i).longValue(), metadata.getStreamId());
+                assertEquals(streamEpochs.get(i) + 1, metadata.getEpoch());
+                assertEquals(StreamState.OPEN, metadata.getState());
+                streams.add(StreamEpoch.newBuilder().setStreamId(metadata.getStreamId()).setStreamEpoch(metadata.getEpoch()).build());
+            }
+            assertEquals(Code.FENCED, results.get(2).getStatus().getCode());
+
+            List<Status> statuses = metadataStore.closeStreams(streams, 1).get();
+            assertEquals(2, statuses.size());
+            statuses.forEach(status -> assertEquals(Code.OK, status.getCode()));
+        }
+
+        try (SqlSession session = getSessionFactory().openSession()) {
+            StreamMapper streamMapper = session.getMapper(StreamMapper.class);
+            assertEquals(StreamState.CLOSED, streamMapper.getByStreamId(streamIds.get(0)).getState());
+            assertEquals(StreamState.CLOSED, streamMapper.getByStreamId(streamIds.get(1)).getState());
+            assertEquals(StreamState.UNINITIALIZED, streamMapper.getByStreamId(streamIds.get(2)).getState());
+            streamIds.forEach(streamMapper::delete);
+            session.commit();
+        }
+    }
+
     @Test
     public void testOpenStream_WithClosedStream() throws IOException, ExecutionException,
         InterruptedException {
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.tasks;
+
+import apache.rocketmq.controller.v1.StreamRole;
+import apache.rocketmq.controller.v1.StreamState;
+import apache.rocketmq.controller.v1.Topic;
+import com.automq.rocketmq.common.api.DataStore;
+import com.automq.rocketmq.common.config.ControllerConfig;
+import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.controller.server.store.impl.TopicManager;
+import com.automq.rocketmq.controller.server.store.impl.cache.StreamCache;
+import com.automq.rocketmq.controller.server.store.impl.cache.TopicCache;
+import com.automq.rocketmq.metadata.dao.S3StreamObject;
+import com.automq.rocketmq.metadata.dao.Stream;
+import com.automq.rocketmq.metadata.mapper.S3StreamObjectMapper;
+import com.automq.rocketmq.metadata.mapper.S3StreamSetObjectMapper;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+class DataRetentionTaskTest {
+    private static final int NODE_ID = 1;
+    private static final long TOPIC_ID = 2;
+    private static final long STREAM_ID = 3;
+
+    private MetadataStore metadataStore;
+    private TopicCache topicCache;
+    private S3StreamObjectMapper streamObjectMapper;
+    private DataStore dataStore;
+
+    @BeforeEach
+    public void setUp() {
+        ControllerConfig config = Mockito.mock(ControllerConfig.class);
+        Mockito.when(config.nodeId()).thenReturn(NODE_ID);
+        Mockito.when(config.dataRetentionBatchSize()).thenReturn(100);
+        Mockito.when(config.dataRetentionRebuildIntervalInSecs()).thenReturn(3600L);
+
+        Stream stream = new Stream();
+        stream.setId(STREAM_ID);
+        stream.setTopicId(TOPIC_ID);
+        stream.setQueueId(0);
+        stream.setStreamRole(StreamRole.STREAM_ROLE_DATA);
+        stream.setState(StreamState.OPEN);
+        stream.setDstNodeId(NODE_ID);
+        stream.setStartOffset(0L);
+
+        StreamCache streamCache = Mockito.mock(StreamCache.class);
+        Mockito.when(streamCache.get(STREAM_ID)).thenReturn(stream);
+        topicCache = Mockito.mock(TopicCache.class);
+        TopicManager topicManager = Mockito.mock(TopicManager.class);
+        Mockito.when(topicManager.getStreamCache()).thenReturn(streamCache);
+        Mockito.when(topicManager.getTopicCache()).thenReturn(topicCache);
+
+        // Stream objects are fresh, so only size-based retention applies
+        streamObjectMapper = Mockito.mock(S3StreamObjectMapper.class);
+        S3StreamObject earliest = streamObject(0, 0, 0);
+        Mockito.when(streamObjectMapper.earliest(ArgumentMatchers.any(), ArgumentMatchers.any()))
+            .thenReturn(List.of(earliest));
+        S3StreamObject total = new S3StreamObject();
+        total.setStreamId(STREAM_ID);
+        total.setObjectSize(300L);
+        Mockito.when(streamObjectMapper.dataSize(ArgumentMatchers.any())).thenReturn(List.of(total));
+        Mockito.when(streamObjectMapper.listByStreamId(STREAM_ID))
+            .thenReturn(List.of(streamObject(20, 30, 100), streamObject(0, 10, 100), streamObject(10, 20, 100)));
+
+        SqlSession session = Mockito.mock(SqlSession.class);
+        Mockito.when(session.getMapper(S3StreamObjectMapper.class)).thenReturn(streamObjectMapper);
+        Mockito.when(session.getMapper(S3StreamSetObjectMapper.class)).thenReturn(Mockito.mock(S3StreamSetObjectMapper.class));
+
+        dataStore = Mockito.mock(DataStore.class);
+        Mockito.when(dataStore.trimStream(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong()))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        metadataStore = Mockito.mock(MetadataStore.class);
+        Mockito.when(metadataStore.config()).thenReturn(config);
+        Mockito.when(metadataStore.openSession()).thenReturn(session);
+        Mockito.when(metadataStore.topicManager()).thenReturn(topicManager);
+        Mockito.when(metadataStore.getDataStore()).thenReturn(dataStore);
+    }
+
+    private static S3StreamObject streamObject(long startOffset, long endOffset, long size) {
+        S3StreamObject object = new S3StreamObject();
+        object.setStreamId(STREAM_ID);
+        object.setStartOffset(startOffset);
+        object.setEndOffset(endOffset);
+        object.setObjectSize(size);
+        object.setBaseDataTimestamp(new Date());
+        return object;
+    }
+
+    private void withTopic(long retentionBytes) {
+        Topic topic = Topic.newBuilder()
+            .setTopicId(TOPIC_ID)
+            .setName("T")
+            .setRetentionHours(72)
+            .setRetentionBytes(retentionBytes)
+            .build();
+        Mockito.when(topicCache.byId(TOPIC_ID)).thenReturn(topic);
+    }
+
+    @Test
+    public void testTrimByRetentionBytes() throws ControllerException {
+        withTopic(250);
+        new DataRetentionTask(metadataStore).process();
+
+        // 300 bytes retained against a limit of 250, so only the oldest object is trimmed
+        Mockito.verify(dataStore).trimStream(STREAM_ID, 10);
+        Mockito.verifyNoMoreInteractions(dataStore);
+    }
+
+    @Test
+    public void testUnlimitedRetentionBytes() throws ControllerException {
+        withTopic(0);
+        new DataRetentionTask(metadataStore).process();
+
+        Mockito.verify(streamObjectMapper, Mockito.never()).dataSize(ArgumentMatchers.any());
+        Mockito.verify(dataStore, Mockito.never()).trimStream(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong());
+    }
+
+    @Test
+    public void testSkipUnchangedStreams() throws ControllerException {
+        withTopic(350);
+        DataRetentionTask task = new DataRetentionTask(metadataStore);
+        task.process();
+        Mockito.verify(streamObjectMapper).dataSize(ArgumentMatchers.any());
+
+        // No stream object is committed since the previous run, so the stream could not have grown
+        Mockito.when(streamObjectMapper.earliest(ArgumentMatchers.isNull(), ArgumentMatchers.notNull()))
+            .thenReturn(List.of());
+        task.process();
+        Mockito.verify(streamObjectMapper).dataSize(ArgumentMatchers.any());
+
+        // Lowering the limit has the stream checked again
+        withTopic(250);
+        task.process();
+        Mockito.verify(streamObjectMapper, Mockito.times(2)).dataSize(ArgumentMatchers.any());
+        Mockito.verify(dataStore).trimStream(STREAM_ID, 10);
+        Mockito.verifyNoMoreInteractions(dataStore);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.tasks;
+
+import apache.rocketmq.controller.v1.S3ObjectState;
+import com.automq.rocketmq.common.api.DataStore;
+import com.automq.rocketmq.common.config.ControllerConfig;
+import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.metadata.dao.S3Object;
+import com.automq.rocketmq.metadata.dao.S3ObjectCriteria;
+import com.automq.rocketmq.metadata.mapper.S3ObjectMapper;
+import com.automq.rocketmq.metadata.mapper.S3StreamObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+class ReclaimS3ObjectTaskTest {
+
+    private ControllerConfig config;
+
+    private MetadataStore metadataStore;
+
+    private DataStore dataStore;
+
+    private S3ObjectMapper s3ObjectMapper;
+
+    private S3StreamObjectMapper s3StreamObjectMapper;
+
+    // Objects marked for deletion in metadata, in the order of id.
+    private final TreeSet<Long> pending = new TreeSet<>();
+
+    @BeforeEach
+    public void setUp() {
+        config = Mockito.mock(ControllerConfig.class);
+        Mockito.when(config.reclaimS3ObjectRate()).thenReturn(1000);
+        Mockito.when(config.reclaimS3ObjectPageSize()).thenReturn(4);
+        Mockito.when(config.reclaimS3ObjectBatchSize()).thenReturn(2);
+        Mockito.when(config.reclaimS3ObjectConcurrency()).thenReturn(2);
+
+        pending.clear();
+        s3ObjectMapper = Mockito.mock(S3ObjectMapper.class);
+        Mockito.when(s3ObjectMapper.list(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            S3ObjectCriteria criteria = invocation.getArgument(0);
+            List<S3Object> objects = new ArrayList<>();
+            if (criteria.getState() != S3ObjectState.BOS_WILL_DELETE) {
+                return objects;
+            }
+            Set<Long> ids = null == criteria.getAfterId() ? pending : pending.tailSet(criteria.getAfterId(), false);
+            for (long id : ids) {
+                if (null != criteria.getLimit() && objects.size() >= criteria.getLimit()) {
+                    break;
+                }
+                S3Object object = new S3Object();
+                object.setId(id);
+                object.setState(S3ObjectState.BOS_WILL_DELETE);
+                objects.add(object);
+            }
+            return objects;
+        });
+        Mockito.when(s3ObjectMapper.count(ArgumentMatchers.any())).thenAnswer(invocation -> (long) pending.size());
+        Mockito.when(s3ObjectMapper.deleteByCriteria(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            S3ObjectCriteria criteria = invocation.getArgument(0);
+            int count = 0;
+            for (long id : criteria.getIds()) {
+                if (pending.remove(id)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        s3StreamObjectMapper = Mockito.mock(S3StreamObjectMapper.class);
+
+        SqlSession session = Mockito.mock(SqlSession.class);
+        Mockito.when(session.getMapper(S3ObjectMapper.class)).thenReturn(s3ObjectMapper);
+        Mockito.when(session.getMapper(S3StreamObjectMapper.class)).thenReturn(s3StreamObjectMapper);
+
+        dataStore = Mockito.mock(DataStore.class);
+        Mockito.when(dataStore.batchDeleteS3Objects(ArgumentMatchers.anyList()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+        metadataStore = Mockito.mock(MetadataStore.class);
+        Mockito.when(metadataStore.config()).thenReturn(config);
+        Mockito.when(metadataStore.isLeader()).thenReturn(true);
+        Mockito.when(metadataStore.openSession()).thenReturn(session);
+        Mockito.when(metadataStore.maintainLeadershipWithSharedLock(session)).thenReturn(true);
+        Mockito.when(metadataStore.getDataStore()).thenReturn(dataStore);
+    }
+
+    private void markForDeletion(int count) {
+        for (long id = 1; id <= count; id++) {
+            pending.add(id);
+        }
+    }
+
+    @Test
+    public void testReclaim() throws ControllerException {
+        markForDeletion(6);
+        new ReclaimS3ObjectTask(metadataStore).process();
+
+        Assertions.assertTrue(pending.isEmpty());
+        Mockito.verify(dataStore, Mockito.times(3)).batchDeleteS3Objects(ArgumentMatchers.anyList());
+        // One checkpoint per page
+        Mockito.verify(s3StreamObjectMapper).batchDelete(List.of(1L, 2L, 3L, 4L));
+        Mockito.verify(s3StreamObjectMapper).batchDelete(List.of(5L, 6L));
+    }
+
+    @Test
+    public void testPartialDeleteFailure() throws ControllerException {
+        markForDeletion(6);
+        // Object 2 is not deleted, the batch of objects 3 and 4 fails as a whole.
+        Mockito.when(dataStore.batchDeleteS3Objects(ArgumentMatchers.anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            if (ids.contains(3L)) {
+                return CompletableFuture.failedFuture(new RuntimeException("Mocked failure"));
+            }
+            return CompletableFuture.completedFuture(ids.stream().filter(id -> id != 2L).toList());
+        });
+
+        new ReclaimS3ObjectTask(metadataStore).process();
+        // Objects failed to delete remain marked for the next round.
+        Assertions.assertEquals(Set.of(2L, 3L, 4L), pending);
+        Mockito.verify(s3StreamObjectMapper).batchDelete(List.of(1L));
+        Mockito.verify(s3StreamObjectMapper).batchDelete(List.of(5L, 6L));
+
+        Mockito.when(dataStore.batchDeleteS3Objects(ArgumentMatchers.anyList()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+        new ReclaimS3ObjectTask(metadataStore).process();
+        Assertions.assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void testLeadershipLost() throws ControllerException {
+        markForDeletion(6);
+        // Leadership is lost after the first page is deleted from object storage.
+        SqlSession session = metadataStore.openSession();
+        Mockito.when(metadataStore.maintainLeadershipWithSharedLock(session)).thenReturn(true, false);
+
+        new ReclaimS3ObjectTask(metadataStore).process();
+        Mockito.verify(dataStore, Mockito.times(2)).batchDeleteS3Objects(ArgumentMatchers.anyList());
+        Mockito.verify(s3ObjectMapper, Mockito.never()).deleteByCriteria(ArgumentMatchers.any());
+        Mockito.verify(s3StreamObjectMapper, Mockito.never()).batchDelete(ArgumentMatchers.anyList());
+        // The next leader deletes them again, which is idempotent.
+        Assertions.assertEquals(6, pending.size());
+    }
+
+    @Test
+    public void testRateLimit() throws ControllerException {
+        Mockito.when(config.reclaimS3ObjectRate()).thenReturn(10);
+        Mockito.when(config.reclaimS3ObjectPageSize()).thenReturn(100);
+        Mockito.when(config.reclaimS3ObjectBatchSize()).thenReturn(5);
+        markForDeletion(20);
+
+        long start = System.nanoTime();
+        new ReclaimS3ObjectTask(metadataStore).process();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(pending.isEmpty());
+        // 20 objects at 10 objects per second, of which the first batch is granted at once.
+        Assertions.assertTrue(elapsed >= 1000, "Reclaimed in " + elapsed + "ms");
+    }
+}
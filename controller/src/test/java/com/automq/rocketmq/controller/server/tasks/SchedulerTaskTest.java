@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.controller.server.tasks;
+
+import apache.rocketmq.controller.v1.AssignmentStatus;
+import com.automq.rocketmq.common.config.ControllerConfig;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.metadata.dao.QueueAssignment;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class SchedulerTaskTest {
+
+    private ControllerConfig config;
+
+    private SchedulerTask task;
+
+    // Load of queues, keyed by queue-id.
+    private final Map<Integer, Long> loads = new HashMap<>();
+
+    private final ToLongFunction<QueueAssignment> loadOf = assignment -> loads.getOrDefault(assignment.getQueueId(),
+        SchedulerTask.MIN_QUEUE_LOAD);
+
+    @BeforeEach
+    public void setUp() {
+        config = Mockito.mock(ControllerConfig.class);
+        Mockito.when(config.maxConcurrentReassignments()).thenReturn(4);
+        Mockito.when(config.workloadImbalanceRatio()).thenReturn(0.2);
+        Mockito.when(config.reassignmentCooldownInSecs()).thenReturn(300L);
+        MetadataStore metadataStore = Mockito.mock(MetadataStore.class);
+        Mockito.when(metadataStore.config()).thenReturn(config);
+        task = new SchedulerTask(metadataStore);
+        loads.clear();
+    }
+
+    private QueueAssignment assignment(int queueId, int nodeId, long load) {
+        QueueAssignment assignment = new QueueAssignment();
+        assignment.setTopicId(1);
+        assignment.setQueueId(queueId);
+        assignment.setSrcNodeId(nodeId);
+        assignment.setDstNodeId(nodeId);
+        assignment.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED);
+        loads.put(queueId, load);
+        return assignment;
+    }
+
+    private long nodeLoad(List<QueueAssignment> assignments) {
+        return assignments.stream().mapToLong(loadOf).sum();
+    }
+
+    @Test
+    public void testBalanceByTraffic() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        // Node 1 serves one hot queue and node 2 serves many idle ones, which are balanced in terms of queue count.
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 1000), assignment(1, 1, 100), assignment(2, 1, 100))));
+        workload.put(2, new ArrayList<>(List.of(assignment(3, 2, 10), assignment(4, 2, 10), assignment(5, 2, 10))));
+
+        List<QueueAssignment> moves = task.planBalance(workload, loadOf);
+        // The hot queue stays, as moving it only makes node 2 the hot spot. Its neighbours are moved instead.
+        Assertions.assertEquals(2, moves.size());
+        for (QueueAssignment move : moves) {
+            Assertions.assertNotEquals(0, move.getQueueId());
+            Assertions.assertEquals(1, move.getSrcNodeId());
+            Assertions.assertEquals(2, move.getDstNodeId());
+            Assertions.assertEquals(AssignmentStatus.ASSIGNMENT_STATUS_YIELDING, move.getStatus());
+        }
+        Assertions.assertEquals(1000, nodeLoad(workload.get(1)));
+        Assertions.assertEquals(230, nodeLoad(workload.get(2)));
+
+        // Nothing more to move in the next round.
+        moves.forEach(move -> move.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED));
+        Assertions.assertTrue(task.planBalance(workload, loadOf).isEmpty());
+    }
+
+    @Test
+    public void testLoadOfMovedQueue() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 100), assignment(1, 1, 100))));
+        workload.put(2, new ArrayList<>());
+        List<QueueAssignment> moves = task.planBalance(workload, loadOf);
+        Assertions.assertEquals(1, moves.size());
+        task.commitReassignments();
+
+        // Traffic of the moved queue is counted afresh on node 2, which does not mean node 2 is idle.
+        QueueAssignment moved = moves.get(0);
+        moved.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED);
+        loads.put(moved.getQueueId(), SchedulerTask.MIN_QUEUE_LOAD);
+        workload.get(1).add(assignment(2, 1, 50));
+        Assertions.assertTrue(task.planBalance(workload, loadOf).isEmpty());
+    }
+
+    @Test
+    public void testHysteresis() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 110))));
+        workload.put(2, new ArrayList<>(List.of(assignment(1, 2, 90))));
+        Assertions.assertTrue(task.planBalance(workload, loadOf).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentReassignmentCap() {
+        Mockito.when(config.maxConcurrentReassignments()).thenReturn(2);
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        List<QueueAssignment> hot = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hot.add(assignment(i, 1, 100));
+        }
+        QueueAssignment yielding = assignment(10, 1, 100);
+        yielding.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_YIELDING);
+        workload.put(1, hot);
+        workload.put(2, new ArrayList<>(List.of(yielding)));
+
+        // One reassignment is in progress already.
+        Assertions.assertEquals(1, task.planBalance(workload, loadOf).size());
+    }
+
+    @Test
+    public void testCoolDown() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 100), assignment(1, 1, 100))));
+        workload.put(2, new ArrayList<>());
+        List<QueueAssignment> moves = task.planBalance(workload, loadOf);
+        Assertions.assertEquals(1, moves.size());
+        task.commitReassignments();
+
+        // Traffic shifts, but the queue just moved shall stay where it is.
+        QueueAssignment moved = moves.get(0);
+        moved.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED);
+        loads.put(moved.getQueueId(), 1000L);
+        workload.get(2).add(assignment(2, 2, 10));
+        Assertions.assertTrue(task.planBalance(workload, loadOf).stream()
+            .noneMatch(assignment -> assignment.getQueueId() == moved.getQueueId()));
+    }
+
+    @Test
+    public void testCoolDownAfterCommit() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 100), assignment(1, 1, 100))));
+        workload.put(2, new ArrayList<>());
+        List<QueueAssignment> moves = task.planBalance(workload, loadOf);
+        Assertions.assertEquals(1, moves.size());
+
+        // The reassignment fails to commit, so the queue does not start its cool-down and may be moved again.
+        QueueAssignment moved = moves.get(0);
+        workload.get(2).remove(moved);
+        moved.setDstNodeId(1);
+        moved.setStatus(AssignmentStatus.ASSIGNMENT_STATUS_ASSIGNED);
+        workload.get(1).add(moved);
+        // The other queue turns too hot to move.
+        workload.get(1).stream()
+            .filter(assignment -> assignment.getQueueId() != moved.getQueueId())
+            .forEach(assignment -> loads.put(assignment.getQueueId(), 1000L));
+        moves = task.planBalance(workload, loadOf);
+        Assertions.assertEquals(1, moves.size());
+        Assertions.assertEquals(moved.getQueueId(), moves.get(0).getQueueId());
+    }
+
+    @Test
+    public void testPlanOrphans() {
+        Map<Integer, List<QueueAssignment>> workload = new HashMap<>();
+        workload.put(1, new ArrayList<>(List.of(assignment(0, 1, 500))));
+        workload.put(2, new ArrayList<>());
+        List<QueueAssignment> orphans = List.of(assignment(1, 3, 400), assignment(2, 3, 300), assignment(3, 3, 200));
+
+        List<QueueAssignment> moves = SchedulerTask.planOrphans(workload, orphans, loadOf);
+        Assertions.assertEquals(3, moves.size());
+        // The heaviest orphan goes first onto the least loaded node.
+        Assertions.assertEquals(2, orphans.get(0).getDstNodeId());
+        Assertions.assertEquals(2, orphans.get(1).getDstNodeId());
+        Assertions.assertEquals(1, orphans.get(2).getDstNodeId());
+        Assertions.assertEquals(700, nodeLoad(workload.get(1)));
+        Assertions.assertEquals(700, nodeLoad(workload.get(2)));
+    }
+}
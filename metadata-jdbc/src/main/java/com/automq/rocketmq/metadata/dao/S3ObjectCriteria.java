@@ -26,6 +26,13 @@ public class S3ObjectCriteria {
 
     Date expiredTimestamp;
 
+    /**
+     * Only objects whose id is greater than this one, such that objects can be paged through in the order of id.
+     */
+    Long afterId;
+
+    Integer limit;
+
     public static class S3ObjectCriteriaBuilder {
         S3ObjectCriteriaBuilder() {
 
@@ -59,6 +66,16 @@ public class S3ObjectCriteria {
             criteria.expiredTimestamp = expiredTimestamp;
             return this;
         }
+
+        public S3ObjectCriteriaBuilder withAfterId(long afterId) {
+            criteria.afterId = afterId;
+            return this;
+        }
+
+        public S3ObjectCriteriaBuilder withLimit(int limit) {
+            criteria.limit = limit;
+            return this;
+        }
     }
 
     public static S3ObjectCriteriaBuilder newBuilder() {
@@ -72,4 +89,20 @@ public class S3ObjectCriteria {
     public List<Long> getIds() {
         return ids;
     }
+
+    public S3ObjectState getState() {
+        return state;
+    }
+
+    public Date getExpiredTimestamp() {
+        return expiredTimestamp;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
 }
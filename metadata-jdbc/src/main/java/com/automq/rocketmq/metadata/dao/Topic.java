@@ -22,6 +22,11 @@ public class Topic {
 
     private Integer retentionHours;
 
+    /**
+     * Max bytes of data retained per queue, zero means unlimited.
+     */
+    private Long retentionBytes;
+
     private TopicStatus status = TopicStatus.TOPIC_STATUS_ACTIVE;
     private Date createTime;
     private Date updateTime;
@@ -30,6 +35,7 @@ public class Topic {
 
     public Topic() {
         retentionHours = 72;
+        retentionBytes = 0L;
     }
 
     public long getId() {
@@ -64,6 +70,14 @@ public class Topic {
         this.retentionHours = retentionHours;
     }
 
+    public Long getRetentionBytes() {
+        return retentionBytes;
+    }
+
+    public void setRetentionBytes(Long retentionBytes) {
+        this.retentionBytes = retentionBytes;
+    }
+
     public TopicStatus getStatus() {
         return status;
     }
@@ -19,6 +19,15 @@ public interface GroupProgressMapper {
 
     int createOrUpdate(GroupProgress progress);
 
+    /**
+     * Upsert multiple progress rows in a single statement. Existing offsets are only moved forward; use
+     * {@link #createOrUpdate(GroupProgress)} to rewind.
+     *
+     * @param progresses Progress rows to create or update, must not be empty
+     * @return Affected rows, as reported by the JDBC driver
+     */
+    int batchCreateOrUpdate(@Param("progresses") List<GroupProgress> progresses);
+
     List<GroupProgress> list(@Param("groupId") Long groupId, @Param("topicId") Long topicId);
 
     int delete(@Param("groupId")Long groupId, @Param("topicId") Long topicId);
@@ -12,8 +12,10 @@
 package com.automq.rocketmq.metadata.mapper;
 
 import com.automq.rocketmq.metadata.dao.Range;
+import com.automq.rocketmq.metadata.dao.Stream;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RangeMapper {
@@ -48,4 +50,20 @@ public interface RangeMapper {
         @Param("offset") Long offset);
 
     void update(Range range);
+
+    /**
+     * List current ranges of the given streams, identified by stream-id and range-id of each stream.
+     *
+     * @param streams Streams
+     * @return Current ranges
+     */
+    List<Range> listCurrent(@Param("streams") Collection<Stream> streams);
+
+    /**
+     * Update end offsets of ranges, identified by primary key, in a single statement.
+     *
+     * @param ranges Ranges with end offset to update
+     * @return Number of ranges updated
+     */
+    int batchUpdateEndOffset(@Param("ranges") List<Range> ranges);
 }
@@ -13,6 +13,7 @@ package com.automq.rocketmq.metadata.mapper;
 
 import com.automq.rocketmq.metadata.dao.S3Object;
 import com.automq.rocketmq.metadata.dao.S3ObjectCriteria;
+import java.util.Collection;
 import java.util.Date;
 import org.apache.ibatis.annotations.Param;
 
@@ -26,12 +27,26 @@ public interface S3ObjectMapper {
 
     int commit(S3Object s3Object);
 
+    List<S3Object> listByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Commit prepared objects in a single statement.
+     *
+     * @param objects Objects to commit, with stream-id, object size and committed timestamp set
+     * @return Number of objects committed
+     */
+    int batchCommit(@Param("objects") List<S3Object> objects);
+
+    int batchMarkToDelete(@Param("ids") Collection<Long> ids, @Param("time") Date time);
+
     int markToDelete(@Param("id") long id, @Param("time") Date time);
 
     int deleteByCriteria(@Param("criteria")S3ObjectCriteria criteria);
 
     List<S3Object> list(@Param("criteria") S3ObjectCriteria criteria);
 
+    long count(@Param("criteria") S3ObjectCriteria criteria);
+
     int prepare(S3Object s3Object);
 
     long totalDataSize(@Param("streamId") long streamId);
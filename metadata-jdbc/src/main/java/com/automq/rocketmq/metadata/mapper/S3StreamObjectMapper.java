@@ -14,6 +14,7 @@ package com.automq.rocketmq.metadata.mapper;
 import com.automq.rocketmq.metadata.dao.S3StreamObject;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -35,13 +36,45 @@ public interface S3StreamObjectMapper {
 
     int commit(S3StreamObject s3StreamObject);
 
+    /**
+     * Create stream object records in a single statement.
+     *
+     * @param s3StreamObjects Stream objects to create
+     * @return Number of records created
+     */
+    int batchCommit(@Param("objects") List<S3StreamObject> s3StreamObjects);
+
     S3StreamObject getByStreamAndObject(@Param("streamId") long streamId, @Param("objectId") long objectId);
 
     int delete(@Param("id") Long id, @Param("streamId") Long streamId, @Param("objectId") Long objectId);
 
     S3StreamObject getByObjectId(long objectId);
 
+    List<S3StreamObject> listByObjectIds(@Param("objectIds") List<Long> objectIds);
+
     int batchDelete(@Param("objectIds") List<Long> objectIds);
 
     List<S3StreamObject> recyclable(@Param("streamIds") List<Long> streamIds, @Param("threshold") Date threshold);
+
+    /**
+     * Find the earliest base data timestamp of each stream.
+     *
+     * @param streamIds Streams to look up, all streams if null
+     * @param since     Only objects committed since the given time if not null
+     * @return Stream-id and base data timestamp of the oldest object of each stream
+     */
+    List<S3StreamObject> earliest(@Param("streamIds") Collection<Long> streamIds, @Param("since") Date since);
+
+    /**
+     * List objects of the given streams whose base data timestamp is before the threshold.
+     */
+    List<S3StreamObject> expired(@Param("streamIds") Collection<Long> streamIds, @Param("threshold") Date threshold);
+
+    /**
+     * Sum up size of stream objects of each stream.
+     *
+     * @param streamIds Streams
+     * @return Stream-id and total object size of each stream
+     */
+    List<S3StreamObject> dataSize(@Param("streamIds") Collection<Long> streamIds);
 }
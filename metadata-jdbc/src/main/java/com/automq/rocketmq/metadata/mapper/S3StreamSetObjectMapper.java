@@ -14,6 +14,7 @@ package com.automq.rocketmq.metadata.mapper;
 import com.automq.rocketmq.metadata.dao.S3StreamSetObject;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface S3StreamSetObjectMapper {
@@ -22,10 +23,14 @@ public interface S3StreamSetObjectMapper {
 
     S3StreamSetObject getByObjectId(long objectId);
 
+    List<S3StreamSetObject> listByObjectIds(@Param("objectIds") Collection<Long> objectIds);
+
     int delete(@Param("objectId") Long objectId,
         @Param("nodeId") Integer nodeId,
         @Param("sequenceId") Long sequenceId);
 
+    int batchDelete(@Param("objectIds") Collection<Long> objectIds);
+
     List<S3StreamSetObject> list(@Param("nodeId") Integer nodeId, @Param("sequenceId") Long sequenceId);
 
     int commit(S3StreamSetObject s3StreamSetObject);
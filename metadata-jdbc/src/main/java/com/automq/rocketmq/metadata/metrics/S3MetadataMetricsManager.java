@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.metadata.metrics;
+
+import com.automq.rocketmq.common.MetricsManager;
+import com.automq.rocketmq.common.metrics.NopLongHistogram;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.View;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Metrics of the S3 metadata service.
+ */
+public class S3MetadataMetricsManager implements MetricsManager {
+    public static final String HISTOGRAM_COMMIT_LATENCY = "rocketmq_metadata_commit_latency";
+
+    public static final String LABEL_OPERATION = "operation";
+    public static final String LABEL_PHASE = "phase";
+
+    public static final String OPERATION_COMMIT_STREAM_SET_OBJECT = "commit_stream_set_object";
+    public static final String OPERATION_COMMIT_STREAM_OBJECT = "commit_stream_object";
+
+    /**
+     * Bulk reads of objects, streams and ranges touched by the commit, along with validation.
+     */
+    public static final String PHASE_LOAD = "load";
+
+    /**
+     * Queue mutations to the batch executor.
+     */
+    public static final String PHASE_WRITE = "write";
+
+    /**
+     * Flush queued mutations and commit the transaction.
+     */
+    public static final String PHASE_FLUSH = "flush";
+
+    public static final String PHASE_TOTAL = "total";
+
+    public static LongHistogram commitLatency = new NopLongHistogram();
+
+    private static Supplier<AttributesBuilder> attributesBuilderSupplier;
+
+    public static AttributesBuilder newAttributesBuilder() {
+        if (attributesBuilderSupplier == null) {
+            return Attributes.builder();
+        }
+        return attributesBuilderSupplier.get();
+    }
+
+    public static void recordCommitLatency(String operation, String phase, long nanos) {
+        commitLatency.record(nanos, newAttributesBuilder()
+            .put(LABEL_OPERATION, operation)
+            .put(LABEL_PHASE, phase)
+            .build());
+    }
+
+    public static CommitTimer startCommit(String operation) {
+        return new CommitTimer(operation);
+    }
+
+    /**
+     * Measure consecutive phases of a commit.
+     */
+    public static class CommitTimer {
+        private final String operation;
+
+        private final long start;
+
+        private long last;
+
+        CommitTimer(String operation) {
+            this.operation = operation;
+            this.start = System.nanoTime();
+            this.last = start;
+        }
+
+        /**
+         * Record time elapsed since the previous phase ended.
+         */
+        public void phase(String phase) {
+            long now = System.nanoTime();
+            recordCommitLatency(operation, phase, now - last);
+            last = now;
+        }
+
+        public void total() {
+            recordCommitLatency(operation, PHASE_TOTAL, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void initAttributesBuilder(Supplier<AttributesBuilder> attributesBuilderSupplier) {
+        S3MetadataMetricsManager.attributesBuilderSupplier = attributesBuilderSupplier;
+    }
+
+    @Override
+    public void initStaticMetrics(Meter meter) {
+        commitLatency = meter.histogramBuilder(HISTOGRAM_COMMIT_LATENCY)
+            .setDescription("Latency of committing objects to metadata, by phase")
+            .setUnit("nanoseconds")
+            .ofLongs()
+            .build();
+    }
+
+    @Override
+    public void initDynamicMetrics(Meter meter) {
+    }
+
+    public static List<Pair<InstrumentSelector, View>> getMetricsView() {
+        List<Double> latencyBuckets = Arrays.asList(
+            (double) Duration.ofMillis(1).toNanos(),
+            (double) Duration.ofMillis(2).toNanos(),
+            (double) Duration.ofMillis(5).toNanos(),
+            (double) Duration.ofMillis(10).toNanos(),
+            (double) Duration.ofMillis(20).toNanos(),
+            (double) Duration.ofMillis(50).toNanos(),
+            (double) Duration.ofMillis(100).toNanos(),
+            (double) Duration.ofMillis(200).toNanos(),
+            (double) Duration.ofMillis(500).toNanos(),
+            (double) Duration.ofSeconds(1).toNanos(),
+            (double) Duration.ofSeconds(5).toNanos()
+        );
+        InstrumentSelector selector = InstrumentSelector.builder()
+            .setType(InstrumentType.HISTOGRAM)
+            .setName(HISTOGRAM_COMMIT_LATENCY)
+            .build();
+        View view = View.builder()
+            .setAggregation(Aggregation.explicitBucketHistogram(latencyBuckets))
+            .build();
+        return List.of(Pair.of(selector, view));
+    }
+}
@@ -25,12 +25,14 @@ import com.automq.rocketmq.common.system.StreamConstants;
 import com.automq.rocketmq.metadata.dao.Range;
 import com.automq.rocketmq.metadata.dao.S3Object;
 import com.automq.rocketmq.metadata.dao.Stream;
+import com.automq.rocketmq.metadata.dao.StreamCriteria;
 import com.automq.rocketmq.metadata.mapper.RangeMapper;
 import com.automq.rocketmq.metadata.mapper.S3ObjectMapper;
 import com.automq.rocketmq.metadata.mapper.S3StreamObjectMapper;
 import com.automq.rocketmq.metadata.mapper.S3StreamSetObjectMapper;
 import com.automq.rocketmq.metadata.mapper.SequenceMapper;
 import com.automq.rocketmq.metadata.mapper.StreamMapper;
+import com.automq.rocketmq.metadata.metrics.S3MetadataMetricsManager;
 import com.automq.rocketmq.metadata.service.cache.S3ObjectCache;
 import com.automq.rocketmq.metadata.service.cache.S3StreamObjectCache;
 import com.automq.rocketmq.metadata.service.cache.S3StreamSetObjectCache;
@@ -41,6 +43,7 @@ import com.sun.management.HotSpotDiagnosticMXBean;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Comparator;
@@ -56,6 +59,8 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.slf4j.Logger;
@@ -165,7 +170,10 @@ public class DefaultS3MetadataService implements S3MetadataService {
         }
 
         CompletableFuture<Void> future = new CompletableFuture<>();
-        try (SqlSession session = sessionFactory.openSession()) {
+        S3MetadataMetricsManager.CommitTimer timer =
+            S3MetadataMetricsManager.startCommit(S3MetadataMetricsManager.OPERATION_COMMIT_STREAM_SET_OBJECT);
+        // Mutations are queued by the batch executor and sent to the database in bulk on commit.
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH)) {
             S3StreamSetObjectMapper s3StreamSetObjectMapper = session.getMapper(S3StreamSetObjectMapper.class);
             S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
             S3StreamObjectMapper s3StreamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
@@ -205,31 +213,48 @@ public class DefaultS3MetadataService implements S3MetadataService {
                 reduced.put(streamId, new ImmutablePair<>(start, current));
             });
 
-            extendRange(session, reduced);
+            // Load all rows touched by this commit in bulk before queueing any mutation, as queries flush the batch.
+            List<Range> extendedRanges = extendRange(session, reduced);
+
+            List<Long> objectIds = new ArrayList<>();
+            if (objectId != S3Constants.NOOP_OBJECT_ID) {
+                objectIds.add(objectId);
+            }
+            streamObjects.forEach(item -> objectIds.add(item.getObjectId()));
+            Map<Long, S3Object> objects = listObjectsById(s3ObjectMapper, objectIds);
 
             // commit S3 object
-            if (objectId != S3Constants.NOOP_OBJECT_ID && !commitObject(objectId, StreamConstants.NOOP_STREAM_ID, streamSetObject.getObjectSize(), session)) {
-                ControllerException e = new ControllerException(Code.ILLEGAL_STATE_VALUE,
-                    String.format("S3StreamSetObject[object-id=%d] is not ready for commit", streamSetObject.getObjectId()));
-                future.completeExceptionally(e);
-                return future;
+            Date commitDate = new Date();
+            List<S3Object> toCommit = new ArrayList<>();
+            if (objectId != S3Constants.NOOP_OBJECT_ID) {
+                S3Object object = objects.get(objectId);
+                if (!readyToCommit(objectId, object, commitDate)) {
+                    ControllerException e = new ControllerException(Code.ILLEGAL_STATE_VALUE,
+                        String.format("S3StreamSetObject[object-id=%d] is not ready for commit", streamSetObject.getObjectId()));
+                    future.completeExceptionally(e);
+                    return future;
+                }
+                toCommit.add(toCommitted(object, StreamConstants.NOOP_STREAM_ID, streamSetObject.getObjectSize(), commitDate));
+            }
+
+            for (S3StreamObject s3StreamObject : streamObjects) {
+                long oId = s3StreamObject.getObjectId();
+                S3Object object = objects.get(oId);
+                if (!readyToCommit(oId, object, commitDate)) {
+                    String msg = String.format("S3StreamObject[object-id=%d] is not ready to commit", oId);
+                    ControllerException e = new ControllerException(Code.ILLEGAL_STATE_VALUE, msg);
+                    future.completeExceptionally(e);
+                    return future;
+                }
+                toCommit.add(toCommitted(object, s3StreamObject.getStreamId(), s3StreamObject.getObjectSize(), commitDate));
             }
 
             long dataTs = System.currentTimeMillis();
             long sequenceId = objectId;
-            if (!Objects.isNull(compactedObjects) && !compactedObjects.isEmpty()) {
-                List<com.automq.rocketmq.metadata.dao.S3StreamSetObject> s3StreamSetObjects = compactedObjects.stream()
-                    .map(id -> {
-                        // mark destroy compacted object
-                        S3Object object = s3ObjectMapper.getById(id);
-                        object.setState(S3ObjectState.BOS_WILL_DELETE);
-                        object.setMarkedForDeletionTimestamp(new Date());
-                        s3ObjectMapper.markToDelete(object.getId(), new Date());
-
-                        return s3StreamSetObjectMapper.getByObjectId(id);
-                    })
-                    .toList();
-
+            boolean compacted = !Objects.isNull(compactedObjects) && !compactedObjects.isEmpty();
+            if (compacted) {
+                List<com.automq.rocketmq.metadata.dao.S3StreamSetObject> s3StreamSetObjects =
+                    s3StreamSetObjectMapper.listByObjectIds(compactedObjects);
                 if (!s3StreamSetObjects.isEmpty()) {
                     // update dataTs to the min compacted object's dataTs
                     dataTs = s3StreamSetObjects.stream()
@@ -240,76 +265,91 @@ public class DefaultS3MetadataService implements S3MetadataService {
                     sequenceId = s3StreamSetObjects.stream().mapToLong(com.automq.rocketmq.metadata.dao.S3StreamSetObject::getSequenceId).min().getAsLong();
                 }
             }
+            timer.phase(S3MetadataMetricsManager.PHASE_LOAD);
+
+            if (!extendedRanges.isEmpty()) {
+                session.getMapper(RangeMapper.class).batchUpdateEndOffset(extendedRanges);
+            }
+
+            if (!toCommit.isEmpty()) {
+                s3ObjectMapper.batchCommit(toCommit);
+            }
+
+            // mark destroy compacted objects
+            if (compacted) {
+                s3ObjectMapper.batchMarkToDelete(compactedObjects, new Date());
+            }
 
             Map<Long, List<com.automq.rocketmq.metadata.dao.S3StreamObject>> toCache =
                 new HashMap<>();
 
-            // commit stream objects;
+            // create stream object records
             if (!streamObjects.isEmpty()) {
-                for (apache.rocketmq.controller.v1.S3StreamObject s3StreamObject : streamObjects) {
-                    long oId = s3StreamObject.getObjectId();
-                    long objectSize = s3StreamObject.getObjectSize();
-                    long streamId = s3StreamObject.getStreamId();
-                    if (!commitObject(oId, streamId, objectSize, session)) {
-                        String msg = String.format("S3StreamObject[object-id=%d] is not ready to commit", oId);
-                        ControllerException e = new ControllerException(Code.ILLEGAL_STATE_VALUE, msg);
-                        future.completeExceptionally(e);
-                        return future;
-                    }
-                }
-                // create stream object records
+                List<com.automq.rocketmq.metadata.dao.S3StreamObject> records = new ArrayList<>();
                 streamObjects.forEach(s3StreamObject -> {
                     com.automq.rocketmq.metadata.dao.S3StreamObject object =
                         new com.automq.rocketmq.metadata.dao.S3StreamObject();
                     object.setStreamId(s3StreamObject.getStreamId());
                     object.setObjectId(s3StreamObject.getObjectId());
-                    object.setCommittedTimestamp(new Date());
+                    object.setCommittedTimestamp(commitDate);
                     object.setStartOffset(s3StreamObject.getStartOffset());
-                    object.setBaseDataTimestamp(new Date());
+                    object.setBaseDataTimestamp(commitDate);
                     object.setEndOffset(s3StreamObject.getEndOffset());
                     object.setObjectSize(s3StreamObject.getObjectSize());
-                    s3StreamObjectMapper.commit(object);
+                    records.add(object);
                     toCache.computeIfAbsent(object.getStreamId(), streamId -> new ArrayList<>()).add(object);
                 });
+                s3StreamObjectMapper.batchCommit(records);
             }
 
             // generate compacted objects' remove record ...
-            if (!Objects.isNull(compactedObjects) && !compactedObjects.isEmpty()) {
-                compactedObjects.forEach(id -> s3StreamSetObjectMapper.delete(id, null, null));
+            if (compacted) {
+                s3StreamSetObjectMapper.batchDelete(compactedObjects);
             }
 
             // update broker's StreamSet object
+            S3StreamSetObject committed = null;
             if (objectId != S3Constants.NOOP_OBJECT_ID) {
                 // generate broker's StreamSet object record
                 com.automq.rocketmq.metadata.dao.S3StreamSetObject s3StreamSetObject = new com.automq.rocketmq.metadata.dao.S3StreamSetObject();
                 s3StreamSetObject.setObjectId(objectId);
                 s3StreamSetObject.setObjectSize(streamSetObject.getObjectSize());
                 s3StreamSetObject.setBaseDataTimestamp(new Date(dataTs));
-                s3StreamSetObject.setCommittedTimestamp(new Date());
+                s3StreamSetObject.setCommittedTimestamp(commitDate);
                 s3StreamSetObject.setNodeId(brokerId);
                 s3StreamSetObject.setSequenceId(sequenceId);
                 String subStreams = JsonFormat.printer().print(streamSetObject.getSubStreams());
                 s3StreamSetObject.setSubStreams(subStreams);
                 s3StreamSetObjectMapper.create(s3StreamSetObject);
 
-                // Cache StreamSet object
-                s3StreamSetObjectCache.onCommit(streamSetObject.toBuilder()
+                committed = streamSetObject.toBuilder()
                     .setBaseDataTimestamp(s3StreamSetObject.getBaseDataTimestamp().getTime())
                     .setCommittedTimestamp(s3StreamSetObject.getCommittedTimestamp().getTime())
                     .setSequenceId(sequenceId)
-                    .build());
+                    .build();
             }
-            session.commit();
+            timer.phase(S3MetadataMetricsManager.PHASE_WRITE);
+
+            flush(session, toCommit.size());
+            timer.phase(S3MetadataMetricsManager.PHASE_FLUSH);
 
             // Update Cache
+            s3ObjectCache.onObjectAdd(toCommit);
+            if (null != committed) {
+                s3StreamSetObjectCache.onCommit(committed);
+            }
             for (Map.Entry<Long, List<com.automq.rocketmq.metadata.dao.S3StreamObject>> entry
                 : toCache.entrySet()) {
                 s3StreamObjectCache.cache(entry.getKey(), entry.getValue());
             }
             s3StreamSetObjectCache.onCompact(compactedObjects);
+            timer.total();
             LOGGER.info("broker[broke-id={}] commit StreamSet object[object-id={}] success, compacted objects[{}], stream objects[{}]",
                 brokerId, streamSetObject.getObjectId(), compactedObjects, streamObjects);
             future.complete(null);
+        } catch (ControllerException e) {
+            LOGGER.error("CommitStreamSetObject failed", e);
+            future.completeExceptionally(e);
         } catch (Exception e) {
             LOGGER.error("CommitStreamSetObject failed", e);
             ControllerException ex = new ControllerException(Code.INTERNAL_VALUE, "CommitStreamSetObject failed" + e.getMessage());
@@ -324,7 +364,9 @@ public class DefaultS3MetadataService implements S3MetadataService {
             compactedObjects);
 
         CompletableFuture<Void> future = new CompletableFuture<>();
-        try (SqlSession session = sessionFactory.openSession()) {
+        S3MetadataMetricsManager.CommitTimer timer =
+            S3MetadataMetricsManager.startCommit(S3MetadataMetricsManager.OPERATION_COMMIT_STREAM_OBJECT);
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH)) {
             if (streamObject.getObjectId() == S3Constants.NOOP_OBJECT_ID) {
                 LOGGER.error("S3StreamObject[object-id={}] is null or objectId is unavailable", streamObject.getObjectId());
                 String msg = String.format("S3StreamObject[object-id=%d] is null or objectId is unavailable",
@@ -335,65 +377,71 @@ public class DefaultS3MetadataService implements S3MetadataService {
             }
 
             long committedTs = System.currentTimeMillis();
+            Date commitDate = new Date(committedTs);
             S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
             S3StreamObjectMapper s3StreamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
 
             // commit object
-            if (!commitObject(streamObject.getObjectId(), streamObject.getStreamId(), streamObject.getObjectSize(), session)) {
+            S3Object object = s3ObjectMapper.getById(streamObject.getObjectId());
+            if (!readyToCommit(streamObject.getObjectId(), object, commitDate)) {
                 String msg = String.format("S3StreamObject[object-id=%d] is not ready for commit",
                     streamObject.getObjectId());
                 ControllerException e = new ControllerException(Code.ILLEGAL_STATE_VALUE, msg);
                 future.completeExceptionally(e);
                 return future;
             }
-            long dataTs = committedTs;
-            if (!Objects.isNull(compactedObjects) && !compactedObjects.isEmpty()) {
-                dataTs = compactedObjects.stream()
-                    .map(id -> {
-                        // mark destroy compacted object
-                        S3Object object = s3ObjectMapper.getById(id);
-                        object.setState(S3ObjectState.BOS_WILL_DELETE);
-                        object.setMarkedForDeletionTimestamp(new Date());
-                        s3ObjectMapper.markToDelete(object.getId(), new Date());
+            toCommitted(object, streamObject.getStreamId(), streamObject.getObjectSize(), commitDate);
 
-                        // update dataTs to the min compacted object's dataTs
-                        com.automq.rocketmq.metadata.dao.S3StreamObject s3StreamObject =
-                            s3StreamObjectMapper.getByObjectId(id);
-                        return s3StreamObject.getBaseDataTimestamp().getTime();
-                    })
-                    .min(Long::compareTo).get();
+            long dataTs = committedTs;
+            boolean compacted = !Objects.isNull(compactedObjects) && !compactedObjects.isEmpty();
+            if (compacted) {
+                // update dataTs to the min compacted object's dataTs
+                dataTs = s3StreamObjectMapper.listByObjectIds(compactedObjects).stream()
+                    .map(s3StreamObject -> s3StreamObject.getBaseDataTimestamp().getTime())
+                    .min(Long::compareTo)
+                    .orElse(dataTs);
             }
+            timer.phase(S3MetadataMetricsManager.PHASE_LOAD);
 
-            List<com.automq.rocketmq.metadata.dao.S3StreamObject> toCache = new ArrayList<>();
+            s3ObjectMapper.batchCommit(List.of(object));
+            if (compacted) {
+                // mark destroy compacted object
+                s3ObjectMapper.batchMarkToDelete(compactedObjects, new Date());
+            }
 
             // create a new S3StreamObject to replace committed ones
-            if (streamObject.getObjectId() != S3Constants.NOOP_OBJECT_ID) {
-                com.automq.rocketmq.metadata.dao.S3StreamObject newS3StreamObj =
-                    new com.automq.rocketmq.metadata.dao.S3StreamObject();
-                newS3StreamObj.setStreamId(streamObject.getStreamId());
-                newS3StreamObj.setObjectId(streamObject.getObjectId());
-                newS3StreamObj.setObjectSize(streamObject.getObjectSize());
-                newS3StreamObj.setStartOffset(streamObject.getStartOffset());
-                newS3StreamObj.setEndOffset(streamObject.getEndOffset());
-                newS3StreamObj.setBaseDataTimestamp(new Date(dataTs));
-                newS3StreamObj.setCommittedTimestamp(new Date(committedTs));
-                s3StreamObjectMapper.create(newS3StreamObj);
-                toCache.add(newS3StreamObj);
-            }
+            com.automq.rocketmq.metadata.dao.S3StreamObject newS3StreamObj =
+                new com.automq.rocketmq.metadata.dao.S3StreamObject();
+            newS3StreamObj.setStreamId(streamObject.getStreamId());
+            newS3StreamObj.setObjectId(streamObject.getObjectId());
+            newS3StreamObj.setObjectSize(streamObject.getObjectSize());
+            newS3StreamObj.setStartOffset(streamObject.getStartOffset());
+            newS3StreamObj.setEndOffset(streamObject.getEndOffset());
+            newS3StreamObj.setBaseDataTimestamp(new Date(dataTs));
+            newS3StreamObj.setCommittedTimestamp(commitDate);
+            s3StreamObjectMapper.create(newS3StreamObj);
 
             // delete the compactedObjects of S3Stream
-            if (!Objects.isNull(compactedObjects) && !compactedObjects.isEmpty()) {
-                compactedObjects.forEach(id -> s3StreamObjectMapper.delete(null, null, id));
+            if (compacted) {
+                s3StreamObjectMapper.batchDelete(compactedObjects);
             }
-            session.commit();
+            timer.phase(S3MetadataMetricsManager.PHASE_WRITE);
+
+            flush(session, 1);
+            timer.phase(S3MetadataMetricsManager.PHASE_FLUSH);
 
             // Update Cache
-            s3StreamObjectCache.cache(streamObject.getStreamId(), toCache);
+            s3ObjectCache.onObjectAdd(List.of(object));
+            s3StreamObjectCache.cache(streamObject.getStreamId(), List.of(newS3StreamObj));
             s3StreamObjectCache.onCompact(streamObject.getStreamId(), compactedObjects);
+            timer.total();
 
             LOGGER.info("S3StreamObject[object-id={}] commit success, compacted objects: {}",
                 streamObject.getObjectId(), compactedObjects);
             future.complete(null);
+        } catch (ControllerException e) {
+            LOGGER.error("CommitStream failed", e);
+            future.completeExceptionally(e);
         } catch (Exception e) {
             LOGGER.error("CommitStream failed", e);
             ControllerException ex = new ControllerException(Code.INTERNAL_VALUE, "CommitStream failed" + e.getMessage());
@@ -426,57 +474,78 @@ public class DefaultS3MetadataService implements S3MetadataService {
         long endOffset, int limit) {
         CompletableFuture<List<S3StreamSetObject>> future = new CompletableFuture<>();
         try (SqlSession session = sessionFactory.openSession()) {
-            RangeMapper rangeMapper = session.getMapper(RangeMapper.class);
-
-            List<Integer> nodes = rangeMapper.listByStreamId(streamId)
-                .stream()
-                .filter(range -> range.getEndOffset() > startOffset && range.getStartOffset() < endOffset)
-                .mapToInt(Range::getNodeId)
-                .distinct()
-                .boxed()
-                .toList();
-
             S3StreamSetObjectMapper s3StreamSetObjectMapper = session.getMapper(S3StreamSetObjectMapper.class);
             List<S3StreamSetObject> finalStreamSetObjects = new ArrayList<>();
-            for (int nodeId : nodes) {
-                List<com.automq.rocketmq.metadata.dao.S3StreamSetObject> streamSetObjects = s3StreamSetObjectMapper.list(nodeId, null);
-                streamSetObjects.stream()
-                    .map(s3StreamSetObject -> {
-                        try {
-                            Map<Long, SubStream> subStreams = Helper.decode(s3StreamSetObject.getSubStreams()).getSubStreamsMap();
-                            Map<Long, SubStream> streamsRecords = new HashMap<>();
-                            if (subStreams.containsKey(streamId)) {
-                                SubStream subStream = subStreams.get(streamId);
-                                if (subStream.getStartOffset() <= endOffset && subStream.getEndOffset() > startOffset) {
-                                    streamsRecords.put(streamId, subStream);
-                                }
-                            }
-                            if (!streamsRecords.isEmpty()) {
-                                return Helper.buildS3StreamSetObject(s3StreamSetObject, SubStreams.newBuilder()
-                                    .putAllSubStreams(streamsRecords)
-                                    .build());
-                            }
-                        } catch (InvalidProtocolBufferException e) {
-                            LOGGER.error("Failed to deserialize SubStreams", e);
-                        }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .forEach(finalStreamSetObjects::add);
+            for (int nodeId : nodesOf(session, streamId, startOffset, endOffset)) {
+                finalStreamSetObjects.addAll(listStreamSetObjects(s3StreamSetObjectMapper, nodeId, streamId,
+                    startOffset, endOffset, limit));
             }
 
             // Sort by start-offset of the given stream
-            finalStreamSetObjects.sort((l, r) -> {
-                long lhs = l.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
-                long rhs = r.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
-                return Long.compare(lhs, rhs);
-            });
-
+            sortByStartOffset(finalStreamSetObjects, streamId);
             future.complete(finalStreamSetObjects.stream().limit(limit).toList());
         }
         return future;
     }
 
+    /**
+     * @return Nodes that have ranges of the given stream overlapping with [startOffset, endOffset).
+     */
+    private List<Integer> nodesOf(SqlSession session, long streamId, long startOffset, long endOffset) {
+        RangeMapper rangeMapper = session.getMapper(RangeMapper.class);
+        return rangeMapper.listByStreamId(streamId)
+            .stream()
+            .filter(range -> range.getEndOffset() > startOffset
+                && (endOffset == -1 || range.getStartOffset() < endOffset))
+            .mapToInt(Range::getNodeId)
+            .distinct()
+            .boxed()
+            .toList();
+    }
+
+    /**
+     * List StreamSet objects of the given node that have data of the stream within [startOffset, endOffset], each of
+     * which only carries the sub-stream of the stream. Served by the cache if it holds all objects of the node.
+     */
+    private List<S3StreamSetObject> listStreamSetObjects(S3StreamSetObjectMapper mapper, int nodeId, long streamId,
+        long startOffset, long endOffset, int limit) {
+        if (s3StreamSetObjectCache.loaded(nodeId)) {
+            return s3StreamSetObjectCache.list(streamId, startOffset, endOffset, limit);
+        }
+        return filterStreamSetObjects(mapper.list(nodeId, null), streamId, startOffset, endOffset);
+    }
+
+    private List<S3StreamSetObject> filterStreamSetObjects(
+        List<com.automq.rocketmq.metadata.dao.S3StreamSetObject> streamSetObjects, long streamId, long startOffset,
+        long endOffset) {
+        return streamSetObjects.stream()
+            .map(s3StreamSetObject -> {
+                try {
+                    Map<Long, SubStream> subStreams = Helper.decode(s3StreamSetObject.getSubStreams()).getSubStreamsMap();
+                    SubStream subStream = subStreams.get(streamId);
+                    if (null != subStream && subStream.getEndOffset() > startOffset
+                        && (endOffset == -1 || subStream.getStartOffset() <= endOffset)) {
+                        return Helper.buildS3StreamSetObject(s3StreamSetObject, SubStreams.newBuilder()
+                            .putSubStreams(streamId, subStream)
+                            .build());
+                    }
+                } catch (InvalidProtocolBufferException e) {
+                    LOGGER.error("Failed to deserialize SubStreams", e);
+                }
+                return null;
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static void sortByStartOffset(List<S3StreamSetObject> streamSetObjects, long streamId) {
+        streamSetObjects.sort((l, r) -> {
+            long lhs = l.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
+            long rhs = r.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
+            return Long.compare(lhs, rhs);
+        });
+    }
+
     public CompletableFuture<List<com.automq.rocketmq.metadata.dao.S3StreamObject>> listStreamObjects0(
         long streamId, long startOffset, long endOffset, int limit) {
         boolean skipCache = false;
@@ -530,9 +599,15 @@ public class DefaultS3MetadataService implements S3MetadataService {
             .build();
     }
 
-    private boolean commitObject(Long objectId, long streamId, long objectSize, SqlSession session) {
-        S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
-        S3Object s3Object = s3ObjectMapper.getById(objectId);
+    private Map<Long, S3Object> listObjectsById(S3ObjectMapper s3ObjectMapper, List<Long> objectIds) {
+        if (objectIds.isEmpty()) {
+            return Map.of();
+        }
+        return s3ObjectMapper.listByIds(objectIds).stream()
+            .collect(Collectors.toMap(S3Object::getId, object -> object));
+    }
+
+    private boolean readyToCommit(long objectId, S3Object s3Object, Date commitDate) {
         if (Objects.isNull(s3Object)) {
             LOGGER.error("object[object-id={}] not exist", objectId);
             return false;
@@ -547,44 +622,89 @@ public class DefaultS3MetadataService implements S3MetadataService {
             return false;
         }
 
-        Date commitDate = new Date();
         if (s3Object.getExpiredTimestamp().getTime() < commitDate.getTime()) {
             LOGGER.error("object[object-id={}] is expired", objectId);
             return false;
         }
+        return true;
+    }
 
+    private S3Object toCommitted(S3Object s3Object, long streamId, long objectSize, Date commitDate) {
         s3Object.setCommittedTimestamp(commitDate);
         s3Object.setStreamId(streamId);
         s3Object.setObjectSize(objectSize);
         s3Object.setState(S3ObjectState.BOS_COMMITTED);
-        boolean ok = s3ObjectMapper.commit(s3Object) == 1;
-        s3ObjectCache.onObjectAdd(List.of(s3Object));
-        return ok;
+        return s3Object;
     }
 
-    private void extendRange(SqlSession session, Map<Long, Pair<Long, Long>> segments) {
+    /**
+     * Flush queued mutations and commit the session.
+     * <p>
+     * Objects are verified to be prepared when loaded, yet they might be committed concurrently by another session in
+     * between. The conditional update of {@link S3ObjectMapper#batchCommit(List)} only changes prepared objects, so the
+     * transaction is rolled back if fewer objects than expected are committed.
+     *
+     * @param session         Session of the batch executor
+     * @param expectedObjects Number of objects expected to be committed
+     */
+    private void flush(SqlSession session, int expectedObjects) throws ControllerException {
+        String statement = S3ObjectMapper.class.getName() + ".batchCommit";
+        for (BatchResult result : session.flushStatements()) {
+            if (!statement.equals(result.getMappedStatement().getId())) {
+                continue;
+            }
+            for (int count : result.getUpdateCounts()) {
+                if (count != Statement.SUCCESS_NO_INFO && count != expectedObjects) {
+                    session.rollback(true);
+                    throw new ControllerException(Code.ILLEGAL_STATE_VALUE,
+                        String.format("Expected %d objects to commit, but %d are committed", expectedObjects, count));
+                }
+            }
+        }
+        session.commit();
+    }
+
+    /**
+     * Figure out current ranges of the given streams that need to be extended to cover the committed segments.
+     *
+     * @param session  Session
+     * @param segments Stream-id to committed segment
+     * @return Ranges with new end offsets
+     */
+    private List<Range> extendRange(SqlSession session, Map<Long, Pair<Long, Long>> segments) {
         if (segments.isEmpty()) {
-            return;
+            return List.of();
         }
         StreamMapper streamMapper = session.getMapper(StreamMapper.class);
         RangeMapper rangeMapper = session.getMapper(RangeMapper.class);
 
-        for (Map.Entry<Long, Pair<Long, Long>> entry : segments.entrySet()) {
-            long streamId = entry.getKey();
-            Pair<Long, Long> segment = entry.getValue();
-            Stream stream = streamMapper.getByStreamId(streamId);
-            if (null == stream) {
-                if (nodeConfig.dumpHeapOnError()) {
-                    dumpHeap();
-                }
-                continue;
+        List<Stream> streams = streamMapper.byCriteria(StreamCriteria.newBuilder()
+            .addBatchStreamIds(segments.keySet())
+            .build());
+        if (streams.size() < segments.size()) {
+            Set<Long> found = streams.stream().map(Stream::getId).collect(Collectors.toSet());
+            LOGGER.error("Streams {} not found while extending ranges", segments.keySet().stream()
+                .filter(streamId -> !found.contains(streamId)).toList());
+            if (nodeConfig.dumpHeapOnError()) {
+                dumpHeap();
             }
+        }
+        if (streams.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Range> ranges = rangeMapper.listCurrent(streams).stream()
+            .collect(Collectors.toMap(Range::getStreamId, range -> range));
 
+        List<Range> extended = new ArrayList<>();
+        for (Stream stream : streams) {
+            long streamId = stream.getId();
+            Pair<Long, Long> segment = segments.get(streamId);
             if (stream.getState() != StreamState.OPEN) {
                 LOGGER.warn("Stream[stream-id={}] state is not OPEN", streamId);
             }
 
-            Range range = rangeMapper.get(stream.getRangeId(), streamId, null);
+            Range range = ranges.get(streamId);
             if (Objects.isNull(range)) {
                 // should not happen
                 LOGGER.error("Stream[stream-id={}]'s current range[range-id={}] not exist when stream has been created",
@@ -596,9 +716,10 @@ public class DefaultS3MetadataService implements S3MetadataService {
                 streamId, range.getRangeId(), segment.getLeft(), segment.getRight());
             if (segment.getRight() > range.getEndOffset()) {
                 range.setEndOffset(segment.getRight());
-                rangeMapper.update(range);
+                extended.add(range);
             }
         }
+        return extended;
     }
 
     public CompletableFuture<Pair<List<S3StreamObject>, List<S3StreamSetObject>>> listObjects(
@@ -610,35 +731,24 @@ public class DefaultS3MetadataService implements S3MetadataService {
                 List<S3StreamObject> s3StreamObjects =
                     listStreamObjects(streamId, startOffset, endOffset, limit).join();
 
-                List<S3StreamSetObject> streamSetObjects = new ArrayList<>();
-                s3StreamSetObjectMapper.list(null, null)
-                    .stream()
-                    .map(s3StreamSetObject -> {
-                        try {
-                            Map<Long, SubStream> subStreams = Helper.decode(s3StreamSetObject.getSubStreams()).getSubStreamsMap();
-                            Map<Long, SubStream> streamsRecords = new HashMap<>();
-                            subStreams.entrySet().stream()
-                                .filter(entry -> !Objects.isNull(entry) && entry.getKey().equals(streamId))
-                                .filter(entry -> entry.getValue().getEndOffset() > startOffset && (entry.getValue().getStartOffset() <= endOffset || endOffset == -1))
-                                .forEach(entry -> streamsRecords.put(entry.getKey(), entry.getValue()));
-                            return streamsRecords.isEmpty() ? null : Helper.buildS3StreamSetObject(s3StreamSetObject,
-                                SubStreams.newBuilder().putAllSubStreams(streamsRecords).build());
-                        } catch (InvalidProtocolBufferException e) {
-                            LOGGER.error("Failed to deserialize SubStreams", e);
-                            return null;
+                List<S3StreamSetObject> streamSetObjects;
+                int localNodeId = nodeConfig.nodeId();
+                if (s3StreamSetObjectCache.loaded(localNodeId)) {
+                    // Objects of the current node are served by the cache, other nodes only if they have data of the
+                    // stream.
+                    streamSetObjects = new ArrayList<>(listStreamSetObjects(s3StreamSetObjectMapper, localNodeId,
+                        streamId, startOffset, endOffset, limit));
+                    for (int nodeId : nodesOf(session, streamId, startOffset, endOffset)) {
+                        if (nodeId != localNodeId) {
+                            streamSetObjects.addAll(listStreamSetObjects(s3StreamSetObjectMapper, nodeId, streamId,
+                                startOffset, endOffset, limit));
                         }
-                    })
-                    .filter(Objects::nonNull)
-                    .limit(limit)
-                    .forEach(streamSetObjects::add);
-
-                if (!streamSetObjects.isEmpty()) {
-                    streamSetObjects.sort((l, r) -> {
-                        long lhs = l.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
-                        long rhs = r.getSubStreams().getSubStreamsMap().get(streamId).getStartOffset();
-                        return Long.compare(lhs, rhs);
-                    });
+                    }
+                } else {
+                    streamSetObjects = filterStreamSetObjects(s3StreamSetObjectMapper.list(null, null), streamId,
+                        startOffset, endOffset);
                 }
+                sortByStartOffset(streamSetObjects, streamId);
 
                 // apply limit in whole.
                 Set<Long> objectIds = java.util.stream.Stream.concat(
@@ -788,6 +898,7 @@ public class DefaultS3MetadataService implements S3MetadataService {
 
             // Update cache
             s3StreamObjectCache.onTrim(streamId, newStartOffset);
+            s3StreamSetObjectCache.onTrim(streamId, newStartOffset);
 
             LOGGER.info("Node[node-id={}] trim stream [stream-id={}] with epoch={} and newStartOffset={}",
                 nodeConfig.nodeId(), streamId, streamEpoch, newStartOffset);
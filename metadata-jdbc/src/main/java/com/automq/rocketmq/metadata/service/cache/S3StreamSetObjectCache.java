@@ -13,25 +13,43 @@ package com.automq.rocketmq.metadata.service.cache;
 
 import apache.rocketmq.controller.v1.S3StreamSetObject;
 import apache.rocketmq.controller.v1.SubStream;
+import apache.rocketmq.controller.v1.SubStreams;
 import com.automq.rocketmq.metadata.mapper.S3StreamSetObjectMapper;
 import com.automq.rocketmq.metadata.service.Helper;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 
+/**
+ * Cache of StreamSet objects of the current node.
+ * <p>
+ * Besides objects keyed by object-id, an inverted index from stream-id to the sub-streams of the stream is maintained,
+ * sorted by start offset, such that range and size queries of a stream do not have to go through all objects.
+ */
 public class S3StreamSetObjectCache {
 
     private final ConcurrentMap<Long, S3StreamSetObject> cache;
+
+    /**
+     * StreamID --> Sub-streams of the stream within cached objects
+     */
+    private final ConcurrentMap<Long, StreamIndex> index;
+
     private final SqlSessionFactory sessionFactory;
 
+    private volatile Integer loadedNodeId;
+
     public S3StreamSetObjectCache(SqlSessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
         cache = new ConcurrentHashMap<>();
+        index = new ConcurrentHashMap<>();
     }
 
     public void load(int nodeId) {
@@ -40,48 +58,269 @@ public class S3StreamSetObjectCache {
             List<com.automq.rocketmq.metadata.dao.S3StreamSetObject> list = mapper.list(nodeId, null);
             list.forEach(obj -> {
                 try {
-                    cache.put(obj.getObjectId(), Helper.buildS3StreamSetObject(obj));
+                    onCommit(Helper.buildS3StreamSetObject(obj));
                 } catch (InvalidProtocolBufferException e) {
                     throw new RuntimeException(e);
                 }
             });
         }
+        loadedNodeId = nodeId;
+    }
+
+    /**
+     * @param nodeId Node ID
+     * @return true if all StreamSet objects of the given node are cached.
+     */
+    public boolean loaded(int nodeId) {
+        Integer loaded = loadedNodeId;
+        return null != loaded && loaded == nodeId;
     }
 
     public void onCompact(Collection<Long> objectIds) {
         if (null == objectIds || objectIds.isEmpty()) {
             return;
         }
-        objectIds.forEach(cache::remove);
+        for (long objectId : objectIds) {
+            S3StreamSetObject object = cache.remove(objectId);
+            if (null == object) {
+                continue;
+            }
+            for (SubStream subStream : object.getSubStreams().getSubStreamsMap().values()) {
+                removeEntries(subStream.getStreamId(), objectId);
+            }
+        }
     }
 
     public void onCommit(S3StreamSetObject object) {
-        cache.put(object.getObjectId(), object);
+        S3StreamSetObject prev = cache.put(object.getObjectId(), object);
+        if (null != prev) {
+            // Replace entries of the previous version
+            for (SubStream subStream : prev.getSubStreams().getSubStreamsMap().values()) {
+                removeEntries(subStream.getStreamId(), object.getObjectId());
+            }
+        }
+        for (SubStream subStream : object.getSubStreams().getSubStreamsMap().values()) {
+            Entry entry = new Entry(object.getObjectId(), subStream, object.getBaseDataTimestamp());
+            // Add within the mapping function, so that the stream index is not removed as empty in between
+            index.compute(subStream.getStreamId(), (streamId, streamIndex) -> {
+                if (null == streamIndex) {
+                    streamIndex = new StreamIndex();
+                }
+                streamIndex.add(entry);
+                return streamIndex;
+            });
+        }
     }
 
-    public long streamDataSize(long streamId) {
-        long total = 0;
-        for (Map.Entry<Long, S3StreamSetObject> entry : cache.entrySet()) {
-            for (Map.Entry<Long, SubStream> e : entry.getValue().getSubStreams().getSubStreamsMap().entrySet()) {
-                if (e.getValue().getStreamId() == streamId) {
-                    total += e.getValue().getDataSize();
-                }
+    /**
+     * Drop sub-streams of the given stream that are entirely below the new start offset.
+     */
+    public void onTrim(long streamId, long newStartOffset) {
+        index.computeIfPresent(streamId, (k, streamIndex) -> {
+            streamIndex.trim(newStartOffset);
+            return streamIndex.isEmpty() ? null : streamIndex;
+        });
+    }
+
+    /**
+     * Drop sub-streams of the given stream within the given object, and the stream index as well once it's empty.
+     */
+    private void removeEntries(long streamId, long objectId) {
+        index.computeIfPresent(streamId, (k, streamIndex) -> {
+            streamIndex.remove(objectId);
+            return streamIndex.isEmpty() ? null : streamIndex;
+        });
+    }
+
+    /**
+     * @return Number of streams that have sub-streams within cached objects.
+     */
+    int indexedStreamQuantity() {
+        return index.size();
+    }
+
+    /**
+     * List StreamSet objects that have data of the given stream within [startOffset, endOffset], each of which only
+     * carries the sub-stream of the given stream, in the order of start offset.
+     *
+     * @param streamId    Stream ID
+     * @param startOffset Start offset
+     * @param endOffset   End offset, or -1 if unbounded
+     * @param limit       Max number of objects to return
+     * @return StreamSet objects
+     */
+    public List<S3StreamSetObject> list(long streamId, long startOffset, long endOffset, int limit) {
+        StreamIndex streamIndex = index.get(streamId);
+        if (null == streamIndex) {
+            return new ArrayList<>();
+        }
+
+        List<S3StreamSetObject> result = new ArrayList<>();
+        for (Entry entry : streamIndex.range(startOffset, endOffset, limit)) {
+            S3StreamSetObject object = cache.get(entry.objectId());
+            if (null == object) {
+                // Compacted concurrently
+                continue;
             }
+            result.add(object.toBuilder()
+                .setSubStreams(SubStreams.newBuilder().putSubStreams(streamId, entry.subStream()))
+                .build());
         }
-        return total;
+        return result;
+    }
+
+    public long streamDataSize(long streamId) {
+        StreamIndex streamIndex = index.get(streamId);
+        return null == streamIndex ? 0 : streamIndex.dataSize();
     }
 
     public long streamStartTime(long streamId) {
         long startTime = System.currentTimeMillis();
-        for (Map.Entry<Long, S3StreamSetObject> entry : cache.entrySet()) {
-            for (Map.Entry<Long, SubStream> e : entry.getValue().getSubStreams().getSubStreamsMap().entrySet()) {
-                if (e.getValue().getStreamId() == streamId) {
-                    if (entry.getValue().getBaseDataTimestamp() < startTime) {
-                        startTime = entry.getValue().getBaseDataTimestamp();
+        StreamIndex streamIndex = index.get(streamId);
+        return null == streamIndex ? startTime : Math.min(startTime, streamIndex.startTime());
+    }
+
+    record Entry(long objectId, SubStream subStream, long timestamp) {
+        long startOffset() {
+            return subStream.getStartOffset();
+        }
+
+        long endOffset() {
+            return subStream.getEndOffset();
+        }
+    }
+
+    /**
+     * Sub-streams of a stream, sorted by start offset. Sub-streams of a stream do not overlap, thus are sorted by end
+     * offset as well.
+     */
+    static class StreamIndex {
+        private final List<Entry> entries = new ArrayList<>();
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private long dataSize;
+
+        void add(Entry entry) {
+            lock.writeLock().lock();
+            try {
+                int pos = lowerBound(entry.startOffset());
+                while (pos < entries.size() && entries.get(pos).startOffset() == entry.startOffset()
+                    && entries.get(pos).objectId() < entry.objectId()) {
+                    pos++;
+                }
+                entries.add(pos, entry);
+                dataSize += entry.subStream().getDataSize();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long objectId) {
+            lock.writeLock().lock();
+            try {
+                entries.removeIf(entry -> {
+                    if (entry.objectId() == objectId) {
+                        dataSize -= entry.subStream().getDataSize();
+                        return true;
                     }
+                    return false;
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void trim(long newStartOffset) {
+            lock.writeLock().lock();
+            try {
+                // Number of leading entries ending at or before the new start offset.
+                int count = 0;
+                while (count < entries.size() && entries.get(count).endOffset() <= newStartOffset) {
+                    dataSize -= entries.get(count).subStream().getDataSize();
+                    count++;
+                }
+                entries.subList(0, count).clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Entry> range(long startOffset, long endOffset, int limit) {
+            lock.readLock().lock();
+            try {
+                // First entry ending after the start offset
+                int low = 0;
+                int high = entries.size();
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (entries.get(mid).endOffset() > startOffset) {
+                        high = mid;
+                    } else {
+                        low = mid + 1;
+                    }
+                }
+
+                List<Entry> result = new ArrayList<>();
+                for (int i = low; i < entries.size() && result.size() < limit; i++) {
+                    Entry entry = entries.get(i);
+                    if (endOffset != -1 && entry.startOffset() > endOffset) {
+                        break;
+                    }
+                    result.add(entry);
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean isEmpty() {
+            lock.readLock().lock();
+            try {
+                return entries.isEmpty();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long dataSize() {
+            lock.readLock().lock();
+            try {
+                return dataSize;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long startTime() {
+            lock.readLock().lock();
+            try {
+                long startTime = Long.MAX_VALUE;
+                for (Entry entry : entries) {
+                    startTime = Math.min(startTime, entry.timestamp());
+                }
+                return startTime;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return Index of the first entry whose start offset is not less than the given offset.
+         */
+        private int lowerBound(long offset) {
+            int low = 0;
+            int high = entries.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entries.get(mid).startOffset() < offset) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
                 }
             }
+            return low;
         }
-        return startTime;
     }
 }
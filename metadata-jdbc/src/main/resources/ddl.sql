@@ -58,6 +58,7 @@ CREATE TABLE IF NOT EXISTS topic
     name                 VARCHAR(255) NOT NULL,
     queue_num            INT          NOT NULL DEFAULT 0,
     retention_hours      INT          NOT NULL DEFAULT 72,
+    retention_bytes      BIGINT       NOT NULL DEFAULT 0,
     status               TINYINT               DEFAULT 0,
     create_time          DATETIME              DEFAULT current_timestamp,
     update_time          DATETIME              DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
@@ -65,6 +66,18 @@ CREATE TABLE IF NOT EXISTS topic
     UNIQUE INDEX idx_topic_name (name)
 );
 
+-- Upgrade topic tables created before retention_bytes was introduced, a no-op otherwise.
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+                      'ALTER TABLE topic ADD COLUMN retention_bytes BIGINT NOT NULL DEFAULT 0 AFTER retention_hours',
+                      'DO 0')
+            FROM information_schema.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE()
+              AND TABLE_NAME = 'topic'
+              AND COLUMN_NAME = 'retention_bytes');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
 CREATE TABLE IF NOT EXISTS queue_assignment
 (
     topic_id    BIGINT  NOT NULL,
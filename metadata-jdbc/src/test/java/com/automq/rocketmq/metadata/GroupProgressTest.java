@@ -14,6 +14,7 @@ package com.automq.rocketmq.metadata;
 import com.automq.rocketmq.metadata.dao.GroupProgress;
 import com.automq.rocketmq.metadata.mapper.GroupProgressMapper;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.ibatis.session.SqlSession;
 import org.junit.jupiter.api.Assertions;
@@ -41,4 +42,35 @@ public class GroupProgressTest extends DatabaseTestBase {
             Assertions.assertEquals(5, got.getQueueOffset());
         }
     }
+
+    @Test
+    public void testBatchCreateOrUpdate() throws IOException {
+        try (SqlSession session = getSessionFactory().openSession()) {
+            GroupProgressMapper mapper = session.getMapper(GroupProgressMapper.class);
+            List<GroupProgress> progresses = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                GroupProgress progress = new GroupProgress();
+                progress.setGroupId(1);
+                progress.setTopicId(2);
+                progress.setQueueId(i);
+                progress.setQueueOffset(10);
+                progresses.add(progress);
+            }
+            mapper.batchCreateOrUpdate(progresses);
+
+            progresses.get(1).setQueueOffset(20);
+            mapper.batchCreateOrUpdate(List.of(progresses.get(1)));
+
+            List<GroupProgress> progressList = mapper.list(1L, 2L);
+            Assertions.assertEquals(3, progressList.size());
+            Assertions.assertEquals(10, mapper.get(1L, 2L, 0).getQueueOffset());
+            Assertions.assertEquals(20, mapper.get(1L, 2L, 1).getQueueOffset());
+            Assertions.assertEquals(10, mapper.get(1L, 2L, 2).getQueueOffset());
+
+            // An older offset flushed late does not overwrite newer progress.
+            progresses.get(1).setQueueOffset(15);
+            mapper.batchCreateOrUpdate(List.of(progresses.get(1)));
+            Assertions.assertEquals(20, mapper.get(1L, 2L, 1).getQueueOffset());
+        }
+    }
 }
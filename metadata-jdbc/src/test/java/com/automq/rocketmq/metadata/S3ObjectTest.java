@@ -137,6 +137,49 @@ public class S3ObjectTest extends DatabaseTestBase {
         }
     }
 
+    @Test
+    public void testBatchCommit() throws IOException {
+        try (SqlSession session = this.getSessionFactory().openSession()) {
+            SequenceMapper sequenceMapper = session.getMapper(SequenceMapper.class);
+            long next = sequenceMapper.next(S3ObjectMapper.SEQUENCE_NAME);
+
+            S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
+            Calendar calendar = Calendar.getInstance();
+            calendar.add(Calendar.SECOND, 30);
+            List<Long> ids = Arrays.asList(next, next + 1);
+            for (long id : ids) {
+                S3Object s3Object = new S3Object();
+                s3Object.setId(id);
+                s3Object.setState(S3ObjectState.BOS_PREPARED);
+                s3Object.setExpiredTimestamp(calendar.getTime());
+                Assertions.assertEquals(1, s3ObjectMapper.prepare(s3Object));
+            }
+
+            List<S3Object> objects = s3ObjectMapper.listByIds(ids);
+            Assertions.assertEquals(2, objects.size());
+            Date now = new Date();
+            for (S3Object object : objects) {
+                object.setStreamId(object.getId() * 10);
+                object.setObjectSize(object.getId() * 100);
+                object.setCommittedTimestamp(now);
+            }
+            Assertions.assertEquals(2, s3ObjectMapper.batchCommit(objects));
+            // Only prepared objects are committed
+            Assertions.assertEquals(0, s3ObjectMapper.batchCommit(objects));
+
+            for (long id : ids) {
+                S3Object object = s3ObjectMapper.getById(id);
+                Assertions.assertEquals(S3ObjectState.BOS_COMMITTED, object.getState());
+                Assertions.assertEquals(id * 10, object.getStreamId());
+                Assertions.assertEquals(id * 100, object.getObjectSize());
+            }
+
+            Assertions.assertEquals(2, s3ObjectMapper.batchMarkToDelete(ids, new Date()));
+            s3ObjectMapper.listByIds(ids)
+                .forEach(object -> Assertions.assertEquals(S3ObjectState.BOS_WILL_DELETE, object.getState()));
+        }
+    }
+
     @Test
     public void testList() throws IOException {
         try (SqlSession session = this.getSessionFactory().openSession()) {
@@ -164,6 +207,44 @@ public class S3ObjectTest extends DatabaseTestBase {
         }
     }
 
+    @Test
+    public void testListByPage() throws IOException {
+        try (SqlSession session = this.getSessionFactory().openSession()) {
+            SequenceMapper sequenceMapper = session.getMapper(SequenceMapper.class);
+            long next = sequenceMapper.next(S3ObjectMapper.SEQUENCE_NAME);
+
+            S3ObjectMapper s3ObjectMapper = session.getMapper(S3ObjectMapper.class);
+            Calendar calendar = Calendar.getInstance();
+            calendar.add(Calendar.SECOND, 30);
+            for (int i = 0; i < 5; i++) {
+                S3Object s3Object = new S3Object();
+                s3Object.setId(next + i);
+                s3Object.setState(S3ObjectState.BOS_PREPARED);
+                s3Object.setExpiredTimestamp(calendar.getTime());
+                Assertions.assertEquals(1, s3ObjectMapper.prepare(s3Object));
+            }
+
+            S3ObjectCriteria criteria = S3ObjectCriteria.newBuilder()
+                .withState(S3ObjectState.BOS_PREPARED)
+                .withLimit(2)
+                .build();
+            List<S3Object> page = s3ObjectMapper.list(criteria);
+            Assertions.assertEquals(Arrays.asList(next, next + 1), page.stream().map(S3Object::getId).toList());
+
+            criteria = S3ObjectCriteria.newBuilder()
+                .withState(S3ObjectState.BOS_PREPARED)
+                .withAfterId(next + 3)
+                .withLimit(2)
+                .build();
+            page = s3ObjectMapper.list(criteria);
+            Assertions.assertEquals(List.of(next + 4), page.stream().map(S3Object::getId).toList());
+
+            Assertions.assertEquals(5, s3ObjectMapper.count(S3ObjectCriteria.newBuilder()
+                .withState(S3ObjectState.BOS_PREPARED)
+                .build()));
+        }
+    }
+
     @Test
     public void testBatchDelete() throws IOException {
         try (SqlSession session = this.getSessionFactory().openSession()) {
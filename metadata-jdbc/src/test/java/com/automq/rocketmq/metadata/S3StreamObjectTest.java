@@ -194,4 +194,41 @@ public class S3StreamObjectTest extends DatabaseTestBase {
             Assertions.assertTrue(ids.isEmpty());
         }
     }
+
+    @Test
+    public void testRetentionQueries() throws IOException {
+        try (SqlSession session = this.getSessionFactory().openSession()) {
+            S3StreamObjectMapper s3StreamObjectMapper = session.getMapper(S3StreamObjectMapper.class);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 3; i++) {
+                S3StreamObject s3StreamObject = new S3StreamObject();
+                s3StreamObject.setObjectId(20L + i);
+                s3StreamObject.setObjectSize(100L);
+                s3StreamObject.setStreamId(i < 2 ? 1L : 2L);
+                s3StreamObject.setStartOffset(i * 10L);
+                s3StreamObject.setEndOffset((i + 1) * 10L);
+                s3StreamObject.setBaseDataTimestamp(new Date(now - (3 - i) * 3600_000L));
+                s3StreamObject.setCommittedTimestamp(new Date(now));
+                s3StreamObjectMapper.commit(s3StreamObject);
+            }
+            session.commit();
+
+            List<S3StreamObject> earliest = s3StreamObjectMapper.earliest(null, null);
+            Assertions.assertEquals(2, earliest.size());
+            for (S3StreamObject object : earliest) {
+                long expected = object.getStreamId() == 1L ? now - 3 * 3600_000L : now - 3600_000L;
+                Assertions.assertEquals(expected, object.getBaseDataTimestamp().getTime());
+            }
+            Assertions.assertEquals(1, s3StreamObjectMapper.earliest(List.of(2L), null).size());
+            Assertions.assertTrue(s3StreamObjectMapper.earliest(null, new Date(now + 3600_000L)).isEmpty());
+
+            List<S3StreamObject> expired = s3StreamObjectMapper.expired(List.of(1L, 2L), new Date(now - 90 * 60_000L));
+            Assertions.assertEquals(List.of(20L, 21L), expired.stream().map(S3StreamObject::getObjectId).sorted().toList());
+
+            List<S3StreamObject> sizes = s3StreamObjectMapper.dataSize(List.of(1L, 2L));
+            for (S3StreamObject size : sizes) {
+                Assertions.assertEquals(size.getStreamId() == 1L ? 200L : 100L, size.getObjectSize());
+            }
+        }
+    }
 }
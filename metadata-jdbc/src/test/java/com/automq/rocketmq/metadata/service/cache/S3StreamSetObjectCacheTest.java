@@ -11,8 +11,13 @@
 
 package com.automq.rocketmq.metadata.service.cache;
 
+import apache.rocketmq.controller.v1.S3StreamSetObject;
+import apache.rocketmq.controller.v1.SubStream;
+import apache.rocketmq.controller.v1.SubStreams;
 import com.automq.rocketmq.metadata.DatabaseTestBase;
 import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 class S3StreamSetObjectCacheTest extends DatabaseTestBase {
@@ -20,6 +25,94 @@ class S3StreamSetObjectCacheTest extends DatabaseTestBase {
     @Test
     public void testLoad() throws IOException {
         S3StreamSetObjectCache cache = new S3StreamSetObjectCache(getSessionFactory());
+        Assertions.assertFalse(cache.loaded(1));
         cache.load(1);
+        Assertions.assertTrue(cache.loaded(1));
+        Assertions.assertFalse(cache.loaded(2));
     }
-}
\ No newline at end of file
+
+    private static S3StreamSetObject buildObject(long objectId, long timestamp, SubStream... subStreams) {
+        SubStreams.Builder builder = SubStreams.newBuilder();
+        for (SubStream subStream : subStreams) {
+            builder.putSubStreams(subStream.getStreamId(), subStream);
+        }
+        return S3StreamSetObject.newBuilder()
+            .setObjectId(objectId)
+            .setBrokerId(1)
+            .setObjectSize(100)
+            .setBaseDataTimestamp(timestamp)
+            .setSubStreams(builder)
+            .build();
+    }
+
+    private static SubStream buildSubStream(long streamId, long startOffset, long endOffset) {
+        return SubStream.newBuilder()
+            .setStreamId(streamId)
+            .setStartOffset(startOffset)
+            .setEndOffset(endOffset)
+            .setDataSize(endOffset - startOffset)
+            .build();
+    }
+
+    @Test
+    public void testIndex() {
+        S3StreamSetObjectCache cache = new S3StreamSetObjectCache(null);
+        // Objects are committed out of the order of offsets
+        cache.onCommit(buildObject(2, 2000, buildSubStream(1, 10, 20), buildSubStream(2, 0, 5)));
+        cache.onCommit(buildObject(1, 1000, buildSubStream(1, 0, 10)));
+        cache.onCommit(buildObject(3, 3000, buildSubStream(1, 20, 30), buildSubStream(2, 5, 10)));
+
+        Assertions.assertEquals(30, cache.streamDataSize(1));
+        Assertions.assertEquals(10, cache.streamDataSize(2));
+        Assertions.assertEquals(0, cache.streamDataSize(3));
+        Assertions.assertEquals(1000, cache.streamStartTime(1));
+        Assertions.assertEquals(2000, cache.streamStartTime(2));
+
+        List<S3StreamSetObject> objects = cache.list(1, 15, 25, 10);
+        Assertions.assertEquals(List.of(2L, 3L), objects.stream().map(S3StreamSetObject::getObjectId).toList());
+        // Only the sub-stream of the requested stream is carried
+        Assertions.assertEquals(1, objects.get(0).getSubStreams().getSubStreamsCount());
+        Assertions.assertEquals(10, objects.get(0).getSubStreams().getSubStreamsMap().get(1L).getStartOffset());
+
+        Assertions.assertEquals(List.of(1L, 2L), cache.list(1, 0, -1, 2).stream()
+            .map(S3StreamSetObject::getObjectId).toList());
+        Assertions.assertTrue(cache.list(1, 30, -1, 10).isEmpty());
+
+        // Compact object 1 and 2 into object 4
+        cache.onCommit(buildObject(4, 1000, buildSubStream(1, 0, 20), buildSubStream(2, 0, 5)));
+        cache.onCompact(List.of(1L, 2L));
+        Assertions.assertEquals(30, cache.streamDataSize(1));
+        Assertions.assertEquals(List.of(4L, 3L), cache.list(1, 0, -1, 10).stream()
+            .map(S3StreamSetObject::getObjectId).toList());
+
+        cache.onTrim(1, 20);
+        Assertions.assertEquals(10, cache.streamDataSize(1));
+        Assertions.assertEquals(3000, cache.streamStartTime(1));
+        Assertions.assertEquals(List.of(3L), cache.list(1, 0, -1, 10).stream()
+            .map(S3StreamSetObject::getObjectId).toList());
+        // Other streams are intact
+        Assertions.assertEquals(10, cache.streamDataSize(2));
+    }
+
+    @Test
+    public void testRemoveEmptyIndex() {
+        S3StreamSetObjectCache cache = new S3StreamSetObjectCache(null);
+        cache.onCommit(buildObject(1, 1000, buildSubStream(1, 0, 10), buildSubStream(2, 0, 5)));
+        cache.onCommit(buildObject(2, 2000, buildSubStream(3, 0, 10)));
+        Assertions.assertEquals(3, cache.indexedStreamQuantity());
+
+        // The last range of stream 1 is trimmed
+        cache.onTrim(1, 10);
+        Assertions.assertEquals(2, cache.indexedStreamQuantity());
+
+        // The last range of stream 2 is compacted away
+        cache.onCompact(List.of(1L));
+        Assertions.assertEquals(1, cache.indexedStreamQuantity());
+
+        // Stream 3 moves to another object of the same id
+        cache.onCommit(buildObject(2, 2000, buildSubStream(4, 0, 10)));
+        Assertions.assertEquals(1, cache.indexedStreamQuantity());
+        Assertions.assertEquals(0, cache.streamDataSize(3));
+        Assertions.assertEquals(10, cache.streamDataSize(4));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.metadata;
+
+import com.automq.rocketmq.common.PrefixThreadFactory;
+import com.automq.rocketmq.common.util.Lifecycle;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.metadata.dao.GroupProgress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory table of consumer offsets committed by pull-mode consumer groups.
+ * <p>
+ * Reads are served from memory once an offset is loaded. Commits only update memory and mark the entry dirty; a
+ * background task flushes dirty entries to the leader controller in batch, so that frequent commits of the same
+ * queue are coalesced into one row update per flush interval.
+ * <p>
+ * Commits only move an offset forward, and so does the flush in the store, so that a node flushing late, after the
+ * queue has been reassigned for example, cannot overwrite newer progress. Rewinding an offset goes through
+ * {@link #reset(long, long, int, long)}, which writes through to the store.
+ */
+public class ConsumerOffsetTable implements Lifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerOffsetTable.class);
+
+    /**
+     * Clean entries that are not written within this many flush intervals are evicted, no matter how often they are
+     * read, so that offsets committed through other nodes are reloaded.
+     */
+    private static final int IDLE_FLUSH_ROUNDS_BEFORE_EVICTION = 60;
+
+    private final MetadataStore metadataStore;
+
+    private final ConcurrentMap<Key, Entry> table = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    record Key(long groupId, long topicId, int queueId) {
+    }
+
+    static class Entry {
+        private volatile long offset;
+        private final AtomicBoolean dirty;
+        private volatile long lastUpdateTime;
+
+        Entry(long offset, boolean dirty) {
+            this.offset = offset;
+            this.dirty = new AtomicBoolean(dirty);
+            this.lastUpdateTime = System.currentTimeMillis();
+        }
+    }
+
+    public ConsumerOffsetTable(MetadataStore metadataStore) {
+        this.metadataStore = metadataStore;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new PrefixThreadFactory("ConsumerOffsetFlusher"));
+    }
+
+    @Override
+    public void start() {
+        long interval = metadataStore.config().flushConsumerOffsetIntervalInMillis();
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush().join();
+            } catch (Throwable e) {
+                LOGGER.error("Failed to flush consumer offsets", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            // Wait for the ongoing flush, then make sure that the latest offsets are persisted.
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timeout waiting for the consumer offset flusher to terminate");
+            }
+            flush().get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Failed to flush consumer offsets on shutdown", e);
+        }
+    }
+
+    public CompletableFuture<Long> offsetOf(long groupId, long topicId, int queueId) {
+        Key key = new Key(groupId, topicId, queueId);
+        Entry entry = table.get(key);
+        if (null != entry) {
+            return CompletableFuture.completedFuture(entry.offset);
+        }
+
+        return metadataStore.getConsumerOffset(groupId, topicId, queueId)
+            // A concurrent commit wins over the loaded offset.
+            .thenApply(offset -> table.computeIfAbsent(key, k -> new Entry(offset, false)).offset);
+    }
+
+    public void commit(long groupId, long topicId, int queueId, long offset) {
+        Key key = new Key(groupId, topicId, queueId);
+        table.compute(key, (k, entry) -> {
+            if (null == entry) {
+                return new Entry(offset, true);
+            }
+            if (offset <= entry.offset) {
+                return entry;
+            }
+            entry.offset = offset;
+            entry.lastUpdateTime = System.currentTimeMillis();
+            entry.dirty.set(true);
+            return entry;
+        });
+    }
+
+    /**
+     * Reset the offset, backward or forward, and write it through to the store. The reset is serialized with the
+     * background flush, so that a flush in flight cannot overwrite it.
+     *
+     * @return Future completed once the offset is persisted
+     */
+    public CompletableFuture<Void> reset(long groupId, long topicId, int queueId, long offset) {
+        Key key = new Key(groupId, topicId, queueId);
+        return CompletableFuture.runAsync(() -> {
+            table.put(key, new Entry(offset, false));
+            try {
+                metadataStore.commitOffset(groupId, topicId, queueId, offset).join();
+            } catch (CompletionException e) {
+                // Load the offset again, which is unknown now.
+                table.computeIfPresent(key, (k, entry) -> entry.dirty.get() ? entry : null);
+                throw e;
+            }
+        }, executor);
+    }
+
+    /**
+     * Flush offsets of a queue and drop them from memory. This is called when the queue is opened or closed on this
+     * node, so that offsets committed by its previous owner are reloaded, and offsets committed here are persisted
+     * before its next owner loads them.
+     *
+     * @return Future completed once the offsets are persisted
+     */
+    public CompletableFuture<Void> invalidate(long topicId, int queueId) {
+        List<GroupProgress> progresses = new ArrayList<>();
+        for (Key key : table.keySet()) {
+            if (key.topicId() != topicId || key.queueId() != queueId) {
+                continue;
+            }
+            table.computeIfPresent(key, (k, entry) -> {
+                // Flushing a clean entry again is harmless, as offsets are only moved forward.
+                progresses.add(progressOf(k, entry.offset));
+                return null;
+            });
+        }
+
+        if (progresses.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return metadataStore.commitOffsets(progresses);
+    }
+
+    private static GroupProgress progressOf(Key key, long offset) {
+        GroupProgress progress = new GroupProgress();
+        progress.setGroupId(key.groupId());
+        progress.setTopicId(key.topicId());
+        progress.setQueueId(key.queueId());
+        progress.setQueueOffset(offset);
+        return progress;
+    }
+
+    /**
+     * Flush all dirty entries to the leader controller in one batch.
+     *
+     * @return Future completed once the batch is persisted
+     */
+    public CompletableFuture<Void> flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<Map.Entry<Key, Entry>> flushed = new ArrayList<>();
+        List<GroupProgress> progresses = new ArrayList<>();
+        long evictBefore = System.currentTimeMillis()
+            - IDLE_FLUSH_ROUNDS_BEFORE_EVICTION * metadataStore.config().flushConsumerOffsetIntervalInMillis();
+        for (Map.Entry<Key, Entry> item : table.entrySet()) {
+            Entry entry = item.getValue();
+            // Clear the flag before reading the offset, so a commit racing with this flush marks the entry again.
+            if (!entry.dirty.compareAndSet(true, false)) {
+                // Check and evict under the lock of the key, which commits go through as well, so that a commit
+                // racing with the eviction is never lost.
+                table.computeIfPresent(item.getKey(),
+                    (k, e) -> !e.dirty.get() && e.lastUpdateTime < evictBefore ? null : e);
+                continue;
+            }
+            progresses.add(progressOf(item.getKey(), entry.offset));
+            flushed.add(item);
+        }
+
+        if (progresses.isEmpty()) {
+            flushing.set(false);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return metadataStore.commitOffsets(progresses)
+            .whenComplete((res, e) -> {
+                flushing.set(false);
+                if (null != e) {
+                    LOGGER.warn("Failed to flush {} consumer offsets, will retry in the next round", progresses.size(), e);
+                    flushed.forEach(item -> item.getValue().dirty.set(true));
+                    return;
+                }
+                LOGGER.debug("Flushed {} consumer offsets", progresses.size());
+            });
+    }
+}
@@ -15,6 +15,7 @@ import apache.rocketmq.controller.v1.ConsumerGroup;
 import apache.rocketmq.controller.v1.CreateTopicRequest;
 import apache.rocketmq.controller.v1.MessageQueueAssignment;
 import apache.rocketmq.controller.v1.Topic;
+import com.automq.rocketmq.common.util.Lifecycle;
 import com.automq.rocketmq.controller.MetadataStore;
 import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.google.common.base.Stopwatch;
@@ -23,14 +24,27 @@ import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DefaultProxyMetadataService implements ProxyMetadataService {
+public class DefaultProxyMetadataService implements ProxyMetadataService, Lifecycle {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultProxyMetadataService.class);
 
     private final MetadataStore metadataStore;
 
+    private final ConsumerOffsetTable consumerOffsetTable;
+
     public DefaultProxyMetadataService(MetadataStore metadataStore) {
         this.metadataStore = metadataStore;
+        this.consumerOffsetTable = new ConsumerOffsetTable(metadataStore);
+    }
+
+    @Override
+    public void start() {
+        consumerOffsetTable.start();
+    }
+
+    @Override
+    public void shutdown() {
+        consumerOffsetTable.shutdown();
     }
 
     @Override
@@ -87,12 +101,24 @@ public class DefaultProxyMetadataService implements ProxyMetadataService {
 
     @Override
     public CompletableFuture<Long> consumerOffsetOf(long consumerGroupId, long topicId, int queueId) {
-        return metadataStore.getConsumerOffset(consumerGroupId, topicId, queueId);
+        return consumerOffsetTable.offsetOf(consumerGroupId, topicId, queueId);
     }
 
     @Override
     public CompletableFuture<Void> updateConsumerOffset(long consumerGroupId, long topicId, int queueId,
         long newOffset) {
-        return metadataStore.commitOffset(consumerGroupId, topicId, queueId, newOffset);
+        consumerOffsetTable.commit(consumerGroupId, topicId, queueId, newOffset);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> resetConsumerOffset(long consumerGroupId, long topicId, int queueId,
+        long newOffset) {
+        return consumerOffsetTable.reset(consumerGroupId, topicId, queueId, newOffset);
+    }
+
+    @Override
+    public CompletableFuture<Void> invalidateConsumerOffsets(long topicId, int queueId) {
+        return consumerOffsetTable.invalidate(topicId, queueId);
     }
 }
@@ -11,9 +11,13 @@
 
 package com.automq.rocketmq.metadata;
 
+import apache.rocketmq.common.v1.Code;
 import apache.rocketmq.controller.v1.ConsumerGroup;
+import apache.rocketmq.controller.v1.OpenStreamResult;
 import apache.rocketmq.controller.v1.S3StreamObject;
 import apache.rocketmq.controller.v1.S3StreamSetObject;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.StreamRole;
 import apache.rocketmq.controller.v1.Topic;
@@ -103,6 +107,16 @@ public class DefaultStoreMetadataService implements StoreMetadataService {
             }), MoreExecutors.directExecutor());
     }
 
+    @Override
+    public CompletableFuture<StreamMetadata> halfStreamOf(long topicId, int queueId) {
+        AtomicBoolean loop = new AtomicBoolean(true);
+        return Futures.loop(loop::get, () -> metadataStore.getStream(topicId, queueId, null, StreamRole.STREAM_ROLE_HALF)
+            .thenApply(res -> {
+                loop.set(false);
+                return res;
+            }), MoreExecutors.directExecutor());
+    }
+
     @Override
     public CompletableFuture<Integer> maxDeliveryAttemptsOf(long consumerGroupId) {
         AtomicBoolean loop = new AtomicBoolean(true);
@@ -147,6 +161,38 @@ public class DefaultStoreMetadataService implements StoreMetadataService {
             }), MoreExecutors.directExecutor());
     }
 
+    @Override
+    public CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams) {
+        AtomicBoolean loop = new AtomicBoolean(true);
+        return Futures.loop(loop::get, () -> metadataStore.openStreams(streams, metadataStore.config().nodeId())
+            .thenApply(res -> {
+                loop.set(false);
+                for (OpenStreamResult result : res) {
+                    if (result.getStatus().getCode() == Code.OK) {
+                        s3MetadataService.onStreamOpen(result.getStreamMetadata().getStreamId());
+                    }
+                }
+                LOGGER.info("Open {} streams in batch, {} of them failed", streams.size(),
+                    res.stream().filter(result -> result.getStatus().getCode() != Code.OK).count());
+                return res;
+            }), MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams) {
+        AtomicBoolean loop = new AtomicBoolean(true);
+        return Futures.loop(loop::get, () -> metadataStore.closeStreams(streams, metadataStore.config().nodeId())
+            .thenApply(res -> {
+                loop.set(false);
+                for (int i = 0; i < res.size(); i++) {
+                    if (res.get(i).getCode() == Code.OK) {
+                        s3MetadataService.onStreamClose(streams.get(i).getStreamId());
+                    }
+                }
+                return res;
+            }), MoreExecutors.directExecutor());
+    }
+
     @Override
     public CompletableFuture<List<StreamMetadata>> listOpenStreams() {
         AtomicBoolean loop = new AtomicBoolean(true);
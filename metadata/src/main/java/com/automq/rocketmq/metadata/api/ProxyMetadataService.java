@@ -48,6 +48,10 @@ public interface ProxyMetadataService extends ResourceMetadataService {
 
     /**
      * Update the newest consumer offset of a given consumer group, topic and queue.
+     * <p>
+     * Implementations may buffer the offset in memory and persist it asynchronously, so the returned future does not
+     * necessarily imply durability. The offset is only moved forward, see
+     * {@link #resetConsumerOffset(long, long, int, long)} to rewind it.
      *
      * @param consumerGroupId consumer group id
      * @param topicId topic id
@@ -56,4 +60,27 @@ public interface ProxyMetadataService extends ResourceMetadataService {
      * @return {@link CompletableFuture} of {@link Void}
      */
     CompletableFuture<Void> updateConsumerOffset(long consumerGroupId, long topicId, int queueId, long newOffset);
+
+    /**
+     * Reset the consumer offset of a given consumer group, topic and queue, backward or forward.
+     *
+     * @param consumerGroupId consumer group id
+     * @param topicId topic id
+     * @param queueId queue id
+     * @param newOffset new offset
+     * @return {@link CompletableFuture} completed once the offset is persisted
+     */
+    CompletableFuture<Void> resetConsumerOffset(long consumerGroupId, long topicId, int queueId, long newOffset);
+
+    /**
+     * Persist and drop consumer offsets of a queue cached on this node, which is called once the queue is opened or
+     * closed on this node.
+     *
+     * @param topicId topic id
+     * @param queueId queue id
+     * @return {@link CompletableFuture} completed once the cached offsets are persisted
+     */
+    default CompletableFuture<Void> invalidateConsumerOffsets(long topicId, int queueId) {
+        return CompletableFuture.completedFuture(null);
+    }
 }
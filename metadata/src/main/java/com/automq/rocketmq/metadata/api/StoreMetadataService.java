@@ -11,8 +11,11 @@
 
 package com.automq.rocketmq.metadata.api;
 
+import apache.rocketmq.controller.v1.OpenStreamResult;
 import apache.rocketmq.controller.v1.S3StreamObject;
 import apache.rocketmq.controller.v1.S3StreamSetObject;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import com.automq.rocketmq.common.config.ControllerConfig;
 import java.util.List;
@@ -58,6 +61,15 @@ public interface StoreMetadataService extends ResourceMetadataService {
      */
     CompletableFuture<StreamMetadata> retryStreamOf(long consumerGroupId, long topicId, int queueId);
 
+    /**
+     * Get the half stream metadata of the specified message queue, which keeps the half messages of transactions.
+     *
+     * @param topicId topic id
+     * @param queueId the specified message queue id
+     * @return {@link CompletableFuture} of {@link StreamMetadata}
+     */
+    CompletableFuture<StreamMetadata> halfStreamOf(long topicId, int queueId);
+
     /**
      * Get the configured max delivery attempt times of the specified consumer group.
      *
@@ -96,6 +108,24 @@ public interface StoreMetadataService extends ResourceMetadataService {
      */
     CompletableFuture<Void> closeStream(long streamId, long streamEpoch);
 
+    /**
+     * Open streams in one round-trip, see {@link #openStream(long, long)}.
+     * <p>
+     * Each stream is opened on its own, a stream failed to open is reported in its result.
+     *
+     * @param streams streams to open, with their epochs.
+     * @return results in the order of the streams.
+     */
+    CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams);
+
+    /**
+     * Mark the specified streams as closed in one round-trip, see {@link #closeStream(long, long)}.
+     *
+     * @param streams streams to close, with their epochs.
+     * @return status of each stream in the order of the streams.
+     */
+    CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams);
+
     /**
      * List the open streams of current server.
      *
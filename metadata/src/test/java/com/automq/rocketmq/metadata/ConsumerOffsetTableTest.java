@@ -0,0 +1,189 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.metadata;
+
+import apache.rocketmq.common.v1.Code;
+import com.automq.rocketmq.common.config.ControllerConfig;
+import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.controller.MetadataStore;
+import com.automq.rocketmq.metadata.dao.GroupProgress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ConsumerOffsetTableTest {
+
+    @Mock
+    private ControllerConfig config;
+
+    @Mock
+    private MetadataStore metadataStore;
+
+    private ConsumerOffsetTable table;
+
+    @BeforeEach
+    public void setUp() {
+        when(metadataStore.config()).thenReturn(config);
+        when(config.flushConsumerOffsetIntervalInMillis()).thenReturn(1000L);
+        table = new ConsumerOffsetTable(metadataStore);
+    }
+
+    @Test
+    public void testLoadOnce() {
+        when(metadataStore.getConsumerOffset(1L, 2L, 3)).thenReturn(CompletableFuture.completedFuture(10L));
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+        Mockito.verify(metadataStore, Mockito.times(1)).getConsumerOffset(1L, 2L, 3);
+
+        // Clean entries are not flushed.
+        table.flush().join();
+        Mockito.verify(metadataStore, Mockito.never()).commitOffsets(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoalesceCommits() {
+        when(metadataStore.commitOffsets(ArgumentMatchers.anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        table.commit(1L, 2L, 3, 10L);
+        table.commit(1L, 2L, 3, 20L);
+        table.commit(1L, 2L, 4, 30L);
+        Assertions.assertEquals(20L, table.offsetOf(1L, 2L, 3).join());
+        Mockito.verify(metadataStore, Mockito.never()).getConsumerOffset(1L, 2L, 3);
+
+        table.flush().join();
+        ArgumentCaptor<List<GroupProgress>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(metadataStore, Mockito.times(1)).commitOffsets(captor.capture());
+        List<GroupProgress> progresses = captor.getValue();
+        Assertions.assertEquals(2, progresses.size());
+        for (GroupProgress progress : progresses) {
+            Assertions.assertEquals(progress.getQueueId() == 3 ? 20L : 30L, progress.getQueueOffset());
+        }
+
+        // Nothing changed since the last flush.
+        table.flush().join();
+        Mockito.verify(metadataStore, Mockito.times(1)).commitOffsets(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void testRetryOnFailure() {
+        when(metadataStore.commitOffsets(ArgumentMatchers.anyList()))
+            .thenReturn(CompletableFuture.failedFuture(new ControllerException(Code.NO_LEADER_VALUE, "No leader")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        table.commit(1L, 2L, 3, 10L);
+        Assertions.assertThrows(Exception.class, () -> table.flush().join());
+
+        table.flush().join();
+        Mockito.verify(metadataStore, Mockito.times(2)).commitOffsets(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void testEvictIdleEntries() throws InterruptedException {
+        // Entries not accessed since the last flush are idle
+        when(config.flushConsumerOffsetIntervalInMillis()).thenReturn(0L);
+        when(metadataStore.commitOffsets(ArgumentMatchers.anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        when(metadataStore.getConsumerOffset(1L, 2L, 3)).thenReturn(CompletableFuture.completedFuture(10L));
+        table.commit(1L, 2L, 3, 10L);
+        table.flush().join();
+
+        // A commit of an idle entry is flushed rather than evicted
+        Thread.sleep(5);
+        table.commit(1L, 2L, 3, 20L);
+        table.flush().join();
+        Mockito.verify(metadataStore, Mockito.times(2)).commitOffsets(ArgumentMatchers.anyList());
+
+        // Clean and idle, so evicted and loaded again
+        Thread.sleep(5);
+        table.flush().join();
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+        Mockito.verify(metadataStore, Mockito.times(1)).getConsumerOffset(1L, 2L, 3);
+    }
+
+    @Test
+    public void testReloadAfterIdle() throws InterruptedException {
+        when(config.flushConsumerOffsetIntervalInMillis()).thenReturn(0L);
+        when(metadataStore.getConsumerOffset(1L, 2L, 3))
+            .thenReturn(CompletableFuture.completedFuture(10L))
+            .thenReturn(CompletableFuture.completedFuture(20L));
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+
+        // Reads do not keep an entry from being evicted, so an offset committed through another node is seen.
+        Thread.sleep(5);
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+        table.flush().join();
+        Assertions.assertEquals(20L, table.offsetOf(1L, 2L, 3).join());
+    }
+
+    @Test
+    public void testCommitMovesForward() {
+        table.commit(1L, 2L, 3, 20L);
+        table.commit(1L, 2L, 3, 10L);
+        Assertions.assertEquals(20L, table.offsetOf(1L, 2L, 3).join());
+    }
+
+    @Test
+    public void testReset() {
+        when(metadataStore.commitOffset(1L, 2L, 3, 5L)).thenReturn(CompletableFuture.completedFuture(null));
+        table.commit(1L, 2L, 3, 20L);
+        table.reset(1L, 2L, 3, 5L).join();
+        Assertions.assertEquals(5L, table.offsetOf(1L, 2L, 3).join());
+
+        // Written through, so there is nothing to flush.
+        table.flush().join();
+        Mockito.verify(metadataStore, Mockito.never()).commitOffsets(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void testResetFailure() {
+        when(metadataStore.commitOffset(1L, 2L, 3, 5L))
+            .thenReturn(CompletableFuture.failedFuture(new ControllerException(Code.NO_LEADER_VALUE, "No leader")));
+        when(metadataStore.getConsumerOffset(1L, 2L, 3)).thenReturn(CompletableFuture.completedFuture(20L));
+        Assertions.assertThrows(Exception.class, () -> table.reset(1L, 2L, 3, 5L).join());
+
+        // The offset is loaded from the store again.
+        Assertions.assertEquals(20L, table.offsetOf(1L, 2L, 3).join());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidate() {
+        when(metadataStore.commitOffsets(ArgumentMatchers.anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        when(metadataStore.getConsumerOffset(1L, 2L, 3)).thenReturn(CompletableFuture.completedFuture(10L));
+        table.commit(1L, 2L, 3, 10L);
+        table.commit(4L, 2L, 3, 20L);
+        table.commit(1L, 2L, 4, 30L);
+
+        table.invalidate(2L, 3).join();
+        ArgumentCaptor<List<GroupProgress>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(metadataStore, Mockito.times(1)).commitOffsets(captor.capture());
+        Assertions.assertEquals(2, captor.getValue().size());
+        Assertions.assertTrue(captor.getValue().stream().allMatch(progress -> progress.getQueueId() == 3));
+
+        // Offsets of the queue are loaded from the store again.
+        Assertions.assertEquals(10L, table.offsetOf(1L, 2L, 3).join());
+        Mockito.verify(metadataStore, Mockito.times(1)).getConsumerOffset(1L, 2L, 3);
+        Assertions.assertEquals(30L, table.offsetOf(1L, 2L, 4).join());
+    }
+}
@@ -15,6 +15,8 @@ import apache.rocketmq.proxy.v1.ConsumerClientConnection;
 import apache.rocketmq.proxy.v1.ConsumerClientConnectionRequest;
 import apache.rocketmq.proxy.v1.ProducerClientConnection;
 import apache.rocketmq.proxy.v1.ProducerClientConnectionRequest;
+import apache.rocketmq.proxy.v1.QueriedMessage;
+import apache.rocketmq.proxy.v1.QueryMessageRequest;
 import apache.rocketmq.proxy.v1.QueueStats;
 import apache.rocketmq.proxy.v1.ResetConsumeOffsetByTimestampRequest;
 import apache.rocketmq.proxy.v1.ResetConsumeOffsetRequest;
@@ -39,4 +41,6 @@ public interface ProxyClient extends Closeable {
         ConsumerClientConnectionRequest request);
 
     CompletableFuture<Status> relayMessage(String target, FlatMessage message);
+
+    CompletableFuture<List<QueriedMessage>> queryMessage(String target, QueryMessageRequest request);
 }
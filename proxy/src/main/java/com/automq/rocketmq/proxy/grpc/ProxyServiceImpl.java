@@ -19,6 +19,9 @@ import apache.rocketmq.proxy.v1.ProducerClientConnection;
 import apache.rocketmq.proxy.v1.ProducerClientConnectionReply;
 import apache.rocketmq.proxy.v1.ProducerClientConnectionRequest;
 import apache.rocketmq.proxy.v1.ProxyServiceGrpc;
+import apache.rocketmq.proxy.v1.QueriedMessage;
+import apache.rocketmq.proxy.v1.QueryMessageReply;
+import apache.rocketmq.proxy.v1.QueryMessageRequest;
 import apache.rocketmq.proxy.v1.QueueStats;
 import apache.rocketmq.proxy.v1.RelayReply;
 import apache.rocketmq.proxy.v1.RelayRequest;
@@ -28,10 +31,13 @@ import apache.rocketmq.proxy.v1.ResetConsumeOffsetRequest;
 import apache.rocketmq.proxy.v1.Status;
 import apache.rocketmq.proxy.v1.TopicStatsReply;
 import apache.rocketmq.proxy.v1.TopicStatsRequest;
+import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.proxy.service.ExtendMessageService;
 import com.automq.rocketmq.store.api.MessageStore;
 import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.TextFormat;
 import io.grpc.stub.StreamObserver;
 import io.netty.channel.Channel;
@@ -202,6 +208,46 @@ public class ProxyServiceImpl extends ProxyServiceGrpc.ProxyServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void queryMessage(QueryMessageRequest request, StreamObserver<QueryMessageReply> responseObserver) {
+        if (request.getMaxCount() <= 0) {
+            responseObserver.onNext(QueryMessageReply.newBuilder()
+                .setStatus(Status
+                    .newBuilder()
+                    .setCode(Code.BAD_REQUEST)
+                    .setMessage("Max count must be positive: " + request.getMaxCount())
+                    .build())
+                .build());
+            responseObserver.onCompleted();
+            return;
+        }
+        MessageIndexType type = request.getByMessageId() ? MessageIndexType.MESSAGE_ID : MessageIndexType.KEY;
+        long endTimestamp = request.getEndTimestamp() > 0 ? request.getEndTimestamp() : Long.MAX_VALUE;
+        messageService.queryMessages(request.getTopic(), request.getQueueId(), type, request.getKey(),
+                request.getBeginTimestamp(), endTimestamp, request.getMaxCount())
+            .whenComplete((messages, e) -> {
+                if (e != null) {
+                    responseObserver.onError(e);
+                    return;
+                }
+
+                QueryMessageReply.Builder builder = QueryMessageReply.newBuilder()
+                    .setStatus(Status
+                        .newBuilder()
+                        .setCode(Code.OK)
+                        .build());
+                for (FlatMessageExt messageExt : messages) {
+                    builder.addMessages(QueriedMessage.newBuilder()
+                        .setQueueId(messageExt.message().queueId())
+                        .setOffset(messageExt.offset())
+                        .setFlatMessage(ByteString.copyFrom(messageExt.message().getByteBuffer()))
+                        .build());
+                }
+                responseObserver.onNext(builder.build());
+                responseObserver.onCompleted();
+            });
+    }
+
     @Override
     public void relay(RelayRequest request, StreamObserver<RelayReply> responseObserver) {
         switch (request.getCommandCase()) {
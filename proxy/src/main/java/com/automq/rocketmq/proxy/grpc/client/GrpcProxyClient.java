@@ -20,6 +20,9 @@ import apache.rocketmq.proxy.v1.ProducerClientConnectionReply;
 import apache.rocketmq.proxy.v1.ProducerClientConnectionRequest;
 import apache.rocketmq.proxy.v1.ProxyServiceGrpc;
 import apache.rocketmq.proxy.v1.PutMessageCommand;
+import apache.rocketmq.proxy.v1.QueriedMessage;
+import apache.rocketmq.proxy.v1.QueryMessageReply;
+import apache.rocketmq.proxy.v1.QueryMessageRequest;
 import apache.rocketmq.proxy.v1.QueueStats;
 import apache.rocketmq.proxy.v1.RelayReply;
 import apache.rocketmq.proxy.v1.RelayRequest;
@@ -225,6 +228,30 @@ public class GrpcProxyClient implements ProxyClient {
         return future;
     }
 
+    @Override
+    public CompletableFuture<List<QueriedMessage>> queryMessage(String target, QueryMessageRequest request) {
+        ProxyServiceGrpc.ProxyServiceFutureStub stub = getOrCreateStubForTarget(target);
+
+        CompletableFuture<List<QueriedMessage>> future = new CompletableFuture<>();
+        Futures.addCallback(stub.queryMessage(request),
+            new FutureCallback<>() {
+                @Override
+                public void onSuccess(QueryMessageReply result) {
+                    if (result.getStatus().getCode() == Code.OK) {
+                        future.complete(result.getMessagesList());
+                    } else {
+                        future.completeExceptionally(new ProxyException(ProxyExceptionCode.INTERNAL_SERVER_ERROR, result.getStatus().getMessage()));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }, MoreExecutors.directExecutor());
+        return future;
+    }
+
     @Override
     public void close() {
         for (Map.Entry<String, ProxyServiceGrpc.ProxyServiceFutureStub> entry : stubMap.entrySet()) {
@@ -12,18 +12,21 @@
 package com.automq.rocketmq.proxy.grpc.v2.consumer;
 
 import apache.rocketmq.v2.Code;
+import apache.rocketmq.v2.Message;
 import apache.rocketmq.v2.ReceiveMessageRequest;
 import apache.rocketmq.v2.ReceiveMessageResponse;
 import apache.rocketmq.v2.Status;
 import com.automq.rocketmq.common.trace.TraceHelper;
 import com.automq.rocketmq.proxy.metrics.ProxyMetricsManager;
 import com.automq.rocketmq.proxy.model.ProxyContextExt;
+import com.automq.rocketmq.proxy.util.FlatMessageUtil;
 import io.grpc.stub.StreamObserver;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import org.apache.rocketmq.client.consumer.PopResult;
+import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.proxy.common.ContextVariable;
 import org.apache.rocketmq.proxy.common.ProxyContext;
 import org.apache.rocketmq.proxy.grpc.v2.common.ResponseBuilder;
@@ -52,6 +55,11 @@ public class ExtendReceiveMessageResponseStreamWriter extends ReceiveMessageResp
         ProxyMetricsManager.recordRpcLatency(ctx.getProtocolType(), ctx.getAction(), code.name().toLowerCase(), context.getElapsedTimeNanos(), context.suspended(), context.relayed());
     }
 
+    @Override
+    protected Message convertToMessage(MessageExt messageExt) {
+        return FlatMessageUtil.convertToGrpcMessage(messageExt);
+    }
+
     @Override
     public void writeAndComplete(ProxyContext ctx, ReceiveMessageRequest request, PopResult popResult) {
         super.writeAndComplete(ctx, request, popResult);
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.model;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * A {@link MessageExt} whose body is backed by the payload of a {@link com.automq.rocketmq.common.model.generated.FlatMessage}.
+ * <p>
+ * The body is only copied out of the payload buffer if someone asks for it with {@link #getBody()}. Encoders aware of
+ * this class write the payload to the wire directly instead.
+ */
+public class ZeroCopyMessageExt extends MessageExt {
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private transient ByteBuffer payload;
+
+    private transient boolean headersOnly;
+
+    public ZeroCopyMessageExt(ByteBuffer payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Get a read-only view of the body, no matter whether it has been materialized or not.
+     */
+    public ByteBuffer payload() {
+        if (payload != null) {
+            return payload.asReadOnlyBuffer();
+        }
+        byte[] body = super.getBody();
+        return body == null ? ByteBuffer.wrap(EMPTY_BODY) : ByteBuffer.wrap(body).asReadOnlyBuffer();
+    }
+
+    public int bodyLength() {
+        if (payload != null) {
+            return payload.remaining();
+        }
+        byte[] body = super.getBody();
+        return body == null ? 0 : body.length;
+    }
+
+    /**
+     * Apply the converter on the headers of this message, the body is seen as empty by the converter.
+     * <p>
+     * Used to reuse the converters of RocketMQ for everything but the body.
+     */
+    public <T> T convertHeaders(Function<MessageExt, T> converter) {
+        headersOnly = true;
+        try {
+            return converter.apply(this);
+        } finally {
+            headersOnly = false;
+        }
+    }
+
+    @Override
+    public byte[] getBody() {
+        if (headersOnly) {
+            return EMPTY_BODY;
+        }
+        if (payload != null) {
+            byte[] body = new byte[payload.remaining()];
+            payload.get(payload.position(), body);
+            setBody(body);
+        }
+        return super.getBody();
+    }
+
+    @Override
+    public void setBody(byte[] body) {
+        super.setBody(body);
+        this.payload = null;
+    }
+}
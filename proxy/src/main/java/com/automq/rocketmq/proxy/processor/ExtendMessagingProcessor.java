@@ -14,11 +14,13 @@ package com.automq.rocketmq.proxy.processor;
 import apache.rocketmq.v2.Code;
 import com.automq.rocketmq.common.config.ProxyConfig;
 import com.automq.rocketmq.proxy.exception.ProxyException;
+import com.automq.rocketmq.proxy.service.ExtendMessageService;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.apache.rocketmq.broker.client.ConsumerManager;
 import org.apache.rocketmq.broker.client.ProducerManager;
 import org.apache.rocketmq.client.consumer.PopResult;
+import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.proxy.common.ProxyContext;
 import org.apache.rocketmq.proxy.processor.DefaultMessagingProcessor;
 import org.apache.rocketmq.proxy.processor.PopMessageResultFilter;
@@ -52,6 +54,16 @@ public class ExtendMessagingProcessor extends DefaultMessagingProcessor {
             .orTimeout(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Search the offset of the first message stored at or after the given timestamp in the queue.
+     */
+    public CompletableFuture<Long> searchOffset(ProxyContext ctx, MessageQueue messageQueue, long timestamp) {
+        if (serviceManager.getMessageService() instanceof ExtendMessageService messageService) {
+            return messageService.searchOffsetByTimestamp(messageQueue.getTopic(), messageQueue.getQueueId(), timestamp);
+        }
+        return CompletableFuture.failedFuture(new ProxyException(Code.NOT_IMPLEMENTED, "Search offset by timestamp is not supported"));
+    }
+
     public ServiceManager getServiceManager() {
         return serviceManager;
     }
@@ -12,6 +12,7 @@
 package com.automq.rocketmq.proxy.remoting.activity;
 
 import com.automq.rocketmq.proxy.exception.ExceptionHandler;
+import com.automq.rocketmq.proxy.processor.ExtendMessagingProcessor;
 import com.automq.rocketmq.proxy.remoting.RemotingUtil;
 import io.netty.channel.ChannelHandlerContext;
 import java.util.Optional;
@@ -19,7 +20,6 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.proxy.common.ProxyContext;
-import org.apache.rocketmq.proxy.processor.MessagingProcessor;
 import org.apache.rocketmq.proxy.remoting.activity.ConsumerManagerActivity;
 import org.apache.rocketmq.proxy.remoting.pipeline.RequestPipeline;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
@@ -35,12 +35,17 @@ import org.apache.rocketmq.remoting.protocol.header.GetMinOffsetRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.GetMinOffsetResponseHeader;
 import org.apache.rocketmq.remoting.protocol.header.QueryConsumerOffsetRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.QueryConsumerOffsetResponseHeader;
+import org.apache.rocketmq.remoting.protocol.header.SearchOffsetRequestHeader;
+import org.apache.rocketmq.remoting.protocol.header.SearchOffsetResponseHeader;
 import org.apache.rocketmq.remoting.protocol.header.UpdateConsumerOffsetRequestHeader;
 
 public class ExtendConsumerManagerActivity extends ConsumerManagerActivity implements CommonRemotingBehavior {
+    ExtendMessagingProcessor messagingProcessor;
+
     public ExtendConsumerManagerActivity(RequestPipeline requestPipeline,
-        MessagingProcessor messagingProcessor) {
+        ExtendMessagingProcessor messagingProcessor) {
         super(requestPipeline, messagingProcessor);
+        this.messagingProcessor = messagingProcessor;
     }
 
     @Override
@@ -159,9 +164,30 @@ public class ExtendConsumerManagerActivity extends ConsumerManagerActivity imple
     }
 
     private RemotingCommand searchOffsetByTimestamp(ChannelHandlerContext ctx, RemotingCommand request,
-        ProxyContext context) {
-        // TODO: We should implement these requests to support the Admin tool
-        return RemotingUtil.codeNotSupportedResponse(request);
+        ProxyContext context) throws RemotingCommandException {
+        // Retrieve the request header.
+        final SearchOffsetRequestHeader requestHeader = (SearchOffsetRequestHeader)
+            request.decodeCommandCustomHeader(SearchOffsetRequestHeader.class);
+
+        // Build the response.
+        final RemotingCommand response = RemotingUtil.buildResponseCommand(request, ResponseCode.SUCCESS,
+            SearchOffsetResponseHeader.class);
+
+        String brokerName = dstBrokerName(request);
+        assert brokerName != null;
+        MessageQueue messageQueue = new MessageQueue(requestHeader.getTopic(), brokerName, requestHeader.getQueueId());
+
+        messagingProcessor.searchOffset(context, messageQueue, requestHeader.getTimestamp()).whenComplete((offset, ex) -> {
+            if (ex != null) {
+                writeErrResponse(ctx, context, request, ex);
+                return;
+            }
+            SearchOffsetResponseHeader responseHeader = (SearchOffsetResponseHeader) response.readCustomHeader();
+            responseHeader.setOffset(offset);
+            writeResponse(ctx, context, request, response);
+        });
+
+        return null;
     }
 
     private RemotingCommand getMaxOffset(ChannelHandlerContext ctx, RemotingCommand request, ProxyContext context)
@@ -15,22 +15,21 @@ import com.automq.rocketmq.common.trace.TraceHelper;
 import com.automq.rocketmq.proxy.exception.ExceptionHandler;
 import com.automq.rocketmq.proxy.model.ProxyContextExt;
 import com.automq.rocketmq.proxy.remoting.RemotingUtil;
+import com.automq.rocketmq.proxy.util.FlatMessageUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.FileRegion;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.Tracer;
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletionException;
 import org.apache.rocketmq.broker.client.ConsumerGroupInfo;
-import org.apache.rocketmq.broker.pagecache.ManyMessageTransfer;
 import org.apache.rocketmq.client.consumer.PullStatus;
 import org.apache.rocketmq.common.attribute.TopicMessageType;
 import org.apache.rocketmq.common.help.FAQUrl;
-import org.apache.rocketmq.common.message.MessageDecoder;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.common.sysflag.PullSysFlag;
@@ -50,8 +49,6 @@ import org.apache.rocketmq.remoting.protocol.header.PullMessageRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.PullMessageResponseHeader;
 import org.apache.rocketmq.remoting.protocol.heartbeat.SubscriptionData;
 import org.apache.rocketmq.remoting.protocol.subscription.SubscriptionGroupConfig;
-import org.apache.rocketmq.store.GetMessageResult;
-import org.apache.rocketmq.store.SelectMappedBufferResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -234,20 +231,19 @@ public class ExtendPullMessageActivity extends PullMessageActivity implements Co
                 if (pullResult.getPullStatus() == PullStatus.FOUND) {
                     List<MessageExt> msgList = pullResult.getMsgFoundList();
 
-                    GetMessageResult getMessageResult = new GetMessageResult();
-                    for (MessageExt messageExt : msgList) {
-                        byte[] payload;
-                        try {
-                            payload = MessageDecoder.encode(messageExt, false);
-                        } catch (Exception e) {
-                            // TODO: Rewrite the response for this case.
-                            throw new CompletionException(e);
+                    // Encode messages into a pooled buffer, which is released by netty once written.
+                    ByteBuf body = ctx.alloc().directBuffer();
+                    try {
+                        for (MessageExt messageExt : msgList) {
+                            FlatMessageUtil.encode(messageExt, body);
                         }
-                        getMessageResult.addMessage(new SelectMappedBufferResult(0, ByteBuffer.wrap(payload), payload.length, null));
+                    } catch (Exception e) {
+                        body.release();
+                        // TODO: Rewrite the response for this case.
+                        throw new CompletionException(e);
                     }
-                    FileRegion fileRegion =
-                        new ManyMessageTransfer(response.encodeHeader(getMessageResult.getBufferTotalSize()), getMessageResult);
-                    ctx.writeAndFlush(fileRegion)
+                    ByteBuf header = Unpooled.wrappedBuffer(response.encodeHeader(body.readableBytes()));
+                    ctx.writeAndFlush(Unpooled.wrappedBuffer(header, body))
                         .addListener(future -> {
                             recordRpcLatency(context, response);
                             rootSpan.setAttribute("code", RemotingHelper.getResponseCodeDesc(response.getCode()));
@@ -19,44 +19,99 @@ import com.automq.rocketmq.common.config.BrokerConfig;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.common.system.MessageConstants;
 import com.automq.rocketmq.common.trace.TraceContext;
+import com.automq.rocketmq.common.util.ExecutorFactory;
 import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.proxy.grpc.ProxyClient;
 import com.automq.rocketmq.store.api.DeadLetterSender;
 import com.automq.rocketmq.store.api.MessageStore;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.message.PutResult;
-import com.automq.stream.utils.ThreadUtils;
+import com.automq.rocketmq.store.model.message.TopicQueueId;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Send dead letters to the DLQ topic of their consumer group.
+ * <p>
+ * The DLQ routing of each consumer group is cached for a while and invalidated once sending fails. Dead letters to a
+ * local queue are grouped per queue and appended in batches on a bounded worker pool, dead letters to a queue of
+ * another node are relayed to that node. Batchers of queues are dropped once they run out of dead letters.
+ * <p>
+ * Only dead letters accepted by the DLQ topic are counted, by the consumer group and the queue they come from.
+ */
 public class DeadLetterService implements DeadLetterSender {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterService.class);
     private final ProxyClient relayClient;
     private final BrokerConfig brokerConfig;
     private final ProxyMetadataService metadataService;
     private final ExecutorService senderExecutor;
+    private final ConcurrentMap<Long /*consumerGroupId*/, CompletableFuture<Route>> routeCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TopicQueueId, Batcher> batchers = new ConcurrentHashMap<>();
     private MessageStore messageStore;
 
+    /**
+     * DLQ routing of a consumer group, dead letters are dropped if there is no topic.
+     */
+    record Route(long deadLetterTopicId, Topic topic, List<Integer> localQueueIds, List<MessageQueueAssignment> remoteAssignments,
+                 String dropReason, long expireTimestamp, AtomicInteger sequence) {
+        static Route dropped(long deadLetterTopicId, String dropReason, long expireTimestamp) {
+            return new Route(deadLetterTopicId, null, List.of(), List.of(), dropReason, expireTimestamp, new AtomicInteger());
+        }
+
+        boolean expired() {
+            return System.currentTimeMillis() >= expireTimestamp;
+        }
+
+        int nextLocalQueueId() {
+            return localQueueIds.get(Math.floorMod(sequence.getAndIncrement(), localQueueIds.size()));
+        }
+
+        MessageQueueAssignment nextRemoteAssignment() {
+            return remoteAssignments.get(Math.floorMod(sequence.getAndIncrement(), remoteAssignments.size()));
+        }
+    }
+
+    record DeadLetter(long consumerGroupId, FlatMessage message, Attributes attributes, CompletableFuture<Void> future) {
+    }
+
     public DeadLetterService(BrokerConfig brokerConfig, ProxyMetadataService metadataService, ProxyClient relayClient) {
         this.brokerConfig = brokerConfig;
         this.metadataService = metadataService;
         this.relayClient = relayClient;
-        this.senderExecutor = Executors.newSingleThreadExecutor(
-            ThreadUtils.createThreadFactory("dlq-sender", false));
+        this.senderExecutor = ExecutorFactory.newExecutor("dlq-sender", brokerConfig.proxy().deadLetterThreadPoolNums(),
+            brokerConfig.proxy().deadLetterThreadPoolQueueCapacity(), brokerConfig.proxy().enableVirtualThreads());
     }
 
     public void init(MessageStore messageStore) {
         this.messageStore = messageStore;
     }
 
+    int batcherQuantity() {
+        return batchers.size();
+    }
+
+    /**
+     * Drop the cached DLQ routing of the consumer group, e.g. once its DLQ topic is changed.
+     */
+    public void invalidateRoute(long consumerGroupId) {
+        routeCache.remove(consumerGroupId);
+    }
+
     @Override
     @WithSpan
     public CompletableFuture<Void> send(TraceContext context, long consumerGroupId, FlatMessage message) {
@@ -64,75 +119,201 @@ public class DeadLetterService implements DeadLetterSender {
             return CompletableFuture.failedFuture(new IllegalStateException("Message store is not initialized"));
         }
 
-        CompletableFuture<Topic> dlqQueryCf = metadataService.consumerGroupOf(consumerGroupId)
-            .thenComposeAsync(consumerGroup -> {
-                long deadLetterTopicId = consumerGroup.getDeadLetterTopicId();
-                long topicId = message.topicId();
-                if (deadLetterTopicId == MessageConstants.UNINITIALIZED_TOPIC_ID) {
-                    // not allow to send to DLQ
-                    LOGGER.warn("Message: {} is dropped because the consumer group: {} doesn't have DLQ topic",
-                        message.systemProperties().messageId(), consumerGroupId);
-                    return CompletableFuture.completedFuture(null);
-                }
-                if (deadLetterTopicId == topicId) {
-                    LOGGER.error("Message: {} is dropped because the consumer group: {} has the same DLQ topic: {} with original topic",
-                        message.systemProperties().messageId(), consumerGroupId, topicId);
-                    return CompletableFuture.completedFuture(null);
-                }
-                // get dlq topic info
-                return metadataService.topicOf(deadLetterTopicId);
-            }, senderExecutor);
-
-        return dlqQueryCf.thenComposeAsync(dlqTopic -> {
-            if (dlqTopic == null) {
+        return routeOf(consumerGroupId).thenCompose(route -> {
+            if (route.deadLetterTopicId() == message.topicId()) {
+                LOGGER.error("Message: {} is dropped because the consumer group: {} has the same DLQ topic: {} with original topic",
+                    message.systemProperties().messageId(), consumerGroupId, message.topicId());
                 return CompletableFuture.completedFuture(null);
             }
-            // verify dlq topic is valid
-            if (!(dlqTopic.getAcceptTypes().getTypesList().contains(MessageType.NORMAL)
-                || dlqTopic.getAcceptTypes().getTypesList().contains(MessageType.FIFO))) {
-                LOGGER.error("Message: {} is dropped because the consumer group: {} has invalid DLQ topic: {}",
-                    message.systemProperties().messageId(), consumerGroupId, dlqTopic);
-                return CompletableFuture.completedFuture(null);
-            }
-
-            message.mutateTopicId(dlqTopic.getTopicId());
-
-            List<MessageQueueAssignment> assignmentsList = new ArrayList<>(dlqTopic.getAssignmentsList());
-            if (assignmentsList.isEmpty()) {
-                LOGGER.error("Message: {} is dropped because the consumer group: {} has empty DLQ topic: {}",
-                    message.systemProperties().messageId(), consumerGroupId, dlqTopic);
+            if (route.topic() == null) {
+                LOGGER.warn("Message: {} is dropped because {}", message.systemProperties().messageId(), route.dropReason());
                 return CompletableFuture.completedFuture(null);
             }
 
-            Collections.shuffle(assignmentsList);
-            Optional<MessageQueueAssignment> optional = assignmentsList.stream()
-                .filter(assignment -> assignment.getNodeId() == brokerConfig.nodeId())
-                .findFirst();
+            Attributes attributes = StoreMetricsManager.buildQueueAttributes(consumerGroupId, message.topicId(), message.queueId());
+            message.mutateTopicId(route.topic().getTopicId());
 
             // Send to local DLQ
-            if (optional.isPresent()) {
-                MessageQueueAssignment assignment = optional.get();
-                message.mutateQueueId(assignment.getQueue().getQueueId());
-                return messageStore.put(StoreContext.EMPTY, message)
-                    .thenAccept(result -> {
-                        if (result.status() != PutResult.Status.PUT_OK) {
-                            LOGGER.error("Message: {} is dropped because the consumer group: {} failed to send to DLQ topic: {}, code: {}",
-                                message.systemProperties().messageId(), consumerGroupId, dlqTopic, result.status());
-                        }
-                    });
+            if (!route.localQueueIds().isEmpty()) {
+                int queueId = route.nextLocalQueueId();
+                message.mutateQueueId(queueId);
+                DeadLetter deadLetter = new DeadLetter(consumerGroupId, message, attributes, new CompletableFuture<>());
+                TopicQueueId topicQueueId = TopicQueueId.of(route.topic().getTopicId(), queueId);
+                // Queued within compute, such that a batcher is never dropped with dead letters left behind.
+                Batcher batcher = batchers.compute(topicQueueId, (k, current) -> {
+                    Batcher target = current == null ? new Batcher(topicQueueId) : current;
+                    target.deadLetters.offer(deadLetter);
+                    return target;
+                });
+                batcher.tryDispatch();
+                return deadLetter.future();
             }
 
             // Send to remote DLQ
-            MessageQueueAssignment assignment = assignmentsList.get(0);
+            MessageQueueAssignment assignment = route.nextRemoteAssignment();
             message.mutateQueueId(assignment.getQueue().getQueueId());
             return metadataService.addressOf(assignment.getNodeId())
                 .thenCompose(address -> relayClient.relayMessage(address, message))
                 .thenAccept(status -> {
                     if (status.getCode() != Code.OK) {
+                        invalidateRoute(consumerGroupId);
                         LOGGER.error("Message: {} is dropped because the consumer group: {} failed to send to DLQ topic: {}, code: {}, reason: {}",
-                            message.systemProperties().messageId(), consumerGroupId, dlqTopic, status.getCode(), status.getMessage());
+                            message.systemProperties().messageId(), consumerGroupId, route.topic(), status.getCode(), status.getMessage());
+                        return;
+                    }
+                    StoreMetricsManager.deadLetterMessages.add(1, attributes);
+                })
+                .whenComplete((nil, throwable) -> {
+                    if (throwable != null) {
+                        invalidateRoute(consumerGroupId);
+                    }
+                });
+        });
+    }
+
+    private CompletableFuture<Route> routeOf(long consumerGroupId) {
+        CompletableFuture<Route> future = routeCache.compute(consumerGroupId, (k, cached) -> {
+            if (cached != null && !cached.isCompletedExceptionally()) {
+                Route route = cached.getNow(null);
+                if (route == null || !route.expired()) {
+                    return cached;
+                }
+            }
+            return loadRoute(consumerGroupId);
+        });
+        future.whenComplete((route, throwable) -> {
+            if (throwable != null) {
+                routeCache.remove(consumerGroupId, future);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<Route> loadRoute(long consumerGroupId) {
+        long expireTimestamp = System.currentTimeMillis() + brokerConfig.proxy().deadLetterRouteExpireMillis();
+        return metadataService.consumerGroupOf(consumerGroupId)
+            .thenCompose(consumerGroup -> {
+                long deadLetterTopicId = consumerGroup.getDeadLetterTopicId();
+                if (deadLetterTopicId == MessageConstants.UNINITIALIZED_TOPIC_ID) {
+                    // not allow to send to DLQ
+                    return CompletableFuture.completedFuture(Route.dropped(deadLetterTopicId,
+                        String.format("the consumer group: %d doesn't have DLQ topic", consumerGroupId), expireTimestamp));
+                }
+                // get dlq topic info
+                return metadataService.topicOf(deadLetterTopicId)
+                    .thenApply(dlqTopic -> {
+                        if (dlqTopic == null) {
+                            return Route.dropped(deadLetterTopicId, String.format("the DLQ topic: %d of the consumer group: %d is not found",
+                                deadLetterTopicId, consumerGroupId), expireTimestamp);
+                        }
+                        // verify dlq topic is valid
+                        if (!(dlqTopic.getAcceptTypes().getTypesList().contains(MessageType.NORMAL)
+                            || dlqTopic.getAcceptTypes().getTypesList().contains(MessageType.FIFO))) {
+                            return Route.dropped(deadLetterTopicId, String.format("the consumer group: %d has invalid DLQ topic: %s",
+                                consumerGroupId, dlqTopic), expireTimestamp);
+                        }
+                        if (dlqTopic.getAssignmentsList().isEmpty()) {
+                            return Route.dropped(deadLetterTopicId, String.format("the consumer group: %d has empty DLQ topic: %s",
+                                consumerGroupId, dlqTopic), expireTimestamp);
+                        }
+
+                        List<Integer> localQueueIds = new ArrayList<>();
+                        List<MessageQueueAssignment> remoteAssignments = new ArrayList<>();
+                        for (MessageQueueAssignment assignment : dlqTopic.getAssignmentsList()) {
+                            if (assignment.getNodeId() == brokerConfig.nodeId()) {
+                                localQueueIds.add(assignment.getQueue().getQueueId());
+                            } else {
+                                remoteAssignments.add(assignment);
+                            }
+                        }
+                        // Start from a random queue so that nodes do not pile dead letters on the same queue
+                        AtomicInteger sequence = new AtomicInteger(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+                        return new Route(deadLetterTopicId, dlqTopic, localQueueIds, remoteAssignments, null, expireTimestamp, sequence);
+                    });
+            });
+    }
+
+    private CompletableFuture<Void> put(DeadLetter deadLetter) {
+        FlatMessage message = deadLetter.message();
+        CompletableFuture<Void> future;
+        try {
+            future = messageStore.put(StoreContext.EMPTY, message)
+                .thenAccept(result -> {
+                    if (result.status() != PutResult.Status.PUT_OK) {
+                        LOGGER.error("Message: {} is dropped because the consumer group: {} failed to send to DLQ topic: {}, code: {}",
+                            message.systemProperties().messageId(), deadLetter.consumerGroupId(), message.topicId(), result.status());
+                        return;
                     }
+                    StoreMetricsManager.deadLetterMessages.add(1, deadLetter.attributes());
+                });
+        } catch (Throwable t) {
+            future = CompletableFuture.failedFuture(t);
+        }
+        return future.whenComplete((nil, throwable) -> {
+            if (throwable != null) {
+                // The queue may have been moved to another node
+                invalidateRoute(deadLetter.consumerGroupId());
+                deadLetter.future().completeExceptionally(throwable);
+            } else {
+                deadLetter.future().complete(null);
+            }
+        });
+    }
+
+    /**
+     * Append dead letters to a DLQ queue, letters arriving during an ongoing append are appended together in the next
+     * round.
+     */
+    private class Batcher {
+        private final TopicQueueId topicQueueId;
+        private final Queue<DeadLetter> deadLetters = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        Batcher(TopicQueueId topicQueueId) {
+            this.topicQueueId = topicQueueId;
+        }
+
+        private void tryDispatch() {
+            while (!deadLetters.isEmpty() && running.compareAndSet(false, true)) {
+                List<DeadLetter> batch = drain();
+                if (batch.isEmpty()) {
+                    running.set(false);
+                    continue;
+                }
+                try {
+                    senderExecutor.execute(() -> append(batch));
+                } catch (RejectedExecutionException e) {
+                    batch.forEach(deadLetter -> deadLetter.future().completeExceptionally(e));
+                    running.set(false);
+                    continue;
+                }
+                return;
+            }
+            evictIfIdle();
+        }
+
+        private void evictIfIdle() {
+            batchers.computeIfPresent(topicQueueId, (k, current) ->
+                current == this && deadLetters.isEmpty() && !running.get() ? null : current);
+        }
+
+        private List<DeadLetter> drain() {
+            List<DeadLetter> batch = new ArrayList<>();
+            DeadLetter deadLetter;
+            while (batch.size() < brokerConfig.proxy().maxDeadLetterBatchSize() && (deadLetter = deadLetters.poll()) != null) {
+                batch.add(deadLetter);
+            }
+            return batch;
+        }
+
+        private void append(List<DeadLetter> batch) {
+            // Puts are issued back to back, so that the stream store appends them together.
+            List<CompletableFuture<Void>> futures = batch.stream().map(DeadLetterService.this::put).toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenComplete((nil, throwable) -> {
+                    running.set(false);
+                    tryDispatch();
                 });
-        }, senderExecutor);
+        }
     }
 }
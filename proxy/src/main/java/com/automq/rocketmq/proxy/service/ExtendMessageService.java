@@ -12,6 +12,8 @@
 package com.automq.rocketmq.proxy.service;
 
 import apache.rocketmq.proxy.v1.QueueStats;
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.tuple.Pair;
@@ -38,6 +40,31 @@ public interface ExtendMessageService {
      */
     CompletableFuture<Void> resetConsumeOffsetByTimestamp(String topic, int queueId, String consumerGroup, long timestamp);
 
+    /**
+     * Search the offset of the first message stored at or after the given timestamp.
+     *
+     * @param topic The topic name.
+     * @param queueId The queue id of the queue.
+     * @param timestamp The store timestamp in milliseconds.
+     * @return The offset found, or the max offset of the queue if all messages are stored before the timestamp.
+     */
+    CompletableFuture<Long> searchOffsetByTimestamp(String topic, int queueId, long timestamp);
+
+    /**
+     * Query messages by message key or message id.
+     *
+     * @param topic The topic name.
+     * @param queueId The queue id of the queue, -1 means all queues opened in this node.
+     * @param type Look up by message key or message id.
+     * @param key The message key or message id.
+     * @param beginTimestamp The inclusive lower bound of store timestamps.
+     * @param endTimestamp The inclusive upper bound of store timestamps.
+     * @param maxCount The max number of messages.
+     * @return The messages found, the latest first.
+     */
+    CompletableFuture<List<FlatMessageExt>> queryMessages(String topic, int queueId, MessageIndexType type, String key,
+        long beginTimestamp, long endTimestamp, int maxCount);
+
     /**
      * Get the stats of the given topic.
      *
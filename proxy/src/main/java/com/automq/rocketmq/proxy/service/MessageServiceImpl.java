@@ -25,7 +25,7 @@ import com.automq.rocketmq.common.config.ProxyConfig;
 import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
-import com.automq.rocketmq.common.util.CommonUtil;
+import com.automq.rocketmq.common.util.ExecutorFactory;
 import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.proxy.exception.ProxyException;
 import com.automq.rocketmq.proxy.grpc.ProxyClient;
@@ -40,21 +40,26 @@ import com.automq.rocketmq.store.api.LogicQueue;
 import com.automq.rocketmq.store.api.MessageStore;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.StoreContext;
-import com.automq.rocketmq.store.model.generated.TimerTag;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
 import com.automq.rocketmq.store.model.message.SQLFilter;
 import com.automq.rocketmq.store.model.message.TagFilter;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
 import com.automq.rocketmq.store.model.transaction.TransactionResolution;
-import io.netty.channel.Channel;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +72,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.rocketmq.broker.client.ProducerManager;
@@ -122,12 +128,16 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
     private final ProxyMetadataService metadataService;
     private final MessageStore store;
     private final LockService lockService;
+    private final PopRequestCoalescer popRequestCoalescer;
+    private final PopSourceScheduler popSourceScheduler;
     private final DeadLetterSender deadLetterService;
     private final SuspendRequestService suspendRequestService;
     private final ProducerManager producerManager;
     private final ProxyClient relayClient;
     private final ExecutorService executorService = ThreadPoolMonitor.createAndMonitor(2, 5, 100, TimeUnit.SECONDS,
         "Transaction-msg-check-thread", 2000);
+    private final ExecutorService ackExecutor;
+    private final TransactionCheckDispatcher transactionCheckDispatcher;
 
     public MessageServiceImpl(BrokerConfig config, MessageStore store, ProxyMetadataService metadataService,
         LockService lockService, DeadLetterSender deadLetterService, ProducerManager producerManager,
@@ -138,27 +148,30 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         this.metadataService = metadataService;
         this.deadLetterService = deadLetterService;
         this.lockService = lockService;
+        this.popRequestCoalescer = new PopRequestCoalescer(this.config.maxCoalescedPopBatchSize());
+        this.popSourceScheduler = new PopSourceScheduler(this.config, store);
         this.suspendRequestService = SuspendRequestService.getInstance();
         this.producerManager = producerManager;
         this.relayClient = relayClient;
+        this.ackExecutor = ExecutorFactory.newExecutor("ack-callback", this.config.ackThreadPoolNums(),
+            this.config.enableVirtualThreads());
+        this.transactionCheckDispatcher = new TransactionCheckDispatcher(metadataService, producerManager,
+            executorService, this.config.maxTransactionCheckBatchSize(), this::buildCheckTransactionStateRequest);
 
         store.registerTimerMessageHandler(timerTag -> executorService.execute(() -> {
             try {
                 ByteBuffer payload = timerTag.payloadAsByteBuffer();
                 FlatMessage message = FlatMessage.getRootAsFlatMessage(payload);
-                putMessage(message).join();
+                putMessage(message).exceptionally(ex -> {
+                    LOGGER.error("Error while put timer message {}", message.systemProperties().messageId(), ex);
+                    return null;
+                });
             } catch (Throwable t) {
-                LOGGER.error("Error while check transaction status", t);
+                LOGGER.error("Error while put timer message", t);
             }
         }));
 
-        store.registerTransactionCheckHandler(timerTag -> executorService.execute(() -> {
-            try {
-                checkTransactionStatus(timerTag);
-            } catch (Throwable t) {
-                LOGGER.error("Error while check transaction status", t);
-            }
-        }));
+        store.registerTransactionCheckHandler(transactionCheckDispatcher::submit);
     }
 
     public TopicMessageType getMessageType(SendMessageRequestHeader requestHeader) {
@@ -400,59 +413,54 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
                     return CompletableFuture.completedFuture(null);
                 }
 
+                // Resolve the transaction only once the committed message is put, otherwise release it to be checked
+                // and committed again
+                String transactionId = requestHeader.getTransactionId();
                 return putMessage(ctx, optional.get())
-                    .thenAccept(ignore -> {
-                    });
+                    .handle((result, ex) -> {
+                        if (ex != null) {
+                            return store.releaseTransaction(transactionId)
+                                .thenCompose(nil -> CompletableFuture.<Void>failedFuture(ex));
+                        }
+                        return store.resolveTransaction(transactionId);
+                    })
+                    .thenCompose(Function.identity());
             });
     }
 
-    private void checkTransactionStatus(TimerTag timerTag) {
-        ByteBuffer payload = timerTag.payloadAsByteBuffer();
-        FlatMessage message = FlatMessage.getRootAsFlatMessage(payload);
-        try {
-            message.systemProperties().mutateOrphanedTransactionCheckTimes(message.systemProperties().orphanedTransactionCheckTimes() + 1);
-            store.scheduleCheckTransaction(message);
-
-            Topic topic = metadataService.topicOf(message.topicId()).join();
-            String producerGroup = message.systemProperties().orphanedTransactionProducer();
-            if (StringUtils.isBlank(producerGroup)) {
-                producerGroup = topic.getName();
-            }
-            Channel channel = producerManager.getAvailableChannel(producerGroup);
-            if (channel != null) {
-                CheckTransactionStateRequestHeader requestHeader = new CheckTransactionStateRequestHeader();
-                requestHeader.setCommitLogOffset(0L);
-                requestHeader.setOffsetMsgId("");
-                requestHeader.setTranStateTableOffset(0L);
-                requestHeader.setMsgId(message.systemProperties().messageId());
-                requestHeader.setTransactionId(message.systemProperties().messageId());
-
-                ByteBuffer buffer = timerTag.identityAsByteBuffer();
-                byte[] identity = new byte[buffer.remaining()];
-                buffer.get(identity);
-                requestHeader.setTransactionId(new String(identity));
-
-                RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.CHECK_TRANSACTION_STATE, requestHeader);
-                FlatMessageExt flatMessageExt = FlatMessageExt.Builder.builder()
-                    .offset(0L)
-                    .message(message)
-                    .build();
-                MessageExt messageExt = FlatMessageUtil.convertTo(flatMessageExt, topic.getName(), 0, config.hostName(), config.grpcListenPort());
-                request.setBody(RemotingConverter.getInstance().convertMsgToBytes(messageExt));
-                channel.writeAndFlush(request);
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error while check transaction: message {}", message.systemProperties().messageId(), e);
-        }
+    private RemotingCommand buildCheckTransactionStateRequest(TransactionCheck check, Topic topic) {
+        FlatMessage message = check.message();
+        message.systemProperties().mutateOrphanedTransactionCheckTimes(check.checkTimes());
+
+        CheckTransactionStateRequestHeader requestHeader = new CheckTransactionStateRequestHeader();
+        requestHeader.setCommitLogOffset(0L);
+        requestHeader.setOffsetMsgId("");
+        requestHeader.setTranStateTableOffset(0L);
+        requestHeader.setMsgId(message.systemProperties().messageId());
+        requestHeader.setTransactionId(check.transactionId());
+
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.CHECK_TRANSACTION_STATE, requestHeader);
+        FlatMessageExt flatMessageExt = FlatMessageExt.Builder.builder()
+            .offset(0L)
+            .message(message)
+            .build();
+        MessageExt messageExt = FlatMessageUtil.convertTo(flatMessageExt, topic.getName(), 0, config.hostName(), config.grpcListenPort());
+        request.setBody(RemotingConverter.getInstance().convertMsgToBytes(messageExt));
+        return request;
     }
 
     record InnerPopResult(
         long restMessageCount,
-        List<FlatMessageExt> messageList
+        List<FlatMessageExt> messageList,
+        boolean inflightQuotaExceeded
     ) implements SuspendRequestService.GetMessageResult {
+        InnerPopResult(long restMessageCount, List<FlatMessageExt> messageList) {
+            this(restMessageCount, messageList, false);
+        }
+
         @Override
         public boolean needWriteResponse() {
-            return restMessageCount > 0 || !messageList.isEmpty();
+            return restMessageCount > 0 || !messageList.isEmpty() || inflightQuotaExceeded;
         }
     }
 
@@ -465,42 +473,46 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         long topicId = topic.getTopicId();
         StoreContext storeContext = ContextUtil.buildStoreContext(context, topic.getName(), consumerGroup.getName());
 
-        // Decide whether to pop the retry-messages first
-        boolean retryPriority = !fifo && CommonUtil.applyPercentage(config.retryPriorityPercentage());
-
-        CompletableFuture<InnerPopResult> popFuture = store.pop(storeContext, consumerGroupId, topicId, queueId, filter, batchSize, fifo, retryPriority, invisibleDuration)
-            .thenApply(firstResult -> {
-                List<FlatMessageExt> resultList = firstResult.messageList();
-                messageList.addAll(resultList);
-                Integer totalSize = resultList.stream()
-                    .map(message -> message.message().payloadAsByteBuffer().remaining())
-                    .reduce(0, Integer::sum);
-                ProxyMetricsManager.recordOutgoingMessages(topic.getName(), consumerGroup.getName(), resultList.size(), totalSize, retryPriority);
-                return new InnerPopResult(firstResult.restMessageCount(), messageList);
-            });
-
-        // There is no retry message when pop orderly. So that return origin messages directly.
+        // There is no retry message when pop orderly. So that pop from the normal stream directly.
         if (fifo) {
-            return popFuture;
+            return store.pop(storeContext, consumerGroupId, topicId, queueId, filter, batchSize, true, false, invisibleDuration)
+                .thenApply(result -> {
+                    messageList.addAll(result.messageList());
+                    recordOutgoingMessages(topic, consumerGroup, result.messageList(), false);
+                    return new InnerPopResult(result.restMessageCount(), messageList,
+                        result.status() == com.automq.rocketmq.store.model.message.PopResult.Status.INFLIGHT_QUOTA_EXCEEDED);
+                });
         }
 
-        return popFuture.thenCompose(firstPopResult -> {
-            int firstPopMessageCount = firstPopResult.messageList.size();
-            if (firstPopMessageCount < batchSize) {
-                return store.pop(storeContext, consumerGroupId, topicId, queueId, filter, batchSize - firstPopMessageCount, false, !retryPriority, invisibleDuration)
-                    .thenApply(secondResult -> {
-                        List<FlatMessageExt> secondPopMessageList = secondResult.messageList();
-                        messageList.addAll(secondPopMessageList);
-                        Integer totalSize = secondPopMessageList.stream()
-                            .map(message -> message.message().payloadAsByteBuffer().remaining())
-                            .reduce(0, Integer::sum);
-                        ProxyMetricsManager.recordOutgoingMessages(topic.getName(), consumerGroup.getName(), secondPopMessageList.size(), totalSize, !retryPriority);
-
-                        return new InnerPopResult(firstPopResult.restMessageCount + secondResult.restMessageCount(), messageList);
+        // Skip sources without backlog, and decide whether to pop the retry-messages first.
+        List<PopSourceScheduler.Source> sources = popSourceScheduler.schedule(consumerGroupId, topicId, queueId);
+        CompletableFuture<InnerPopResult> popFuture = CompletableFuture.completedFuture(new InnerPopResult(0, messageList));
+        for (PopSourceScheduler.Source source : sources) {
+            popFuture = popFuture.thenCompose(lastResult -> {
+                int restBatchSize = batchSize - lastResult.messageList().size();
+                if (restBatchSize <= 0) {
+                    return CompletableFuture.completedFuture(lastResult);
+                }
+                return store.pop(storeContext, consumerGroupId, topicId, queueId, filter, restBatchSize, false, source.retry(), invisibleDuration)
+                    .thenApply(result -> {
+                        popSourceScheduler.served(consumerGroupId, topicId, queueId, source);
+                        messageList.addAll(result.messageList());
+                        recordOutgoingMessages(topic, consumerGroup, result.messageList(), source.retry());
+                        return new InnerPopResult(lastResult.restMessageCount() + result.restMessageCount(), messageList,
+                            lastResult.inflightQuotaExceeded()
+                                || result.status() == com.automq.rocketmq.store.model.message.PopResult.Status.INFLIGHT_QUOTA_EXCEEDED);
                     });
-            }
-            return CompletableFuture.completedFuture(firstPopResult);
-        });
+            });
+        }
+        return popFuture;
+    }
+
+    private void recordOutgoingMessages(Topic topic, ConsumerGroup consumerGroup, List<FlatMessageExt> messageList,
+        boolean retry) {
+        Integer totalSize = messageList.stream()
+            .map(message -> message.message().payloadAsByteBuffer().remaining())
+            .reduce(0, Integer::sum);
+        ProxyMetricsManager.recordOutgoingMessages(topic.getName(), consumerGroup.getName(), messageList.size(), totalSize, retry);
     }
 
     @WithSpan(kind = SpanKind.SERVER)
@@ -510,7 +522,23 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         @SpanAttribute Filter filter, @SpanAttribute int batchSize, @SpanAttribute boolean fifo,
         @SpanAttribute long invisibleDuration, @SpanAttribute long timeoutMillis) {
         long topicId = topic.getTopicId();
-        if (lockService.tryLock(topicId, queueId, clientId, fifo, false)) {
+        if (!fifo) {
+            // Concurrent pops on the same queue are served together instead of returning empty results.
+            return popRequestCoalescer.pop(consumerGroup.getGroupId(), topicId, queueId, context, filter, batchSize, invisibleDuration,
+                    (contexts, coalescedFilter, coalescedBatchSize, invisible) -> popCoalesced(contexts, consumerGroup, topic, queueId,
+                        coalescedFilter, coalescedBatchSize, invisible),
+                    this::releaseMessages)
+                // A request queued behind a long pop ends up like a long polling miss, its share goes to the next one.
+                .completeOnTimeout(new InnerPopResult(0, Collections.emptyList()), timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((v, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.error("Error while pop message from topic: {}, queue: {}, batch size: {}.", topic.getName(), queueId, batchSize, throwable);
+                    }
+                });
+        }
+
+        // FIFO pops still need exclusive ownership of the queue.
+        if (lockService.tryLock(topicId, queueId, clientId, true, false)) {
             return popSpecifiedQueueUnsafe(context, consumerGroup, topic, queueId, filter, batchSize, fifo, invisibleDuration)
                 .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
                 .whenComplete((v, throwable) -> {
@@ -522,6 +550,72 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
                     lockService.release(topicId, queueId);
                 });
         }
+        return CompletableFuture.completedFuture(emptyPopResult(consumerGroup, topicId, queueId));
+    }
+
+    /**
+     * Serve coalesced pop requests with one store pop, which is traced under the first request and linked from the
+     * traces of the others.
+     * <p>
+     * The queue lock is still held during the pop, since pops of other consumer groups and FIFO pops on the same queue
+     * are not coalesced with this one.
+     */
+    private CompletableFuture<InnerPopResult> popCoalesced(List<ProxyContext> contexts, ConsumerGroup consumerGroup,
+        Topic topic, int queueId, Filter filter, int batchSize, long invisibleDuration) {
+        ProxyContext head = contexts.get(0);
+        long topicId = topic.getTopicId();
+        if (!lockService.tryLock(topicId, queueId, head.getClientID(), false, false)) {
+            return CompletableFuture.completedFuture(emptyPopResult(consumerGroup, topicId, queueId));
+        }
+
+        List<Span> coalescedSpans = new ArrayList<>();
+        Optional<Span> headSpan = head instanceof ProxyContextExt headExt ? headExt.span() : Optional.empty();
+        for (ProxyContext ctx : contexts.subList(1, contexts.size())) {
+            if (ctx instanceof ProxyContextExt contextExt && contextExt.span().isPresent()) {
+                SpanBuilder spanBuilder = contextExt.tracer().get().spanBuilder("MessageServiceImpl::popCoalesced")
+                    .setParent(Context.current().with(contextExt.span().get()))
+                    .setSpanKind(SpanKind.INTERNAL)
+                    .setAttribute("batchSize", batchSize);
+                headSpan.ifPresent(span -> spanBuilder.addLink(span.getSpanContext()));
+                coalescedSpans.add(spanBuilder.startSpan());
+            }
+        }
+
+        CompletableFuture<InnerPopResult> popFuture;
+        try {
+            popFuture = popSpecifiedQueueUnsafe(head, consumerGroup, topic, queueId, filter, batchSize, false, invisibleDuration);
+        } catch (Throwable t) {
+            popFuture = CompletableFuture.failedFuture(t);
+        }
+        return popFuture.whenComplete((result, throwable) -> {
+            lockService.release(topicId, queueId);
+            coalescedSpans.forEach(span -> {
+                if (throwable != null) {
+                    span.recordException(throwable);
+                    span.setStatus(StatusCode.ERROR, throwable.getMessage());
+                } else {
+                    span.setStatus(StatusCode.OK);
+                }
+                span.end();
+            });
+        });
+    }
+
+    /**
+     * Make messages that were popped for timed out requests visible again.
+     */
+    private void releaseMessages(List<FlatMessageExt> messageList) {
+        for (FlatMessageExt message : messageList) {
+            message.receiptHandle().ifPresent(handle -> store.changeInvisibleDuration(handle, 0)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.warn("Failed to release message {} popped for a timed out request", handle, throwable);
+                    }
+                }));
+        }
+    }
+
+    private InnerPopResult emptyPopResult(ConsumerGroup consumerGroup, long topicId, int queueId) {
         AtomicLong restOffset = new AtomicLong();
         store.getOffsetRange(topicId, queueId, -1)
             .stream()
@@ -533,7 +627,7 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
                     restOffset.set(diff);
                 }
             });
-        return CompletableFuture.completedFuture(new InnerPopResult(restOffset.get(), Collections.emptyList()));
+        return new InnerPopResult(restOffset.get(), Collections.emptyList());
     }
 
     @Override
@@ -541,6 +635,7 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
     public CompletableFuture<PopResult> popMessage(ProxyContext ctx,
         @SpanAttribute AddressableMessageQueue messageQueue,
         @SpanAttribute PopMessageRequestHeader requestHeader, @SpanAttribute long timeoutMillis) {
+        long startNanos = System.nanoTime();
         CompletableFuture<Topic> topicFuture = topicOf(requestHeader.getTopic());
         CompletableFuture<ConsumerGroup> groupFuture = consumerGroupOf(requestHeader.getConsumerGroup());
 
@@ -584,18 +679,27 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
 
         return popMessageFuture.thenCompose(result -> {
             if (result.messageList.isEmpty()) {
+                if (result.inflightQuotaExceeded) {
+                    // Too many messages are popped but not acked by the consumer group, ask the client to back off.
+                    return CompletableFuture.completedFuture(new PopResult(PopStatus.POLLING_FULL, Collections.emptyList()));
+                }
                 if (result.restMessageCount > 0) {
                     // This means there are messages in the queue but not match the filter. So we should prevent long polling.
                     PopResult popResult = new PopResult(PopStatus.NO_NEW_MSG, Collections.emptyList());
                     popResult.setRestNum(result.restMessageCount);
                     return CompletableFuture.completedFuture(popResult);
                 } else {
-                    return suspendRequestService.suspendRequest((ProxyContextExt) ctx, requestHeader.getTopic(), virtualQueue.physicalQueueId(), filter, timeoutMillis,
+                    // Only suspend for the rest of the time budget, so that a request timed out in the pop returns at once.
+                    long timeRemaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    return suspendRequestService.suspendRequest((ProxyContextExt) ctx, requestHeader.getTopic(), virtualQueue.physicalQueueId(), filter, timeRemaining,
                             // Function to pop message later.
                             timeout -> popSpecifiedQueue(ctx, consumerGroupReference.get(), clientId, topicReference.get(), virtualQueue.physicalQueueId(), filter,
                                 requestHeader.getMaxMsgNums(), requestHeader.isOrder(), requestHeader.getInvisibleTime(), timeout))
                         .thenApply(suspendResult -> {
                             if (suspendResult.isEmpty() || suspendResult.get().messageList().isEmpty()) {
+                                if (suspendResult.isPresent() && suspendResult.get().inflightQuotaExceeded()) {
+                                    return new PopResult(PopStatus.POLLING_FULL, Collections.emptyList());
+                                }
                                 return new PopResult(PopStatus.POLLING_NOT_FOUND, Collections.emptyList());
                             }
                             PopResult popResult = new PopResult(PopStatus.FOUND, FlatMessageUtil.convertTo((ProxyContextExt) ctx, suspendResult.get().messageList(), requestHeader.getTopic(), requestHeader.getInvisibleTime(), config.hostName(), config.grpcListenPort()));
@@ -633,7 +737,7 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         }
 
         return store.changeInvisibleDuration(rawHandle, requestHeader.getInvisibleTime())
-            .thenApply(changeInvisibleDurationResult -> {
+            .thenApplyAsync(changeInvisibleDurationResult -> {
                 org.apache.rocketmq.client.consumer.AckResult ackResult = new org.apache.rocketmq.client.consumer.AckResult();
                 ackResult.setExtraInfo(requestHeader.getExtraInfo());
                 switch (changeInvisibleDurationResult.status()) {
@@ -641,7 +745,7 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
                     case ERROR -> ackResult.setStatus(AckStatus.NO_EXIST);
                 }
                 return ackResult;
-            });
+            }, ackExecutor);
     }
 
     @Override
@@ -663,19 +767,19 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         CompletableFuture<ConsumerGroup> groupFuture = consumerGroupOf(requestHeader.getConsumerGroup());
 
         CompletableFuture<AckResult> resultF = store.ack(rawHandle)
-            .thenApply(ackResult -> {
+            .thenApplyAsync(ackResult -> {
                     org.apache.rocketmq.client.consumer.AckResult result = new org.apache.rocketmq.client.consumer.AckResult();
                     switch (ackResult.status()) {
                         case SUCCESS -> result.setStatus(AckStatus.OK);
                         case ERROR -> result.setStatus(AckStatus.NO_EXIST);
                     }
                     return result;
-                }
+                }, ackExecutor
             );
 
         CompletableFuture<Pair<Topic, ConsumerGroup>> resourceF = topicFuture.thenCombine(groupFuture, Pair::of);
 
-        resultF.thenCombine(resourceF, (ackResult, pair) -> {
+        resultF.thenCombineAsync(resourceF, (ackResult, pair) -> {
             long groupId = pair.getRight().getGroupId();
             long topicId = pair.getLeft().getTopicId();
             return store.getInflightStats(groupId, topicId, queueId).thenAccept(inflight -> {
@@ -684,7 +788,7 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
                     lockService.tryExpire(topicId, queueId, Duration.ofSeconds(1).toMillis());
                 }
             });
-        });
+        }, ackExecutor);
 
         return resultF;
     }
@@ -725,20 +829,22 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
             .thenCompose(pair -> {
                 ConsumerGroup consumerGroup = pair.getLeft();
                 Topic topic = pair.getRight();
-                return resetConsumeOffsetOfQueue(topic.getTopicId(), virtualQueue.physicalQueueId(), consumerGroup, requestHeader.getCommitOffset());
+                return resetConsumeOffsetOfQueue(topic.getTopicId(), virtualQueue.physicalQueueId(), consumerGroup, requestHeader.getCommitOffset(), false);
             });
     }
 
+    /**
+     * @param admin Whether the offset is reset by an administrator, which may rewind the offset of a pull-mode group
+     *              and is persisted at once, rather than committed by a consumer.
+     */
     private CompletableFuture<Void> resetConsumeOffsetOfQueue(long topicId, int queueId, ConsumerGroup consumerGroup,
-        long newConsumeOffset) {
+        long newConsumeOffset, boolean admin) {
         CompletableFuture<ResetConsumeOffsetResult> cf;
         if (consumerGroup.getSubMode() == SubscriptionMode.SUB_MODE_PULL) {
-            cf = metadataService.updateConsumerOffset(
-                    consumerGroup.getGroupId(),
-                    topicId,
-                    queueId,
-                    newConsumeOffset)
-                .thenApply(nil -> new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.SUCCESS));
+            CompletableFuture<Void> updateFuture = admin ?
+                metadataService.resetConsumerOffset(consumerGroup.getGroupId(), topicId, queueId, newConsumeOffset) :
+                metadataService.updateConsumerOffset(consumerGroup.getGroupId(), topicId, queueId, newConsumeOffset);
+            cf = updateFuture.thenApply(nil -> new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.SUCCESS));
         } else {
             cf = store.resetConsumeOffset(consumerGroup.getGroupId(), topicId, queueId, newConsumeOffset);
         }
@@ -910,41 +1016,41 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
         });
     }
 
-    private long getConsumerOffset(ConsumerGroup consumerGroup, Topic topic, int queueId, boolean retry) {
+    private CompletableFuture<Long> getConsumerOffset(ConsumerGroup consumerGroup, Topic topic, int queueId,
+        boolean retry) {
         if (consumerGroup.getSubMode() == SubscriptionMode.SUB_MODE_PULL) {
-            if (retry) {
-                topicOf(MixAll.RETRY_GROUP_TOPIC_PREFIX + consumerGroup.getName())
-                    .thenCompose(retryTopic -> metadataService.consumerOffsetOf(consumerGroup.getGroupId(), retryTopic.getTopicId(), queueId));
-                return metadataService.consumerOffsetOf(consumerGroup.getGroupId(), topic.getTopicId(), queueId).join();
-            }
-            return metadataService.consumerOffsetOf(consumerGroup.getGroupId(), topic.getTopicId(), queueId).join();
+            // Consumers in pull mode never consume from the retry stream, so both share the same offset.
+            return metadataService.consumerOffsetOf(consumerGroup.getGroupId(), topic.getTopicId(), queueId);
         }
 
         if (retry) {
-            return store.getRetryConsumeOffset(consumerGroup.getGroupId(), topic.getTopicId(), queueId);
+            return CompletableFuture.completedFuture(store.getRetryConsumeOffset(consumerGroup.getGroupId(), topic.getTopicId(), queueId));
         }
-        return store.getConsumeOffset(consumerGroup.getGroupId(), topic.getTopicId(), queueId);
+        return CompletableFuture.completedFuture(store.getConsumeOffset(consumerGroup.getGroupId(), topic.getTopicId(), queueId));
     }
 
-    private List<StreamStats> getStreamStats(Optional<ConsumerGroup> consumerGroup, Topic topic, int queueId) {
-        return store.getOffsetRange(topic.getTopicId(), queueId, consumerGroup.map(ConsumerGroup::getGroupId).orElse(-1L))
+    private CompletableFuture<List<StreamStats>> getStreamStats(Optional<ConsumerGroup> consumerGroup, Topic topic,
+        int queueId) {
+        List<CompletableFuture<StreamStats>> futures = store.getOffsetRange(topic.getTopicId(), queueId, consumerGroup.map(ConsumerGroup::getGroupId).orElse(-1L))
             .stream().map(offsetRange -> {
-                long consumerOffset = 0;
+                CompletableFuture<Long> consumerOffsetFuture = CompletableFuture.completedFuture(0L);
                 if (consumerGroup.isPresent()) {
                     if (offsetRange.streamRole() == StreamRole.STREAM_ROLE_DATA) {
-                        consumerOffset = getConsumerOffset(consumerGroup.get(), topic, queueId, false);
+                        consumerOffsetFuture = getConsumerOffset(consumerGroup.get(), topic, queueId, false);
                     } else if (offsetRange.streamRole() == StreamRole.STREAM_ROLE_RETRY) {
-                        consumerOffset = getConsumerOffset(consumerGroup.get(), topic, queueId, true);
+                        consumerOffsetFuture = getConsumerOffset(consumerGroup.get(), topic, queueId, true);
                     }
                 }
-                return StreamStats.newBuilder()
+                return consumerOffsetFuture.thenApply(consumerOffset -> StreamStats.newBuilder()
                     .setStreamId(offsetRange.streamId())
                     .setMinOffset(offsetRange.startOffset())
                     .setMaxOffset(offsetRange.endOffset())
                     .setRole(offsetRange.streamRole())
                     .setConsumeOffset(consumerOffset)
-                    .build();
+                    .build());
             }).toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(nil -> futures.stream().map(CompletableFuture::join).toList());
     }
 
     @Override
@@ -957,22 +1063,32 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
             groupIdFuture = metadataService.consumerGroupOf(consumerGroup).thenApply(Optional::of);
         }
         return topicOf(topic)
-            .thenCombine(groupIdFuture, (topicMetadata, groupMetadata) -> {
-                long topicId = topicMetadata.getTopicId();
-                List<QueueStats> queueStatsList = new ArrayList<>();
+            .thenCombine(groupIdFuture, Pair::of)
+            .thenCompose(pair -> {
+                Topic topicMetadata = pair.getLeft();
+                Optional<ConsumerGroup> groupMetadata = pair.getRight();
+                List<Integer> queueIds = new ArrayList<>();
                 if (queueId != -1) {
-                    List<StreamStats> streamStatsList = getStreamStats(groupMetadata, topicMetadata, queueId);
-                    queueStatsList.add(QueueStats.newBuilder().setQueueId(queueId).addAllStreamStats(streamStatsList).build());
+                    queueIds.add(queueId);
                 } else {
-                    int queueCount = topicMetadata.getCount();
-                    for (int i = 0; i < queueCount; i++) {
-                        List<StreamStats> streamStatsList = getStreamStats(groupMetadata, topicMetadata, i);
-                        if (!streamStatsList.isEmpty()) {
-                            queueStatsList.add(QueueStats.newBuilder().setQueueId(queueId).addAllStreamStats(streamStatsList).build());
-                        }
+                    for (int i = 0; i < topicMetadata.getCount(); i++) {
+                        queueIds.add(i);
                     }
                 }
-                return Pair.of(topicId, queueStatsList);
+
+                List<CompletableFuture<QueueStats>> futures = queueIds.stream()
+                    .map(id -> getStreamStats(groupMetadata, topicMetadata, id)
+                        .thenApply(streamStatsList -> QueueStats.newBuilder().setQueueId(id).addAllStreamStats(streamStatsList).build()))
+                    .toList();
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .thenApply(nil -> {
+                        List<QueueStats> queueStatsList = futures.stream()
+                            .map(CompletableFuture::join)
+                            // Skip queues that are not opened in this node unless the queue is specified.
+                            .filter(queueStats -> queueId != -1 || queueStats.getStreamStatsCount() > 0)
+                            .toList();
+                        return Pair.of(topicMetadata.getTopicId(), queueStatsList);
+                    });
             });
     }
 
@@ -1043,13 +1159,57 @@ public class MessageServiceImpl implements MessageService, ExtendMessageService
             .thenCompose(pair -> {
                 ConsumerGroup consumerGroup = pair.getLeft();
                 Topic topic = pair.getRight();
-                return resetConsumeOffsetOfQueue(topic.getTopicId(), queueId, consumerGroup, newConsumeOffset);
+                return resetConsumeOffsetOfQueue(topic.getTopicId(), queueId, consumerGroup, newConsumeOffset, true);
             });
     }
 
     @Override
-    public CompletableFuture<Void> resetConsumeOffsetByTimestamp(String topic, int queueId, String consumerGroup,
-        long timestamp) {
-        throw new UnsupportedOperationException("Not implemented yet");
+    public CompletableFuture<Void> resetConsumeOffsetByTimestamp(String topicName, int queueId,
+        String consumerGroupName, long timestamp) {
+        CompletableFuture<ConsumerGroup> consumeGroupFuture = metadataService.consumerGroupOf(consumerGroupName);
+        CompletableFuture<Topic> topicFuture = metadataService.topicOf(topicName);
+
+        return consumeGroupFuture.thenCombine(topicFuture, Pair::of)
+            .thenCompose(pair -> {
+                ConsumerGroup consumerGroup = pair.getLeft();
+                Topic topic = pair.getRight();
+                return store.searchOffset(topic.getTopicId(), queueId, timestamp)
+                    .thenCompose(offset -> resetConsumeOffsetOfQueue(topic.getTopicId(), queueId, consumerGroup, offset, true));
+            });
+    }
+
+    @Override
+    public CompletableFuture<Long> searchOffsetByTimestamp(String topicName, int queueId, long timestamp) {
+        return topicOf(topicName)
+            .thenCompose(topic -> store.searchOffset(topic.getTopicId(), queueId, timestamp));
+    }
+
+    @Override
+    public CompletableFuture<List<FlatMessageExt>> queryMessages(String topicName, int queueId, MessageIndexType type,
+        String key, long beginTimestamp, long endTimestamp, int maxCount) {
+        return topicOf(topicName)
+            .thenCompose(topic -> {
+                List<Integer> queueIds = new ArrayList<>();
+                if (queueId != -1) {
+                    queueIds.add(queueId);
+                } else {
+                    for (int i = 0; i < topic.getCount(); i++) {
+                        // Skip queues that are not opened in this node.
+                        if (!store.getOffsetRange(topic.getTopicId(), i, -1L).isEmpty()) {
+                            queueIds.add(i);
+                        }
+                    }
+                }
+
+                List<CompletableFuture<List<FlatMessageExt>>> futures = queueIds.stream()
+                    .map(id -> store.queryMessages(topic.getTopicId(), id, type, key, beginTimestamp, endTimestamp, maxCount))
+                    .toList();
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .thenApply(nil -> futures.stream()
+                        .flatMap(future -> future.join().stream())
+                        .sorted(Comparator.comparingLong((FlatMessageExt messageExt) -> messageExt.message().systemProperties().storeTimestamp()).reversed())
+                        .limit(maxCount)
+                        .toList());
+            });
     }
 }
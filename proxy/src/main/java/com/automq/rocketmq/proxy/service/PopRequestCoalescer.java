@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.store.model.message.Filter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.rocketmq.proxy.common.ProxyContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesce concurrent non-FIFO pop requests of the same consumer group on the same queue.
+ * <p>
+ * Pops of a (group, topic, queue) must be serialized, otherwise two requests would read the same consume offset and
+ * deliver the same messages twice. Instead of rejecting the requests that lose the race, they are queued and served
+ * by a single store pop sized to their combined batch size. The popped messages are then split among the waiters in
+ * arrival order: the share of a waiter that has timed out goes to the ones behind it, and messages left without any
+ * waiter are released to be visible again. A scheduler is dropped once no waiter is left.
+ */
+class PopRequestCoalescer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PopRequestCoalescer.class);
+
+    private final int maxBatchSize;
+
+    private final ConcurrentMap<Key, Scheduler> schedulers = new ConcurrentHashMap<>();
+
+    /**
+     * Pop messages from the store on behalf of coalesced requests, whose contexts are given in arrival order.
+     */
+    @FunctionalInterface
+    interface PopFunction {
+        CompletableFuture<MessageServiceImpl.InnerPopResult> pop(List<ProxyContext> contexts, Filter filter,
+            int batchSize, long invisibleDuration);
+    }
+
+    /**
+     * Make popped messages that no request is waiting for visible again.
+     */
+    @FunctionalInterface
+    interface ReleaseFunction {
+        void release(List<FlatMessageExt> messageList);
+    }
+
+    record Key(long consumerGroupId, long topicId, int queueId) {
+    }
+
+    record Waiter(ProxyContext context, Filter filter, int batchSize, long invisibleDuration,
+                  PopFunction popFunction, ReleaseFunction releaseFunction,
+                  CompletableFuture<MessageServiceImpl.InnerPopResult> future) {
+        boolean compatibleWith(Waiter other) {
+            return invisibleDuration == other.invisibleDuration
+                && filter.type() == other.filter.type()
+                && Objects.equals(filter.expression(), other.filter.expression());
+        }
+    }
+
+    PopRequestCoalescer(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public CompletableFuture<MessageServiceImpl.InnerPopResult> pop(long consumerGroupId, long topicId, int queueId,
+        ProxyContext context, Filter filter, int batchSize, long invisibleDuration, PopFunction popFunction,
+        ReleaseFunction releaseFunction) {
+        CompletableFuture<MessageServiceImpl.InnerPopResult> future = new CompletableFuture<>();
+        Waiter waiter = new Waiter(context, filter, batchSize, invisibleDuration, popFunction, releaseFunction, future);
+        Key key = new Key(consumerGroupId, topicId, queueId);
+        // Queued within compute, such that a scheduler is never dropped with waiters left behind.
+        Scheduler scheduler = schedulers.compute(key, (k, current) -> {
+            Scheduler target = current == null ? new Scheduler(key) : current;
+            target.waiters.offer(waiter);
+            return target;
+        });
+        scheduler.tryDispatch();
+        return future;
+    }
+
+    int schedulerQuantity() {
+        return schedulers.size();
+    }
+
+    private class Scheduler {
+        private final Key key;
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        Scheduler(Key key) {
+            this.key = key;
+        }
+
+        private void tryDispatch() {
+            while (!waiters.isEmpty() && running.compareAndSet(false, true)) {
+                List<Waiter> batch = drain();
+                if (batch.isEmpty()) {
+                    running.set(false);
+                    continue;
+                }
+                dispatch(batch);
+                return;
+            }
+            evictIfIdle();
+        }
+
+        private void evictIfIdle() {
+            schedulers.computeIfPresent(key, (k, current) ->
+                current == this && waiters.isEmpty() && !running.get() ? null : current);
+        }
+
+        /**
+         * Take the first pending waiter and all compatible waiters behind it, as long as the combined batch size does
+         * not exceed the limit. Incompatible waiters keep their position in the queue.
+         */
+        private List<Waiter> drain() {
+            List<Waiter> batch = new ArrayList<>();
+            Waiter head;
+            do {
+                head = waiters.poll();
+            }
+            while (head != null && head.future.isDone());
+            if (head == null) {
+                return batch;
+            }
+
+            batch.add(head);
+            int total = head.batchSize;
+            Iterator<Waiter> iterator = waiters.iterator();
+            while (iterator.hasNext() && total < maxBatchSize) {
+                Waiter waiter = iterator.next();
+                if (waiter.future.isDone()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (waiter.compatibleWith(head) && total + waiter.batchSize <= maxBatchSize) {
+                    iterator.remove();
+                    batch.add(waiter);
+                    total += waiter.batchSize;
+                }
+            }
+            return batch;
+        }
+
+        private void dispatch(List<Waiter> batch) {
+            Waiter head = batch.get(0);
+            int total = batch.stream().mapToInt(Waiter::batchSize).sum();
+            List<ProxyContext> contexts = batch.stream().map(Waiter::context).toList();
+            CompletableFuture<MessageServiceImpl.InnerPopResult> popFuture;
+            try {
+                popFuture = head.popFunction.pop(contexts, head.filter, total, head.invisibleDuration);
+            } catch (Throwable t) {
+                popFuture = CompletableFuture.failedFuture(t);
+            }
+
+            popFuture.whenComplete((result, throwable) -> {
+                try {
+                    if (throwable != null) {
+                        batch.forEach(waiter -> waiter.future.completeExceptionally(throwable));
+                    } else {
+                        split(batch, result);
+                    }
+                } finally {
+                    running.set(false);
+                    tryDispatch();
+                }
+            });
+        }
+
+        private void split(List<Waiter> batch, MessageServiceImpl.InnerPopResult result) {
+            List<FlatMessageExt> messageList = result.messageList();
+            int index = 0;
+            for (Waiter waiter : batch) {
+                int end = Math.min(index + waiter.batchSize, messageList.size());
+                List<FlatMessageExt> share = index < end ? new ArrayList<>(messageList.subList(index, end)) : Collections.emptyList();
+                // Waiters that have timed out are skipped, so that their share is handed over to the following ones.
+                if (waiter.future.complete(new MessageServiceImpl.InnerPopResult(result.restMessageCount(), share, result.inflightQuotaExceeded()))) {
+                    index = end;
+                }
+            }
+
+            if (index < messageList.size()) {
+                // All remaining waiters have gone, release the messages rather than keeping them invisible.
+                List<FlatMessageExt> unclaimed = new ArrayList<>(messageList.subList(index, messageList.size()));
+                LOGGER.info("Release {} popped messages since their requests have timed out", unclaimed.size());
+                try {
+                    batch.get(0).releaseFunction.release(unclaimed);
+                } catch (Throwable t) {
+                    LOGGER.error("Failed to release {} popped messages", unclaimed.size(), t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import apache.rocketmq.controller.v1.StreamRole;
+import com.automq.rocketmq.common.config.ProxyConfig;
+import com.automq.rocketmq.store.api.LogicQueue;
+import com.automq.rocketmq.store.api.MessageStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decide which streams a non-FIFO pop reads from, and in which order.
+ * <p>
+ * The backlog of the normal and retry streams is derived from the consume offsets of the group and the confirm
+ * offsets of the streams, so that empty sources are skipped without a store round-trip. When both sources have
+ * backlog, the one that has been waiting longer since it was last served goes first, weighted by
+ * {@link ProxyConfig#retryPriorityPercentage()}.
+ * <p>
+ * Scheduling states are dropped once both sources are empty, or once the queue has not been popped by the group for
+ * a while, e.g. it has been moved away or the group has gone.
+ */
+class PopSourceScheduler {
+    private static final long UNKNOWN_BACKLOG = -1;
+    private static final long DEFAULT_IDLE_MILLIS = Duration.ofMinutes(5).toMillis();
+
+    private final ProxyConfig config;
+    private final MessageStore store;
+    private final long idleMillis;
+    private final ConcurrentMap<Key, State> states = new ConcurrentHashMap<>();
+    private final AtomicLong lastEvictTime = new AtomicLong(System.currentTimeMillis());
+
+    enum Source {
+        NORMAL,
+        RETRY;
+
+        boolean retry() {
+            return this == RETRY;
+        }
+    }
+
+    record Key(long consumerGroupId, long topicId, int queueId) {
+    }
+
+    private static class State {
+        // The last time each source was served or observed empty.
+        private volatile long normalServedTime;
+        private volatile long retryServedTime;
+        private volatile long scheduleTime;
+
+        State(long now) {
+            this.normalServedTime = now;
+            this.retryServedTime = now;
+            this.scheduleTime = now;
+        }
+    }
+
+    record Backlog(long normal, long retry) {
+        boolean hasNormal() {
+            return normal > 0;
+        }
+
+        boolean hasRetry() {
+            return retry > 0;
+        }
+
+        boolean unknownNormal() {
+            return normal == UNKNOWN_BACKLOG;
+        }
+
+        boolean unknownRetry() {
+            return retry == UNKNOWN_BACKLOG;
+        }
+    }
+
+    PopSourceScheduler(ProxyConfig config, MessageStore store) {
+        this(config, store, DEFAULT_IDLE_MILLIS);
+    }
+
+    PopSourceScheduler(ProxyConfig config, MessageStore store, long idleMillis) {
+        this.config = config;
+        this.store = store;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Get the sources to pop from in order, an empty list means there is nothing to pop.
+     * <p>
+     * Sources of unknown backlog do not take part in the ordering, they are popped after the others, which opens
+     * their streams as a side effect.
+     */
+    public List<Source> schedule(long consumerGroupId, long topicId, int queueId) {
+        Backlog backlog = backlogOf(consumerGroupId, topicId, queueId);
+        long now = System.currentTimeMillis();
+        evictIdle(now);
+        Key key = new Key(consumerGroupId, topicId, queueId);
+        State state = states.computeIfAbsent(key, k -> new State(now));
+        state.scheduleTime = now;
+
+        // An empty source is not waiting for anything.
+        if (!backlog.hasNormal()) {
+            state.normalServedTime = now;
+        }
+        if (!backlog.hasRetry()) {
+            state.retryServedTime = now;
+        }
+
+        List<Source> sources = new ArrayList<>(2);
+        if (backlog.hasNormal() && backlog.hasRetry()) {
+            int weight = Math.max(0, Math.min(100, config.retryPriorityPercentage()));
+            long normalWait = now - state.normalServedTime;
+            long retryWait = now - state.retryServedTime;
+            if (retryWait * weight > normalWait * (100 - weight)) {
+                sources.add(Source.RETRY);
+                sources.add(Source.NORMAL);
+            } else {
+                sources.add(Source.NORMAL);
+                sources.add(Source.RETRY);
+            }
+        } else if (backlog.hasNormal()) {
+            sources.add(Source.NORMAL);
+        } else if (backlog.hasRetry()) {
+            sources.add(Source.RETRY);
+        }
+        if (backlog.unknownNormal()) {
+            sources.add(Source.NORMAL);
+        }
+        if (backlog.unknownRetry()) {
+            sources.add(Source.RETRY);
+        }
+
+        if (sources.isEmpty()) {
+            // Both sources are empty, a new state would be just the same.
+            states.remove(key, state);
+        }
+        return sources;
+    }
+
+    private void evictIdle(long now) {
+        long lastEvict = lastEvictTime.get();
+        if (now - lastEvict < idleMillis || !lastEvictTime.compareAndSet(lastEvict, now)) {
+            return;
+        }
+        states.values().removeIf(state -> now - state.scheduleTime >= idleMillis);
+    }
+
+    int stateQuantity() {
+        return states.size();
+    }
+
+    /**
+     * Record that the specified source has been served.
+     */
+    public void served(long consumerGroupId, long topicId, int queueId, Source source) {
+        State state = states.get(new Key(consumerGroupId, topicId, queueId));
+        if (state == null) {
+            return;
+        }
+        if (source.retry()) {
+            state.retryServedTime = System.currentTimeMillis();
+        } else {
+            state.normalServedTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Backlog of each source, or {@link #UNKNOWN_BACKLOG} if the stream is not opened on this node yet.
+     */
+    Backlog backlogOf(long consumerGroupId, long topicId, int queueId) {
+        long normal = UNKNOWN_BACKLOG;
+        long retry = UNKNOWN_BACKLOG;
+        for (LogicQueue.StreamOffsetRange range : store.getOffsetRange(topicId, queueId, consumerGroupId)) {
+            if (range.streamRole() == StreamRole.STREAM_ROLE_DATA) {
+                normal = Math.max(0, range.endOffset() - store.getConsumeOffset(consumerGroupId, topicId, queueId));
+            } else if (range.streamRole() == StreamRole.STREAM_ROLE_RETRY) {
+                retry = Math.max(0, range.endOffset() - store.getRetryConsumeOffset(consumerGroupId, topicId, queueId));
+            }
+        }
+        return new Backlog(normal, retry);
+    }
+}
@@ -16,7 +16,9 @@ import apache.rocketmq.controller.v1.GroupType;
 import apache.rocketmq.controller.v1.MessageType;
 import apache.rocketmq.controller.v1.Topic;
 import com.automq.rocketmq.metadata.api.ProxyMetadataService;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.apache.rocketmq.common.attribute.TopicMessageType;
 import org.apache.rocketmq.proxy.common.ProxyContext;
 import org.apache.rocketmq.proxy.service.metadata.MetadataService;
@@ -29,6 +31,8 @@ import org.slf4j.LoggerFactory;
  */
 public class ResourceMetadataService implements MetadataService {
     public static final Logger LOGGER = LoggerFactory.getLogger(ResourceMetadataService.class);
+    // The interface is synchronous, bound the time a request thread may be blocked on the controller.
+    private static final long METADATA_TIMEOUT_MILLIS = Duration.ofSeconds(3).toMillis();
     private final ProxyMetadataService metadataService;
 
     public ResourceMetadataService(ProxyMetadataService service) {
@@ -39,7 +43,7 @@ public class ResourceMetadataService implements MetadataService {
     public TopicMessageType getTopicMessageType(ProxyContext ctx, String topic) {
         CompletableFuture<Topic> topicFuture = metadataService.topicOf(topic);
         try {
-            Topic topicObj = topicFuture.get();
+            Topic topicObj = await(topicFuture);
             if (topicObj.getAcceptTypes().getTypesList().size() == 1) {
                 MessageType type = topicObj.getAcceptTypes().getTypesList().get(0);
                 switch (type) {
@@ -73,7 +77,7 @@ public class ResourceMetadataService implements MetadataService {
     public SubscriptionGroupConfig getSubscriptionGroupConfig(ProxyContext ctx, String group) {
         CompletableFuture<ConsumerGroup> groupFuture = metadataService.consumerGroupOf(group);
         try {
-            ConsumerGroup consumerGroup = groupFuture.get();
+            ConsumerGroup consumerGroup = await(groupFuture);
             SubscriptionGroupConfig groupConfig = new SubscriptionGroupConfig();
             groupConfig.setGroupName(consumerGroup.getName());
             if (consumerGroup.getGroupType() == GroupType.GROUP_TYPE_FIFO) {
@@ -87,4 +91,12 @@ public class ResourceMetadataService implements MetadataService {
         }
         return null;
     }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        // Metadata is cached in most cases, avoid parking the thread if it is available already.
+        if (future.isDone()) {
+            return future.join();
+        }
+        return future.get(METADATA_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
 }
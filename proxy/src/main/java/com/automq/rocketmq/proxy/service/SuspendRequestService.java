@@ -12,6 +12,7 @@
 package com.automq.rocketmq.proxy.service;
 
 import com.automq.rocketmq.common.ServiceThread;
+import com.automq.rocketmq.common.util.ExecutorFactory;
 import com.automq.rocketmq.proxy.model.ProxyContextExt;
 import com.automq.rocketmq.store.model.message.Filter;
 import io.opentelemetry.api.trace.SpanKind;
@@ -22,14 +23,12 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.rocketmq.common.thread.ThreadPoolMonitor;
 import org.apache.rocketmq.common.utils.StartAndShutdown;
 import org.apache.rocketmq.proxy.config.ConfigurationManager;
 import org.apache.rocketmq.proxy.config.ProxyConfig;
@@ -42,17 +41,15 @@ public class SuspendRequestService extends ServiceThread implements StartAndShut
 
     private final ConcurrentMap<Pair<String/*topic*/, Integer/*queueId*/>, ConcurrentSkipListSet<SuspendRequestTask<?>>> suspendPopRequestMap = new ConcurrentHashMap<>();
     private final AtomicInteger suspendRequestCount = new AtomicInteger(0);
-    protected ThreadPoolExecutor suspendRequestThreadPool;
+    protected ExecutorService suspendRequestThreadPool;
 
     private SuspendRequestService() {
         ProxyConfig config = ConfigurationManager.getProxyConfig();
-        this.suspendRequestThreadPool = ThreadPoolMonitor.createAndMonitor(
-            config.getGrpcConsumerThreadPoolNums(),
-            config.getGrpcConsumerThreadPoolNums(),
-            1,
-            TimeUnit.MINUTES,
+        this.suspendRequestThreadPool = ExecutorFactory.newExecutor(
             "SuspendRequestThreadPool",
-            config.getGrpcConsumerThreadQueueCapacity()
+            config.getGrpcConsumerThreadPoolNums(),
+            config.getGrpcConsumerThreadQueueCapacity(),
+            false
         );
     }
 
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import apache.rocketmq.controller.v1.Topic;
+import com.automq.rocketmq.metadata.api.ProxyMetadataService;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
+import io.netty.channel.Channel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.broker.client.ProducerManager;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Send transaction status checks to producers in batches.
+ * <p>
+ * Checks due at the same time are drained together: the topic of each distinct topic id is looked up once, checks are
+ * grouped by producer group so that a channel is picked once per group, and each channel is flushed once after all
+ * its requests are written.
+ */
+class TransactionCheckDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionCheckDispatcher.class);
+
+    private final ProxyMetadataService metadataService;
+    private final ProducerManager producerManager;
+    private final Executor executor;
+    private final int maxBatchSize;
+    private final BiFunction<TransactionCheck, Topic, RemotingCommand> requestFactory;
+
+    private final Queue<TransactionCheck> checks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    TransactionCheckDispatcher(ProxyMetadataService metadataService, ProducerManager producerManager,
+        Executor executor, int maxBatchSize, BiFunction<TransactionCheck, Topic, RemotingCommand> requestFactory) {
+        this.metadataService = metadataService;
+        this.producerManager = producerManager;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.requestFactory = requestFactory;
+    }
+
+    public void submit(TransactionCheck check) {
+        checks.offer(check);
+        tryDispatch();
+    }
+
+    private void tryDispatch() {
+        while (!checks.isEmpty() && running.compareAndSet(false, true)) {
+            List<TransactionCheck> batch = drain();
+            if (batch.isEmpty()) {
+                running.set(false);
+                continue;
+            }
+            try {
+                executor.execute(() -> dispatch(batch));
+            } catch (Throwable t) {
+                // Checks of the batch are dropped, they are sent again on the next round of checks.
+                LOGGER.error("Failed to dispatch {} transaction checks", batch.size(), t);
+                running.set(false);
+                continue;
+            }
+            return;
+        }
+    }
+
+    private List<TransactionCheck> drain() {
+        List<TransactionCheck> batch = new ArrayList<>();
+        TransactionCheck check;
+        while (batch.size() < maxBatchSize && (check = checks.poll()) != null) {
+            batch.add(check);
+        }
+        return batch;
+    }
+
+    private void dispatch(List<TransactionCheck> batch) {
+        Map<Long, CompletableFuture<Topic>> topics = new HashMap<>();
+        for (TransactionCheck check : batch) {
+            topics.computeIfAbsent(check.message().topicId(), metadataService::topicOf);
+        }
+
+        CompletableFuture.allOf(topics.values().toArray(new CompletableFuture[0]))
+            .handle((nil, throwable) -> {
+                send(batch, topics);
+                return null;
+            })
+            .whenComplete((nil, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.error("Error while check transactions", throwable);
+                }
+                running.set(false);
+                tryDispatch();
+            });
+    }
+
+    private void send(List<TransactionCheck> batch, Map<Long, CompletableFuture<Topic>> topics) {
+        Map<String, List<TransactionCheck>> checksByGroup = new LinkedHashMap<>();
+        Map<TransactionCheck, Topic> topicOfCheck = new IdentityHashMap<>();
+        for (TransactionCheck check : batch) {
+            CompletableFuture<Topic> topicFuture = topics.get(check.message().topicId());
+            if (topicFuture.isCompletedExceptionally()) {
+                LOGGER.error("Failed to get topic {} while check transaction: {}", check.message().topicId(),
+                    check.transactionId());
+                continue;
+            }
+            Topic topic = topicFuture.join();
+            String producerGroup = check.message().systemProperties().orphanedTransactionProducer();
+            if (StringUtils.isBlank(producerGroup)) {
+                producerGroup = topic.getName();
+            }
+            checksByGroup.computeIfAbsent(producerGroup, k -> new ArrayList<>()).add(check);
+            topicOfCheck.put(check, topic);
+        }
+
+        Set<Channel> channels = Collections.newSetFromMap(new IdentityHashMap<>());
+        checksByGroup.forEach((producerGroup, groupChecks) -> {
+            Channel channel = producerManager.getAvailableChannel(producerGroup);
+            if (channel == null) {
+                LOGGER.debug("No available producer of group {} to check {} transactions", producerGroup, groupChecks.size());
+                return;
+            }
+            for (TransactionCheck check : groupChecks) {
+                try {
+                    channel.write(requestFactory.apply(check, topicOfCheck.get(check)));
+                } catch (Throwable t) {
+                    LOGGER.error("Error while check transaction: {}", check.transactionId(), t);
+                }
+            }
+            channels.add(channel);
+        });
+        channels.forEach(Channel::flush);
+    }
+}
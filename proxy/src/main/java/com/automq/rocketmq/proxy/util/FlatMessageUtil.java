@@ -11,6 +11,8 @@
 
 package com.automq.rocketmq.proxy.util;
 
+import apache.rocketmq.v2.Digest;
+import apache.rocketmq.v2.DigestType;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.common.model.generated.FlatMessageT;
@@ -21,20 +23,30 @@ import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
 import com.automq.rocketmq.common.system.MessageConstants;
 import com.automq.rocketmq.proxy.model.ProxyContextExt;
 import com.automq.rocketmq.proxy.model.VirtualQueue;
+import com.automq.rocketmq.proxy.model.ZeroCopyMessageExt;
 import com.google.common.base.Strings;
 import com.google.flatbuffers.FlatBufferBuilder;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageAccessor;
 import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageDecoder;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.sysflag.MessageSysFlag;
+import org.apache.rocketmq.proxy.grpc.v2.common.GrpcConverter;
 import org.apache.rocketmq.remoting.protocol.subscription.ExponentialRetryPolicy;
 import org.apache.rocketmq.remoting.protocol.subscription.GroupRetryPolicy;
 
@@ -44,6 +56,9 @@ import static com.automq.rocketmq.proxy.util.ReceiptHandleUtil.encodeReceiptHand
  * An utility class to convert RocketMQ message models to {@link FlatMessage}, and vice versa.
  */
 public class FlatMessageUtil {
+    // Space for the vtables, scalar fields and alignment of FlatMessage and SystemProperties.
+    private static final int FLAT_MESSAGE_OVERHEAD = 256;
+
     private static final long[] DELAY_LEVEL_ARRAY = new long[] {
         TimeUnit.SECONDS.toMillis(1),
         TimeUnit.SECONDS.toMillis(5),
@@ -137,16 +152,42 @@ public class FlatMessageUtil {
             .toArray(KeyValueT[]::new);
         flatMessageT.setUserProperties(userProperties);
 
-        FlatBufferBuilder builder = new FlatBufferBuilder();
+        // Size the builder up front, so that the payload is copied exactly once instead of on every buffer growth.
+        FlatBufferBuilder builder = new FlatBufferBuilder(estimateSize(flatMessageT));
 
         int root = FlatMessage.pack(builder, flatMessageT);
         builder.finish(root);
         return FlatMessage.getRootAsFlatMessage(builder.dataBuffer());
     }
 
+    private static int estimateSize(FlatMessageT flatMessageT) {
+        int size = FLAT_MESSAGE_OVERHEAD + (flatMessageT.getPayload() == null ? 0 : flatMessageT.getPayload().length);
+        size += estimateSize(flatMessageT.getTag()) + estimateSize(flatMessageT.getKeys())
+            + estimateSize(flatMessageT.getMessageGroup());
+        for (KeyValueT keyValueT : flatMessageT.getUserProperties()) {
+            // The KeyValue table and its offset in the vector.
+            size += 16 + estimateSize(keyValueT.getKey()) + estimateSize(keyValueT.getValue());
+        }
+        SystemPropertiesT systemPropertiesT = flatMessageT.getSystemProperties();
+        size += estimateSize(systemPropertiesT.getMessageId()) + estimateSize(systemPropertiesT.getTraceContext())
+            + estimateSize(systemPropertiesT.getBornHost()) + estimateSize(systemPropertiesT.getStoreHost())
+            + estimateSize(systemPropertiesT.getDlqOriginalMessageId())
+            + estimateSize(systemPropertiesT.getOrphanedTransactionProducer());
+        return size;
+    }
+
+    private static int estimateSize(String value) {
+        // Length prefix, null terminator and alignment padding, assuming ASCII content.
+        return value == null ? 0 : value.length() + 8;
+    }
+
+    /**
+     * Convert {@link FlatMessageExt} to {@link MessageExt}, the body is backed by the payload of the flat message
+     * without copying, see {@link ZeroCopyMessageExt}.
+     */
     public static MessageExt convertTo(FlatMessageExt flatMessage, String topicName, long invisibleTime, String host,
         int port) {
-        MessageExt messageExt = new MessageExt();
+        ZeroCopyMessageExt messageExt = new ZeroCopyMessageExt(flatMessage.message().payloadAsByteBuffer());
 
         VirtualQueue virtualQueue = new VirtualQueue(flatMessage.message().topicId(), flatMessage.message().queueId());
 
@@ -157,13 +198,6 @@ public class FlatMessageUtil {
         messageExt.setQueueOffset(flatMessage.offset());
         messageExt.setCommitLogOffset(flatMessage.offset());
 
-        ByteBuffer payloadBuffer = flatMessage.message().payloadAsByteBuffer();
-
-        // Convert buffer to byte array
-        byte[] payload = new byte[payloadBuffer.remaining()];
-        payloadBuffer.get(payloadBuffer.position(), payload);
-        messageExt.setBody(payload);
-
         SystemProperties systemProperties = flatMessage.message().systemProperties();
         messageExt.setBornTimestamp(systemProperties.bornTimestamp());
         String bornHost = systemProperties.bornHost();
@@ -203,6 +237,108 @@ public class FlatMessageUtil {
             .toList();
     }
 
+    /**
+     * Convert {@link MessageExt} to the gRPC message model. The body of {@link ZeroCopyMessageExt} is wrapped into
+     * the gRPC message directly rather than being copied twice.
+     */
+    public static apache.rocketmq.v2.Message convertToGrpcMessage(MessageExt messageExt) {
+        if (!(messageExt instanceof ZeroCopyMessageExt zeroCopyMessageExt)) {
+            return GrpcConverter.getInstance().buildMessage(messageExt);
+        }
+
+        apache.rocketmq.v2.Message message = zeroCopyMessageExt.convertHeaders(GrpcConverter.getInstance()::buildMessage);
+        ByteBuffer payload = zeroCopyMessageExt.payload();
+        Digest digest = Digest.newBuilder()
+            .setType(DigestType.MD5)
+            .setChecksum(md5(payload.duplicate()))
+            .build();
+        return message.toBuilder()
+            .setSystemProperties(message.getSystemProperties().toBuilder().setBodyDigest(digest))
+            .setBody(UnsafeByteOperations.unsafeWrap(payload))
+            .build();
+    }
+
+    private static String md5(ByteBuffer buffer) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest.update(buffer);
+            return UtilAll.bytes2string(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encode {@link MessageExt} into the given buffer in the format of {@link MessageDecoder#encode(MessageExt, boolean)},
+     * the body of {@link ZeroCopyMessageExt} is written from the flat message payload directly.
+     *
+     * @param messageExt the message to encode
+     * @param out        the buffer to write to
+     */
+    public static void encode(MessageExt messageExt, ByteBuf out) {
+        byte[] topic = messageExt.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] properties = MessageDecoder.messageProperties2String(messageExt.getProperties()).getBytes(StandardCharsets.UTF_8);
+        int sysFlag = messageExt.getSysFlag();
+        int bornHostLength = (sysFlag & MessageSysFlag.BORNHOST_V6_FLAG) == 0 ? 8 : 20;
+        int storeHostLength = (sysFlag & MessageSysFlag.STOREHOSTADDRESS_V6_FLAG) == 0 ? 8 : 20;
+
+        ByteBuffer body;
+        if (messageExt instanceof ZeroCopyMessageExt zeroCopyMessageExt) {
+            body = zeroCopyMessageExt.payload();
+        } else {
+            body = ByteBuffer.wrap(messageExt.getBody());
+        }
+
+        int storeSize = 4 // TOTALSIZE
+            + 4 // MAGICCODE
+            + 4 // BODYCRC
+            + 4 // QUEUEID
+            + 4 // FLAG
+            + 8 // QUEUEOFFSET
+            + 8 // PHYSICALOFFSET
+            + 4 // SYSFLAG
+            + 8 // BORNTIMESTAMP
+            + bornHostLength // BORNHOST
+            + 8 // STORETIMESTAMP
+            + storeHostLength // STOREHOSTADDRESS
+            + 4 // RECONSUMETIMES
+            + 8 // Prepared Transaction Offset
+            + 4 + body.remaining() // BODY
+            + 1 + topic.length // TOPIC
+            + 2 + properties.length; // PROPERTIES
+
+        int start = out.writerIndex();
+        out.ensureWritable(storeSize);
+        out.writeInt(storeSize);
+        out.writeInt(MessageDecoder.MESSAGE_MAGIC_CODE);
+        out.writeInt(messageExt.getBodyCRC());
+        out.writeInt(messageExt.getQueueId());
+        out.writeInt(messageExt.getFlag());
+        out.writeLong(messageExt.getQueueOffset());
+        out.writeLong(messageExt.getCommitLogOffset());
+        out.writeInt(sysFlag);
+        out.writeLong(messageExt.getBornTimestamp());
+        InetSocketAddress bornHost = (InetSocketAddress) messageExt.getBornHost();
+        out.writeBytes(bornHost.getAddress().getAddress());
+        out.writeInt(bornHost.getPort());
+        out.writeLong(messageExt.getStoreTimestamp());
+        InetSocketAddress storeHost = (InetSocketAddress) messageExt.getStoreHost();
+        out.writeBytes(storeHost.getAddress().getAddress());
+        out.writeInt(storeHost.getPort());
+        out.writeInt(messageExt.getReconsumeTimes());
+        out.writeLong(messageExt.getPreparedTransactionOffset());
+        out.writeInt(body.remaining());
+        out.writeBytes(body);
+        out.writeByte(topic.length);
+        out.writeBytes(topic);
+        out.writeShort(properties.length);
+        out.writeBytes(properties);
+
+        if (out.writerIndex() - start != storeSize) {
+            throw new IllegalStateException("The address length of message " + messageExt.getMsgId() + " mismatches its sys flag");
+        }
+    }
+
     /**
      * Split the properties of RocketMQ message into user properties and system properties.
      * <p>
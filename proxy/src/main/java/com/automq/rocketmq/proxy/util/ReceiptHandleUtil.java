@@ -13,30 +13,62 @@ package com.automq.rocketmq.proxy.util;
 
 import com.automq.rocketmq.proxy.model.VirtualQueue;
 import com.automq.rocketmq.store.model.generated.ReceiptHandle;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
 import com.automq.rocketmq.store.util.SerializeUtil;
 import org.apache.rocketmq.common.message.MessageConst;
 
 import static org.apache.rocketmq.common.consumer.ReceiptHandle.decode;
 
 public class ReceiptHandleUtil {
+    private static final int TOPIC_TYPE_FIELD_INDEX = 4;
+
     public static String encodeReceiptHandle(String rawReceiptHandle, long invisibleTime) {
-        ReceiptHandle rawHandle = SerializeUtil.decodeReceiptHandle(rawReceiptHandle);
+        long topicId;
+        int queueId;
+        long operationId;
+        if (ReceiptHandleCodec.isCompact(rawReceiptHandle, 0)) {
+            topicId = ReceiptHandleCodec.topicId(rawReceiptHandle, 0);
+            queueId = ReceiptHandleCodec.queueId(rawReceiptHandle, 0);
+            operationId = ReceiptHandleCodec.operationId(rawReceiptHandle, 0);
+        } else {
+            ReceiptHandle rawHandle = SerializeUtil.decodeReceiptHandle(rawReceiptHandle);
+            topicId = rawHandle.topicId();
+            queueId = rawHandle.queueId();
+            operationId = rawHandle.operationId();
+        }
 
-        VirtualQueue virtualQueue = new VirtualQueue(rawHandle.topicId(), rawHandle.queueId());
         ReceiptHandleBuilder rmqHandle = new ReceiptHandleBuilder()
-            .startOffset(rawHandle.operationId())
+            .startOffset(operationId)
             .retrieveTime(System.currentTimeMillis())
             .invisibleTime(invisibleTime)
             .reviveQueueId(0) // No revive queue in S3RocketMQ
             .topicType(rawReceiptHandle) // S3RocketMQ occupies the topic type field for store raw receipt handle
-            .brokerName(virtualQueue.brokerName())
-            .queueId(rawHandle.queueId())
-            .offset(rawHandle.operationId()); // Each message has a unique receipt handle, so offset is the same as start offset
+            .topicId(topicId)
+            .queueId(queueId)
+            .offset(operationId); // Each message has a unique receipt handle, so offset is the same as start offset
 
         return rmqHandle.build();
     }
 
+    /**
+     * Extract the raw receipt handle generated by the store.
+     * <p>
+     * Compact raw receipt handles are located by scanning for the topic type field and verified in place, only
+     * legacy ones fall back to parsing the whole RocketMQ receipt handle.
+     */
     public static String decodeReceiptHandle(String receiptHandle) {
+        int from = 0;
+        for (int i = 0; i < TOPIC_TYPE_FIELD_INDEX && from >= 0; i++) {
+            from = receiptHandle.indexOf(MessageConst.KEY_SEPARATOR, from);
+            if (from >= 0) {
+                from += MessageConst.KEY_SEPARATOR.length();
+            }
+        }
+        if (from >= 0 && ReceiptHandleCodec.isCompact(receiptHandle, from)
+            && receiptHandle.startsWith(MessageConst.KEY_SEPARATOR, from + ReceiptHandleCodec.LENGTH)) {
+            ReceiptHandleCodec.verify(receiptHandle, from);
+            return receiptHandle.substring(from, from + ReceiptHandleCodec.LENGTH);
+        }
         // The real receipt handle is stored in the topic type field
         return decode(receiptHandle).getTopicType();
     }
@@ -47,7 +79,7 @@ public class ReceiptHandleUtil {
         private long invisibleTime;
         private int reviveQueueId;
         private String topicType;
-        private String brokerName;
+        private long topicId;
         private int queueId;
         private long offset;
 
@@ -79,8 +111,11 @@ public class ReceiptHandleUtil {
             return this;
         }
 
-        public ReceiptHandleBuilder brokerName(final String brokerName) {
-            this.brokerName = brokerName;
+        /**
+         * The broker name is the one of {@link VirtualQueue}, built from the topic id and the queue id.
+         */
+        public ReceiptHandleBuilder topicId(final long topicId) {
+            this.topicId = topicId;
             return this;
         }
 
@@ -95,11 +130,16 @@ public class ReceiptHandleUtil {
         }
 
         public String build() {
-            return startOffset
-                + MessageConst.KEY_SEPARATOR + retrieveTime + MessageConst.KEY_SEPARATOR + invisibleTime
-                + MessageConst.KEY_SEPARATOR + reviveQueueId + MessageConst.KEY_SEPARATOR + topicType
-                + MessageConst.KEY_SEPARATOR + brokerName + MessageConst.KEY_SEPARATOR + queueId
-                + MessageConst.KEY_SEPARATOR + offset;
+            return new StringBuilder(topicType.length() + 128)
+                .append(startOffset)
+                .append(MessageConst.KEY_SEPARATOR).append(retrieveTime)
+                .append(MessageConst.KEY_SEPARATOR).append(invisibleTime)
+                .append(MessageConst.KEY_SEPARATOR).append(reviveQueueId)
+                .append(MessageConst.KEY_SEPARATOR).append(topicType)
+                .append(MessageConst.KEY_SEPARATOR).append(topicId).append(VirtualQueue.VIRTUAL_QUEUE_SEPARATOR).append(queueId)
+                .append(MessageConst.KEY_SEPARATOR).append(queueId)
+                .append(MessageConst.KEY_SEPARATOR).append(offset)
+                .toString();
         }
     }
 }
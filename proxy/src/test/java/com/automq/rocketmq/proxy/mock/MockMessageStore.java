@@ -12,6 +12,7 @@
 package com.automq.rocketmq.proxy.mock;
 
 import apache.rocketmq.controller.v1.StreamRole;
+import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.store.api.LogicQueue;
@@ -24,13 +25,16 @@ import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
 import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PopResult;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
 import com.automq.rocketmq.store.model.transaction.TransactionResolution;
 import com.automq.rocketmq.store.service.InflightService;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -46,7 +50,7 @@ public class MockMessageStore implements MessageStore {
     private final HashMap<Long, AtomicLong> offsetMap = new HashMap<>();
     private final Set<String> receiptHandleSet = new HashSet<>();
     private final Map<Long, List<FlatMessageExt>> messageMap = new HashMap<>();
-    private final InflightService inflightService = new InflightService();
+    private final InflightService inflightService = new InflightService(new StoreConfig());
 
     private final Map<Pair<Long, Integer>, Long> consumerOffsetMap = new HashMap<>();
 
@@ -184,6 +188,39 @@ public class MockMessageStore implements MessageStore {
         return CompletableFuture.completedFuture(new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.SUCCESS));
     }
 
+    @Override
+    public CompletableFuture<Long> searchOffset(long topicId, int queueId, long timestamp) {
+        List<FlatMessageExt> messageList = messageMap.computeIfAbsent(topicId + queueId, v -> new ArrayList<>());
+        long offset = messageList.stream()
+            .filter(messageExt -> messageExt.message().systemProperties().storeTimestamp() >= timestamp)
+            .mapToLong(FlatMessageExt::offset)
+            .findFirst()
+            .orElse(offsetMap.computeIfAbsent(topicId + queueId, v -> new AtomicLong()).get());
+        return CompletableFuture.completedFuture(offset);
+    }
+
+    @Override
+    public CompletableFuture<List<FlatMessageExt>> queryMessages(long topicId, int queueId, MessageIndexType type,
+        String key, long beginTimestamp, long endTimestamp, int maxCount) {
+        List<FlatMessageExt> messageList = messageMap.computeIfAbsent(topicId + queueId, v -> new ArrayList<>());
+        List<FlatMessageExt> result = messageList.stream()
+            .filter(messageExt -> {
+                FlatMessage message = messageExt.message();
+                long storeTimestamp = message.systemProperties().storeTimestamp();
+                if (storeTimestamp < beginTimestamp || storeTimestamp > endTimestamp) {
+                    return false;
+                }
+                return switch (type) {
+                    case KEY -> message.keys() != null && List.of(message.keys().split(" ")).contains(key);
+                    case MESSAGE_ID -> key.equals(message.systemProperties().messageId());
+                };
+            })
+            .sorted(Comparator.comparingLong(FlatMessageExt::offset).reversed())
+            .limit(maxCount)
+            .toList();
+        return CompletableFuture.completedFuture(result);
+    }
+
     @Override
     public CompletableFuture<ClearRetryMessagesResult> clearRetryMessages(long consumerGroupId, long topicId,
         int queueId) {
@@ -202,7 +239,13 @@ public class MockMessageStore implements MessageStore {
     }
 
     @Override
-    public void scheduleCheckTransaction(FlatMessage message) throws StoreException {
+    public CompletableFuture<Void> resolveTransaction(String transactionId) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseTransaction(String transactionId) {
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
@@ -214,6 +257,6 @@ public class MockMessageStore implements MessageStore {
     }
 
     @Override
-    public void registerTransactionCheckHandler(Consumer<TimerTag> handler) throws StoreException {
+    public void registerTransactionCheckHandler(Consumer<TransactionCheck> handler) throws StoreException {
     }
 }
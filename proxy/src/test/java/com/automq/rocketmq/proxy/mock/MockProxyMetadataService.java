@@ -101,4 +101,10 @@ public class MockProxyMetadataService implements ProxyMetadataService {
         offsetMap.put(consumerGroupId + topicId + queueId, newOffset);
         return CompletableFuture.completedFuture(null);
     }
+
+    @Override
+    public CompletableFuture<Void> resetConsumerOffset(long consumerGroupId, long topicId, int queueId,
+        long newOffset) {
+        return updateConsumerOffset(consumerGroupId, topicId, queueId, newOffset);
+    }
 }
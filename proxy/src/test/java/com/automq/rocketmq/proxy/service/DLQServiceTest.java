@@ -26,16 +26,25 @@ import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.proxy.grpc.client.GrpcProxyClient;
 import com.automq.rocketmq.proxy.mock.MockMessageUtil;
 import com.automq.rocketmq.store.api.MessageStore;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.message.PutResult;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class DLQServiceTest {
 
@@ -43,6 +52,7 @@ public class DLQServiceTest {
     private ProxyMetadataService metadataService;
     private MessageStore messageStore;
     private DeadLetterService dlqService;
+    private LongCounter deadLetterMessages;
 
     private static final long TOPIC_ID = 6;
     private static final int QUEUE_ID = 0;
@@ -61,6 +71,13 @@ public class DLQServiceTest {
         messageStore = Mockito.mock(MessageStore.class);
         dlqService = Mockito.spy(new DeadLetterService(config, metadataService, new GrpcProxyClient(config)));
         dlqService.init(messageStore);
+        deadLetterMessages = StoreMetricsManager.deadLetterMessages;
+        StoreMetricsManager.deadLetterMessages = Mockito.mock(LongCounter.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        StoreMetricsManager.deadLetterMessages = deadLetterMessages;
     }
 
     @Test
@@ -104,6 +121,41 @@ public class DLQServiceTest {
 
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(1)).put(Mockito.any(), Mockito.any(FlatMessage.class));
+        Mockito.verify(StoreMetricsManager.deadLetterMessages).add(1,
+            StoreMetricsManager.buildQueueAttributes(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID));
+
+        // The batcher of the DLQ queue is dropped once it runs out of dead letters.
+        await().until(() -> dlqService.batcherQuantity() == 0);
+    }
+
+    @Test
+    public void send_putFailed() {
+        MessageQueue messageQueue = MessageQueue.newBuilder().setQueueId(QUEUE_ID).setTopicId(DLQ_TOPIC_ID).build();
+        MessageQueueAssignment assignment = MessageQueueAssignment.newBuilder().setQueue(messageQueue).setNodeId(config.nodeId()).build();
+        Topic dlqTopic = Topic.newBuilder()
+            .setTopicId(DLQ_TOPIC_ID)
+            .setName(DLQ_TOPIC_NAME)
+            .setAcceptTypes(AcceptTypes.newBuilder().addTypes(MessageType.NORMAL).build())
+            .addAssignments(assignment)
+            .build();
+        ConsumerGroup consumerGroup = ConsumerGroup.newBuilder()
+            .setGroupId(CONSUMER_GROUP_ID)
+            .setName(CONSUMER_GROUP_NAME)
+            .setDeadLetterTopicId(DLQ_TOPIC_ID)
+            .setGroupType(GroupType.GROUP_TYPE_STANDARD)
+            .build();
+        Mockito.doReturn(CompletableFuture.completedFuture(dlqTopic))
+            .when(metadataService).topicOf(DLQ_TOPIC_ID);
+        Mockito.doReturn(CompletableFuture.completedFuture(consumerGroup))
+            .when(metadataService).consumerGroupOf(CONSUMER_GROUP_ID);
+        Mockito.doReturn(CompletableFuture.failedFuture(new RuntimeException("Mocked failure")))
+            .when(messageStore).put(Mockito.any(), Mockito.any(FlatMessage.class));
+
+        // The dead letter is not counted.
+        FlatMessageExt msg = MockMessageUtil.buildMessage(TOPIC_ID, QUEUE_ID, "TAG_DLQ");
+        assertThrows(CompletionException.class, () -> dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join());
+        Mockito.verify(messageStore, Mockito.times(1)).put(Mockito.any(), Mockito.any(FlatMessage.class));
+        Mockito.verify(StoreMetricsManager.deadLetterMessages, Mockito.never()).add(Mockito.anyLong(), Mockito.any(Attributes.class));
     }
 
     @Test
@@ -129,6 +181,8 @@ public class DLQServiceTest {
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(0)).put(Mockito.any(), Mockito.any(FlatMessage.class));
 
+        dlqService.invalidateRoute(CONSUMER_GROUP_ID);
+
         // 2. DLQ topic is configured but has no assignment
         consumerGroup = ConsumerGroup.newBuilder()
             .setGroupId(CONSUMER_GROUP_ID)
@@ -144,6 +198,8 @@ public class DLQServiceTest {
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(0)).put(Mockito.any(), Mockito.any(FlatMessage.class));
 
+        dlqService.invalidateRoute(CONSUMER_GROUP_ID);
+
         // 3. DLQ topic is the same as original topic
         consumerGroup = ConsumerGroup.newBuilder()
             .setGroupId(CONSUMER_GROUP_ID)
@@ -153,13 +209,15 @@ public class DLQServiceTest {
             .build();
         msg = MockMessageUtil.buildMessage(TOPIC_ID, QUEUE_ID, "TAG_DLQ");
         Mockito.doReturn(CompletableFuture.completedFuture(dlqTopic))
-            .when(metadataService).topicOf(DLQ_TOPIC_ID);
+            .when(metadataService).topicOf(TOPIC_ID);
         Mockito.doReturn(CompletableFuture.completedFuture(consumerGroup))
             .when(metadataService).consumerGroupOf(CONSUMER_GROUP_ID);
 
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(0)).put(Mockito.any(), Mockito.any(FlatMessage.class));
 
+        dlqService.invalidateRoute(CONSUMER_GROUP_ID);
+
         // 4. DLQ topic doesn't accept DLQ message
         MessageQueue messageQueue = MessageQueue.newBuilder().setQueueId(QUEUE_ID).setTopicId(TOPIC_ID).build();
         MessageQueueAssignment assignment = MessageQueueAssignment.newBuilder().setQueue(messageQueue).setNodeId(config.nodeId()).build();
@@ -184,6 +242,8 @@ public class DLQServiceTest {
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(0)).put(Mockito.any(), Mockito.any(FlatMessage.class));
 
+        dlqService.invalidateRoute(CONSUMER_GROUP_ID);
+
         // 5. DLQ topic not exist
         Mockito.doReturn(CompletableFuture.completedFuture(null))
             .when(metadataService).topicOf(DLQ_TOPIC_ID);
@@ -200,4 +260,50 @@ public class DLQServiceTest {
         dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()).join();
         Mockito.verify(messageStore, Mockito.times(0)).put(Mockito.any(), Mockito.any(FlatMessage.class));
     }
+
+    @Test
+    public void send_batch_with_cached_route() {
+        MessageQueue messageQueue = MessageQueue.newBuilder().setQueueId(QUEUE_ID).setTopicId(DLQ_TOPIC_ID).build();
+        MessageQueueAssignment assignment = MessageQueueAssignment.newBuilder().setQueue(messageQueue).setNodeId(config.nodeId()).build();
+        Topic dlqTopic = Topic.newBuilder()
+            .setTopicId(DLQ_TOPIC_ID)
+            .setName(DLQ_TOPIC_NAME)
+            .setAcceptTypes(AcceptTypes.newBuilder().addTypes(MessageType.NORMAL).build())
+            .addAssignments(assignment)
+            .build();
+        ConsumerGroup consumerGroup = ConsumerGroup.newBuilder()
+            .setGroupId(CONSUMER_GROUP_ID)
+            .setName(CONSUMER_GROUP_NAME)
+            .setDeadLetterTopicId(DLQ_TOPIC_ID)
+            .setGroupType(GroupType.GROUP_TYPE_STANDARD)
+            .build();
+        Mockito.doReturn(CompletableFuture.completedFuture(dlqTopic))
+            .when(metadataService).topicOf(DLQ_TOPIC_ID);
+        Mockito.doReturn(CompletableFuture.completedFuture(consumerGroup))
+            .when(metadataService).consumerGroupOf(CONSUMER_GROUP_ID);
+        Mockito.doReturn(CompletableFuture.completedFuture(new PutResult(PutResult.Status.PUT_OK, 0)))
+            .when(messageStore).put(Mockito.any(), Mockito.any(FlatMessage.class));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            FlatMessageExt msg = MockMessageUtil.buildMessage(TOPIC_ID, QUEUE_ID, "TAG_DLQ");
+            futures.add(dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, msg.message()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // The DLQ routing is resolved only once
+        Mockito.verify(metadataService, Mockito.times(1)).consumerGroupOf(CONSUMER_GROUP_ID);
+        Mockito.verify(metadataService, Mockito.times(1)).topicOf(DLQ_TOPIC_ID);
+        Mockito.verify(messageStore, Mockito.times(10)).put(Mockito.any(), Mockito.any(FlatMessage.class));
+
+        // Resolve the DLQ routing again once the put fails
+        Mockito.doReturn(CompletableFuture.failedFuture(new RuntimeException("queue not found")))
+            .when(messageStore).put(Mockito.any(), Mockito.any(FlatMessage.class));
+        FlatMessage failedMessage = MockMessageUtil.buildMessage(TOPIC_ID, QUEUE_ID, "TAG_DLQ").message();
+        assertThrows(CompletionException.class, () -> dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, failedMessage).join());
+
+        FlatMessage retriedMessage = MockMessageUtil.buildMessage(TOPIC_ID, QUEUE_ID, "TAG_DLQ").message();
+        assertThrows(CompletionException.class, () -> dlqService.send(StoreContext.EMPTY, CONSUMER_GROUP_ID, retriedMessage).join());
+        Mockito.verify(metadataService, Mockito.times(2)).consumerGroupOf(CONSUMER_GROUP_ID);
+    }
 }
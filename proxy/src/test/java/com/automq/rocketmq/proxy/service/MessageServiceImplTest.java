@@ -13,6 +13,8 @@ package com.automq.rocketmq.proxy.service;
 
 import apache.rocketmq.v2.Code;
 import com.automq.rocketmq.common.config.BrokerConfig;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
 import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.proxy.exception.ProxyException;
 import com.automq.rocketmq.proxy.grpc.client.GrpcProxyClient;
@@ -27,6 +29,7 @@ import com.automq.rocketmq.store.api.MessageStore;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.message.TagFilter;
+import com.google.flatbuffers.FlatBufferBuilder;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Set;
@@ -367,6 +370,36 @@ class MessageServiceImplTest {
         assertEquals(realException.getMessage(), "The consumer group [pullGroup] is not allowed to consume message with pop mode.");
     }
 
+    @Test
+    void pop_inflightQuotaExceeded() {
+        MessageStore store = Mockito.spy(messageStore);
+        Mockito.doReturn(CompletableFuture.completedFuture(new com.automq.rocketmq.store.model.message.PopResult(
+                com.automq.rocketmq.store.model.message.PopResult.Status.INFLIGHT_QUOTA_EXCEEDED, 0L, List.of(), 1)))
+            .when(store).pop(Mockito.any(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyInt(), Mockito.any(),
+                Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyLong());
+        BrokerConfig config = new BrokerConfig();
+        MessageService service = new MessageServiceImpl(config, store, metadataService, new LockService(config.proxy()),
+            deadLetterSender, new ProducerManager(), new GrpcProxyClient(config));
+
+        PopMessageRequestHeader header = new PopMessageRequestHeader();
+        String topicName = "topic";
+        header.setConsumerGroup("group");
+        header.setTopic(topicName);
+        header.setQueueId(0);
+        header.setMaxMsgNums(32);
+
+        long topicId = metadataService.topicOf(topicName).join().getTopicId();
+        store.put(StoreContext.EMPTY, FlatMessageUtil.convertTo(ProxyContextExt.create(), topicId, 0, "", new Message(topicName, "", new byte[] {})));
+
+        VirtualQueue virtualQueue = new VirtualQueue(2, 0);
+        AddressableMessageQueue messageQueue = new AddressableMessageQueue(new MessageQueue(topicName, virtualQueue.brokerName(), 0), null);
+
+        // The client backs off instead of long polling
+        PopResult result = service.popMessage(ProxyContextExt.create(), messageQueue, header, 0L).join();
+        assertEquals(PopStatus.POLLING_FULL, result.getPopStatus());
+        assertEquals(0, result.getMsgFoundList().size());
+    }
+
     @Test
     void pop_withFifo() {
         PopMessageRequestHeader header = new PopMessageRequestHeader();
@@ -468,6 +501,34 @@ class MessageServiceImplTest {
         assertEquals(100L, offset);
     }
 
+    @Test
+    void resetConsumeOffsetByTimestamp() {
+        String topicName = "topic";
+        long topicId = 2;
+        for (int i = 1; i <= 3; i++) {
+            FlatMessageT message = FlatMessageUtil.convertTo(ProxyContextExt.create(), topicId, 0, "", new Message(topicName, "", new byte[] {})).unpack();
+            message.getSystemProperties().setStoreTimestamp(i * 1000L);
+            FlatBufferBuilder builder = new FlatBufferBuilder();
+            builder.finish(FlatMessage.pack(builder, message));
+            messageStore.put(StoreContext.EMPTY, FlatMessage.getRootAsFlatMessage(builder.dataBuffer()));
+        }
+
+        ExtendMessageService extendMessageService = (ExtendMessageService) messageService;
+        // The first message stored at or after the timestamp
+        extendMessageService.resetConsumeOffsetByTimestamp(topicName, 0, "group", 1500).join();
+        assertEquals(1, messageStore.getConsumeOffset(8, topicId, 0));
+        extendMessageService.resetConsumeOffsetByTimestamp(topicName, 0, "group", 2000).join();
+        assertEquals(1, messageStore.getConsumeOffset(8, topicId, 0));
+
+        // Before the first message
+        extendMessageService.resetConsumeOffsetByTimestamp(topicName, 0, "group", 0).join();
+        assertEquals(0, messageStore.getConsumeOffset(8, topicId, 0));
+
+        // After the last message, consume from the end of the queue
+        extendMessageService.resetConsumeOffsetByTimestamp(topicName, 0, "group", 5000).join();
+        assertEquals(3, messageStore.getConsumeOffset(8, topicId, 0));
+    }
+
     @Test
     void offset_pullGroup() {
         UpdateConsumerOffsetRequestHeader updateConsumerOffsetRequestHeader = new UpdateConsumerOffsetRequestHeader();
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.TagFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.rocketmq.proxy.common.ProxyContext;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PopRequestCoalescerTest {
+    private static final PopRequestCoalescer.ReleaseFunction RELEASE_NOTHING = messageList -> {
+    };
+
+    private static List<FlatMessageExt> messages(int count) {
+        List<FlatMessageExt> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(Mockito.mock(FlatMessageExt.class));
+        }
+        return list;
+    }
+
+    @Test
+    void coalesce() {
+        PopRequestCoalescer coalescer = new PopRequestCoalescer(64);
+        List<Integer> popSizes = new ArrayList<>();
+        AtomicReference<CompletableFuture<MessageServiceImpl.InnerPopResult>> pending = new AtomicReference<>();
+        PopRequestCoalescer.PopFunction popFunction = (contexts, filter, batchSize, invisibleDuration) -> {
+            popSizes.add(batchSize);
+            CompletableFuture<MessageServiceImpl.InnerPopResult> future = new CompletableFuture<>();
+            pending.set(future);
+            return future;
+        };
+
+        ProxyContext context = ProxyContext.create();
+        // The first request goes to the store directly.
+        CompletableFuture<MessageServiceImpl.InnerPopResult> first = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 4, 1000, popFunction, RELEASE_NOTHING);
+        // Requests arriving during the ongoing pop are queued.
+        CompletableFuture<MessageServiceImpl.InnerPopResult> second = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 4, 1000, popFunction, RELEASE_NOTHING);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> third = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 2, 1000, popFunction, RELEASE_NOTHING);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> tagged = coalescer.pop(1, 2, 0, context, new TagFilter("TagA"), 2, 1000, popFunction, RELEASE_NOTHING);
+        assertEquals(List.of(4), popSizes);
+        assertEquals(1, coalescer.schedulerQuantity());
+
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(10, messages(4)));
+        assertEquals(4, first.join().messageList().size());
+
+        // Compatible requests are served by one pop, the tagged one waits for the next round.
+        assertEquals(List.of(4, 6), popSizes);
+        assertFalse(tagged.isDone());
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(3, messages(5)));
+        assertEquals(4, second.join().messageList().size());
+        assertEquals(1, third.join().messageList().size());
+        assertEquals(3, third.join().restMessageCount());
+
+        assertEquals(List.of(4, 6, 2), popSizes);
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(0, messages(2)));
+        assertEquals(2, tagged.join().messageList().size());
+
+        // The scheduler is dropped once no request is pending.
+        assertEquals(0, coalescer.schedulerQuantity());
+    }
+
+    @Test
+    void skipTimeoutRequest() {
+        PopRequestCoalescer coalescer = new PopRequestCoalescer(64);
+        AtomicReference<CompletableFuture<MessageServiceImpl.InnerPopResult>> pending = new AtomicReference<>();
+        PopRequestCoalescer.PopFunction popFunction = (contexts, filter, batchSize, invisibleDuration) -> {
+            CompletableFuture<MessageServiceImpl.InnerPopResult> future = new CompletableFuture<>();
+            pending.set(future);
+            return future;
+        };
+
+        ProxyContext context = ProxyContext.create();
+        CompletableFuture<MessageServiceImpl.InnerPopResult> first = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 1, 1000, popFunction, RELEASE_NOTHING);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> second = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 2, 1000, popFunction, RELEASE_NOTHING);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> third = coalescer.pop(1, 2, 0, context, Filter.DEFAULT_FILTER, 2, 1000, popFunction, RELEASE_NOTHING);
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(0, messages(1)));
+        assertEquals(1, first.join().messageList().size());
+
+        // The share of a timed out request is handed over to the next one.
+        second.complete(new MessageServiceImpl.InnerPopResult(0, Collections.emptyList()));
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(0, messages(3)));
+        assertEquals(2, third.join().messageList().size());
+    }
+
+    @Test
+    void releaseUnclaimedMessages() {
+        PopRequestCoalescer coalescer = new PopRequestCoalescer(64);
+        AtomicReference<CompletableFuture<MessageServiceImpl.InnerPopResult>> pending = new AtomicReference<>();
+        List<List<ProxyContext>> popContexts = new ArrayList<>();
+        PopRequestCoalescer.PopFunction popFunction = (contexts, filter, batchSize, invisibleDuration) -> {
+            popContexts.add(contexts);
+            CompletableFuture<MessageServiceImpl.InnerPopResult> future = new CompletableFuture<>();
+            pending.set(future);
+            return future;
+        };
+        List<FlatMessageExt> released = new ArrayList<>();
+        PopRequestCoalescer.ReleaseFunction releaseFunction = released::addAll;
+
+        ProxyContext firstContext = ProxyContext.create();
+        ProxyContext secondContext = ProxyContext.create();
+        ProxyContext thirdContext = ProxyContext.create();
+        CompletableFuture<MessageServiceImpl.InnerPopResult> first = coalescer.pop(1, 2, 0, firstContext, Filter.DEFAULT_FILTER, 1, 1000, popFunction, releaseFunction);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> second = coalescer.pop(1, 2, 0, secondContext, Filter.DEFAULT_FILTER, 2, 1000, popFunction, releaseFunction);
+        CompletableFuture<MessageServiceImpl.InnerPopResult> third = coalescer.pop(1, 2, 0, thirdContext, Filter.DEFAULT_FILTER, 2, 1000, popFunction, releaseFunction);
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(0, Collections.emptyList()));
+        assertTrue(first.join().messageList().isEmpty());
+
+        // Contexts of all coalesced requests are passed to the store pop.
+        assertEquals(List.of(secondContext, thirdContext), popContexts.get(1));
+
+        // Messages popped for requests that have all timed out are released.
+        second.complete(new MessageServiceImpl.InnerPopResult(0, Collections.emptyList()));
+        third.complete(new MessageServiceImpl.InnerPopResult(0, Collections.emptyList()));
+        List<FlatMessageExt> messageList = messages(3);
+        pending.get().complete(new MessageServiceImpl.InnerPopResult(0, messageList));
+        assertEquals(messageList, released);
+        assertEquals(0, coalescer.schedulerQuantity());
+    }
+}
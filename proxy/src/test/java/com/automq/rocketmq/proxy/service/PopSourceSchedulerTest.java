@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import apache.rocketmq.controller.v1.StreamRole;
+import com.automq.rocketmq.common.config.ProxyConfig;
+import com.automq.rocketmq.store.api.LogicQueue;
+import com.automq.rocketmq.store.api.MessageStore;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class PopSourceSchedulerTest {
+    private MessageStore store;
+    private PopSourceScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        store = Mockito.mock(MessageStore.class);
+        scheduler = new PopSourceScheduler(new ProxyConfig(), store);
+    }
+
+    private void mockOffsets(long dataEndOffset, long consumeOffset, long retryEndOffset, long retryConsumeOffset) {
+        when(store.getOffsetRange(2, 0, 1)).thenReturn(List.of(
+            new LogicQueue.StreamOffsetRange(10, StreamRole.STREAM_ROLE_DATA, 0, dataEndOffset),
+            new LogicQueue.StreamOffsetRange(11, StreamRole.STREAM_ROLE_RETRY, 0, retryEndOffset)));
+        when(store.getConsumeOffset(1, 2, 0)).thenReturn(consumeOffset);
+        when(store.getRetryConsumeOffset(1, 2, 0)).thenReturn(retryConsumeOffset);
+    }
+
+    @Test
+    void skipEmptySource() {
+        mockOffsets(10, 10, 5, 5);
+        assertTrue(scheduler.schedule(1, 2, 0).isEmpty());
+
+        mockOffsets(10, 5, 5, 5);
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL), scheduler.schedule(1, 2, 0));
+
+        mockOffsets(10, 10, 5, 3);
+        assertEquals(List.of(PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+    }
+
+    @Test
+    void unknownBacklog() {
+        // The retry stream is not opened yet.
+        when(store.getOffsetRange(2, 0, 1)).thenReturn(List.of(
+            new LogicQueue.StreamOffsetRange(10, StreamRole.STREAM_ROLE_DATA, 0, 10)));
+        when(store.getConsumeOffset(1, 2, 0)).thenReturn(10L);
+        assertEquals(List.of(PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+
+        // The queue is not opened yet.
+        when(store.getOffsetRange(2, 0, 1)).thenReturn(List.of());
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL, PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+    }
+
+    @Test
+    void unknownBacklogGoesLast() throws InterruptedException {
+        when(store.getOffsetRange(2, 0, 1)).thenReturn(List.of(
+            new LogicQueue.StreamOffsetRange(10, StreamRole.STREAM_ROLE_DATA, 0, 10)));
+        when(store.getConsumeOffset(1, 2, 0)).thenReturn(5L);
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL, PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+
+        // The retry stream of unknown backlog is not counted as waiting.
+        Thread.sleep(50);
+        scheduler.served(1, 2, 0, PopSourceScheduler.Source.NORMAL);
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL, PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+    }
+
+    @Test
+    void evictState() throws InterruptedException {
+        scheduler = new PopSourceScheduler(new ProxyConfig(), store, 50);
+        mockOffsets(10, 5, 5, 5);
+        scheduler.schedule(1, 2, 0);
+        assertEquals(1, scheduler.stateQuantity());
+
+        // Dropped once both sources are empty.
+        mockOffsets(10, 10, 5, 5);
+        scheduler.schedule(1, 2, 0);
+        assertEquals(0, scheduler.stateQuantity());
+
+        // Dropped once idle.
+        mockOffsets(10, 5, 5, 5);
+        scheduler.schedule(1, 2, 0);
+        Thread.sleep(100);
+        when(store.getOffsetRange(3, 0, 1)).thenReturn(List.of());
+        scheduler.schedule(1, 3, 0);
+        assertEquals(1, scheduler.stateQuantity());
+    }
+
+    @Test
+    void preferLongerWaitingSource() throws InterruptedException {
+        mockOffsets(10, 5, 5, 3);
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL, PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+
+        // Keep serving the normal stream, the retry stream would go first once it has waited long enough.
+        Thread.sleep(50);
+        scheduler.served(1, 2, 0, PopSourceScheduler.Source.NORMAL);
+        assertEquals(List.of(PopSourceScheduler.Source.RETRY, PopSourceScheduler.Source.NORMAL), scheduler.schedule(1, 2, 0));
+
+        scheduler.served(1, 2, 0, PopSourceScheduler.Source.RETRY);
+        assertEquals(List.of(PopSourceScheduler.Source.NORMAL, PopSourceScheduler.Source.RETRY), scheduler.schedule(1, 2, 0));
+    }
+}
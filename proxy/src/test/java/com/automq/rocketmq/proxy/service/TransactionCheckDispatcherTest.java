@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.service;
+
+import apache.rocketmq.controller.v1.Topic;
+import com.automq.rocketmq.metadata.api.ProxyMetadataService;
+import com.automq.rocketmq.proxy.mock.MockMessageUtil;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
+import io.netty.channel.Channel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.rocketmq.broker.client.ProducerManager;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionCheckDispatcherTest {
+
+    @Test
+    void batchChecks() {
+        ProxyMetadataService metadataService = Mockito.mock(ProxyMetadataService.class);
+        CompletableFuture<Topic> topicFuture = new CompletableFuture<>();
+        Mockito.doReturn(topicFuture).when(metadataService).topicOf(1L);
+        Mockito.doReturn(CompletableFuture.completedFuture(Topic.newBuilder().setTopicId(2).setName("topic-2").build()))
+            .when(metadataService).topicOf(2L);
+
+        ProducerManager producerManager = Mockito.mock(ProducerManager.class);
+        Channel channel1 = Mockito.mock(Channel.class);
+        Channel channel2 = Mockito.mock(Channel.class);
+        Mockito.doReturn(channel1).when(producerManager).getAvailableChannel("topic-1");
+        Mockito.doReturn(channel2).when(producerManager).getAvailableChannel("topic-2");
+
+        List<String> requested = new ArrayList<>();
+        TransactionCheckDispatcher dispatcher = new TransactionCheckDispatcher(metadataService, producerManager,
+            Runnable::run, 64, (check, topic) -> {
+                requested.add(check.transactionId());
+                return Mockito.mock(RemotingCommand.class);
+            });
+
+        // The first check waits for its topic, the following ones are queued.
+        dispatcher.submit(check("tx-0", 1));
+        dispatcher.submit(check("tx-1", 1));
+        dispatcher.submit(check("tx-2", 2));
+        dispatcher.submit(check("tx-3", 1));
+        assertEquals(List.of(), requested);
+
+        topicFuture.complete(Topic.newBuilder().setTopicId(1).setName("topic-1").build());
+        assertEquals(List.of("tx-0", "tx-1", "tx-3", "tx-2"), requested);
+
+        // Each round looks up a topic once and flushes a channel once.
+        Mockito.verify(metadataService, Mockito.times(2)).topicOf(1L);
+        Mockito.verify(metadataService, Mockito.times(1)).topicOf(2L);
+        Mockito.verify(channel1, Mockito.times(3)).write(Mockito.any());
+        Mockito.verify(channel1, Mockito.times(2)).flush();
+        Mockito.verify(channel2, Mockito.times(1)).write(Mockito.any());
+        Mockito.verify(channel2, Mockito.times(1)).flush();
+    }
+
+    private static TransactionCheck check(String transactionId, long topicId) {
+        return new TransactionCheck(transactionId, MockMessageUtil.buildMessage(topicId, 0, "").message(), 1);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.util;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.proxy.model.ProxyContextExt;
+import com.automq.rocketmq.proxy.model.ZeroCopyMessageExt;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.proxy.grpc.v2.common.GrpcConverter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class FlatMessageUtilTest {
+
+    private static MessageExt pulledMessage() {
+        Message message = new Message("topic", "tag", "Hello, AutoMQ".getBytes(StandardCharsets.UTF_8));
+        message.putUserProperty("key", "value");
+        MessageClientIDSetter.setUniqID(message);
+        FlatMessage flatMessage = FlatMessageUtil.convertTo(ProxyContextExt.create(), 1, 0, "127.0.0.1", message);
+        assertEquals("Hello, AutoMQ", StandardCharsets.UTF_8.decode(flatMessage.payloadAsByteBuffer()).toString());
+
+        FlatMessageExt flatMessageExt = FlatMessageExt.Builder.builder().message(flatMessage).offset(10).build();
+        MessageExt messageExt = FlatMessageUtil.convertTo(flatMessageExt, "topic", 0, "127.0.0.1", 8081);
+        messageExt.setBornHost(new InetSocketAddress("127.0.0.1", 1234));
+        return messageExt;
+    }
+
+    @Test
+    void encode() throws Exception {
+        MessageExt messageExt = pulledMessage();
+        assertInstanceOf(ZeroCopyMessageExt.class, messageExt);
+
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            FlatMessageUtil.encode(messageExt, buf);
+            byte[] actual = new byte[buf.readableBytes()];
+            buf.readBytes(actual);
+
+            // Should be identical to the encoding of RocketMQ.
+            assertArrayEquals(MessageDecoder.encode(messageExt, false), actual);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void convertToGrpcMessage() {
+        MessageExt messageExt = pulledMessage();
+        apache.rocketmq.v2.Message actual = FlatMessageUtil.convertToGrpcMessage(messageExt);
+        apache.rocketmq.v2.Message expected = GrpcConverter.getInstance().buildMessage(messageExt);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.proxy.util;
+
+import com.automq.rocketmq.proxy.model.VirtualQueue;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
+import org.apache.rocketmq.common.consumer.ReceiptHandle;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReceiptHandleUtilTest {
+    private static final String LEGACY_RECEIPT_HANDLE = "FAAAAAAAAAAMABwABAAAAAwAFAAMAAAAAgAAAAAAAAACAAAAAAAAAAMAAAAAAAAA";
+
+    @Test
+    void compactReceiptHandle() {
+        String rawHandle = ReceiptHandleCodec.encode(1, 2, 3, 4, System.currentTimeMillis(), 100);
+        String handle = ReceiptHandleUtil.encodeReceiptHandle(rawHandle, 100);
+
+        // The receipt handle is still a valid RocketMQ receipt handle
+        ReceiptHandle rmqHandle = ReceiptHandle.decode(handle);
+        assertEquals(rawHandle, rmqHandle.getTopicType());
+        assertEquals(new VirtualQueue(2, 3).brokerName(), rmqHandle.getBrokerName());
+        assertEquals(3, rmqHandle.getQueueId());
+        assertEquals(4, rmqHandle.getOffset());
+        assertEquals(100, rmqHandle.getInvisibleTime());
+
+        assertEquals(rawHandle, ReceiptHandleUtil.decodeReceiptHandle(handle));
+
+        // Another operation id with the checksum of the original receipt handle
+        int checksumPos = ReceiptHandleCodec.LENGTH - 6;
+        String forged = ReceiptHandleCodec.encode(1, 2, 3, 5, 0, 0).substring(0, checksumPos) + rawHandle.substring(checksumPos);
+        String corrupted = handle.replace(rawHandle, forged);
+        assertThrows(IllegalArgumentException.class, () -> ReceiptHandleUtil.decodeReceiptHandle(corrupted));
+    }
+
+    @Test
+    void legacyReceiptHandle() {
+        String handle = ReceiptHandleUtil.encodeReceiptHandle(LEGACY_RECEIPT_HANDLE, 100);
+        assertEquals(LEGACY_RECEIPT_HANDLE, ReceiptHandleUtil.decodeReceiptHandle(handle));
+    }
+}
@@ -11,11 +11,14 @@
 
 package com.automq.rocketmq.store;
 
+import apache.rocketmq.controller.v1.QueueLoad;
 import com.automq.rocketmq.common.api.DataStore;
+import com.automq.rocketmq.metadata.api.ProxyMetadataService;
 import com.automq.rocketmq.store.api.LogicQueueManager;
 import com.automq.rocketmq.store.api.S3ObjectOperator;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.service.QueueLoadService;
 import com.google.common.base.Stopwatch;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -30,24 +33,41 @@ public class DataStoreFacade implements DataStore {
     private final StreamStore streamStore;
     private final S3ObjectOperator s3ObjectOperator;
     private final LogicQueueManager logicQueueManager;
+    private final QueueLoadService queueLoadService;
+    private final ProxyMetadataService proxyMetadataService;
 
     public DataStoreFacade(StreamStore streamStore, S3ObjectOperator s3ObjectOperator,
-        LogicQueueManager logicQueueManager) {
+        LogicQueueManager logicQueueManager, QueueLoadService queueLoadService,
+        ProxyMetadataService proxyMetadataService) {
         this.streamStore = streamStore;
         this.s3ObjectOperator = s3ObjectOperator;
         this.logicQueueManager = logicQueueManager;
+        this.queueLoadService = queueLoadService;
+        this.proxyMetadataService = proxyMetadataService;
     }
 
     @Override
     public CompletableFuture<Void> openQueue(long topicId, int queueId) {
-        return logicQueueManager.getOrCreate(StoreContext.EMPTY, topicId, queueId)
+        // Offsets cached while the queue was served by another node may be stale.
+        return invalidateConsumerOffsets(topicId, queueId)
+            .thenCompose(nil -> logicQueueManager.getOrCreate(StoreContext.EMPTY, topicId, queueId))
             .thenAccept(ignore -> {
             });
     }
 
     @Override
     public CompletableFuture<Void> closeQueue(long topicId, int queueId) {
-        return logicQueueManager.close(topicId, queueId);
+        // Persist offsets committed through this node before the next owner of the queue loads them.
+        return logicQueueManager.close(topicId, queueId)
+            .thenCompose(nil -> invalidateConsumerOffsets(topicId, queueId));
+    }
+
+    private CompletableFuture<Void> invalidateConsumerOffsets(long topicId, int queueId) {
+        return proxyMetadataService.invalidateConsumerOffsets(topicId, queueId)
+            .exceptionally(e -> {
+                LOGGER.warn("Failed to flush consumer offsets of queue[topic-id={}, queue-id={}]", topicId, queueId, e);
+                return null;
+            });
     }
 
     @Override
@@ -64,4 +84,14 @@ public class DataStoreFacade implements DataStore {
             return list;
         });
     }
+
+    @Override
+    public List<QueueLoad> queueLoads() {
+        return queueLoadService.snapshot();
+    }
+
+    @Override
+    public void acknowledgeQueueLoads() {
+        queueLoadService.acknowledge();
+    }
 }
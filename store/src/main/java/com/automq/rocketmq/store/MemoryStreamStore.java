@@ -0,0 +1,232 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store;
+
+import com.automq.rocketmq.store.api.StreamStore;
+import com.automq.rocketmq.store.exception.StoreErrorCode;
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.stream.api.AppendResult;
+import com.automq.stream.api.FetchResult;
+import com.automq.stream.api.RecordBatch;
+import com.automq.stream.api.RecordBatchWithContext;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link StreamStore} keeping records in memory, which stands in for {@link S3StreamStore} to test or benchmark the
+ * store without the WAL, S3 and the controller.
+ * <p>
+ * Latency of appends and fetches can be injected to mimic the WAL and the block cache. Records retained by all
+ * streams are bounded by a byte budget, appends fail once it is exhausted until streams are trimmed.
+ * Records of a stream survive closing it, just like they are kept by S3, so queues can be reopened.
+ */
+public class MemoryStreamStore implements StreamStore {
+    private final ConcurrentMap<Long, MemoryStream> streams = new ConcurrentHashMap<>();
+    private final Set<Long> openedStreams = ConcurrentHashMap.newKeySet();
+
+    private final long appendLatencyMicros;
+    private final long fetchLatencyMicros;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public MemoryStreamStore() {
+        this(0, 0, Long.MAX_VALUE);
+    }
+
+    public MemoryStreamStore(long appendLatencyMicros, long fetchLatencyMicros, long maxBytes) {
+        this.appendLatencyMicros = appendLatencyMicros;
+        this.fetchLatencyMicros = fetchLatencyMicros;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public CompletableFuture<Void> open(long streamId, long epoch) {
+        streams.computeIfAbsent(streamId, MemoryStream::new);
+        openedStreams.add(streamId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean isOpened(long streamId) {
+        return openedStreams.contains(streamId);
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(StoreContext context, long streamId, long startOffset, int maxCount) {
+        if (maxCount <= 0) {
+            return CompletableFuture.completedFuture(new EmptyFetchResult());
+        }
+        MemoryStream stream = openedStream(streamId);
+        List<RecordBatchWithContext> records = stream.fetch(startOffset, startOffset + maxCount);
+        FetchResult result = () -> records;
+        return delay(result, fetchLatencyMicros);
+    }
+
+    @Override
+    public CompletableFuture<AppendResult> append(StoreContext context, long streamId, RecordBatch recordBatch) {
+        MemoryStream stream = openedStream(streamId);
+        int size = recordBatch.rawPayload().remaining();
+        if (usedBytes.addAndGet(size) > maxBytes) {
+            usedBytes.addAndGet(-size);
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.INNER_ERROR,
+                "Memory stream store is full, used " + usedBytes.get() + " bytes of " + maxBytes));
+        }
+        long baseOffset = stream.append(recordBatch);
+        AppendResult result = () -> baseOffset;
+        return delay(result, appendLatencyMicros);
+    }
+
+    @Override
+    public CompletableFuture<Void> close(List<Long> streamIds) {
+        streamIds.forEach(openedStreams::remove);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> trim(long streamId, long newStartOffset) {
+        MemoryStream stream = openedStream(streamId);
+        usedBytes.addAndGet(-stream.trim(newStartOffset));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public long startOffset(long streamId) {
+        return openedStream(streamId).startOffset.get();
+    }
+
+    @Override
+    public long confirmOffset(long streamId) {
+        return openedStream(streamId).nextOffset.get();
+    }
+
+    @Override
+    public long nextOffset(long streamId) {
+        return openedStream(streamId).nextOffset.get();
+    }
+
+    /**
+     * @return bytes of records retained by all streams
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+        openedStreams.clear();
+    }
+
+    private MemoryStream openedStream(long streamId) {
+        if (!openedStreams.contains(streamId)) {
+            throw new IllegalStateException("Stream " + streamId + " is not opened.");
+        }
+        return streams.get(streamId);
+    }
+
+    private static <T> CompletableFuture<T> delay(T result, long latencyMicros) {
+        if (latencyMicros <= 0) {
+            return CompletableFuture.completedFuture(result);
+        }
+        Executor executor = CompletableFuture.delayedExecutor(latencyMicros, TimeUnit.MICROSECONDS);
+        return CompletableFuture.supplyAsync(() -> result, executor);
+    }
+
+    static class MemoryStream {
+        private final long streamId;
+        private final ConcurrentSkipListMap<Long/*baseOffset*/, MemoryRecordBatch> records = new ConcurrentSkipListMap<>();
+        private final AtomicLong startOffset = new AtomicLong();
+        private final AtomicLong nextOffset = new AtomicLong();
+
+        MemoryStream(long streamId) {
+            this.streamId = streamId;
+        }
+
+        synchronized long append(RecordBatch recordBatch) {
+            // Copy the payload, as the store does not keep the buffer of the caller.
+            ByteBuffer payload = recordBatch.rawPayload();
+            ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+            copy.put(payload.duplicate()).flip();
+
+            long baseOffset = nextOffset.get();
+            records.put(baseOffset, new MemoryRecordBatch(baseOffset, recordBatch.count(),
+                recordBatch.baseTimestamp(), recordBatch.properties(), copy));
+            // Publish the offset after the record, so that it is visible to fetches below the confirm offset.
+            nextOffset.set(baseOffset + recordBatch.count());
+            return baseOffset;
+        }
+
+        List<RecordBatchWithContext> fetch(long startOffset, long endOffset) {
+            // Start from the batch containing the start offset.
+            Long from = records.floorKey(startOffset);
+            List<RecordBatchWithContext> result = new ArrayList<>();
+            for (MemoryRecordBatch batch : records.subMap(from != null ? from : startOffset, endOffset).values()) {
+                if (batch.lastOffset() >= startOffset) {
+                    result.add(batch);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return bytes of the released records
+         */
+        synchronized long trim(long newStartOffset) {
+            if (newStartOffset <= startOffset.get()) {
+                return 0;
+            }
+            startOffset.set(newStartOffset);
+            long released = 0;
+            // A batch is released once all its records are trimmed.
+            while (!records.isEmpty() && records.firstEntry().getValue().lastOffset() < newStartOffset) {
+                released += records.pollFirstEntry().getValue().payload.remaining();
+            }
+            return released;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryStream{" +
+                "streamId=" + streamId +
+                ", startOffset=" + startOffset.get() +
+                ", nextOffset=" + nextOffset.get() +
+                '}';
+        }
+    }
+
+    record MemoryRecordBatch(long baseOffset, int count, long baseTimestamp, Map<String, String> properties,
+                             ByteBuffer payload) implements RecordBatchWithContext {
+        @Override
+        public long lastOffset() {
+            return baseOffset + count - 1;
+        }
+
+        @Override
+        public ByteBuffer rawPayload() {
+            return payload.duplicate();
+        }
+    }
+}
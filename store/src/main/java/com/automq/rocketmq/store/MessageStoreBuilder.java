@@ -13,6 +13,7 @@ package com.automq.rocketmq.store;
 
 import com.automq.rocketmq.common.config.S3StreamConfig;
 import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.common.util.ExecutorFactory;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.store.api.DeadLetterSender;
 import com.automq.rocketmq.store.api.LogicQueueManager;
@@ -20,14 +21,17 @@ import com.automq.rocketmq.store.api.S3ObjectOperator;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.queue.DefaultLogicQueueManager;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
 import com.automq.rocketmq.store.service.MessageArrivalNotificationService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.ReviveService;
 import com.automq.rocketmq.store.service.RocksDBKVService;
 import com.automq.rocketmq.store.service.SnapshotService;
 import com.automq.rocketmq.store.service.StreamOperationLogService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
 import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
 import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
 import com.automq.rocketmq.store.service.api.OperationLogService;
@@ -38,6 +42,8 @@ import java.util.List;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 
 import static com.automq.rocketmq.store.MessageStoreImpl.KV_NAMESPACE_CHECK_POINT;
+import static com.automq.rocketmq.store.MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX;
+import static com.automq.rocketmq.store.MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX;
 
 public class MessageStoreBuilder {
     public static MessageStoreImpl build(StoreConfig storeConfig, S3StreamConfig s3StreamConfig,
@@ -45,27 +51,43 @@ public class MessageStoreBuilder {
         // set S3 namespace
         ObjectUtils.setNamespace(s3StreamConfig.s3Namespace());
         StreamStore streamStore = new S3StreamStore(storeConfig, s3StreamConfig, metadataService);
-        KVService kvService = new RocksDBKVService(storeConfig.kvPath());
-        InflightService inflightService = new InflightService();
-        SnapshotService snapshotService = new SnapshotService(streamStore, kvService);
-        OperationLogService operationLogService = new StreamOperationLogService(streamStore, snapshotService, storeConfig);
-        StreamReclaimService streamReclaimService = new StreamReclaimService(streamStore);
-        // TODO: We may have multiple timer service in the future.
-        TimerService timerService = new TimerService("timer_0", kvService);
-        LogicQueueManager logicQueueManager = new DefaultLogicQueueManager(storeConfig, streamStore, kvService, timerService,
-            metadataService, operationLogService, inflightService, streamReclaimService);
-        MessageArrivalNotificationService messageArrivalNotificationService = new MessageArrivalNotificationService();
-        ReviveService reviveService = new ReviveService(KV_NAMESPACE_CHECK_POINT, kvService, timerService,
-            metadataService, messageArrivalNotificationService, logicQueueManager, deadLetterSender);
 
         // S3 object manager, such as trim expired messages, etc.
         S3Operator operator = new DefaultS3Operator(s3StreamConfig.s3Endpoint(), s3StreamConfig.s3Region(), s3StreamConfig.s3Bucket(),
             s3StreamConfig.s3ForcePathStyle(), List.of(() -> AwsBasicCredentials.create(s3StreamConfig.s3AccessKey(), s3StreamConfig.s3SecretKey())), false);
         S3ObjectOperator objectOperator = new S3ObjectOperatorImpl(operator);
 
+        return build(storeConfig, streamStore, objectOperator, metadataService, deadLetterSender);
+    }
+
+    /**
+     * Build the message store on top of the given stream store, e.g. {@link MemoryStreamStore} to run the store
+     * without the WAL, S3 and the controller.
+     */
+    public static MessageStoreImpl build(StoreConfig storeConfig, StreamStore streamStore,
+        S3ObjectOperator objectOperator, StoreMetadataService metadataService,
+        DeadLetterSender deadLetterSender) throws StoreException {
+        KVService kvService = new RocksDBKVService(storeConfig.kvPath());
+        InflightService inflightService = new InflightService(storeConfig);
+        SnapshotService snapshotService = new SnapshotService(streamStore, kvService, storeConfig);
+        OperationLogService operationLogService = new StreamOperationLogService(streamStore, snapshotService, storeConfig);
+        StreamReclaimService streamReclaimService = new StreamReclaimService(streamStore, storeConfig.streamReclaimThreadPoolNums());
+        // TODO: We may have multiple timer service in the future.
+        TimerService timerService = new TimerService("timer_0", kvService);
+        TimestampIndexService timestampIndexService = new TimestampIndexService(KV_NAMESPACE_TIMESTAMP_INDEX, kvService, storeConfig);
+        MessageIndexService messageIndexService = new MessageIndexService(KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService, storeConfig);
         TransactionService transactionService = new TransactionService(storeConfig, timerService);
+        ConsumerLagService consumerLagService = new ConsumerLagService(timestampIndexService);
+        LogicQueueManager logicQueueManager = new DefaultLogicQueueManager(storeConfig, streamStore, kvService, timerService,
+            metadataService, operationLogService, inflightService, streamReclaimService, timestampIndexService,
+            messageIndexService, transactionService, consumerLagService);
+        MessageArrivalNotificationService messageArrivalNotificationService = new MessageArrivalNotificationService();
+        ReviveService reviveService = new ReviveService(KV_NAMESPACE_CHECK_POINT, kvService, timerService,
+            metadataService, messageArrivalNotificationService, logicQueueManager, deadLetterSender,
+            ExecutorFactory.newExecutor("revive-service-background", storeConfig.reviveThreadPoolNums(), storeConfig.enableVirtualThreads()));
 
         return new MessageStoreImpl(storeConfig, streamStore, metadataService, kvService, timerService, inflightService,
-            snapshotService, logicQueueManager, reviveService, objectOperator, messageArrivalNotificationService, transactionService);
+            snapshotService, logicQueueManager, reviveService, objectOperator, messageArrivalNotificationService, transactionService,
+            messageIndexService);
     }
 }
@@ -12,6 +12,7 @@
 package com.automq.rocketmq.store;
 
 import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.store.api.LogicQueue;
@@ -22,41 +23,52 @@ import com.automq.rocketmq.store.api.S3ObjectOperator;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.StoreContext;
-import com.automq.rocketmq.store.model.generated.ReceiptHandle;
 import com.automq.rocketmq.store.model.generated.TimerHandlerType;
 import com.automq.rocketmq.store.model.generated.TimerTag;
 import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
 import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PopResult;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
+import com.automq.rocketmq.store.model.transaction.HalfMessageIndex;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
 import com.automq.rocketmq.store.model.transaction.TransactionResolution;
 import com.automq.rocketmq.store.service.InflightService;
 import com.automq.rocketmq.store.service.MessageArrivalNotificationService;
+import com.automq.rocketmq.store.service.MessageIndexService;
+import com.automq.rocketmq.store.service.QueueLoadService;
 import com.automq.rocketmq.store.service.ReviveService;
 import com.automq.rocketmq.store.service.SnapshotService;
 import com.automq.rocketmq.store.service.TimerService;
 import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
 import com.automq.rocketmq.store.util.SerializeUtil;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import static com.automq.rocketmq.store.util.SerializeUtil.decodeReceiptHandle;
 
 public class MessageStoreImpl implements MessageStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStoreImpl.class);
+
     public static final String KV_NAMESPACE_CHECK_POINT = "check_point";
     public static final String KV_NAMESPACE_FIFO_INDEX = "fifo_index";
+    public static final String KV_NAMESPACE_TIMESTAMP_INDEX = "timestamp_index";
+    public static final String KV_NAMESPACE_MESSAGE_INDEX = "message_index";
 
     private final AtomicBoolean started = new AtomicBoolean(false);
 
@@ -73,12 +85,15 @@ public class MessageStoreImpl implements MessageStore {
     private final S3ObjectOperator s3ObjectOperator;
     private final MessageArrivalNotificationService messageArrivalNotificationService;
     private final TransactionService transactionService;
+    private final QueueLoadService queueLoadService;
+    private final MessageIndexService messageIndexService;
 
     public MessageStoreImpl(StoreConfig config, StreamStore streamStore,
         StoreMetadataService metadataService, KVService kvService, TimerService timerService,
         InflightService inflightService, SnapshotService snapshotService, LogicQueueManager logicQueueManager,
         ReviveService reviveService, S3ObjectOperator s3ObjectOperator,
-        MessageArrivalNotificationService messageArrivalNotificationService, TransactionService transactionService) {
+        MessageArrivalNotificationService messageArrivalNotificationService, TransactionService transactionService,
+        MessageIndexService messageIndexService) {
         this.config = config;
         this.streamStore = streamStore;
         this.metadataService = metadataService;
@@ -91,6 +106,8 @@ public class MessageStoreImpl implements MessageStore {
         this.s3ObjectOperator = s3ObjectOperator;
         this.messageArrivalNotificationService = messageArrivalNotificationService;
         this.transactionService = transactionService;
+        this.messageIndexService = messageIndexService;
+        this.queueLoadService = new QueueLoadService(logicQueueManager);
     }
 
     public LogicQueueManager topicQueueManager() {
@@ -101,6 +118,10 @@ public class MessageStoreImpl implements MessageStore {
         return streamStore;
     }
 
+    public QueueLoadService queueLoadService() {
+        return queueLoadService;
+    }
+
     /**
      * @return {@link S3ObjectOperator} instance
      */
@@ -117,6 +138,7 @@ public class MessageStoreImpl implements MessageStore {
         streamStore.start();
         timerService.start();
         snapshotService.start();
+        messageIndexService.start();
         logicQueueManager.start();
     }
 
@@ -126,6 +148,7 @@ public class MessageStoreImpl implements MessageStore {
             return;
         }
         logicQueueManager.shutdown();
+        messageIndexService.shutdown();
         snapshotService.shutdown();
         timerService.shutdown();
         streamStore.shutdown();
@@ -158,6 +181,7 @@ public class MessageStoreImpl implements MessageStore {
                 }
                 return topicQueue.popNormal(context, consumerGroupId, filter, batchSize, invisibleDuration);
             }).thenApply(result -> {
+                queueLoadService.recordEgress(consumerGroupId, topicId, queueId, result.messageList());
                 context.span().ifPresent(span -> {
                     span.setAttribute("result.status", result.status().name());
                     span.setAttribute("result.messageCount", result.messageList().size());
@@ -178,6 +202,10 @@ public class MessageStoreImpl implements MessageStore {
                     return topicQueue.pullRetry(context, consumerGroupId, filter, offset, batchSize);
                 }
                 return topicQueue.pullNormal(context, consumerGroupId, filter, offset, batchSize);
+            })
+            .thenApply(result -> {
+                queueLoadService.recordEgress(consumerGroupId, topicId, queueId, result.messageList());
+                return result;
             });
     }
 
@@ -197,19 +225,16 @@ public class MessageStoreImpl implements MessageStore {
 
         // Deal with transaction message
         if (message.systemProperties().preparedTransactionMark()) {
-            try {
-                String transactionId = transactionService.begin(message);
-                return CompletableFuture.completedFuture(new PutResult(PutResult.Status.PUT_TRANSACTION_PREPARED, -1, transactionId));
-            } catch (StoreException e) {
-                return CompletableFuture.failedFuture(e);
-            }
+            return logicQueueManager.getOrCreate(context, message.topicId(), message.queueId())
+                .thenCompose(topicQueue -> topicQueue.putHalf(context, message));
         }
 
         // Deal with normal message
         return logicQueueManager.getOrCreate(context, message.topicId(), message.queueId())
             .thenCompose(topicQueue -> topicQueue.put(context, message))
-            .thenCompose(result ->
-                metadataService.topicOf(message.topicId())
+            .thenCompose(result -> {
+                queueLoadService.recordIngress(message.topicId(), message.queueId(), message.payloadLength());
+                return metadataService.topicOf(message.topicId())
                     .thenAccept(topic -> {
                         MessageArrivalListener.MessageSource source;
                         if (deliveryTimestamp > 0) {
@@ -219,15 +244,15 @@ public class MessageStoreImpl implements MessageStore {
                         }
                         messageArrivalNotificationService.notify(source, topic, message.queueId(), result.offset(), message.tag());
                     })
-                    .thenApply(v -> result)
-            );
+                    .thenApply(v -> result);
+            });
     }
 
     @Override
     public CompletableFuture<AckResult> ack(String receiptHandle) {
         // Write ack operation to operation log.
         // Operation id should be monotonically increasing for each queue
-        ReceiptHandle handle = decodeReceiptHandle(receiptHandle);
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
         return logicQueueManager.getOrCreate(StoreContext.EMPTY, handle.topicId(), handle.queueId())
             .thenCompose(topicQueue -> topicQueue.ack(receiptHandle));
     }
@@ -237,7 +262,7 @@ public class MessageStoreImpl implements MessageStore {
         long invisibleDuration) {
         // Write change invisible duration operation to operation log.
         // Operation id should be monotonically increasing for each queue
-        ReceiptHandle handle = decodeReceiptHandle(receiptHandle);
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
         return logicQueueManager.getOrCreate(StoreContext.EMPTY, handle.topicId(), handle.queueId())
             .thenCompose(topicQueue -> topicQueue.changeInvisibleDuration(receiptHandle, invisibleDuration));
     }
@@ -294,10 +319,24 @@ public class MessageStoreImpl implements MessageStore {
             .thenCompose(topicQueue -> topicQueue.resetConsumeOffset(consumerGroupId, offset));
     }
 
+    @Override
+    public CompletableFuture<Long> searchOffset(long topicId, int queueId, long timestamp) {
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, topicId, queueId)
+            .thenCompose(topicQueue -> topicQueue.searchOffset(timestamp));
+    }
+
+    @Override
+    public CompletableFuture<List<FlatMessageExt>> queryMessages(long topicId, int queueId, MessageIndexType type,
+        String key, long beginTimestamp, long endTimestamp, int maxCount) {
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, topicId, queueId)
+            .thenCompose(topicQueue -> topicQueue.queryMessages(type, key, beginTimestamp, endTimestamp, maxCount));
+    }
+
     @Override
     public CompletableFuture<ClearRetryMessagesResult> clearRetryMessages(long consumerGroupId, long topicId,
         int queueId) {
-        throw new UnsupportedOperationException("Not implemented yet");
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, topicId, queueId)
+            .thenCompose(topicQueue -> topicQueue.clearRetryMessages(consumerGroupId));
     }
 
     @Override
@@ -313,26 +352,92 @@ public class MessageStoreImpl implements MessageStore {
     @Override
     public CompletableFuture<Optional<FlatMessage>> endTransaction(String transactionId,
         TransactionResolution resolution) {
+        Optional<HalfMessageIndex> optional;
         try {
-            if (resolution == TransactionResolution.COMMIT) {
-                Optional<FlatMessage> optional = transactionService.commit(transactionId);
-                if (optional.isEmpty()) {
-                    return CompletableFuture.completedFuture(Optional.empty());
-                }
-                optional.get().systemProperties().mutatePreparedTransactionMark(false);
-                return CompletableFuture.completedFuture(optional);
-            } else {
-                transactionService.rollback(transactionId);
-            }
+            optional = transactionService.lookup(transactionId);
+        } catch (StoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (optional.isEmpty()) {
             return CompletableFuture.completedFuture(Optional.empty());
-        } catch (Exception e) {
+        }
+
+        HalfMessageIndex index = optional.get();
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, index.topicId(), index.queueId())
+            .thenCompose(topicQueue -> {
+                if (!topicQueue.isHalfPending(index.offset())) {
+                    // Resolved already, only the check is left behind
+                    return cancelTransactionCheck(transactionId).thenApply(nil -> Optional.empty());
+                }
+                // Claim the transaction before anything is put, so that a retried or concurrent resolution, e.g.
+                // triggered by a check, is ignored rather than putting the committed message twice.
+                if (!topicQueue.claimHalf(index.offset())) {
+                    return CompletableFuture.completedFuture(Optional.<FlatMessage>empty());
+                }
+                CompletableFuture<Optional<FlatMessage>> future;
+                if (resolution != TransactionResolution.COMMIT) {
+                    future = topicQueue.resolveHalf(index.offset())
+                        .thenCompose(nil -> cancelTransactionCheck(transactionId))
+                        .thenApply(nil -> Optional.empty());
+                } else {
+                    // The committed message is put into the data stream by the caller, which resolves the transaction
+                    // afterward. Keep the half message pending until then, so it's checked again if the put fails.
+                    future = topicQueue.getHalf(index.offset())
+                        .thenApply(message -> {
+                            message.systemProperties().mutatePreparedTransactionMark(false);
+                            return Optional.of(message);
+                        });
+                }
+                return future.whenComplete((optional, ex) -> {
+                    if (ex != null) {
+                        topicQueue.releaseHalf(index.offset());
+                    }
+                });
+            });
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveTransaction(String transactionId) {
+        Optional<HalfMessageIndex> optional;
+        try {
+            optional = transactionService.lookup(transactionId);
+        } catch (StoreException e) {
             return CompletableFuture.failedFuture(e);
         }
+        if (optional.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HalfMessageIndex index = optional.get();
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, index.topicId(), index.queueId())
+            .thenCompose(topicQueue -> topicQueue.resolveHalf(index.offset()))
+            .thenCompose(nil -> cancelTransactionCheck(transactionId));
     }
 
     @Override
-    public void scheduleCheckTransaction(FlatMessage message) throws StoreException {
-        transactionService.scheduleNextCheck(message);
+    public CompletableFuture<Void> releaseTransaction(String transactionId) {
+        Optional<HalfMessageIndex> optional;
+        try {
+            optional = transactionService.lookup(transactionId);
+        } catch (StoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (optional.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HalfMessageIndex index = optional.get();
+        return logicQueueManager.getOrCreate(StoreContext.EMPTY, index.topicId(), index.queueId())
+            .thenAccept(topicQueue -> topicQueue.releaseHalf(index.offset()));
+    }
+
+    private CompletableFuture<Void> cancelTransactionCheck(String transactionId) {
+        try {
+            transactionService.cancelCheck(transactionId);
+            return CompletableFuture.completedFuture(null);
+        } catch (StoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     @Override
@@ -346,7 +451,46 @@ public class MessageStoreImpl implements MessageStore {
     }
 
     @Override
-    public void registerTransactionCheckHandler(Consumer<TimerTag> handler) throws StoreException {
-        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, handler);
+    public void registerTransactionCheckHandler(Consumer<TransactionCheck> handler) throws StoreException {
+        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, timerTag -> {
+            ByteBuffer identity = timerTag.identityAsByteBuffer();
+            String transactionId = StandardCharsets.UTF_8.decode(identity).toString();
+            HalfMessageIndex index = SerializeUtil.decodeHalfMessageIndex(timerTag.payloadAsByteBuffer());
+
+            boolean scheduled;
+            try {
+                scheduled = transactionService.scheduleNextCheck(transactionId, index);
+            } catch (StoreException e) {
+                LOGGER.error("Failed to schedule the next check of transaction: {}", transactionId, e);
+                return;
+            }
+
+            logicQueueManager.getOrCreate(StoreContext.EMPTY, index.topicId(), index.queueId())
+                .thenCompose(topicQueue -> {
+                    if (!topicQueue.isHalfPending(index.offset())) {
+                        // Resolved before the check was cancelled, e.g. the node crashed in between
+                        return cancelTransactionCheck(transactionId);
+                    }
+                    if (!scheduled) {
+                        if (!topicQueue.claimHalf(index.offset())) {
+                            // Being resolved, the resolution is left to its caller
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        LOGGER.warn("Give up transaction: {} after {} checks", transactionId, index.checkTimes());
+                        return topicQueue.resolveHalf(index.offset())
+                            .whenComplete((nil, ex) -> {
+                                if (ex != null) {
+                                    topicQueue.releaseHalf(index.offset());
+                                }
+                            });
+                    }
+                    return topicQueue.getHalf(index.offset())
+                        .thenAccept(message -> handler.accept(new TransactionCheck(transactionId, message, index.checkTimes() + 1)));
+                })
+                .exceptionally(ex -> {
+                    LOGGER.error("Failed to check transaction: {}", transactionId, ex);
+                    return null;
+                });
+        });
     }
 }
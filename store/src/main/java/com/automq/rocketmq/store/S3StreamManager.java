@@ -11,19 +11,36 @@
 
 package com.automq.rocketmq.store;
 
+import apache.rocketmq.common.v1.Code;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
+import com.automq.rocketmq.common.exception.ControllerException;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.stream.s3.metadata.StreamMetadata;
 import com.automq.stream.s3.metadata.StreamState;
 import com.automq.stream.s3.streams.StreamManager;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Streams opened or closed concurrently, e.g. by queues opened or closed together during failover, are sent to the
+ * controller in batches, so the number of controller round-trips scales with batches rather than streams.
+ */
 public class S3StreamManager implements StreamManager {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final StoreMetadataService metaService;
+    private final StreamBatcher<OpenStreamResult> openBatcher;
+    private final StreamBatcher<Status> closeBatcher;
 
     public S3StreamManager(StoreMetadataService metaService) {
         this.metaService = metaService;
+        this.openBatcher = new StreamBatcher<>(metaService::openStreams, MAX_BATCH_SIZE);
+        this.closeBatcher = new StreamBatcher<>(metaService::closeStreams, MAX_BATCH_SIZE);
     }
 
     @Override
@@ -46,7 +63,13 @@ public class S3StreamManager implements StreamManager {
 
     @Override
     public CompletableFuture<StreamMetadata> openStream(long streamId, long epoch) {
-        return metaService.openStream(streamId, epoch).thenApply(this::convertFrom);
+        return openBatcher.submit(streamId, epoch).thenCompose(result -> {
+            if (result.getStatus().getCode() != Code.OK) {
+                return CompletableFuture.failedFuture(new ControllerException(result.getStatus().getCodeValue(),
+                    result.getStatus().getMessage()));
+            }
+            return CompletableFuture.completedFuture(convertFrom(result.getStreamMetadata()));
+        });
     }
 
     @Override
@@ -56,7 +79,12 @@ public class S3StreamManager implements StreamManager {
 
     @Override
     public CompletableFuture<Void> closeStream(long streamId, long epoch) {
-        return metaService.closeStream(streamId, epoch).thenApply(v -> null);
+        return closeBatcher.submit(streamId, epoch).thenCompose(status -> {
+            if (status.getCode() != Code.OK) {
+                return CompletableFuture.failedFuture(new ControllerException(status.getCodeValue(), status.getMessage()));
+            }
+            return CompletableFuture.completedFuture(null);
+        });
     }
 
     @Override
@@ -68,7 +96,7 @@ public class S3StreamManager implements StreamManager {
         StreamMetadata metadata = new StreamMetadata();
         metadata.streamId(stream.getStreamId());
         metadata.epoch(stream.getEpoch());
-        metadata.streamId(stream.getStartOffset());
+        metadata.startOffset(stream.getStartOffset());
         metadata.endOffset(stream.getEndOffset());
         if (stream.getState() == apache.rocketmq.controller.v1.StreamState.OPEN) {
             metadata.state(StreamState.OPENED);
@@ -78,4 +106,72 @@ public class S3StreamManager implements StreamManager {
         }
         return metadata;
     }
+
+    /**
+     * Group commit of stream requests: the first request is sent at once, requests arriving while a batch is in
+     * flight are sent together once it completes.
+     */
+    static class StreamBatcher<R> {
+        private final Function<List<StreamEpoch>, CompletableFuture<List<R>>> flusher;
+        private final int maxBatchSize;
+
+        private final List<StreamEpoch> pendingStreams = new ArrayList<>();
+        private final List<CompletableFuture<R>> pendingFutures = new ArrayList<>();
+        private boolean inflight;
+
+        StreamBatcher(Function<List<StreamEpoch>, CompletableFuture<List<R>>> flusher, int maxBatchSize) {
+            this.flusher = flusher;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        CompletableFuture<R> submit(long streamId, long epoch) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            boolean flush;
+            synchronized (this) {
+                pendingStreams.add(StreamEpoch.newBuilder().setStreamId(streamId).setStreamEpoch(epoch).build());
+                pendingFutures.add(future);
+                flush = !inflight;
+                inflight = true;
+            }
+            if (flush) {
+                flush();
+            }
+            return future;
+        }
+
+        private void flush() {
+            List<StreamEpoch> streams;
+            List<CompletableFuture<R>> futures;
+            synchronized (this) {
+                if (pendingStreams.isEmpty()) {
+                    inflight = false;
+                    return;
+                }
+                int size = Math.min(maxBatchSize, pendingStreams.size());
+                streams = new ArrayList<>(pendingStreams.subList(0, size));
+                futures = new ArrayList<>(pendingFutures.subList(0, size));
+                pendingStreams.subList(0, size).clear();
+                pendingFutures.subList(0, size).clear();
+            }
+
+            CompletableFuture<List<R>> batchFuture;
+            try {
+                batchFuture = flusher.apply(streams);
+            } catch (Throwable e) {
+                batchFuture = CompletableFuture.failedFuture(e);
+            }
+            batchFuture.whenComplete((results, e) -> {
+                for (int i = 0; i < futures.size(); i++) {
+                    if (null != e) {
+                        futures.get(i).completeExceptionally(e);
+                    } else if (null == results || results.size() != futures.size()) {
+                        futures.get(i).completeExceptionally(new IllegalStateException("Unexpected number of results"));
+                    } else {
+                        futures.get(i).complete(results.get(i));
+                    }
+                }
+                flush();
+            });
+        }
+    }
 }
@@ -12,11 +12,14 @@
 package com.automq.rocketmq.store.api;
 
 import apache.rocketmq.controller.v1.StreamRole;
+import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
+import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PopResult;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.message.PutResult;
@@ -50,6 +53,46 @@ public abstract class LogicQueue {
     public abstract CompletableFuture<PutResult> putRetry(StoreContext context, long consumerGroupId,
         FlatMessage flatMessage);
 
+    /**
+     * Append the half message of a prepared transaction to the half stream and schedule its status check.
+     *
+     * @return put result carrying the offset in the half stream and the transaction id
+     */
+    public abstract CompletableFuture<PutResult> putHalf(StoreContext context, FlatMessage flatMessage);
+
+    /**
+     * Get a copy of the half message at the offset of the half stream.
+     */
+    public abstract CompletableFuture<FlatMessage> getHalf(long offset);
+
+    /**
+     * Mark the half message at the offset as resolved, the half stream is trimmed up to the earliest pending one.
+     * <p>
+     * The resolution is persisted to the half stream before the future completes, so that the half message is not
+     * recovered as pending once the queue is opened again.
+     */
+    public abstract CompletableFuture<Void> resolveHalf(long offset);
+
+    /**
+     * Claim the pending half message at the offset for resolution, so that it's resolved by one caller only.
+     * <p>
+     * The claim is dropped once the half message is resolved, or by {@link #releaseHalf(long)} if the caller fails
+     * to resolve it.
+     *
+     * @return true if claimed, false if the half message is resolved or claimed by another caller already
+     */
+    public abstract boolean claimHalf(long offset);
+
+    /**
+     * Release the claim on the half message at the offset, which stays pending and could be claimed again.
+     */
+    public abstract void releaseHalf(long offset);
+
+    /**
+     * @return true if the half message at the offset is neither committed nor rolled back yet
+     */
+    public abstract boolean isHalfPending(long offset);
+
     public abstract CompletableFuture<PopResult> popNormal(StoreContext context, long consumerGroup, Filter filter,
         int batchSize, long invisibleDuration);
 
@@ -68,10 +111,36 @@ public abstract class LogicQueue {
 
     public abstract CompletableFuture<ResetConsumeOffsetResult> resetConsumeOffset(long consumerGroupId, long offset);
 
+    /**
+     * Drop all retry messages of the consumer group appended so far, then trim the retry stream.
+     */
+    public abstract CompletableFuture<ClearRetryMessagesResult> clearRetryMessages(long consumerGroupId);
+
     public abstract List<StreamOffsetRange> getOffsetRange(long consumerGroupId);
 
     public abstract int getInflightStats(long consumerGroupId);
 
+    /**
+     * Search the offset of the first message stored at or after the timestamp.
+     *
+     * @param timestamp store timestamp in milliseconds
+     * @return offset found, or the end offset if all messages are stored before the timestamp
+     */
+    public abstract CompletableFuture<Long> searchOffset(long timestamp);
+
+    /**
+     * Query messages by the message index.
+     *
+     * @param type           attribute of messages to look up
+     * @param key            message key or message id
+     * @param beginTimestamp inclusive lower bound of store timestamps
+     * @param endTimestamp   inclusive upper bound of store timestamps
+     * @param maxCount       maximum count of messages
+     * @return messages found, the latest first
+     */
+    public abstract CompletableFuture<List<FlatMessageExt>> queryMessages(MessageIndexType type, String key,
+        long beginTimestamp, long endTimestamp, int maxCount);
+
     public abstract CompletableFuture<PullResult> pullNormal(StoreContext context, long consumerGroupId, Filter filter,
         long startOffset,
         int batchSize);
@@ -15,6 +15,7 @@ import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.OperationSnapshot;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
@@ -29,11 +30,22 @@ public interface MessageStateMachine {
 
     ReplayPopResult replayPopOperation(long operationOffset, PopOperation operation) throws StoreException;
 
-    void replayAckOperation(long operationOffset, AckOperation operation) throws StoreException;
+    /**
+     * @return number of check points deleted, which is 0 if the ack is stale, e.g. after the consume offset is reset
+     */
+    int replayAckOperation(long operationOffset, AckOperation operation) throws StoreException;
 
     void replayChangeInvisibleDurationOperation(long operationOffset, ChangeInvisibleDurationOperation operation);
 
-    void replayResetConsumeOffsetOperation(long operationOffset, ResetConsumeOffsetOperation operation);
+    /**
+     * @return number of check points deleted, i.e. messages of the consumer group no longer in flight
+     */
+    int replayResetConsumeOffsetOperation(long operationOffset, ResetConsumeOffsetOperation operation);
+
+    /**
+     * @return number of check points deleted, i.e. retry messages of the consumer group no longer in flight
+     */
+    int replayClearRetryMessagesOperation(long operationOffset, ClearRetryMessagesOperation operation) throws StoreException;
 
     OperationSnapshot takeSnapshot() throws StoreException;
 
@@ -41,6 +53,16 @@ public interface MessageStateMachine {
 
     void clear() throws StoreException;
 
+    /**
+     * @return check points of messages in flight of all consumer groups, e.g. recovered from the operation log
+     */
+    List<CheckPoint> checkPoints() throws StoreException;
+
+    /**
+     * @return ids of consumer groups which have consumed from the queue
+     */
+    List<Long> consumerGroupIds();
+
     long consumeOffset(long consumerGroupId);
 
     long ackOffset(long consumerGroupId);
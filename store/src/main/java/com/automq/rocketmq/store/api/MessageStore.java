@@ -11,6 +11,7 @@
 
 package com.automq.rocketmq.store.api;
 
+import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.common.util.Lifecycle;
 import com.automq.rocketmq.store.exception.StoreException;
@@ -20,10 +21,12 @@ import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
 import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PopResult;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
+import com.automq.rocketmq.store.model.transaction.TransactionCheck;
 import com.automq.rocketmq.store.model.transaction.TransactionResolution;
 import java.util.List;
 import java.util.Optional;
@@ -145,6 +148,33 @@ public interface MessageStore extends Lifecycle {
     CompletableFuture<ResetConsumeOffsetResult> resetConsumeOffset(long consumerGroupId, long topicId, int queueId,
         long offset);
 
+    /**
+     * Search the offset of the first message stored at or after the timestamp.
+     *
+     * @param topicId   topic id
+     * @param queueId   queue id
+     * @param timestamp store timestamp in milliseconds
+     * @return offset found, or the end offset of the queue if all messages are stored before the timestamp
+     */
+    CompletableFuture<Long> searchOffset(long topicId, int queueId, long timestamp);
+
+    /**
+     * Query messages by message key or message id, with the secondary index built asynchronously.
+     * <p>
+     * Messages appended recently may not be indexed yet.
+     *
+     * @param topicId        topic id
+     * @param queueId        queue id
+     * @param type           look up by message key or message id
+     * @param key            message key or message id
+     * @param beginTimestamp inclusive lower bound of store timestamps
+     * @param endTimestamp   inclusive upper bound of store timestamps
+     * @param maxCount       maximum count of messages
+     * @return messages found, the latest first
+     */
+    CompletableFuture<List<FlatMessageExt>> queryMessages(long topicId, int queueId, MessageIndexType type, String key,
+        long beginTimestamp, long endTimestamp, int maxCount);
+
     /**
      * Clear all retry messages of specified consumer group, topic and queue.
      *
@@ -165,19 +195,35 @@ public interface MessageStore extends Lifecycle {
 
     /**
      * End a transaction.
+     * <p>
+     * A rolled back transaction is resolved at once. The message of a committed transaction is returned for the caller
+     * to put, and the transaction stays pending, so checked again, until {@link #resolveTransaction(String)} is called
+     * once the put succeeds, or {@link #releaseTransaction(String)} if it fails.
+     * <p>
+     * The transaction is claimed by the first caller, so a retried or concurrent resolution returns nothing to put
+     * until the claim is released.
      *
      * @param transactionId transaction id
      * @param resolution    transaction resolution
-     * @return end transaction result
+     * @return the message to put if the transaction is committed and claimed by this call
      */
     CompletableFuture<Optional<FlatMessage>> endTransaction(String transactionId, TransactionResolution resolution);
 
     /**
-     * Schedule a check for transaction status.
+     * Resolve a committed transaction whose message has been put.
      *
-     * @param message transaction message
+     * @param transactionId transaction id
+     * @return resolve result
      */
-    void scheduleCheckTransaction(FlatMessage message) throws StoreException;
+    CompletableFuture<Void> resolveTransaction(String transactionId);
+
+    /**
+     * Release a committed transaction whose message failed to put, so that it could be committed again.
+     *
+     * @param transactionId transaction id
+     * @return release result
+     */
+    CompletableFuture<Void> releaseTransaction(String transactionId);
 
     /**
      * Register a listener to be notified when a message arrives.
@@ -195,8 +241,10 @@ public interface MessageStore extends Lifecycle {
 
     /**
      * Register a hanler for checking transaction status.
+     * <p>
+     * The next check is scheduled before the handler is called, so the handler only needs to send the check.
      *
      * @param handler transaction status check handler
      */
-    void registerTransactionCheckHandler(Consumer<TimerTag> handler) throws StoreException;
+    void registerTransactionCheckHandler(Consumer<TransactionCheck> handler) throws StoreException;
 }
@@ -17,11 +17,24 @@ public class StoreMetricsConstant {
     public static final String GAUGE_CONSUMER_QUEUEING_LATENCY = "rocketmq_consumer_queueing_latency";
     public static final String GAUGE_CONSUMER_READY_MESSAGES = "rocketmq_consumer_ready_messages";
     public static final String COUNTER_CONSUMER_SEND_TO_DLQ_MESSAGES_TOTAL = "rocketmq_send_to_dlq_messages_total";
+    public static final String COUNTER_CONSUMER_RETRY_MESSAGES_TOTAL = "rocketmq_retry_messages_total";
     public static final String HISTOGRAM_STREAM_OPERATION_TIME = "rocketmq_stream_operation_latency";
+    public static final String HISTOGRAM_STORE_STAGE_LATENCY = "rocketmq_store_stage_latency";
+    public static final String HISTOGRAM_OPERATION_LOG_LATENCY = "rocketmq_store_operation_log_latency";
+    public static final String HISTOGRAM_KV_WRITE_LATENCY = "rocketmq_store_kv_write_latency";
+    public static final String HISTOGRAM_POP_FETCH_ROUNDS = "rocketmq_store_pop_fetch_rounds";
+    public static final String COUNTER_POP_FETCHED_MESSAGES_TOTAL = "rocketmq_store_pop_fetched_messages_total";
+    public static final String COUNTER_POP_MATCHED_MESSAGES_TOTAL = "rocketmq_store_pop_matched_messages_total";
+    public static final String HISTOGRAM_TIMER_FIRING_LAG = "rocketmq_store_timer_firing_lag";
+    public static final String HISTOGRAM_REVIVE_LATENCY = "rocketmq_store_revive_latency";
 
     public static final String LABEL_TOPIC = "topic";
     public static final String LABEL_QUEUE_ID = "queue_id";
     public static final String LABEL_CONSUMER_GROUP = "consumer_group";
     public static final String LABEL_IS_RETRY = "is_retry";
+    public static final String LABEL_STAGE = "stage";
+    public static final String LABEL_OPERATION = "operation";
+    public static final String LABEL_PHASE = "phase";
+    public static final String LABEL_NAMESPACE = "namespace";
 
 }
@@ -14,22 +14,28 @@ package com.automq.rocketmq.store.metrics;
 import com.automq.rocketmq.common.MetricsManager;
 import com.automq.rocketmq.common.ServiceThread;
 import com.automq.rocketmq.common.config.MetricsConfig;
+import com.automq.rocketmq.common.metrics.NopLongHistogram;
 import com.automq.rocketmq.store.MessageStoreImpl;
-import com.automq.rocketmq.store.api.LogicQueue;
-import com.automq.rocketmq.store.api.StreamStore;
+import com.automq.rocketmq.store.model.operation.Operation;
 import com.automq.rocketmq.store.queue.DefaultLogicQueueManager;
-import com.automq.rocketmq.store.queue.StreamLogicQueue;
 import com.google.common.collect.Sets;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.metrics.ObservableLongGauge;
+import io.opentelemetry.sdk.metrics.Aggregation;
 import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
 import io.opentelemetry.sdk.metrics.View;
-import java.util.Collections;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.rocketmq.common.metrics.NopLongCounter;
@@ -37,14 +43,28 @@ import org.apache.rocketmq.common.metrics.NopObservableLongGauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.COUNTER_CONSUMER_RETRY_MESSAGES_TOTAL;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.COUNTER_CONSUMER_SEND_TO_DLQ_MESSAGES_TOTAL;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.COUNTER_POP_FETCHED_MESSAGES_TOTAL;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.COUNTER_POP_MATCHED_MESSAGES_TOTAL;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.GAUGE_CONSUMER_INFLIGHT_MESSAGES;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.GAUGE_CONSUMER_LAG_LATENCY;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.GAUGE_CONSUMER_LAG_MESSAGES;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.GAUGE_CONSUMER_QUEUEING_LATENCY;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.GAUGE_CONSUMER_READY_MESSAGES;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_KV_WRITE_LATENCY;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_OPERATION_LOG_LATENCY;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_POP_FETCH_ROUNDS;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_REVIVE_LATENCY;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_STORE_STAGE_LATENCY;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.HISTOGRAM_TIMER_FIRING_LAG;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_CONSUMER_GROUP;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_IS_RETRY;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_NAMESPACE;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_OPERATION;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_PHASE;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_QUEUE_ID;
+import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_STAGE;
 import static com.automq.rocketmq.store.metrics.StoreMetricsConstant.LABEL_TOPIC;
 
 public class StoreMetricsManager extends ServiceThread implements MetricsManager {
@@ -57,12 +77,74 @@ public class StoreMetricsManager extends ServiceThread implements MetricsManager
     public static ObservableLongGauge consumerQueueingLatency = new NopObservableLongGauge();
     public static ObservableLongGauge consumerReadyMessages = new NopObservableLongGauge();
 
-    // TODO: implement retry and dlq metrics
     public static LongCounter retryMessages = new NopLongCounter();
     public static LongCounter deadLetterMessages = new NopLongCounter();
 
+    public static LongHistogram stageLatency = new NopLongHistogram();
+    public static LongHistogram operationLogLatency = new NopLongHistogram();
+    public static LongHistogram kvWriteLatency = new NopLongHistogram();
+    public static LongHistogram popFetchRounds = new NopLongHistogram();
+    public static LongCounter popFetchedMessages = new NopLongCounter();
+    public static LongCounter popMatchedMessages = new NopLongCounter();
+    public static LongHistogram timerFiringLag = new NopLongHistogram();
+    public static LongHistogram reviveLatency = new NopLongHistogram();
+
     private static Supplier<AttributesBuilder> attributesBuilderSupplier;
 
+    // Attributes of the instruments on the hot paths are built once the attributes builder is initialized, so that
+    // recording does not allocate.
+    private static Attributes baseAttributes = Attributes.empty();
+    private static final Attributes[] STAGE_ATTRIBUTES = new Attributes[Stage.values().length];
+    private static final Attributes[][] OPERATION_LOG_ATTRIBUTES =
+        new Attributes[Operation.OperationType.values().length][OperationLogPhase.values().length];
+    private static final ConcurrentMap<String, Attributes> NAMESPACE_ATTRIBUTES = new ConcurrentHashMap<>();
+
+    static {
+        bindAttributes();
+    }
+
+    /**
+     * Stages of putting, popping and acking messages.
+     */
+    public enum Stage {
+        PUT("put"),
+        POP("pop"),
+        /**
+         * Fetch a batch of messages from the stream store, pops and pulls may fetch several times to fill a batch
+         * after filtering.
+         */
+        FETCH("fetch"),
+        FILTER("filter"),
+        /**
+         * Log and replay pop operations of all messages popped by a single pop.
+         */
+        POP_LOG_OPERATION("pop_log_operation"),
+        ACK("ack");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    public enum OperationLogPhase {
+        /**
+         * Append the operation to the operation stream.
+         */
+        APPEND("append"),
+        /**
+         * Replay the operation on the state machine, which writes check points and timer tags to the KV service.
+         */
+        REPLAY("replay");
+
+        private final String label;
+
+        OperationLogPhase(String label) {
+            this.label = label;
+        }
+    }
+
     private final MetricsConfig config;
     private final MessageStoreImpl messageStore;
     private static Set<LagRecord> lagRecordSet = Sets.newConcurrentHashSet();
@@ -89,36 +171,82 @@ public class StoreMetricsManager extends ServiceThread implements MetricsManager
         while (!stopped) {
             waitForRunning(config.periodicExporterIntervalInMills());
 
-            StreamStore streamStore = messageStore.streamStore();
+            // Lag is maintained incrementally on the put, pop and ack paths, only take a snapshot here.
             DefaultLogicQueueManager manager = (DefaultLogicQueueManager) messageStore.topicQueueManager();
-            Set<LagRecord> newLagRecordSet = Sets.newConcurrentHashSet();
-            manager.logicQueueMap().forEach((topicQueueId, logicQueueFuture) -> {
-                if (!logicQueueFuture.isDone() || logicQueueFuture.isCompletedExceptionally()) {
-                    return;
-                }
-                try {
-                    StreamLogicQueue logicQueue = (StreamLogicQueue) logicQueueFuture.get();
-                    if (logicQueue.getState() != LogicQueue.State.OPENED) {
-                        return;
-                    }
-
-                    logicQueue.retryStreamIdMap().forEach((consumerGroupId, retryStreamIdFuture) -> {
-                        long confirmOffset = streamStore.confirmOffset(logicQueue.dataStreamId());
-                        long consumeOffset = logicQueue.getConsumeOffset(consumerGroupId);
-                        int inflightCount = logicQueue.getInflightStats(consumerGroupId);
-                        // TODO: build lag record for retry stream
-                        LagRecord record = new LagRecord(logicQueue.topicId(), logicQueue.queueId(), consumerGroupId, false,
-                            confirmOffset - consumeOffset + inflightCount, 0, inflightCount, 0, confirmOffset - consumeOffset);
-                        newLagRecordSet.add(record);
-                    });
-                } catch (Exception e) {
-                    LOGGER.error("Failed to update metrics for logic queue {}", topicQueueId, e);
-                }
-            });
+            Set<LagRecord> newLagRecordSet = Sets.newConcurrentHashSet(manager.consumerLagService().snapshot());
             lagRecordSet = newLagRecordSet;
         }
     }
 
+    private static void bindAttributes() {
+        baseAttributes = newAttributesBuilder().build();
+        for (Stage stage : Stage.values()) {
+            STAGE_ATTRIBUTES[stage.ordinal()] = newAttributesBuilder().put(LABEL_STAGE, stage.label).build();
+        }
+        for (Operation.OperationType type : Operation.OperationType.values()) {
+            for (OperationLogPhase phase : OperationLogPhase.values()) {
+                OPERATION_LOG_ATTRIBUTES[type.ordinal()][phase.ordinal()] = newAttributesBuilder()
+                    .put(LABEL_OPERATION, type.name().toLowerCase())
+                    .put(LABEL_PHASE, phase.label)
+                    .build();
+            }
+        }
+        NAMESPACE_ATTRIBUTES.clear();
+    }
+
+    private static Attributes buildNamespaceAttributes(String namespace) {
+        return newAttributesBuilder().put(LABEL_NAMESPACE, namespace).build();
+    }
+
+    public static void recordStageLatency(Stage stage, long nanos) {
+        stageLatency.record(nanos, STAGE_ATTRIBUTES[stage.ordinal()]);
+    }
+
+    public static void recordOperationLogLatency(Operation.OperationType type, OperationLogPhase phase, long nanos) {
+        operationLogLatency.record(nanos, OPERATION_LOG_ATTRIBUTES[type.ordinal()][phase.ordinal()]);
+    }
+
+    /**
+     * Record the latency of a write to the KV service, namespaces are a small fixed set so their attributes are
+     * cached.
+     */
+    public static void recordKVWriteLatency(String namespace, long nanos) {
+        kvWriteLatency.record(nanos, NAMESPACE_ATTRIBUTES.computeIfAbsent(namespace, StoreMetricsManager::buildNamespaceAttributes));
+    }
+
+    /**
+     * Record how many rounds a pop took to fill the batch, and how many messages were fetched and matched the filter.
+     * The ratio of fetched to matched messages is the read amplification of filtering.
+     */
+    public static void recordPopFetch(int rounds, int fetchedMessages, int matchedMessages) {
+        popFetchRounds.record(rounds, baseAttributes);
+        popFetchedMessages.add(fetchedMessages, baseAttributes);
+        popMatchedMessages.add(matchedMessages, baseAttributes);
+    }
+
+    /**
+     * Record how late a timer tag fires after its delivery timestamp.
+     */
+    public static void recordTimerFiringLag(long millis) {
+        timerFiringLag.record(millis, baseAttributes);
+    }
+
+    /**
+     * Record the time from the invisible duration of a popped message elapsing to the message being revived, i.e. put
+     * to the retry stream or sent to the dead letter topic.
+     */
+    public static void recordReviveLatency(long millis) {
+        reviveLatency.record(millis, baseAttributes);
+    }
+
+    public static Attributes buildQueueAttributes(long consumerGroupId, long topicId, int queueId) {
+        AttributesBuilder attributesBuilder = newAttributesBuilder();
+        attributesBuilder.put(LABEL_CONSUMER_GROUP, consumerGroupId);
+        attributesBuilder.put(LABEL_TOPIC, topicId);
+        attributesBuilder.put(LABEL_QUEUE_ID, queueId);
+        return attributesBuilder.build();
+    }
+
     private Attributes buildLagAttributes(LagRecord record) {
         AttributesBuilder attributesBuilder = newAttributesBuilder();
         attributesBuilder.put(LABEL_CONSUMER_GROUP, record.consumerGroupId());
@@ -131,11 +259,61 @@ public class StoreMetricsManager extends ServiceThread implements MetricsManager
     @Override
     public void initAttributesBuilder(Supplier<AttributesBuilder> attributesBuilderSupplier) {
         StoreMetricsManager.attributesBuilderSupplier = attributesBuilderSupplier;
+        bindAttributes();
     }
 
     @Override
     public void initStaticMetrics(Meter meter) {
+        retryMessages = meter.counterBuilder(COUNTER_CONSUMER_RETRY_MESSAGES_TOTAL)
+            .setDescription("Messages put to the retry stream")
+            .build();
+
+        deadLetterMessages = meter.counterBuilder(COUNTER_CONSUMER_SEND_TO_DLQ_MESSAGES_TOTAL)
+            .setDescription("Messages sent to the dead letter topic")
+            .build();
+
+        stageLatency = meter.histogramBuilder(HISTOGRAM_STORE_STAGE_LATENCY)
+            .setDescription("Latency of putting, popping and acking messages, by stage")
+            .setUnit("nanoseconds")
+            .ofLongs()
+            .build();
+
+        operationLogLatency = meter.histogramBuilder(HISTOGRAM_OPERATION_LOG_LATENCY)
+            .setDescription("Latency of appending operations to the operation log and replaying them")
+            .setUnit("nanoseconds")
+            .ofLongs()
+            .build();
+
+        kvWriteLatency = meter.histogramBuilder(HISTOGRAM_KV_WRITE_LATENCY)
+            .setDescription("Latency of writes to the KV service, by namespace")
+            .setUnit("nanoseconds")
+            .ofLongs()
+            .build();
+
+        popFetchRounds = meter.histogramBuilder(HISTOGRAM_POP_FETCH_ROUNDS)
+            .setDescription("Fetches from the stream store per pop")
+            .ofLongs()
+            .build();
 
+        popFetchedMessages = meter.counterBuilder(COUNTER_POP_FETCHED_MESSAGES_TOTAL)
+            .setDescription("Messages fetched by pops before filtering")
+            .build();
+
+        popMatchedMessages = meter.counterBuilder(COUNTER_POP_MATCHED_MESSAGES_TOTAL)
+            .setDescription("Messages fetched by pops that matched the filter")
+            .build();
+
+        timerFiringLag = meter.histogramBuilder(HISTOGRAM_TIMER_FIRING_LAG)
+            .setDescription("Delay of firing timer tags after their delivery timestamp")
+            .setUnit("milliseconds")
+            .ofLongs()
+            .build();
+
+        reviveLatency = meter.histogramBuilder(HISTOGRAM_REVIVE_LATENCY)
+            .setDescription("Time from the invisible duration elapsing to the message being revived")
+            .setUnit("milliseconds")
+            .ofLongs()
+            .build();
     }
 
     @Override
@@ -169,6 +347,57 @@ public class StoreMetricsManager extends ServiceThread implements MetricsManager
     }
 
     public static List<Pair<InstrumentSelector, View>> getMetricsView() {
-        return Collections.emptyList();
+        ArrayList<Pair<InstrumentSelector, View>> metricsViewList = new ArrayList<>();
+
+        List<Double> latencyBuckets = Arrays.asList(
+            (double) Duration.ofNanos(10_000).toNanos(),
+            (double) Duration.ofNanos(100_000).toNanos(),
+            (double) Duration.ofMillis(1).toNanos(),
+            (double) Duration.ofMillis(2).toNanos(),
+            (double) Duration.ofMillis(5).toNanos(),
+            (double) Duration.ofMillis(10).toNanos(),
+            (double) Duration.ofMillis(20).toNanos(),
+            (double) Duration.ofMillis(50).toNanos(),
+            (double) Duration.ofMillis(100).toNanos(),
+            (double) Duration.ofMillis(200).toNanos(),
+            (double) Duration.ofMillis(500).toNanos(),
+            (double) Duration.ofSeconds(1).toNanos(),
+            (double) Duration.ofSeconds(3).toNanos()
+        );
+        for (String name : List.of(HISTOGRAM_STORE_STAGE_LATENCY, HISTOGRAM_OPERATION_LOG_LATENCY, HISTOGRAM_KV_WRITE_LATENCY)) {
+            metricsViewList.add(histogramView(name, latencyBuckets));
+        }
+
+        List<Double> fetchRoundsBuckets = Arrays.asList(1d, 2d, 3d, 4d, 6d, 8d, 16d, 32d);
+        metricsViewList.add(histogramView(HISTOGRAM_POP_FETCH_ROUNDS, fetchRoundsBuckets));
+
+        List<Double> lagBuckets = Arrays.asList(
+            (double) Duration.ofMillis(10).toMillis(),
+            (double) Duration.ofMillis(50).toMillis(),
+            (double) Duration.ofMillis(100).toMillis(),
+            (double) Duration.ofMillis(200).toMillis(),
+            (double) Duration.ofMillis(500).toMillis(),
+            (double) Duration.ofSeconds(1).toMillis(),
+            (double) Duration.ofSeconds(2).toMillis(),
+            (double) Duration.ofSeconds(5).toMillis(),
+            (double) Duration.ofSeconds(10).toMillis(),
+            (double) Duration.ofSeconds(30).toMillis(),
+            (double) Duration.ofMinutes(1).toMillis()
+        );
+        metricsViewList.add(histogramView(HISTOGRAM_TIMER_FIRING_LAG, lagBuckets));
+        metricsViewList.add(histogramView(HISTOGRAM_REVIVE_LATENCY, lagBuckets));
+
+        return metricsViewList;
+    }
+
+    private static Pair<InstrumentSelector, View> histogramView(String name, List<Double> buckets) {
+        InstrumentSelector selector = InstrumentSelector.builder()
+            .setType(InstrumentType.HISTOGRAM)
+            .setName(name)
+            .build();
+        View view = View.builder()
+            .setAggregation(Aggregation.explicitBucketHistogram(buckets))
+            .build();
+        return Pair.of(selector, view);
     }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.model.message;
+
+/**
+ * Attributes of messages to look up with the message index.
+ */
+public enum MessageIndexType {
+    KEY((byte) 0),
+    MESSAGE_ID((byte) 1);
+
+    private final byte code;
+
+    MessageIndexType(byte code) {
+        this.code = code;
+    }
+
+    public byte code() {
+        return code;
+    }
+}
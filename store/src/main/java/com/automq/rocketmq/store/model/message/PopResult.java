@@ -22,6 +22,8 @@ public record PopResult(Status status, long deliveryTimestamp, List<FlatMessageE
         END_OF_QUEUE,
         ILLEGAL_OFFSET,
         LOCKED,
+        // The consumer group has reached its inflight quota, see InflightService
+        INFLIGHT_QUOTA_EXCEEDED,
         ERROR
     }
 }
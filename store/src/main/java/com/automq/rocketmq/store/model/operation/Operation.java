@@ -27,7 +27,8 @@ public abstract class Operation {
         POP,
         ACK,
         CHANGE_INVISIBLE_DURATION,
-        RESET_CONSUME_OFFSET
+        RESET_CONSUME_OFFSET,
+        CLEAR_RETRY_MESSAGES
     }
 
     public long topicId() {
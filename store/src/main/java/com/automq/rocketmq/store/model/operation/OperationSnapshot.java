@@ -13,15 +13,28 @@ package com.automq.rocketmq.store.model.operation;
 
 import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.metadata.ConsumerGroupMetadata;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Snapshot of the state machine of a queue up to {@link #getSnapshotEndOffset()} of the operation stream.
+ * <p>
+ * A full snapshot holds all check points of the queue. A delta snapshot only holds check points written and operation
+ * ids of check points deleted since the previous snapshot, and is applied on top of the full snapshot at
+ * {@link #getBaseOffset()} of the snapshot stream and all delta snapshots in between.
+ */
 public class OperationSnapshot {
 
     private final long snapshotEndOffset;
     private List<CheckPoint> checkPoints;
     private long kvServiceSnapshotVersion;
     private final List<ConsumerGroupMetadata> consumerGroupMetadataList;
+    private boolean delta;
+    private long baseOffset = -1;
+    private List<Long> removedOperationIds = new ArrayList<>();
 
     public OperationSnapshot(long snapshotEndOffset, long kvServiceSnapshotVersion,
         List<ConsumerGroupMetadata> consumerGroupMetadataList) {
@@ -57,6 +70,50 @@ public class OperationSnapshot {
         return consumerGroupMetadataList;
     }
 
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    public void setBaseOffset(long baseOffset) {
+        this.baseOffset = baseOffset;
+    }
+
+    public List<Long> getRemovedOperationIds() {
+        return removedOperationIds;
+    }
+
+    public void setRemovedOperationIds(List<Long> removedOperationIds) {
+        this.removedOperationIds = removedOperationIds;
+    }
+
+    /**
+     * Fold a chain of snapshots, starting with a full snapshot followed by delta snapshots in order, into a full
+     * snapshot.
+     */
+    public static OperationSnapshot merge(List<OperationSnapshot> chain) {
+        if (chain.isEmpty() || chain.get(0).isDelta()) {
+            throw new IllegalArgumentException("Snapshot chain must start with a full snapshot");
+        }
+        Map<Long, CheckPoint> checkPointMap = new LinkedHashMap<>();
+        for (OperationSnapshot snapshot : chain) {
+            snapshot.getRemovedOperationIds().forEach(checkPointMap::remove);
+            if (snapshot.getCheckPoints() != null) {
+                snapshot.getCheckPoints().forEach(checkPoint -> checkPointMap.put(checkPoint.operationId(), checkPoint));
+            }
+        }
+        OperationSnapshot last = chain.get(chain.size() - 1);
+        return new OperationSnapshot(last.getSnapshotEndOffset(), last.getConsumerGroupMetadataList(),
+            new ArrayList<>(checkPointMap.values()));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -64,18 +121,20 @@ public class OperationSnapshot {
         if (o == null || getClass() != o.getClass())
             return false;
         OperationSnapshot that = (OperationSnapshot) o;
-        return snapshotEndOffset == that.snapshotEndOffset && kvServiceSnapshotVersion == that.kvServiceSnapshotVersion && Objects.equals(checkPoints, that.checkPoints) && Objects.equals(consumerGroupMetadataList, that.consumerGroupMetadataList);
+        return snapshotEndOffset == that.snapshotEndOffset && kvServiceSnapshotVersion == that.kvServiceSnapshotVersion && delta == that.delta && baseOffset == that.baseOffset && Objects.equals(checkPoints, that.checkPoints) && Objects.equals(consumerGroupMetadataList, that.consumerGroupMetadataList) && Objects.equals(removedOperationIds, that.removedOperationIds);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(snapshotEndOffset, checkPoints, kvServiceSnapshotVersion, consumerGroupMetadataList);
+        return Objects.hash(snapshotEndOffset, checkPoints, kvServiceSnapshotVersion, consumerGroupMetadataList, delta, baseOffset, removedOperationIds);
     }
 
     @Override
     public String toString() {
         return "OperationSnapshot{" +
             "snapshotEndOffset=" + snapshotEndOffset +
+            ", delta=" + delta +
+            ", baseOffset=" + baseOffset +
             '}';
     }
 
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.model.transaction;
+
+/**
+ * Compact index entry of a half message, which is kept by the timer service instead of the half message itself.
+ * <p>
+ * The next check time is the delivery timestamp of the timer tag holding the entry.
+ *
+ * @param topicId    topic id of the half message
+ * @param queueId    queue id of the half message
+ * @param offset     offset of the half message in the half stream
+ * @param checkTimes times the transaction status has been checked
+ */
+public record HalfMessageIndex(long topicId, int queueId, long offset, int checkTimes) {
+    public HalfMessageIndex nextCheck() {
+        return new HalfMessageIndex(topicId, queueId, offset, checkTimes + 1);
+    }
+}
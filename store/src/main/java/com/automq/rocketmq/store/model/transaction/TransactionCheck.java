@@ -0,0 +1,24 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.model.transaction;
+
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+
+/**
+ * A transaction whose status should be checked with its producer.
+ *
+ * @param transactionId transaction id
+ * @param message       half message of the transaction
+ * @param checkTimes    times the transaction status has been checked, including this one
+ */
+public record TransactionCheck(String transactionId, FlatMessage message, int checkTimes) {
+}
@@ -23,9 +23,13 @@ import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
 import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
 import com.automq.rocketmq.store.service.api.OperationLogService;
 import com.automq.stream.utils.FutureUtil;
@@ -51,13 +55,19 @@ public class DefaultLogicQueueManager implements LogicQueueManager {
     private final OperationLogService operationLogService;
     private final InflightService inflightService;
     private final StreamReclaimService streamReclaimService;
+    private final TimestampIndexService timestampIndexService;
+    private final MessageIndexService messageIndexService;
+    private final TransactionService transactionService;
+    private final ConsumerLagService consumerLagService;
     private final ConcurrentMap<TopicQueueId, CompletableFuture<LogicQueue>> logicQueueMap;
     private final String identity = "[DefaultLogicQueueManager]";
 
     public DefaultLogicQueueManager(StoreConfig storeConfig, StreamStore streamStore,
         KVService kvService, TimerService timerService, StoreMetadataService metadataService,
         OperationLogService operationLogService,
-        InflightService inflightService, StreamReclaimService streamReclaimService) {
+        InflightService inflightService, StreamReclaimService streamReclaimService,
+        TimestampIndexService timestampIndexService, MessageIndexService messageIndexService,
+        TransactionService transactionService, ConsumerLagService consumerLagService) {
         this.storeConfig = storeConfig;
         this.streamStore = streamStore;
         this.kvService = kvService;
@@ -66,23 +76,31 @@ public class DefaultLogicQueueManager implements LogicQueueManager {
         this.operationLogService = operationLogService;
         this.inflightService = inflightService;
         this.streamReclaimService = streamReclaimService;
+        this.timestampIndexService = timestampIndexService;
+        this.messageIndexService = messageIndexService;
+        this.transactionService = transactionService;
+        this.consumerLagService = consumerLagService;
         this.logicQueueMap = new ConcurrentHashMap<>();
     }
 
     @Override
     public void start() throws Exception {
-
+        streamReclaimService.start();
     }
 
     @Override
     public void shutdown() throws Exception {
-
+        streamReclaimService.shutdown();
     }
 
     public ConcurrentMap<TopicQueueId, CompletableFuture<LogicQueue>> logicQueueMap() {
         return logicQueueMap;
     }
 
+    public ConsumerLagService consumerLagService() {
+        return consumerLagService;
+    }
+
     public int size() {
         return logicQueueMap.size();
     }
@@ -160,7 +178,8 @@ public class DefaultLogicQueueManager implements LogicQueueManager {
 
         MessageStateMachine stateMachine = new DefaultLogicQueueStateMachine(topicId, queueId, kvService, timerService);
         LogicQueue logicQueue = new StreamLogicQueue(storeConfig, topicId, queueId,
-            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService);
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
 
         LOGGER.info("{}: Create and open logic queue success: topic: {} queue: {}", identity, topicId, queueId);
         return logicQueue.open()
@@ -23,6 +23,7 @@ import com.automq.rocketmq.store.model.kv.BatchWriteRequest;
 import com.automq.rocketmq.store.model.metadata.ConsumerGroupMetadata;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.OperationSnapshot;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
@@ -33,6 +34,7 @@ import com.automq.stream.utils.FutureUtil;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -65,6 +67,9 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
     private final TimerService timerService;
     private final String identity;
     private final List<OffsetListener> retryAckOffsetListeners = new ArrayList<>();
+    // Check points written and deleted since the last snapshot, handed over to the snapshot service for delta snapshots
+    private final ConcurrentMap<Long/*operationId*/, CheckPoint> changedCheckPoints = new ConcurrentHashMap<>();
+    private final Set<Long/*operationId*/> removedOperationIds = ConcurrentHashMap.newKeySet();
 
     public DefaultLogicQueueStateMachine(long topicId, int queueId, KVService kvService, TimerService timerService) {
         this.consumerGroupMetadataMap = new ConcurrentHashMap<>();
@@ -139,6 +144,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         requestList.add(timerEnqueueRequest);
 
         kvService.batch(requestList.toArray(new BatchRequest[0]));
+        trackCheckPointWrite(writeCheckPointRequest.value());
         // normal pop operation does not need to update consume times
         return ReplayPopResult.of(1);
     }
@@ -176,6 +182,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         requestList.add(timerEnqueueRequest);
 
         kvService.batch(requestList.toArray(new BatchRequest[0]));
+        trackCheckPointWrite(writeCheckPointRequest.value());
         return ReplayPopResult.empty();
     }
 
@@ -238,11 +245,12 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         }
 
         kvService.batch(requestList.toArray(new BatchRequest[0]));
+        trackCheckPointWrite(writeCheckPointRequest.value());
         return ReplayPopResult.of(consumeTimes(consumerGroupId, offset));
     }
 
     @Override
-    public void replayAckOperation(long operationOffset, AckOperation operation) throws StoreException {
+    public int replayAckOperation(long operationOffset, AckOperation operation) throws StoreException {
         long topicId = operation.topicId();
         int queueId = operation.queueId();
         long operationId = operation.operationId();
@@ -260,7 +268,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
             if (metadata.getVersion() > operationId) {
                 LOGGER.info("{}: Ack operation is stale, ignore it. topicId={}, queueId={}, operationId={}, type={} at offset: {}",
                     identity, topicId, queueId, operationId, type, operationOffset);
-                return;
+                return 0;
             }
             // check if ck exists
             byte[] ckKey = buildCheckPointKey(topicId, queueId, consumerGroupId, operationId);
@@ -295,6 +303,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
                     listener.onOffset(consumerGroupId, ackOffset);
                 }
             }
+            return 1;
         } finally {
             reentrantLock.unlock();
         }
@@ -344,6 +353,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
             requestList.add(timerEnqueueRequest);
 
             kvService.batch(requestList.toArray(new BatchRequest[0]));
+            trackCheckPointWrite(writeCheckPointRequest.value());
         } catch (StoreException e) {
             LOGGER.error("{}: Replay change invisible duration operation failed", identity, e);
             CompletableFuture.failedFuture(e);
@@ -355,7 +365,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
     }
 
     @Override
-    public void replayResetConsumeOffsetOperation(long operationOffset, ResetConsumeOffsetOperation operation) {
+    public int replayResetConsumeOffsetOperation(long operationOffset, ResetConsumeOffsetOperation operation) {
         long consumerGroupId = operation.consumerGroupId();
         long newConsumeOffset = operation.offset();
         long topicId = operation.topicId();
@@ -381,13 +391,54 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
                 checkPoints.add(checkPoint);
             });
             deleteCheckPointsAndRelatedStates(checkPoints);
+            return checkPoints.size();
         } catch (StoreException e) {
             LOGGER.error("{}: Replay reset consume offset operation failed", identity, e);
             CompletableFuture.failedFuture(e);
+            return 0;
         } finally {
             reentrantLock.unlock();
         }
+    }
+
+    @Override
+    public int replayClearRetryMessagesOperation(long operationOffset,
+        ClearRetryMessagesOperation operation) throws StoreException {
+        long consumerGroupId = operation.consumerGroupId();
+        long offset = operation.offset();
+        long topicId = operation.topicId();
+        int queueId = operation.queueId();
+
+        LOGGER.trace("Replay clear retry messages operation: topicId={}, queueId={}, consumerGroupId={}, offset={}, operationTimestamp={} at offset: {}",
+            topicId, queueId, consumerGroupId, offset, operation.operationTimestamp(), operationOffset);
+        reentrantLock.lock();
+        try {
+            currentOperationOffset = operationOffset;
+            // Skip all retry messages before the offset, the version is kept so that acks of normal messages still apply.
+            ConsumerGroupMetadata metadata = this.consumerGroupMetadataMap.computeIfAbsent(consumerGroupId, k -> new ConsumerGroupMetadata(consumerGroupId));
+            metadata.advanceRetryConsumeOffset(offset);
+            metadata.advanceRetryAckOffset(offset);
 
+            // Delete check points of cleared retry messages in flight, so that they are never revived. Retry messages
+            // at or after the offset are appended after the clear, and popped with check points of their own.
+            List<CheckPoint> checkPoints = new ArrayList<>();
+            byte[] prefix = SerializeUtil.buildCheckPointGroupPrefix(topicId, queueId, consumerGroupId);
+            kvService.iterate(KV_NAMESPACE_CHECK_POINT, prefix, null, null, (key, value) -> {
+                CheckPoint checkPoint = SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(value));
+                if (checkPoint.popOperationType() == PopOperation.PopOperationType.POP_RETRY.value()
+                    && checkPoint.messageOffset() < offset) {
+                    checkPoints.add(checkPoint);
+                }
+            });
+            deleteCheckPointsAndRelatedStates(checkPoints);
+
+            for (OffsetListener listener : retryAckOffsetListeners) {
+                listener.onOffset(consumerGroupId, metadata.getRetryAckOffset());
+            }
+            return checkPoints.size();
+        } finally {
+            reentrantLock.unlock();
+        }
     }
 
     private void deleteCheckPointsAndRelatedStates(List<CheckPoint> checkPointList) throws StoreException {
@@ -395,6 +446,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         if (!batchRequests.isEmpty()) {
             kvService.batch(batchRequests.toArray(new BatchRequest[0]));
         }
+        checkPointList.forEach(checkPoint -> trackCheckPointDelete(checkPoint.operationId()));
     }
 
     private void deleteCheckPointAndRewriteOrderIndex(CheckPoint checkPoint) throws StoreException {
@@ -429,6 +481,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         }
 
         kvService.batch(requestList.toArray(new BatchRequest[0]));
+        trackCheckPointDelete(checkPoint.operationId());
     }
 
     private List<BatchRequest> deleteCheckPointAndRelatedStatesReqs(CheckPoint checkPoint) {
@@ -462,6 +515,7 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         if (!batchRequests.isEmpty()) {
             kvService.batch(batchRequests.toArray(new BatchRequest[0]));
         }
+        checkPointList.forEach(this::trackCheckPointWrite);
     }
 
     private void writeCheckPointAndRelatedStates(CheckPoint checkPoint) throws StoreException {
@@ -469,6 +523,21 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         if (!batchRequests.isEmpty()) {
             kvService.batch(batchRequests.toArray(new BatchRequest[0]));
         }
+        trackCheckPointWrite(checkPoint);
+    }
+
+    private void trackCheckPointWrite(byte[] checkPointValue) {
+        trackCheckPointWrite(SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(checkPointValue)));
+    }
+
+    private void trackCheckPointWrite(CheckPoint checkPoint) {
+        removedOperationIds.remove(checkPoint.operationId());
+        changedCheckPoints.put(checkPoint.operationId(), checkPoint);
+    }
+
+    private void trackCheckPointDelete(long operationId) {
+        changedCheckPoints.remove(operationId);
+        removedOperationIds.add(operationId);
     }
 
     private List<BatchRequest> writeCheckPointAndRelatedStatesReqs(CheckPoint checkPoint) {
@@ -519,7 +588,14 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
                     metadata.getRetryConsumeOffset(), metadata.getRetryAckOffset(), metadata.getVersion()))
                 .collect(Collectors.toList());
             long snapshotVersion = kvService.takeSnapshot();
-            return new OperationSnapshot(currentOperationOffset, snapshotVersion, metadataSnapshots);
+            OperationSnapshot snapshot = new OperationSnapshot(currentOperationOffset, snapshotVersion, metadataSnapshots);
+            // Check points changed since the last snapshot, the snapshot service decides whether to take a delta
+            // snapshot with them or a full snapshot from the kv service snapshot.
+            snapshot.setCheckPoints(new ArrayList<>(changedCheckPoints.values()));
+            snapshot.setRemovedOperationIds(new ArrayList<>(removedOperationIds));
+            changedCheckPoints.clear();
+            removedOperationIds.clear();
+            return snapshot;
         } finally {
             exclusiveLock.unlock();
         }
@@ -534,6 +610,8 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
                     new ConsumerGroupMetadata(metadataSnapshot.getConsumerGroupId(), metadataSnapshot.getConsumeOffset(), metadataSnapshot.getAckOffset(),
                         metadataSnapshot.getRetryConsumeOffset(), metadataSnapshot.getRetryAckOffset(), metadataSnapshot.getVersion())));
             this.currentOperationOffset = snapshot.getSnapshotEndOffset();
+            this.changedCheckPoints.clear();
+            this.removedOperationIds.clear();
         } catch (Exception e) {
             Throwable cause = FutureUtil.cause(e);
             LOGGER.error("{}: Load snapshot:{} failed", identity, snapshot, cause);
@@ -563,6 +641,25 @@ public class DefaultLogicQueueStateMachine implements MessageStateMachine {
         }
     }
 
+    @Override
+    public List<CheckPoint> checkPoints() throws StoreException {
+        reentrantLock.lock();
+        try {
+            List<CheckPoint> checkPointList = new ArrayList<>();
+            byte[] tqPrefix = SerializeUtil.buildCheckPointQueuePrefix(topicId, queueId);
+            kvService.iterate(MessageStoreImpl.KV_NAMESPACE_CHECK_POINT, tqPrefix, null, null, (key, value) ->
+                checkPointList.add(SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(value))));
+            return checkPointList;
+        } finally {
+            reentrantLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Long> consumerGroupIds() {
+        return new ArrayList<>(consumerGroupMetadataMap.keySet());
+    }
+
     @Override
     public long consumeOffset(long consumerGroupId) {
         return consumerGroupMetadataMap.computeIfAbsent(consumerGroupId, k -> new ConsumerGroupMetadata(consumerGroupId))
@@ -11,10 +11,14 @@
 
 package com.automq.rocketmq.store.queue;
 
+import apache.rocketmq.controller.v1.MessageType;
 import apache.rocketmq.controller.v1.StreamRole;
 import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
+import com.automq.rocketmq.common.model.generated.SystemProperties;
+import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
 import com.automq.rocketmq.common.trace.TraceHelper;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.store.api.LogicQueue;
@@ -22,43 +26,59 @@ import com.automq.rocketmq.store.api.MessageStateMachine;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.StoreContext;
-import com.automq.rocketmq.store.model.generated.ReceiptHandle;
+import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
+import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
 import com.automq.rocketmq.store.model.message.PopResult;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
 import com.automq.rocketmq.store.model.stream.SingleRecord;
+import com.automq.rocketmq.store.model.transaction.HalfMessageIndex;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
+import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.OperationLogService;
-import com.automq.rocketmq.store.util.SerializeUtil;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
 import com.automq.stream.utils.FutureUtil;
+import com.google.flatbuffers.FlatBufferBuilder;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.rocketmq.logging.org.slf4j.Logger;
 import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
 
-import static com.automq.rocketmq.store.util.SerializeUtil.decodeReceiptHandle;
 
 public class StreamLogicQueue extends LogicQueue {
     protected static final Logger LOGGER = LoggerFactory.getLogger(StreamLogicQueue.class);
@@ -74,12 +94,23 @@ public class StreamLogicQueue extends LogicQueue {
     private final OperationLogService operationLogService;
     private final InflightService inflightService;
     private final StreamReclaimService streamReclaimService;
+    private final TimestampIndexService timestampIndexService;
+    private final MessageIndexService messageIndexService;
+    private final TransactionService transactionService;
+    private final ConsumerLagService consumerLagService;
+    private volatile CompletableFuture<Long> halfStreamIdFuture;
+    // Offsets of half messages in the half stream whose transactions are not yet resolved
+    private final ConcurrentSkipListSet<Long> pendingHalfOffsets;
+    // Offsets of pending half messages whose transactions are being resolved
+    private final Set<Long> claimedHalfOffsets;
     private final AtomicReference<State> state;
 
     public StreamLogicQueue(StoreConfig config, long topicId, int queueId,
         StoreMetadataService metadataService, MessageStateMachine stateMachine, StreamStore streamStore,
         OperationLogService operationLogService, InflightService inflightService,
-        StreamReclaimService streamReclaimService) {
+        StreamReclaimService streamReclaimService, TimestampIndexService timestampIndexService,
+        MessageIndexService messageIndexService, TransactionService transactionService,
+        ConsumerLagService consumerLagService) {
         super(topicId, queueId);
         this.config = config;
         this.metadataService = metadataService;
@@ -90,6 +121,12 @@ public class StreamLogicQueue extends LogicQueue {
         this.operationLogService = operationLogService;
         this.inflightService = inflightService;
         this.streamReclaimService = streamReclaimService;
+        this.timestampIndexService = timestampIndexService;
+        this.messageIndexService = messageIndexService;
+        this.transactionService = transactionService;
+        this.consumerLagService = consumerLagService;
+        this.pendingHalfOffsets = new ConcurrentSkipListSet<>();
+        this.claimedHalfOffsets = ConcurrentHashMap.newKeySet();
         this.state = new AtomicReference<>(State.INIT);
     }
 
@@ -109,6 +146,16 @@ public class StreamLogicQueue extends LogicQueue {
                 .thenCompose(metadata -> {
                     this.dataStreamId = metadata.getStreamId();
                     return streamStore.open(metadata.getStreamId(), metadata.getEpoch());
+                })
+                .thenAccept(nil -> {
+                    try {
+                        timestampIndexService.load(dataStreamId, streamStore.startOffset(dataStreamId),
+                            streamStore.confirmOffset(dataStreamId));
+                        messageIndexService.register(topicId, queueId, dataStreamId);
+                    } catch (StoreException e) {
+                        LOGGER.error("Failed to load indexes of data stream", e);
+                        throw new CompletionException(e);
+                    }
                 });
             CompletableFuture<Void> openOperationStreamFuture = metadataService.operationStreamOf(topicId, queueId)
                 .thenCompose(metadata -> {
@@ -133,6 +180,47 @@ public class StreamLogicQueue extends LogicQueue {
                 })
                 // recover from operation log
                 .thenCompose(nil -> operationLogService.recover(stateMachine, operationStreamId, snapshotStreamId))
+                .thenCompose(nil -> recoverHalfMessages())
+                .thenCompose(nil -> {
+                    List<CheckPoint> checkPoints;
+                    try {
+                        checkPoints = stateMachine.checkPoints();
+                    } catch (StoreException e) {
+                        LOGGER.error("Failed to recover inflight messages", e);
+                        throw new CompletionException(e);
+                    }
+                    // Messages popped before the queue is opened are acked afterward, count them in flight again.
+                    // There is a check point for each popped message, the count of which covers filtered ones as well.
+                    for (CheckPoint checkPoint : checkPoints) {
+                        inflightService.increaseInflightCount(checkPoint.consumerGroupId(), topicId, queueId, 1);
+                    }
+
+                    consumerLagService.load(topicId, queueId, dataStreamId, streamStore.confirmOffset(dataStreamId),
+                        offset -> readStoreTimestamp(dataStreamId, offset));
+                    Set<Long> retryConsumerGroupIds = new HashSet<>();
+                    for (long consumerGroupId : stateMachine.consumerGroupIds()) {
+                        consumerLagService.register(topicId, queueId, consumerGroupId, false,
+                            stateMachine.consumeOffset(consumerGroupId), 0);
+                        if (stateMachine.retryConsumeOffset(consumerGroupId) > 0) {
+                            retryConsumerGroupIds.add(consumerGroupId);
+                        }
+                    }
+                    consumerLagService.recoverInflight(topicId, queueId, checkPoints);
+
+                    // Open retry streams of consumer groups which have consumed retry messages, so that their retry
+                    // lag is tracked before the next pop.
+                    for (CheckPoint checkPoint : checkPoints) {
+                        if (checkPoint.popOperationType() == PopOperation.PopOperationType.POP_RETRY.value()) {
+                            retryConsumerGroupIds.add(checkPoint.consumerGroupId());
+                        }
+                    }
+                    return CompletableFuture.allOf(retryConsumerGroupIds.stream()
+                        .map(consumerGroupId -> retryStreamId(consumerGroupId).exceptionally(ex -> {
+                            LOGGER.warn("Failed to open the retry stream of consumer group: {}", consumerGroupId, ex);
+                            return null;
+                        }))
+                        .toArray(CompletableFuture[]::new));
+                })
                 .thenAccept(nil -> state.set(State.OPENED));
         }
         return CompletableFuture.completedFuture(null);
@@ -162,19 +250,36 @@ public class StreamLogicQueue extends LogicQueue {
     @Override
     public CompletableFuture<Void> close() {
         if (state.compareAndSet(State.OPENED, State.CLOSING)) {
-            List<Long> retryStreamIdList = retryStreamIdMap.values()
-                .stream()
-                .map(CompletableFuture::join)
-                .toList();
+            // Streams opened lazily may be still opening, close them once opened
+            List<CompletableFuture<Long>> lazyStreamIdCfList = new ArrayList<>(retryStreamIdMap.values());
             retryStreamIdMap.clear();
-
-            List<Long> streamIdList = new ArrayList<>();
-            streamIdList.add(dataStreamId);
-            streamIdList.add(operationStreamId);
-            streamIdList.add(snapshotStreamId);
-            streamIdList.addAll(retryStreamIdList);
-
-            return streamStore.close(streamIdList)
+            CompletableFuture<Long> halfStreamIdCf = halfStreamIdFuture;
+            if (halfStreamIdCf != null) {
+                lazyStreamIdCfList.add(halfStreamIdCf);
+                halfStreamIdFuture = null;
+            }
+            pendingHalfOffsets.clear();
+            claimedHalfOffsets.clear();
+            timestampIndexService.unload(dataStreamId);
+            messageIndexService.unregister(topicId, queueId);
+            consumerLagService.clear(topicId, queueId);
+
+            // A stream failed to open is left out, there is nothing to close
+            List<CompletableFuture<Long>> streamIdCfList = lazyStreamIdCfList.stream()
+                .map(cf -> cf.exceptionally(ex -> null))
+                .toList();
+            return CompletableFuture.allOf(streamIdCfList.toArray(new CompletableFuture[0]))
+                .thenCompose(nil -> {
+                    List<Long> streamIdList = new ArrayList<>();
+                    streamIdList.add(dataStreamId);
+                    streamIdList.add(operationStreamId);
+                    streamIdList.add(snapshotStreamId);
+                    streamIdCfList.stream()
+                        .map(CompletableFuture::join)
+                        .filter(Objects::nonNull)
+                        .forEach(streamIdList::add);
+                    return streamStore.close(streamIdList);
+                })
                 .thenAccept(nil -> {
                     try {
                         stateMachine.clear();
@@ -201,8 +306,18 @@ public class StreamLogicQueue extends LogicQueue {
             context.span().ifPresent(span -> span.setAttribute("messageId", messageId));
         }
 
+        long storeTimestamp = flatMessage.systemProperties().storeTimestamp();
+        long startNanos = System.nanoTime();
         return streamStore.append(context, dataStreamId, new SingleRecord(flatMessage.getByteBuffer()))
-            .thenApply(appendResult -> new PutResult(PutResult.Status.PUT_OK, appendResult.baseOffset()));
+            .thenApply(appendResult -> {
+                if (timestampIndexService.onAppend(dataStreamId, appendResult.baseOffset(), storeTimestamp)) {
+                    // Drop samples of messages trimmed by retention along with sampling
+                    timestampIndexService.trim(dataStreamId, streamStore.startOffset(dataStreamId));
+                }
+                consumerLagService.onPut(topicId, queueId, appendResult.baseOffset() + 1);
+                StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.PUT, System.nanoTime() - startNanos);
+                return new PutResult(PutResult.Status.PUT_OK, appendResult.baseOffset());
+            });
     }
 
     @Override
@@ -217,10 +332,14 @@ public class StreamLogicQueue extends LogicQueue {
             context.span().ifPresent(span -> span.setAttribute("messageId", messageId));
         }
 
+        long storeTimestamp = flatMessage.systemProperties().storeTimestamp();
         CompletableFuture<Long> retryStreamIdCf = retryStreamId(consumerGroupId);
         return retryStreamIdCf.thenCompose(streamId ->
             streamStore.append(context, streamId, new SingleRecord(flatMessage.getByteBuffer()))
-                .thenApply(appendResult -> new PutResult(PutResult.Status.PUT_OK, appendResult.baseOffset())));
+                .thenApply(appendResult -> {
+                    consumerLagService.onPutRetry(topicId, queueId, consumerGroupId, appendResult.baseOffset() + 1, storeTimestamp);
+                    return new PutResult(PutResult.Status.PUT_OK, appendResult.baseOffset());
+                }));
     }
 
     private CompletableFuture<Long> retryStreamId(long consumerGroupId) {
@@ -233,7 +352,16 @@ public class StreamLogicQueue extends LogicQueue {
                 CompletableFuture<Long> future = metadataService.retryStreamOf(consumerGroupId, topicId, queueId)
                     .thenCompose(streamMetadata ->
                         streamStore.open(streamMetadata.getStreamId(), streamMetadata.getEpoch())
-                            .thenApply(nil -> streamMetadata.getStreamId()));
+                            .thenApply(nil -> {
+                                long streamId = streamMetadata.getStreamId();
+                                long consumeOffset = stateMachine.retryConsumeOffset(consumerGroupId);
+                                long endOffset = streamStore.confirmOffset(streamId);
+                                consumerLagService.register(topicId, queueId, consumerGroupId, true, consumeOffset, endOffset);
+                                if (consumeOffset < endOffset) {
+                                    recoverRetryReadyTimestamp(consumerGroupId, streamId, consumeOffset);
+                                }
+                                return streamId;
+                            }));
 
                 retryStreamIdMap.put(consumerGroupId, future);
                 future.exceptionally(ex -> {
@@ -246,6 +374,219 @@ public class StreamLogicQueue extends LogicQueue {
         return retryStreamIdMap.get(consumerGroupId);
     }
 
+    // Read back the store timestamp of the first retry message not popped yet, in the background
+    private void recoverRetryReadyTimestamp(long consumerGroupId, long streamId, long consumeOffset) {
+        readStoreTimestamp(streamId, consumeOffset)
+            .thenAccept(storeTimestamp -> {
+                if (storeTimestamp > 0) {
+                    consumerLagService.onRetryReady(topicId, queueId, consumerGroupId, storeTimestamp);
+                }
+            });
+    }
+
+    // Store timestamp of the message at the offset or the first one retained after it, 0 if there is none
+    private CompletableFuture<Long> readStoreTimestamp(long streamId, long offset) {
+        return fetchMessages(StoreContext.EMPTY, streamId, Math.max(offset, streamStore.startOffset(streamId)), 1)
+            .thenApply(fetchResult -> fetchResult.messageList().isEmpty() ? 0L :
+                fetchResult.messageList().get(0).message().systemProperties().storeTimestamp())
+            .exceptionally(ex -> {
+                LOGGER.warn("Failed to read the store timestamp of stream: {}, offset: {}", streamId, offset, ex);
+                return 0L;
+            });
+    }
+
+    @Override
+    @WithSpan
+    public CompletableFuture<PutResult> putHalf(StoreContext context, FlatMessage flatMessage) {
+        if (state.get() != State.OPENED) {
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
+        }
+
+        String transactionId = flatMessage.systemProperties().messageId();
+        context.span().ifPresent(span -> span.setAttribute("messageId", transactionId));
+
+        return halfStreamId().thenCompose(streamId ->
+            streamStore.append(context, streamId, new SingleRecord(flatMessage.getByteBuffer()))
+                .thenApply(appendResult -> {
+                    long offset = appendResult.baseOffset();
+                    pendingHalfOffsets.add(offset);
+                    try {
+                        transactionService.prepare(transactionId, new HalfMessageIndex(topicId, queueId, offset, 0), flatMessage);
+                    } catch (StoreException e) {
+                        pendingHalfOffsets.remove(offset);
+                        throw new CompletionException(e);
+                    }
+                    return new PutResult(PutResult.Status.PUT_TRANSACTION_PREPARED, offset, transactionId);
+                }));
+    }
+
+    @Override
+    public CompletableFuture<FlatMessage> getHalf(long offset) {
+        if (state.get() != State.OPENED) {
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
+        }
+
+        return halfStreamId()
+            .thenCompose(streamId -> fetchMessages(StoreContext.EMPTY, streamId, offset, 1))
+            .thenApply(fetchResult -> {
+                Optional<FlatMessageExt> optional = fetchResult.messageList()
+                    .stream()
+                    .filter(messageExt -> messageExt.offset() == offset)
+                    .findFirst();
+                if (optional.isEmpty()) {
+                    throw new CompletionException(new StoreException(StoreErrorCode.ILLEGAL_ARGUMENT,
+                        String.format("Half message at offset %d of topic %d queue %d is not found", offset, topicId, queueId)));
+                }
+                // Copy the message so that callers are free to mutate it
+                ByteBuffer source = optional.get().message().getByteBuffer();
+                ByteBuffer buffer = ByteBuffer.allocate(source.remaining());
+                buffer.put(source.duplicate()).flip();
+                return FlatMessage.getRootAsFlatMessage(buffer);
+            });
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveHalf(long offset) {
+        if (!pendingHalfOffsets.contains(offset)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Persist the resolution before forgetting the half message, otherwise it would be recovered as pending, and
+        // checked again, if resolved after an older half message still pending.
+        return halfStreamId().thenCompose(streamId ->
+            streamStore.append(StoreContext.EMPTY, streamId, new SingleRecord(buildHalfResolution(offset)))
+                .thenCompose(appendResult -> {
+                    boolean removed = pendingHalfOffsets.remove(offset);
+                    claimedHalfOffsets.remove(offset);
+                    if (!removed) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // Half messages before the earliest pending one are all resolved, so are resolutions of them
+                    Long earliest = pendingHalfOffsets.isEmpty() ? null : pendingHalfOffsets.first();
+                    long newStartOffset = earliest != null ? earliest : streamStore.nextOffset(streamId);
+                    if (newStartOffset <= streamStore.startOffset(streamId)) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return streamStore.trim(streamId, newStartOffset);
+                }));
+    }
+
+    @Override
+    public boolean claimHalf(long offset) {
+        if (!pendingHalfOffsets.contains(offset) || !claimedHalfOffsets.add(offset)) {
+            return false;
+        }
+        // Resolved in between
+        if (!pendingHalfOffsets.contains(offset)) {
+            claimedHalfOffsets.remove(offset);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseHalf(long offset) {
+        claimedHalfOffsets.remove(offset);
+    }
+
+    @Override
+    public boolean isHalfPending(long offset) {
+        return pendingHalfOffsets.contains(offset);
+    }
+
+    /**
+     * Build the resolution of the half message at the offset, which is kept in the half stream along with half
+     * messages: a message without message id, i.e. transaction id, whose original queue offset is the resolved one.
+     */
+    private ByteBuffer buildHalfResolution(long offset) {
+        FlatMessageT flatMessageT = new FlatMessageT();
+        flatMessageT.setTopicId(topicId);
+        flatMessageT.setQueueId(queueId);
+        flatMessageT.setPayload(new byte[0]);
+
+        SystemPropertiesT systemPropertiesT = new SystemPropertiesT();
+        systemPropertiesT.setOriginalQueueOffset(offset);
+        flatMessageT.setSystemProperties(systemPropertiesT);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(64);
+        builder.finish(FlatMessage.pack(builder, flatMessageT));
+        return builder.dataBuffer();
+    }
+
+    private CompletableFuture<Long> halfStreamId() {
+        if (halfStreamIdFuture == null) {
+            synchronized (this) {
+                if (halfStreamIdFuture != null) {
+                    return halfStreamIdFuture;
+                }
+
+                CompletableFuture<Long> future = metadataService.halfStreamOf(topicId, queueId)
+                    .thenCompose(streamMetadata ->
+                        streamStore.open(streamMetadata.getStreamId(), streamMetadata.getEpoch())
+                            .thenApply(nil -> streamMetadata.getStreamId()));
+
+                halfStreamIdFuture = future;
+                future.exceptionally(ex -> {
+                    synchronized (this) {
+                        if (halfStreamIdFuture == future) {
+                            halfStreamIdFuture = null;
+                        }
+                    }
+                    return null;
+                });
+                return future;
+            }
+        }
+        return halfStreamIdFuture;
+    }
+
+    // Schedule checks of transactions whose half messages are left in the half stream, as the timer service does not
+    // survive restarts.
+    private CompletableFuture<Void> recoverHalfMessages() {
+        return metadataService.topicOf(topicId)
+            .thenCompose(topic -> {
+                if (!topic.getAcceptTypes().getTypesList().contains(MessageType.TRANSACTION)) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                Map<Long, String> halfMessages = new TreeMap<>();
+                return halfStreamId().thenCompose(streamId ->
+                    recoverHalfMessages(streamId, streamStore.startOffset(streamId), streamStore.confirmOffset(streamId), halfMessages))
+                    .thenAccept(nil -> {
+                        for (Map.Entry<Long, String> entry : halfMessages.entrySet()) {
+                            pendingHalfOffsets.add(entry.getKey());
+                            try {
+                                transactionService.recover(entry.getValue(), new HalfMessageIndex(topicId, queueId, entry.getKey(), 0));
+                            } catch (StoreException e) {
+                                throw new CompletionException(e);
+                            }
+                        }
+                    });
+            });
+    }
+
+    // Collect half messages not resolved yet, resolutions always follow the half messages they resolve.
+    private CompletableFuture<Void> recoverHalfMessages(long streamId, long offset, long endOffset,
+        Map<Long, String> halfMessages) {
+        if (offset >= endOffset) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return fetchMessages(StoreContext.EMPTY, streamId, offset, config.maxFetchCount())
+            .thenCompose(fetchResult -> {
+                if (fetchResult.messageList().isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                for (FlatMessageExt messageExt : fetchResult.messageList()) {
+                    SystemProperties systemProperties = messageExt.message().systemProperties();
+                    if (systemProperties.messageId() != null) {
+                        halfMessages.put(messageExt.offset(), systemProperties.messageId());
+                    } else {
+                        halfMessages.remove(systemProperties.originalQueueOffset());
+                    }
+                }
+                return recoverHalfMessages(streamId, fetchResult.endOffset(), endOffset, halfMessages);
+            });
+    }
+
     @Override
     public CompletableFuture<PopResult> popNormal(StoreContext context, long consumerGroup, Filter filter,
         int batchSize, long invisibleDuration) {
@@ -270,6 +611,10 @@ public class StreamLogicQueue extends LogicQueue {
         if (startOffset > confirmOffset) {
             return CompletableFuture.completedFuture(new PopResult(PopResult.Status.ILLEGAL_OFFSET, 0, Collections.emptyList(), 0));
         }
+        // Reject before fetching, a consumer group never acking must not pile up check points and revive tasks
+        if (inflightService.isQuotaExceeded(consumerGroupId, topicId, queueId)) {
+            return CompletableFuture.completedFuture(new PopResult(PopResult.Status.INFLIGHT_QUOTA_EXCEEDED, 0, Collections.emptyList(), confirmOffset - startOffset));
+        }
 
         int fetchBatchSize;
         if (filter.needApply()) {
@@ -281,12 +626,16 @@ public class StreamLogicQueue extends LogicQueue {
         }
         FilterFetchResult fetchResult = new FilterFetchResult(startOffset);
         long operationTimestamp = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         // fetch messages
         CompletableFuture<FilterFetchResult> fetchCf = fetchAndFilterMessages(context, streamId, startOffset, batchSize,
             fetchBatchSize, filter, fetchResult, 0, 0, operationTimestamp);
         // log op
         AtomicReference<Span> spanRef = new AtomicReference<>();
         CompletableFuture<FilterFetchResult> fetchAndLogOpCf = fetchCf.thenCompose(filterFetchResult -> {
+            StoreMetricsManager.recordPopFetch(filterFetchResult.fetchRounds, filterFetchResult.fetchedMessages,
+                filterFetchResult.matchedMessages);
+            long logStartNanos = System.nanoTime();
             Optional<Span> spanOptional = TraceHelper.createAndStartSpan(context, "logPopOperation", SpanKind.SERVER);
             spanOptional.ifPresent(spanRef::set);
 
@@ -304,7 +653,8 @@ public class StreamLogicQueue extends LogicQueue {
                 appendOpCfs.add(operationLogService.logPopOperation(popOperation)
                     .thenApply(logResult -> {
                         long operationId = logResult.getOperationOffset();
-                        messageExt.setReceiptHandle(SerializeUtil.encodeReceiptHandle(consumerGroupId, topicId, queueId, operationId));
+                        messageExt.setReceiptHandle(ReceiptHandleCodec.encode(consumerGroupId, topicId, queueId, operationId,
+                            operationTimestamp, invisibleDuration));
                         if (!messageExt.isRetryMessage()) {
                             messageExt.setDeliveryAttempts(logResult.getPopTimes());
                         }
@@ -321,6 +671,7 @@ public class StreamLogicQueue extends LogicQueue {
             }
             return CompletableFuture.allOf(appendOpCfs.toArray(new CompletableFuture[0]))
                 .whenComplete((nil, throwable) -> {
+                    StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.POP_LOG_OPERATION, System.nanoTime() - logStartNanos);
                     Span span = spanRef.get();
                     if (span != null) {
                         span.setAttribute("operationCount", appendOpCfs.size());
@@ -339,8 +690,13 @@ public class StreamLogicQueue extends LogicQueue {
                 status = PopResult.Status.FOUND;
             }
             inflightService.increaseInflightCount(consumerGroupId, topicId, queueId, messageExtList.size());
+            boolean retry = operationType == PopOperation.PopOperationType.POP_RETRY;
+            consumerLagService.onPop(topicId, queueId, consumerGroupId, retry,
+                retry ? stateMachine.retryConsumeOffset(consumerGroupId) : stateMachine.consumeOffset(consumerGroupId),
+                messageExtList);
             return new PopResult(status, operationTimestamp, messageExtList, confirmOffset - filterFetchResult.endOffset);
-        }).exceptionally(throwable -> new PopResult(PopResult.Status.ERROR, operationTimestamp, Collections.emptyList(), confirmOffset - startOffset));
+        }).exceptionally(throwable -> new PopResult(PopResult.Status.ERROR, operationTimestamp, Collections.emptyList(), confirmOffset - startOffset))
+            .whenComplete((result, throwable) -> StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.POP, System.nanoTime() - startNanos));
     }
 
     @Override
@@ -429,10 +785,17 @@ public class StreamLogicQueue extends LogicQueue {
         @SpanAttribute int fetchBatchSize, @SpanAttribute Filter filter, FilterFetchResult result,
         int fetchCount, long fetchBytes, long operationTimestamp) {
         // Fetch more messages.
+        long fetchStartNanos = System.nanoTime();
         return fetchMessages(context, streamId, offset, fetchBatchSize)
             .thenCompose(fetchResult -> {
+                long filterStartNanos = System.nanoTime();
+                StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.FETCH, filterStartNanos - fetchStartNanos);
                 // Add filter result to message list.
                 List<FlatMessageExt> matchedMessageList = filter.doFilter(fetchResult.messageList());
+                if (filter.needApply()) {
+                    StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.FILTER, System.nanoTime() - filterStartNanos);
+                }
+                result.onFetch(fetchResult.size(), matchedMessageList.size());
                 // Update end offset
                 int index = batchSize - result.size();
                 if (matchedMessageList.size() > index) {
@@ -479,6 +842,10 @@ public class StreamLogicQueue extends LogicQueue {
         private final long startOffset;
         private long endOffset;
         private final List<FlatMessageExt> messageList = new ArrayList<>();
+        // Fetches from the stream store, and messages fetched and matched the filter in total, for metrics.
+        private int fetchRounds;
+        private int fetchedMessages;
+        private int matchedMessages;
 
         public FilterFetchResult(long startOffset) {
             this.startOffset = startOffset;
@@ -496,6 +863,12 @@ public class StreamLogicQueue extends LogicQueue {
         public int size() {
             return messageList.size();
         }
+
+        public void onFetch(int fetchedMessages, int matchedMessages) {
+            this.fetchRounds++;
+            this.fetchedMessages += fetchedMessages;
+            this.matchedMessages += matchedMessages;
+        }
     }
 
     @Override
@@ -503,15 +876,20 @@ public class StreamLogicQueue extends LogicQueue {
         if (state.get() != State.OPENED) {
             return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
         }
-        ReceiptHandle handle = decodeReceiptHandle(receiptHandle);
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
         AckOperation operation = new AckOperation(handle.topicId(), handle.queueId(), operationStreamId,
             snapshotStreamId, stateMachine, handle.consumerGroupId(), handle.operationId(), System.currentTimeMillis(),
             AckOperation.AckOperationType.ACK_NORMAL);
+        long startNanos = System.nanoTime();
         return operationLogService.logAckOperation(operation)
-            .thenApply(nil -> {
-                inflightService.decreaseInflightCount(handle.consumerGroupId(), handle.topicId(), handle.queueId(), 1);
+            .thenApply(logResult -> {
+                // A stale ack deletes no check point, whose message is no longer counted in flight.
+                inflightService.decreaseInflightCount(handle.consumerGroupId(), handle.topicId(), handle.queueId(),
+                    logResult.getDeletedCheckPoints());
+                consumerLagService.onAck(handle.topicId(), handle.queueId(), handle.consumerGroupId(), handle.operationId());
                 return new AckResult(AckResult.Status.SUCCESS);
-            }).exceptionally(throwable -> new AckResult(AckResult.Status.ERROR));
+            }).exceptionally(throwable -> new AckResult(AckResult.Status.ERROR))
+            .whenComplete((result, throwable) -> StoreMetricsManager.recordStageLatency(StoreMetricsManager.Stage.ACK, System.nanoTime() - startNanos));
     }
 
     @Override
@@ -519,13 +897,16 @@ public class StreamLogicQueue extends LogicQueue {
         if (state.get() != State.OPENED) {
             return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
         }
-        ReceiptHandle handle = decodeReceiptHandle(receiptHandle);
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
         AckOperation operation = new AckOperation(handle.topicId(), handle.queueId(), operationStreamId,
             snapshotStreamId, stateMachine, handle.consumerGroupId(), handle.operationId(), System.currentTimeMillis(),
             AckOperation.AckOperationType.ACK_TIMEOUT);
         return operationLogService.logAckOperation(operation)
-            .thenApply(nil -> {
-                inflightService.decreaseInflightCount(handle.consumerGroupId(), handle.topicId(), handle.queueId(), 1);
+            .thenApply(logResult -> {
+                // A stale ack deletes no check point, whose message is no longer counted in flight.
+                inflightService.decreaseInflightCount(handle.consumerGroupId(), handle.topicId(), handle.queueId(),
+                    logResult.getDeletedCheckPoints());
+                consumerLagService.onAck(handle.topicId(), handle.queueId(), handle.consumerGroupId(), handle.operationId());
                 return new AckResult(AckResult.Status.SUCCESS);
             }).exceptionally(throwable -> new AckResult(AckResult.Status.ERROR));
     }
@@ -536,7 +917,7 @@ public class StreamLogicQueue extends LogicQueue {
         if (state.get() != State.OPENED) {
             return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
         }
-        ReceiptHandle handle = decodeReceiptHandle(receiptHandle);
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
         ChangeInvisibleDurationOperation operation = new ChangeInvisibleDurationOperation(handle.topicId(),
             handle.queueId(), operationStreamId, snapshotStreamId, stateMachine, handle.consumerGroupId(),
             handle.operationId(), invisibleDuration, System.currentTimeMillis());
@@ -553,10 +934,44 @@ public class StreamLogicQueue extends LogicQueue {
         ResetConsumeOffsetOperation operation = new ResetConsumeOffsetOperation(topicId, queueId, operationStreamId,
             snapshotStreamId, stateMachine, consumerGroupId, offset, System.currentTimeMillis());
         return operationLogService.logResetConsumeOffsetOperation(operation)
-            .thenApply(logResult -> new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.SUCCESS))
+            .thenApply(logResult -> {
+                // Messages in flight are dropped along with their check points, so they are never acked.
+                inflightService.decreaseInflightCount(consumerGroupId, topicId, queueId, logResult.getDeletedCheckPoints());
+                consumerLagService.onResetConsumeOffset(topicId, queueId, consumerGroupId, offset);
+                return new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.SUCCESS);
+            })
             .exceptionally(throwable -> new ResetConsumeOffsetResult(ResetConsumeOffsetResult.Status.ERROR));
     }
 
+    @Override
+    public CompletableFuture<ClearRetryMessagesResult> clearRetryMessages(long consumerGroupId) {
+        if (state.get() != State.OPENED) {
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
+        }
+        CompletableFuture<Long> retryStreamIdCf = retryStreamId(consumerGroupId);
+        return retryStreamIdCf.thenCompose(retryStreamId -> {
+                // Retry messages appended after this point are kept
+                long offset = streamStore.confirmOffset(retryStreamId);
+                ClearRetryMessagesOperation operation = new ClearRetryMessagesOperation(topicId, queueId, operationStreamId,
+                    snapshotStreamId, stateMachine, consumerGroupId, offset, System.currentTimeMillis());
+                return operationLogService.logClearRetryMessagesOperation(operation)
+                    .thenApply(logResult -> {
+                        inflightService.decreaseInflightCount(consumerGroupId, topicId, queueId, logResult.getDeletedCheckPoints());
+                        consumerLagService.onClearRetryMessages(topicId, queueId, consumerGroupId, offset);
+                        return logResult;
+                    })
+                    // Replaying the operation schedules a reclaim task as well, which is coalesced with this one
+                    .thenCompose(logResult -> streamReclaimService.addReclaimTask(
+                        new StreamReclaimService.StreamReclaimTask(retryStreamIdCf, offset)));
+            })
+            .thenApply(reclaimResult -> new ClearRetryMessagesResult(reclaimResult.success() ?
+                ClearRetryMessagesResult.Status.SUCCESS : ClearRetryMessagesResult.Status.ERROR))
+            .exceptionally(throwable -> {
+                LOGGER.error("Failed to clear retry messages of consumerGroup: {}", consumerGroupId, FutureUtil.cause(throwable));
+                return new ClearRetryMessagesResult(ClearRetryMessagesResult.Status.ERROR);
+            });
+    }
+
     @Override
     public List<StreamOffsetRange> getOffsetRange(long consumerGroupId) {
         if (state.get() != LogicQueue.State.OPENED) {
@@ -594,6 +1009,115 @@ public class StreamLogicQueue extends LogicQueue {
         return rangeList;
     }
 
+    @Override
+    public CompletableFuture<Long> searchOffset(long timestamp) {
+        if (state.get() != State.OPENED) {
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
+        }
+        long startOffset = streamStore.startOffset(dataStreamId);
+        long endOffset = streamStore.confirmOffset(dataStreamId);
+
+        // The first message stored at or after the timestamp lies in (lower, upper] of the index
+        TimestampIndexService.Bound bound = timestampIndexService.search(dataStreamId, timestamp);
+        long from = Math.max(startOffset, bound.lower() + 1);
+        long to = bound.upper() >= 0 ? Math.min(endOffset, bound.upper()) : endOffset;
+        if (from >= to) {
+            return CompletableFuture.completedFuture(Math.min(from, endOffset));
+        }
+        return searchOffset(StoreContext.EMPTY, timestamp, from, to);
+    }
+
+    /**
+     * Search the first message stored at or after the timestamp in <code>[from, to]</code>.
+     * <p>
+     * Ranges not covered by the index, e.g. messages appended while the queue was served by other nodes, are bisected
+     * by fetching single messages until it can be scanned with a bounded fetch.
+     *
+     * @return offset of the message found, or <code>to</code> if all messages are stored before the timestamp
+     */
+    private CompletableFuture<Long> searchOffset(StoreContext context, long timestamp, long from, long to) {
+        if (from >= to) {
+            return CompletableFuture.completedFuture(to);
+        }
+        int scanCount = Math.max(1, config.timestampIndexIntervalMessages());
+        if (to - from > scanCount) {
+            long mid = (from + to) >>> 1;
+            return fetchMessages(context, dataStreamId, mid, 1)
+                .thenCompose(fetchResult -> {
+                    if (fetchResult.messageList().isEmpty()) {
+                        return CompletableFuture.completedFuture(to);
+                    }
+                    if (fetchResult.messageList().get(0).message().systemProperties().storeTimestamp() >= timestamp) {
+                        return searchOffset(context, timestamp, from, mid);
+                    }
+                    return searchOffset(context, timestamp, mid + 1, to);
+                });
+        }
+        return fetchMessages(context, dataStreamId, from, (int) (to - from))
+            .thenCompose(fetchResult -> {
+                for (FlatMessageExt messageExt : fetchResult.messageList()) {
+                    if (messageExt.message().systemProperties().storeTimestamp() >= timestamp) {
+                        return CompletableFuture.completedFuture(messageExt.offset());
+                    }
+                }
+                if (fetchResult.messageList().isEmpty()) {
+                    return CompletableFuture.completedFuture(to);
+                }
+                // Fetch may return less messages than requested, continue with the rest
+                return searchOffset(context, timestamp, fetchResult.endOffset(), to);
+            });
+    }
+
+    @Override
+    public CompletableFuture<List<FlatMessageExt>> queryMessages(MessageIndexType type, String key,
+        long beginTimestamp, long endTimestamp, int maxCount) {
+        if (state.get() != State.OPENED) {
+            return CompletableFuture.failedFuture(new StoreException(StoreErrorCode.QUEUE_NOT_OPENED, "Topic queue not opened"));
+        }
+        List<Long> offsets;
+        try {
+            offsets = messageIndexService.query(topicId, queueId, type, key, beginTimestamp, endTimestamp, maxCount);
+        } catch (StoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Point fetch candidates, which are verified as hashes of keys may collide
+        List<CompletableFuture<Optional<FlatMessageExt>>> futures = offsets.stream()
+            .map(offset -> fetchMessages(StoreContext.EMPTY, dataStreamId, offset, 1)
+                .thenApply(fetchResult -> fetchResult.messageList()
+                    .stream()
+                    .filter(messageExt -> messageExt.offset() == offset)
+                    .filter(messageExt -> matches(messageExt.message(), type, key, beginTimestamp, endTimestamp))
+                    .findFirst()))
+            .toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(nil -> futures.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .toList());
+    }
+
+    private static boolean matches(FlatMessage message, MessageIndexType type, String key, long beginTimestamp,
+        long endTimestamp) {
+        long storeTimestamp = message.systemProperties().storeTimestamp();
+        if (storeTimestamp < beginTimestamp || storeTimestamp > endTimestamp) {
+            return false;
+        }
+        return switch (type) {
+            case KEY -> message.keys() != null && List.of(message.keys().split(" ")).contains(key);
+            case MESSAGE_ID -> key.equals(message.systemProperties().messageId());
+        };
+    }
+
+    /**
+     * Estimate the store timestamp of a message in the data stream by the timestamp index.
+     *
+     * @return estimated store timestamp, or -1 if unknown
+     */
+    public long estimateStoreTimestamp(long offset) {
+        return timestampIndexService.estimateTimestamp(dataStreamId, offset);
+    }
+
     @Override
     public int getInflightStats(long consumerGroupId) {
         return inflightService.getInflightCount(consumerGroupId, topicId, queueId);
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.store.metrics.LagRecord;
+import com.automq.rocketmq.store.model.generated.CheckPoint;
+import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.automq.rocketmq.store.model.operation.PopOperation;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lag of consumer groups, maintained incrementally on the put, pop and ack paths of logic queues.
+ * <p>
+ * Lag is tracked per (topic, queue, consumer group) for the data stream and the retry stream separately. Time lag is
+ * the age of the oldest message not acked yet, i.e. the oldest inflight message or the first message not popped yet,
+ * by the store timestamp carried in its system properties. Readers, e.g. the metrics thread, only take snapshots.
+ * <p>
+ * The store timestamp of the first data stream message not popped yet is estimated by the timestamp index. If no
+ * sample precedes it, e.g. right after the queue moves to a new owner, the message is read back in the background and
+ * the time lag is reported from the next snapshot on.
+ */
+public class ConsumerLagService {
+    private final TimestampIndexService timestampIndexService;
+    private final ConcurrentMap<TopicQueueId, QueueState> queueStateMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LagKey, LagState> lagStateMap = new ConcurrentHashMap<>();
+
+    /**
+     * Read the store timestamp of the message at an offset of the data stream, completing with 0 if there is none.
+     */
+    @FunctionalInterface
+    public interface TimestampReader {
+        CompletableFuture<Long> read(long offset);
+    }
+
+    record LagKey(long topicId, int queueId, long consumerGroupId, boolean retry) {
+    }
+
+    record ReadyTimestamp(long offset, long timestamp) {
+    }
+
+    static class QueueState {
+        private final long dataStreamId;
+        private final AtomicLong endOffset;
+        private final TimestampReader timestampReader;
+
+        QueueState(long dataStreamId, long endOffset, TimestampReader timestampReader) {
+            this.dataStreamId = dataStreamId;
+            this.endOffset = new AtomicLong(endOffset);
+            this.timestampReader = timestampReader;
+        }
+    }
+
+    static class LagState {
+        // End offset of the retry stream, the data stream one is shared by all consumer groups of the queue.
+        private final AtomicLong endOffset = new AtomicLong();
+        private volatile long consumeOffset;
+        // Store timestamp of the first retry message not popped yet, 0 if unknown.
+        // The data stream one is estimated by the timestamp index instead.
+        private volatile long readyTimestamp;
+        // Store timestamp of a data stream message read back when the timestamp index has no sample preceding it.
+        private volatile ReadyTimestamp readBackTimestamp;
+        private final AtomicBoolean readingBack = new AtomicBoolean();
+        private final AtomicLong inflight = new AtomicLong();
+        // Store timestamps of inflight messages by operation id. Pops are logged in offset order, so the first entry
+        // is the oldest message in most cases.
+        private final ConcurrentSkipListMap<Long, Long> inflightTimestamps = new ConcurrentSkipListMap<>();
+    }
+
+    public ConsumerLagService(TimestampIndexService timestampIndexService) {
+        this.timestampIndexService = timestampIndexService;
+    }
+
+    /**
+     * Start tracking the queue once it is opened, dropping states left by the previous owner of the queue.
+     */
+    public void load(long topicId, int queueId, long dataStreamId, long endOffset, TimestampReader timestampReader) {
+        clear(topicId, queueId);
+        queueStateMap.put(TopicQueueId.of(topicId, queueId), new QueueState(dataStreamId, endOffset, timestampReader));
+    }
+
+    /**
+     * Track a consumer group of the queue, e.g. known from the operation log or once its retry stream is opened.
+     */
+    public void register(long topicId, int queueId, long consumerGroupId, boolean retry, long consumeOffset,
+        long endOffset) {
+        LagState state = lagStateMap.computeIfAbsent(new LagKey(topicId, queueId, consumerGroupId, retry), k -> new LagState());
+        state.consumeOffset = consumeOffset;
+        state.endOffset.accumulateAndGet(endOffset, Math::max);
+    }
+
+    /**
+     * Track messages in flight before the queue is opened, by check points recovered from the operation log.
+     * <p>
+     * Store timestamps of data stream messages are estimated by the timestamp index. The pop timestamp is used
+     * otherwise, which is never earlier than the store timestamp.
+     */
+    public void recoverInflight(long topicId, int queueId, List<CheckPoint> checkPoints) {
+        QueueState queueState = queueStateMap.get(TopicQueueId.of(topicId, queueId));
+        for (CheckPoint checkPoint : checkPoints) {
+            boolean retry = checkPoint.popOperationType() == PopOperation.PopOperationType.POP_RETRY.value();
+            LagState state = lagStateMap.computeIfAbsent(new LagKey(topicId, queueId, checkPoint.consumerGroupId(), retry), k -> new LagState());
+            long storeTimestamp = 0;
+            if (!retry && queueState != null) {
+                storeTimestamp = timestampIndexService.estimateTimestamp(queueState.dataStreamId, checkPoint.messageOffset());
+            }
+            if (storeTimestamp <= 0) {
+                storeTimestamp = checkPoint.deliveryTimestamp();
+            }
+            if (state.inflightTimestamps.put(checkPoint.operationId(), storeTimestamp) == null) {
+                state.inflight.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Set the store timestamp of the first retry message not popped yet, e.g. read back once the retry stream is
+     * opened. Ignored if retry messages are popped in the meantime.
+     */
+    public void onRetryReady(long topicId, int queueId, long consumerGroupId, long storeTimestamp) {
+        LagState state = lagStateMap.get(new LagKey(topicId, queueId, consumerGroupId, true));
+        if (state != null && state.readyTimestamp == 0 && state.consumeOffset < state.endOffset.get()) {
+            state.readyTimestamp = storeTimestamp;
+        }
+    }
+
+    public void clear(long topicId, int queueId) {
+        queueStateMap.remove(TopicQueueId.of(topicId, queueId));
+        lagStateMap.keySet().removeIf(key -> key.topicId() == topicId && key.queueId() == queueId);
+    }
+
+    public void onPut(long topicId, int queueId, long endOffset) {
+        QueueState state = queueStateMap.get(TopicQueueId.of(topicId, queueId));
+        if (state != null) {
+            state.endOffset.accumulateAndGet(endOffset, Math::max);
+        }
+    }
+
+    public void onPutRetry(long topicId, int queueId, long consumerGroupId, long endOffset, long storeTimestamp) {
+        LagState state = lagStateMap.get(new LagKey(topicId, queueId, consumerGroupId, true));
+        if (state == null) {
+            return;
+        }
+        long previousEndOffset = state.endOffset.getAndAccumulate(endOffset, Math::max);
+        if (state.consumeOffset >= previousEndOffset) {
+            // The message is the first one not popped yet
+            state.readyTimestamp = storeTimestamp;
+        }
+    }
+
+    public void onPop(long topicId, int queueId, long consumerGroupId, boolean retry, long consumeOffset,
+        List<FlatMessageExt> messageList) {
+        LagState state = lagStateMap.computeIfAbsent(new LagKey(topicId, queueId, consumerGroupId, retry), k -> new LagState());
+        state.consumeOffset = consumeOffset;
+        for (FlatMessageExt messageExt : messageList) {
+            long storeTimestamp = messageExt.message().systemProperties().storeTimestamp();
+            messageExt.receiptHandle().ifPresent(receiptHandle -> {
+                if (ReceiptHandleCodec.isCompact(receiptHandle, 0)
+                    && state.inflightTimestamps.put(ReceiptHandleCodec.operationId(receiptHandle, 0), storeTimestamp) == null) {
+                    state.inflight.incrementAndGet();
+                }
+            });
+        }
+        if (retry) {
+            if (consumeOffset >= state.endOffset.get()) {
+                state.readyTimestamp = 0;
+            } else if (!messageList.isEmpty()) {
+                // Retry messages are not appended in order of store timestamp, the last popped one is an estimation
+                state.readyTimestamp = messageList.get(messageList.size() - 1).message().systemProperties().storeTimestamp();
+            }
+        }
+    }
+
+    /**
+     * Stop tracking an inflight message once it is acked or its invisible duration expires.
+     */
+    public void onAck(long topicId, int queueId, long consumerGroupId, long operationId) {
+        for (boolean retry : new boolean[] {false, true}) {
+            LagState state = lagStateMap.get(new LagKey(topicId, queueId, consumerGroupId, retry));
+            if (state != null && state.inflightTimestamps.remove(operationId) != null) {
+                state.inflight.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    public void onResetConsumeOffset(long topicId, int queueId, long consumerGroupId, long offset) {
+        register(topicId, queueId, consumerGroupId, false, offset, 0);
+    }
+
+    public void onClearRetryMessages(long topicId, int queueId, long consumerGroupId, long offset) {
+        LagState state = lagStateMap.get(new LagKey(topicId, queueId, consumerGroupId, true));
+        if (state != null && offset > state.consumeOffset) {
+            state.consumeOffset = offset;
+            if (offset >= state.endOffset.get()) {
+                state.readyTimestamp = 0;
+            }
+        }
+    }
+
+    public List<LagRecord> snapshot() {
+        long now = System.currentTimeMillis();
+        List<LagRecord> records = new ArrayList<>(lagStateMap.size());
+        lagStateMap.forEach((key, state) -> {
+            QueueState queueState = queueStateMap.get(TopicQueueId.of(key.topicId(), key.queueId()));
+            if (queueState == null) {
+                return;
+            }
+            long endOffset = key.retry() ? state.endOffset.get() : queueState.endOffset.get();
+            long ready = Math.max(0, endOffset - state.consumeOffset);
+            long inflight = Math.max(0, state.inflight.get());
+
+            long oldestTimestamp = Long.MAX_VALUE;
+            Map.Entry<Long, Long> oldestInflight = state.inflightTimestamps.firstEntry();
+            if (oldestInflight != null && oldestInflight.getValue() > 0) {
+                oldestTimestamp = oldestInflight.getValue();
+            }
+            if (ready > 0) {
+                long readyTimestamp = key.retry() ? state.readyTimestamp : dataReadyTimestamp(queueState, state);
+                if (readyTimestamp > 0) {
+                    oldestTimestamp = Math.min(oldestTimestamp, readyTimestamp);
+                }
+            }
+            long lagLatency = oldestTimestamp == Long.MAX_VALUE ? 0 : Math.max(0, now - oldestTimestamp);
+            records.add(new LagRecord(key.topicId(), key.queueId(), key.consumerGroupId(), key.retry(),
+                ready + inflight, lagLatency, inflight, 0, ready));
+        });
+        return records;
+    }
+
+    /**
+     * Store timestamp of the first data stream message not popped yet, 0 if it is being read back.
+     */
+    private long dataReadyTimestamp(QueueState queueState, LagState state) {
+        long consumeOffset = state.consumeOffset;
+        long timestamp = timestampIndexService.estimateTimestamp(queueState.dataStreamId, consumeOffset);
+        if (timestamp > 0) {
+            return timestamp;
+        }
+
+        ReadyTimestamp readBack = state.readBackTimestamp;
+        if (readBack != null && readBack.offset() == consumeOffset) {
+            return readBack.timestamp();
+        }
+        if (state.readingBack.compareAndSet(false, true)) {
+            queueState.timestampReader.read(consumeOffset).whenComplete((storeTimestamp, throwable) -> {
+                if (throwable == null && storeTimestamp > 0) {
+                    state.readBackTimestamp = new ReadyTimestamp(consumeOffset, storeTimestamp);
+                }
+                state.readingBack.set(false);
+            });
+        }
+        return 0;
+    }
+}
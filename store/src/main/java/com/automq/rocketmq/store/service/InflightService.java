@@ -11,35 +11,76 @@
 
 package com.automq.rocketmq.store.service;
 
-import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.automq.rocketmq.common.config.StoreConfig;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Count inflight messages, i.e. popped but not yet acked, and enforce the inflight quotas of consumer groups.
+ * <p>
+ * Counters are {@link LongAdder}s keyed by an {@link InflightKey} record of (topic, queue, consumer group), so that
+ * concurrent pops and acks on a hot queue do not contend on a single counter. Reading a counter never creates it.
+ */
 public class InflightService {
-    private final ConcurrentMap<TopicQueueId /*topic-queue*/, ConcurrentMap<Long /*consumer-group*/, AtomicInteger>> inflightMap = new ConcurrentHashMap<>();
+    private final StoreConfig config;
+    private final ConcurrentMap<InflightKey, LongAdder> queueInflightMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long /*consumer-group*/, LongAdder> groupInflightMap = new ConcurrentHashMap<>();
+
+    record InflightKey(long topicId, int queueId, long consumerGroupId) {
+    }
 
-    private AtomicInteger getCounter(long consumerGroupId, long topicId, int queueId) {
-        return inflightMap.computeIfAbsent(TopicQueueId.of(topicId, queueId), v -> new ConcurrentHashMap<>())
-            .computeIfAbsent(consumerGroupId, v -> new AtomicInteger());
+    public InflightService(StoreConfig config) {
+        this.config = config;
     }
 
     public void increaseInflightCount(long consumerGroupId, long topicId, int queueId, int count) {
-        AtomicInteger counter = getCounter(consumerGroupId, topicId, queueId);
-        counter.getAndAdd(count);
+        if (count == 0) {
+            return;
+        }
+        queueInflightMap.computeIfAbsent(new InflightKey(topicId, queueId, consumerGroupId), k -> new LongAdder()).add(count);
+        groupInflightMap.computeIfAbsent(consumerGroupId, k -> new LongAdder()).add(count);
     }
 
     public void decreaseInflightCount(long consumerGroupId, long topicId, int queueId, int count) {
-        AtomicInteger counter = getCounter(consumerGroupId, topicId, queueId);
-        counter.getAndAdd(-1 * count);
+        increaseInflightCount(consumerGroupId, topicId, queueId, -1 * count);
     }
 
     public int getInflightCount(long consumerGroupId, long topicId, int queueId) {
-        AtomicInteger counter = getCounter(consumerGroupId, topicId, queueId);
-        return counter.get();
+        LongAdder counter = queueInflightMap.get(new InflightKey(topicId, queueId, consumerGroupId));
+        return counter == null ? 0 : counter.intValue();
+    }
+
+    public long getInflightCount(long consumerGroupId) {
+        LongAdder counter = groupInflightMap.get(consumerGroupId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Check whether the consumer group has reached its inflight quota on this node or on the queue.
+     * <p>
+     * The check is made before fetching, so the quotas may be exceeded by at most one batch of concurrent pops.
+     */
+    public boolean isQuotaExceeded(long consumerGroupId, long topicId, int queueId) {
+        return getInflightCount(consumerGroupId, topicId, queueId) >= config.maxInflightMessagesPerQueue()
+            || getInflightCount(consumerGroupId) >= config.maxInflightMessagesPerGroup();
     }
 
     public void clearInflightCount(long topicId, int queueId) {
-        inflightMap.remove(TopicQueueId.of(topicId, queueId));
+        Iterator<Map.Entry<InflightKey, LongAdder>> iterator = queueInflightMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<InflightKey, LongAdder> entry = iterator.next();
+            InflightKey key = entry.getKey();
+            if (key.topicId() != topicId || key.queueId() != queueId) {
+                continue;
+            }
+            iterator.remove();
+            LongAdder groupCounter = groupInflightMap.get(key.consumerGroupId());
+            if (groupCounter != null) {
+                groupCounter.add(-entry.getValue().sum());
+            }
+        }
     }
 }
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.util.Lifecycle;
+import com.automq.rocketmq.store.api.StreamStore;
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.kv.BatchDeleteRequest;
+import com.automq.rocketmq.store.model.kv.BatchRequest;
+import com.automq.rocketmq.store.model.kv.BatchWriteRequest;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
+import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.automq.rocketmq.store.service.api.KVService;
+import com.automq.stream.api.FetchResult;
+import com.automq.stream.api.RecordBatchWithContext;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Secondary index from message keys and message ids to offsets of data streams.
+ * <p>
+ * Messages are indexed asynchronously by reading appended records back from data streams, so that put requests are
+ * never blocked by indexing. Entries are keyed by <code>(topic, queue, segment, type, hash, offset)</code>, where the
+ * segment partitions entries by store timestamp. Once all messages of a segment are trimmed from the data stream, the
+ * whole segment is purged. The offset indexed up to and the end offset of each segment are checkpointed along with
+ * entries. Entries and checkpoints of a queue are dropped once the queue is closed on this node, since it may be
+ * served by another node in the meantime.
+ * <p>
+ * Once a queue is registered without a checkpoint, e.g. it is opened on a new owner, the latest retained messages are
+ * backfilled, up to {@link StoreConfig#messageIndexMaxBackfillMessages()}, so that a large backlog is not read back
+ * all at once. Older messages are not indexed on this node.
+ * <p>
+ * The indexer thread never blocks on fetches. Batches of different queues are indexed concurrently, while batches of
+ * the same queue are indexed one at a time.
+ */
+public class MessageIndexService implements Lifecycle, Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageIndexService.class);
+
+    private static final String KEY_SEPARATOR = " ";
+
+    private final String namespace;
+    private final String checkpointNamespace;
+    private final StreamStore streamStore;
+    private final KVService kvService;
+    private final StoreConfig config;
+    private final ConcurrentMap<TopicQueueId, QueueIndex> indexMap = new ConcurrentHashMap<>();
+    private Thread indexer;
+    private volatile boolean stopped = false;
+
+    public MessageIndexService(String namespace, StreamStore streamStore, KVService kvService, StoreConfig config) {
+        this.namespace = namespace;
+        this.checkpointNamespace = namespace + "_checkpoint";
+        this.streamStore = streamStore;
+        this.kvService = kvService;
+        this.config = config;
+    }
+
+    /**
+     * Indexing progress of a queue, only updated by the one holding {@link #indexing}.
+     */
+    static class QueueIndex {
+        private final long topicId;
+        private final int queueId;
+        private final long streamId;
+        private volatile long indexedOffset;
+        // Held while a batch is being indexed or purged, and for good once the index is dropped.
+        private final AtomicBoolean indexing = new AtomicBoolean();
+        private volatile boolean unregistered;
+
+        /**
+         * Segment --> Exclusive end offset of messages indexed in the segment.
+         */
+        private final ConcurrentNavigableMap<Long, Long> segments = new ConcurrentSkipListMap<>();
+
+        QueueIndex(long topicId, int queueId, long streamId, long indexedOffset) {
+            this.topicId = topicId;
+            this.queueId = queueId;
+            this.streamId = streamId;
+            this.indexedOffset = indexedOffset;
+        }
+    }
+
+    /**
+     * Start indexing the data stream of a queue, resuming from the checkpoint if any, or backfilling the latest
+     * retained messages.
+     */
+    public void register(long topicId, int queueId, long streamId) throws StoreException {
+        byte[] queuePrefix = queuePrefix(topicId, queueId);
+        byte[] checkpoint = kvService.get(checkpointNamespace, queuePrefix);
+        long indexedOffset;
+        if (checkpoint != null) {
+            indexedOffset = ByteBuffer.wrap(checkpoint).getLong();
+        } else {
+            long backfill = Math.max(0, config.messageIndexMaxBackfillMessages());
+            indexedOffset = Math.max(streamStore.startOffset(streamId), streamStore.confirmOffset(streamId) - backfill);
+        }
+        QueueIndex index = new QueueIndex(topicId, queueId, streamId, indexedOffset);
+        kvService.iterate(checkpointNamespace, queuePrefix, null, null, (key, value) -> {
+            if (key.length == queuePrefix.length + Long.BYTES) {
+                index.segments.put(ByteBuffer.wrap(key).getLong(queuePrefix.length), ByteBuffer.wrap(value).getLong());
+            }
+        });
+        indexMap.put(TopicQueueId.of(topicId, queueId), index);
+    }
+
+    /**
+     * Stop indexing the queue and drop its entries and checkpoints, right away or once the ongoing batch completes.
+     */
+    public void unregister(long topicId, int queueId) {
+        QueueIndex index = indexMap.remove(TopicQueueId.of(topicId, queueId));
+        if (index != null) {
+            index.unregistered = true;
+            drop(index);
+        }
+    }
+
+    private void release(QueueIndex index) {
+        index.indexing.set(false);
+        if (index.unregistered) {
+            drop(index);
+        }
+    }
+
+    private void drop(QueueIndex index) {
+        if (!index.indexing.compareAndSet(false, true)) {
+            // The ongoing batch drops the index once it completes.
+            return;
+        }
+        byte[] prefix = queuePrefix(index.topicId, index.queueId);
+        List<BatchRequest> requests = new ArrayList<>();
+        try {
+            kvService.iterate(namespace, prefix, null, null,
+                (key, value) -> requests.add(new BatchDeleteRequest(namespace, key)));
+            kvService.iterate(checkpointNamespace, prefix, null, null,
+                (key, value) -> requests.add(new BatchDeleteRequest(checkpointNamespace, key)));
+            if (!requests.isEmpty()) {
+                kvService.batch(requests.toArray(new BatchRequest[0]));
+            }
+            LOGGER.info("Drop message index of topic: {}, queue: {}, keys: {}", index.topicId, index.queueId,
+                requests.size());
+        } catch (StoreException e) {
+            LOGGER.warn("Failed to drop message index of topic: {}, queue: {}", index.topicId, index.queueId, e);
+        }
+    }
+
+    QueueIndex queueIndex(TopicQueueId id) {
+        return indexMap.get(id);
+    }
+
+    /**
+     * Look up offsets of messages indexed with the given key or message id, stored within the time range.
+     * <p>
+     * Offsets are returned in descending order. Collisions of hashes are possible, so messages should be verified
+     * once fetched.
+     */
+    public List<Long> query(long topicId, int queueId, MessageIndexType type, String key, long beginTimestamp,
+        long endTimestamp, int maxCount) throws StoreException {
+        List<Long> offsets = new ArrayList<>();
+        QueueIndex index = indexMap.get(TopicQueueId.of(topicId, queueId));
+        if (index == null || beginTimestamp > endTimestamp || maxCount <= 0) {
+            return offsets;
+        }
+        long segmentMillis = segmentMillis();
+        long hash = hash(key);
+        // Only look up segments with entries, from the latest one
+        for (long segment : index.segments.subMap(beginTimestamp / segmentMillis, true, endTimestamp / segmentMillis, true)
+            .descendingKeySet()) {
+            byte[] prefix = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Long.BYTES + 1 + Long.BYTES)
+                .putLong(topicId)
+                .putInt(queueId)
+                .putLong(segment)
+                .put(type.code())
+                .putLong(hash)
+                .array();
+            List<Long> segmentOffsets = new ArrayList<>();
+            kvService.iterate(namespace, prefix, null, null,
+                (entryKey, value) -> segmentOffsets.add(ByteBuffer.wrap(entryKey).getLong(prefix.length)));
+            segmentOffsets.sort(Comparator.reverseOrder());
+            for (long offset : segmentOffsets) {
+                offsets.add(offset);
+                if (offsets.size() >= maxCount) {
+                    return offsets;
+                }
+            }
+        }
+        return offsets;
+    }
+
+    @Override
+    public void start() throws Exception {
+        this.stopped = false;
+        this.indexer = new Thread(this, "message-indexer");
+        this.indexer.setDaemon(true);
+        this.indexer.start();
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+        this.stopped = true;
+        if (indexer != null) {
+            indexer.interrupt();
+            indexer.join(TimeUnit.SECONDS.toMillis(10));
+            indexer = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        AtomicBoolean progressed = new AtomicBoolean();
+        while (!stopped) {
+            for (QueueIndex index : indexMap.values()) {
+                if (!index.indexing.compareAndSet(false, true)) {
+                    continue;
+                }
+                CompletableFuture<Boolean> future;
+                try {
+                    purge(index);
+                    future = indexOnce(index);
+                } catch (Exception e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                future.whenComplete((indexed, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.warn("Failed to index messages of topic: {}, queue: {}", index.topicId, index.queueId, throwable);
+                    }
+                    release(index);
+                    if (throwable == null && indexed) {
+                        progressed.set(true);
+                        LockSupport.unpark(thread);
+                    }
+                });
+            }
+            // Wait for a batch to be indexed or for messages to be appended.
+            if (!progressed.getAndSet(false)) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+        }
+    }
+
+    /**
+     * Index a batch of messages appended to the queue.
+     *
+     * @return a future completed with true if any message is indexed
+     */
+    CompletableFuture<Boolean> indexOnce(QueueIndex index) {
+        if (!streamStore.isOpened(index.streamId)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        long startOffset = Math.max(index.indexedOffset, streamStore.startOffset(index.streamId));
+        long confirmOffset = streamStore.confirmOffset(index.streamId);
+        if (startOffset >= confirmOffset) {
+            return CompletableFuture.completedFuture(false);
+        }
+        int count = (int) Math.min(confirmOffset - startOffset, Math.max(1, config.messageIndexBatchSize()));
+        return streamStore.fetch(StoreContext.EMPTY, index.streamId, startOffset, count)
+            .thenApply(fetchResult -> {
+                try {
+                    return indexBatch(index, startOffset, fetchResult);
+                } catch (StoreException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    private boolean indexBatch(QueueIndex index, long startOffset, FetchResult fetchResult) throws StoreException {
+        if (fetchResult.recordBatchList().isEmpty() || index.unregistered) {
+            return false;
+        }
+
+        long segmentMillis = segmentMillis();
+        List<BatchRequest> requests = new ArrayList<>();
+        Map<Long, Long> touchedSegments = new TreeMap<>();
+        long nextOffset = startOffset;
+        for (RecordBatchWithContext batch : fetchResult.recordBatchList()) {
+            FlatMessage message = FlatMessage.getRootAsFlatMessage(batch.rawPayload());
+            long offset = batch.baseOffset();
+            long segment = message.systemProperties().storeTimestamp() / segmentMillis;
+            String keys = message.keys();
+            if (!Strings.isNullOrEmpty(keys)) {
+                for (String key : keys.split(KEY_SEPARATOR)) {
+                    if (!key.isEmpty()) {
+                        requests.add(entry(index, segment, MessageIndexType.KEY, key, offset));
+                    }
+                }
+            }
+            String messageId = message.systemProperties().messageId();
+            if (!Strings.isNullOrEmpty(messageId)) {
+                requests.add(entry(index, segment, MessageIndexType.MESSAGE_ID, messageId, offset));
+            }
+            touchedSegments.merge(segment, offset + 1, Math::max);
+            nextOffset = batch.baseOffset() + batch.count();
+        }
+
+        // Checkpoint along with entries
+        touchedSegments.forEach((segment, endOffset) -> {
+            long merged = index.segments.merge(segment, endOffset, Math::max);
+            requests.add(new BatchWriteRequest(checkpointNamespace, segmentKey(index, segment),
+                ByteBuffer.allocate(Long.BYTES).putLong(merged).array()));
+        });
+        requests.add(new BatchWriteRequest(checkpointNamespace, queuePrefix(index.topicId, index.queueId),
+            ByteBuffer.allocate(Long.BYTES).putLong(nextOffset).array()));
+        kvService.batch(requests.toArray(new BatchRequest[0]));
+        index.indexedOffset = nextOffset;
+        return true;
+    }
+
+    /**
+     * Purge segments of which all messages are trimmed from the data stream.
+     */
+    void purge(QueueIndex index) throws StoreException {
+        if (index.segments.isEmpty() || !streamStore.isOpened(index.streamId)) {
+            return;
+        }
+        long startOffset = streamStore.startOffset(index.streamId);
+        List<Long> purgeable = new ArrayList<>();
+        index.segments.forEach((segment, endOffset) -> {
+            if (endOffset <= startOffset) {
+                purgeable.add(segment);
+            }
+        });
+
+        for (long segment : purgeable) {
+            byte[] prefix = segmentKey(index, segment);
+            List<BatchRequest> requests = new ArrayList<>();
+            kvService.iterate(namespace, prefix, null, null,
+                (key, value) -> requests.add(new BatchDeleteRequest(namespace, key)));
+            requests.add(new BatchDeleteRequest(checkpointNamespace, prefix));
+            kvService.batch(requests.toArray(new BatchRequest[0]));
+            index.segments.remove(segment);
+            LOGGER.info("Purge message index segment: {} of topic: {}, queue: {}, entries: {}", segment, index.topicId,
+                index.queueId, requests.size() - 1);
+        }
+    }
+
+    private long segmentMillis() {
+        return Math.max(1, config.messageIndexSegmentMillis());
+    }
+
+    private BatchWriteRequest entry(QueueIndex index, long segment, MessageIndexType type, String key, long offset) {
+        byte[] entryKey = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Long.BYTES + 1 + Long.BYTES + Long.BYTES)
+            .putLong(index.topicId)
+            .putInt(index.queueId)
+            .putLong(segment)
+            .put(type.code())
+            .putLong(hash(key))
+            .putLong(offset)
+            .array();
+        return new BatchWriteRequest(namespace, entryKey, new byte[0]);
+    }
+
+    private static long hash(String key) {
+        return Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static byte[] queuePrefix(long topicId, int queueId) {
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(topicId).putInt(queueId).array();
+    }
+
+    private static byte[] segmentKey(QueueIndex index, long segment) {
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Long.BYTES)
+            .putLong(index.topicId)
+            .putInt(index.queueId)
+            .putLong(segment)
+            .array();
+    }
+}
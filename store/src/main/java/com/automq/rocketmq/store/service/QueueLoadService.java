@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import apache.rocketmq.controller.v1.QueueLoad;
+import apache.rocketmq.controller.v1.StreamRole;
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.store.api.LogicQueue;
+import com.automq.rocketmq.store.api.LogicQueueManager;
+import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Track traffic of queues served by this node, which is reported to the leader controller to balance workload.
+ */
+public class QueueLoadService {
+    private final LogicQueueManager logicQueueManager;
+
+    private final ConcurrentMap<TopicQueueId, Traffic> trafficMap = new ConcurrentHashMap<>();
+
+    // Start of the traffic window that has not been reported to the leader controller yet.
+    private long windowStartNanos = System.nanoTime();
+
+    // End of the window covered by the last snapshot, which becomes the start of the next window once acknowledged.
+    private long snapshotNanos = windowStartNanos;
+
+    public QueueLoadService(LogicQueueManager logicQueueManager) {
+        this.logicQueueManager = logicQueueManager;
+    }
+
+    static class Traffic {
+        final LongAdder ingressBytes = new LongAdder();
+        final LongAdder egressBytes = new LongAdder();
+        final LongAdder ingressMessages = new LongAdder();
+        final LongAdder egressMessages = new LongAdder();
+        final Set<Long> consumerGroups = Sets.newConcurrentHashSet();
+
+        // Traffic included in the last snapshot, which is subtracted once the snapshot is acknowledged.
+        long snapshotIngressBytes;
+        long snapshotEgressBytes;
+        long snapshotIngressMessages;
+        long snapshotEgressMessages;
+
+        void takeSnapshot() {
+            snapshotIngressBytes = ingressBytes.sum();
+            snapshotEgressBytes = egressBytes.sum();
+            snapshotIngressMessages = ingressMessages.sum();
+            snapshotEgressMessages = egressMessages.sum();
+        }
+
+        void acknowledgeSnapshot() {
+            ingressBytes.add(-snapshotIngressBytes);
+            egressBytes.add(-snapshotEgressBytes);
+            ingressMessages.add(-snapshotIngressMessages);
+            egressMessages.add(-snapshotEgressMessages);
+            snapshotIngressBytes = 0;
+            snapshotEgressBytes = 0;
+            snapshotIngressMessages = 0;
+            snapshotEgressMessages = 0;
+        }
+    }
+
+    private Traffic trafficOf(long topicId, int queueId) {
+        return trafficMap.computeIfAbsent(TopicQueueId.of(topicId, queueId), k -> new Traffic());
+    }
+
+    public void recordIngress(long topicId, int queueId, long bytes) {
+        Traffic traffic = trafficOf(topicId, queueId);
+        traffic.ingressBytes.add(bytes);
+        traffic.ingressMessages.increment();
+    }
+
+    public void recordEgress(long consumerGroupId, long topicId, int queueId, List<FlatMessageExt> messageList) {
+        Traffic traffic = trafficOf(topicId, queueId);
+        traffic.consumerGroups.add(consumerGroupId);
+        if (messageList.isEmpty()) {
+            return;
+        }
+        long bytes = 0;
+        for (FlatMessageExt message : messageList) {
+            bytes += message.message().payloadLength();
+        }
+        traffic.egressBytes.add(bytes);
+        traffic.egressMessages.add(messageList.size());
+    }
+
+    /**
+     * Get the average traffic per second of each queue since the last acknowledged snapshot. The statistics are not
+     * reset until {@link #acknowledge()} is called, so the traffic of a window whose report fails is carried over to
+     * the next one instead of getting lost.
+     */
+    public synchronized List<QueueLoad> snapshot() {
+        snapshotNanos = System.nanoTime();
+        double seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(snapshotNanos - windowStartNanos));
+
+        List<QueueLoad> loads = new ArrayList<>();
+        trafficMap.forEach((id, traffic) -> {
+            // Queues closed since the last snapshot are no longer served by this node.
+            Optional<LogicQueue> queue = openedQueue(id);
+            if (queue.isEmpty()) {
+                trafficMap.remove(id, traffic);
+                return;
+            }
+            traffic.takeSnapshot();
+            loads.add(QueueLoad.newBuilder()
+                .setTopicId(id.topicId())
+                .setQueueId(id.queueId())
+                .setIngressBytes((long) (traffic.snapshotIngressBytes / seconds))
+                .setEgressBytes((long) (traffic.snapshotEgressBytes / seconds))
+                .setIngressMessages((long) (traffic.snapshotIngressMessages / seconds))
+                .setEgressMessages((long) (traffic.snapshotEgressMessages / seconds))
+                .setBacklog(backlogOf(queue.get(), traffic.consumerGroups))
+                .build());
+        });
+        return loads;
+    }
+
+    /**
+     * Acknowledge that the last snapshot has been reported, and start a new window from it.
+     */
+    public synchronized void acknowledge() {
+        windowStartNanos = snapshotNanos;
+        trafficMap.values().forEach(Traffic::acknowledgeSnapshot);
+    }
+
+    private Optional<LogicQueue> openedQueue(TopicQueueId id) {
+        CompletableFuture<Optional<LogicQueue>> future = logicQueueManager.get(id.topicId(), id.queueId());
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return future.join().filter(queue -> queue.getState() == LogicQueue.State.OPENED);
+    }
+
+    private static long backlogOf(LogicQueue queue, Set<Long> consumerGroups) {
+        long backlog = 0;
+        for (long consumerGroupId : consumerGroups) {
+            long endOffset = queue.getOffsetRange(consumerGroupId).stream()
+                .filter(range -> range.streamRole() == StreamRole.STREAM_ROLE_DATA)
+                .mapToLong(LogicQueue.StreamOffsetRange::endOffset)
+                .findFirst()
+                .orElse(0);
+            backlog = Math.max(backlog, endOffset - queue.getConsumeOffset(consumerGroupId));
+        }
+        return backlog;
+    }
+}
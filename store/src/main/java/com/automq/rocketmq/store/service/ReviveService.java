@@ -20,6 +20,7 @@ import com.automq.rocketmq.store.api.LogicQueueManager;
 import com.automq.rocketmq.store.api.MessageArrivalListener;
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.generated.ReceiptHandle;
@@ -30,6 +31,7 @@ import com.automq.rocketmq.store.model.message.Filter;
 import com.automq.rocketmq.store.model.message.PullResult;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.service.api.KVService;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
 import com.automq.rocketmq.store.util.SerializeUtil;
 import com.automq.stream.utils.FutureUtil;
 import com.automq.stream.utils.ThreadUtils;
@@ -203,8 +205,11 @@ public class ReviveService {
                 messageExt.setOriginalQueueOffset(messageExt.originalOffset());
                 messageExt.setDeliveryAttempts(messageExt.deliveryAttempts() + 1);
                 return logicQueue.putRetry(context, consumerGroupId, messageExt.message())
-                    .thenCompose(result -> metadataService.topicOf(topicId)
-                        .thenAccept(topic -> messageArrivalNotificationService.notify(MessageArrivalListener.MessageSource.RETRY_MESSAGE_PUT, topic, queueId, result.offset(), messageExt.message().tag())))
+                    .thenCompose(result -> {
+                        StoreMetricsManager.retryMessages.add(1, StoreMetricsManager.buildQueueAttributes(consumerGroupId, topicId, queueId));
+                        return metadataService.topicOf(topicId)
+                            .thenAccept(topic -> messageArrivalNotificationService.notify(MessageArrivalListener.MessageSource.RETRY_MESSAGE_PUT, topic, queueId, result.offset(), messageExt.message().tag()));
+                    })
                     .thenApply(nil -> Pair.of(false, logicQueue));
             });
 
@@ -213,17 +218,19 @@ public class ReviveService {
                 LogicQueue queue = pair.getRight();
                 if (sendDeadLetter) {
                     // regard sending to DLQ as ack
-                    return queue.ack(SerializeUtil.encodeReceiptHandle(receiptHandle));
+                    return queue.ack(ReceiptHandleCodec.encode(consumerGroupId, topicId, queueId, operationId, 0, 0));
                 }
                 // ack timeout
-                return queue.ackTimeout(SerializeUtil.encodeReceiptHandle(receiptHandle));
+                return queue.ackTimeout(ReceiptHandleCodec.encode(consumerGroupId, topicId, queueId, operationId, 0, 0));
             }, backgroundExecutor);
 
             ackFuture.whenComplete((nil, e) -> {
                 inflightRevive.remove(operationId);
                 TraceHelper.endSpan(context, rootSpan, e);
 
-                if (e != null) {
+                if (e == null) {
+                    StoreMetricsManager.recordReviveLatency(System.currentTimeMillis() - deliveryTimestamp);
+                } else {
                     Throwable cause = FutureUtil.cause(e);
                     if (cause instanceof StoreException storeException) {
                         switch (storeException.code()) {
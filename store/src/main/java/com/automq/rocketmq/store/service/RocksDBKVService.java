@@ -13,6 +13,7 @@ package com.automq.rocketmq.store.service;
 
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.kv.BatchRequest;
 import com.automq.rocketmq.store.model.kv.IteratorCallback;
 import com.automq.rocketmq.store.model.kv.KVReadOptions;
@@ -304,11 +305,13 @@ public class RocksDBKVService implements KVService {
         if (stopped) {
             throw new StoreException(StoreErrorCode.KV_SERVICE_IS_NOT_RUNNING, "KV service is stopped.");
         }
+        long startNanos = System.nanoTime();
         try (WriteOptions writeOptions = new WriteOptions().setDisableWAL(true)) {
             ColumnFamilyHandle handle = getOrCreateColumnFamily(namespace);
             transformException(() -> rocksDB.put(handle, writeOptions, key, value),
                 "Failed to put value into RocksDB.");
         }
+        StoreMetricsManager.recordKVWriteLatency(namespace, System.nanoTime() - startNanos);
     }
 
     @Override
@@ -321,6 +324,7 @@ public class RocksDBKVService implements KVService {
             throw new StoreException(StoreErrorCode.ILLEGAL_ARGUMENT, "The requests can not be null.");
         }
 
+        long startNanos = System.nanoTime();
         try (WriteOptions writeOptions = new WriteOptions(); WriteBatch writeBatch = new WriteBatch()) {
             for (BatchRequest request : requests) {
                 ColumnFamilyHandle handle = getOrCreateColumnFamily(request.namespace());
@@ -336,6 +340,10 @@ public class RocksDBKVService implements KVService {
             transformException(() -> rocksDB.write(writeOptions, writeBatch),
                 "Failed to batch write into RocksDB.");
         }
+        // A batch may span namespaces, e.g. check points along with timer tags, it is attributed to the first one.
+        if (requests.length > 0) {
+            StoreMetricsManager.recordKVWriteLatency(requests[0].namespace(), System.nanoTime() - startNanos);
+        }
     }
 
     @Override
@@ -11,6 +11,7 @@
 
 package com.automq.rocketmq.store.service;
 
+import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.trace.TraceHelper;
 import com.automq.rocketmq.common.util.Lifecycle;
 import com.automq.rocketmq.store.MessageStoreImpl;
@@ -32,7 +33,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -40,34 +40,56 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SnapshotService implements Lifecycle, Runnable {
+/**
+ * Takes snapshots of the state machines of queues and appends them to snapshot streams.
+ * <p>
+ * Snapshots are taken by a pool of snapshot takers, each queue is bound to one of them so that snapshots of the
+ * same queue are taken in order. Most snapshots are delta snapshots, which only record check points changed since the
+ * previous snapshot. A full snapshot is taken every {@link StoreConfig#operationSnapshotDeltaChainLength()} delta
+ * snapshots, or whenever the chain is broken, e.g. the queue is recovered or a snapshot fails.
+ */
+public class SnapshotService implements Lifecycle {
     public static final Logger LOGGER = LoggerFactory.getLogger(SnapshotService.class);
     private final StreamStore streamStore;
-    private final BlockingQueue<SnapshotTask> snapshotTaskQueue;
-    private Thread snapshotTaker;
+    private final SnapshotTaker[] snapshotTakers;
     private final KVService kvService;
+    private final StoreConfig storeConfig;
     private volatile boolean stopped = false;
     private final ConcurrentMap<TopicQueueId, SnapshotStatus> snapshotStatusMap = new ConcurrentHashMap<>();
-    private CompletableFuture<Void> runningCf;
     private ExecutorService backgroundExecutor;
 
-    public SnapshotService(StreamStore streamStore, KVService kvService) {
+    public SnapshotService(StreamStore streamStore, KVService kvService, StoreConfig storeConfig) {
         this.streamStore = streamStore;
-        this.snapshotTaskQueue = new LinkedBlockingQueue<>(1024);
         this.kvService = kvService;
-        this.backgroundExecutor = Executors.newSingleThreadExecutor(
-            ThreadUtils.createThreadFactory("snapshot-background-executor", false)
-        );
+        this.storeConfig = storeConfig;
+        this.snapshotTakers = new SnapshotTaker[Math.max(1, storeConfig.snapshotTakerThreadNums())];
+        for (int i = 0; i < snapshotTakers.length; i++) {
+            snapshotTakers[i] = new SnapshotTaker("snapshot-taker-" + i);
+        }
+        this.backgroundExecutor = newBackgroundExecutor();
+    }
+
+    private ExecutorService newBackgroundExecutor() {
+        return Executors.newFixedThreadPool(snapshotTakers.length,
+            ThreadUtils.createThreadFactory("snapshot-background-executor-%d", false));
     }
 
     public static class SnapshotStatus {
         private final AtomicLong snapshotEndOffset = new AtomicLong(-1);
         private final AtomicLong operationStartOffset = new AtomicLong(-1);
         private final AtomicBoolean takingSnapshot = new AtomicBoolean(false);
+        // Bytes and timestamp of operations logged since the last snapshot is triggered
+        private final AtomicLong operationBytes = new AtomicLong(0);
+        private final AtomicLong lastSnapshotTimestamp = new AtomicLong(System.currentTimeMillis());
+        // Offset of the full snapshot in the snapshot stream that following delta snapshots are based on
+        private final AtomicLong fullSnapshotOffset = new AtomicLong(-1);
+        private final AtomicInteger deltaSnapshotCount = new AtomicInteger(0);
+        private final AtomicBoolean fullSnapshotRequired = new AtomicBoolean(true);
 
         public AtomicLong snapshotEndOffset() {
             return snapshotEndOffset;
@@ -80,6 +102,26 @@ public class SnapshotService implements Lifecycle, Runnable {
         public AtomicBoolean takingSnapshot() {
             return takingSnapshot;
         }
+
+        public AtomicLong operationBytes() {
+            return operationBytes;
+        }
+
+        public AtomicLong lastSnapshotTimestamp() {
+            return lastSnapshotTimestamp;
+        }
+
+        public AtomicLong fullSnapshotOffset() {
+            return fullSnapshotOffset;
+        }
+
+        public AtomicInteger deltaSnapshotCount() {
+            return deltaSnapshotCount;
+        }
+
+        public AtomicBoolean fullSnapshotRequired() {
+            return fullSnapshotRequired;
+        }
     }
 
     public SnapshotStatus getSnapshotStatus(long topicId, int queueId) {
@@ -89,57 +131,79 @@ public class SnapshotService implements Lifecycle, Runnable {
     @Override
     public void start() throws Exception {
         this.stopped = false;
-        this.runningCf = new CompletableFuture<>();
         if (this.backgroundExecutor == null || this.backgroundExecutor.isShutdown()) {
-            this.backgroundExecutor = Executors.newSingleThreadExecutor(
-                ThreadUtils.createThreadFactory("snapshot-background-executor", false)
-            );
+            this.backgroundExecutor = newBackgroundExecutor();
+        }
+        for (SnapshotTaker snapshotTaker : snapshotTakers) {
+            snapshotTaker.start();
         }
-        this.snapshotTaker = new Thread(this, "snapshot-taker");
-        this.snapshotTaker.setDaemon(true);
-        this.snapshotTaker.start();
     }
 
     @Override
     public void shutdown() throws Exception {
         this.stopped = true;
-        // 1. wait for the current task to complete
-        if (runningCf != null) {
-            runningCf.join();
-        }
-        // 2. abort all waiting snapshot task
-        List<SnapshotTask> snapshotTasks = new ArrayList<>();
-        snapshotTaskQueue.drainTo(snapshotTasks);
-        snapshotTasks.forEach(SnapshotTask::abort);
-        // 3. shutdown background executor
+        // 1. wait for the current tasks to complete and abort all waiting snapshot tasks
+        for (SnapshotTaker snapshotTaker : snapshotTakers) {
+            snapshotTaker.shutdown();
+        }
+        // 2. shutdown background executor
         if (this.backgroundExecutor != null) {
             this.backgroundExecutor.shutdown();
             this.backgroundExecutor = null;
         }
     }
 
-    @Override
-    public void run() {
-        while (!stopped) {
-            try {
-                SnapshotTask task = snapshotTaskQueue.poll(100, TimeUnit.MILLISECONDS);
-                if (task == null) {
-                    continue;
+    private class SnapshotTaker implements Runnable {
+        private final String name;
+        private final BlockingQueue<SnapshotTask> snapshotTaskQueue = new LinkedBlockingQueue<>(1024);
+        private CompletableFuture<Void> runningCf;
+
+        SnapshotTaker(String name) {
+            this.name = name;
+        }
+
+        void start() {
+            this.runningCf = new CompletableFuture<>();
+            Thread thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void shutdown() {
+            if (runningCf != null) {
+                runningCf.join();
+            }
+            List<SnapshotTask> snapshotTasks = new ArrayList<>();
+            snapshotTaskQueue.drainTo(snapshotTasks);
+            snapshotTasks.forEach(SnapshotTask::abort);
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    SnapshotTask task = snapshotTaskQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (task == null) {
+                        continue;
+                    }
+                    CompletableFuture<Void> takeCf = takeSnapshot(new StoreContext("", "", TraceHelper.getTracer()), task)
+                        .exceptionally(e -> {
+                            Throwable cause = FutureUtil.cause(e);
+                            // Check points changed since the previous snapshot may have been handed over and lost,
+                            // the next snapshot has to be a full one.
+                            getSnapshotStatus(task.topicId, task.queueId).fullSnapshotRequired().set(true);
+                            task.completeFailure(cause);
+                            return null;
+                        });
+                    takeCf.join();
+                } catch (InterruptedException ignore) {
+                } catch (Exception e) {
+                    Throwable cause = FutureUtil.cause(e);
+                    LOGGER.warn("Failed to take snapshot", cause);
                 }
-                CompletableFuture<Void> takeCf = takeSnapshot(new StoreContext("", "", TraceHelper.getTracer()), task)
-                    .exceptionally(e -> {
-                        Throwable cause = FutureUtil.cause(e);
-                        task.completeFailure(cause);
-                        return null;
-                    });
-                takeCf.join();
-            } catch (InterruptedException ignore) {
-            } catch (Exception e) {
-                Throwable cause = FutureUtil.cause(e);
-                LOGGER.warn("Failed to take snapshot", cause);
             }
+            runningCf.complete(null);
         }
-        runningCf.complete(null);
     }
 
     @WithSpan
@@ -166,20 +230,24 @@ public class SnapshotService implements Lifecycle, Runnable {
         long operationStreamId = task.operationStreamId;
         long snapshotStreamId = task.snapshotStreamId;
 
-        long version = snapshot.getKvServiceSnapshotVersion();
-        KVReadOptions readOptions = new KVReadOptions();
-        readOptions.setSnapshotVersion(version);
-
-        // get queue related checkpoints from kv service
-        byte[] tqPrefix = SerializeUtil.buildCheckPointQueuePrefix(topicId, queueId);
-        List<CheckPoint> checkPointList = new ArrayList<>();
+        SnapshotStatus status = getSnapshotStatus(topicId, queueId);
+        boolean full = status.fullSnapshotRequired().get()
+            || status.deltaSnapshotCount().get() >= storeConfig.operationSnapshotDeltaChainLength();
         try {
-            kvService.iterate(MessageStoreImpl.KV_NAMESPACE_CHECK_POINT, tqPrefix, null, null, (key, value) -> {
-                CheckPoint checkPoint = SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(value));
-                checkPointList.add(checkPoint);
-            }, readOptions);
+            if (full) {
+                // get queue related checkpoints from kv service
+                snapshot.setCheckPoints(fetchCheckPoints(topicId, queueId, snapshot.getKvServiceSnapshotVersion()));
+                snapshot.setRemovedOperationIds(new ArrayList<>());
+            } else {
+                // keep the check points changed since the previous snapshot only
+                if (snapshot.getCheckPoints() == null) {
+                    snapshot.setCheckPoints(new ArrayList<>());
+                }
+                snapshot.setDelta(true);
+                snapshot.setBaseOffset(status.fullSnapshotOffset().get());
+            }
         } catch (StoreException e) {
-            throw new CompletionException(e);
+            return CompletableFuture.failedFuture(e);
         } finally {
             // release snapshot
             try {
@@ -188,17 +256,31 @@ public class SnapshotService implements Lifecycle, Runnable {
                 LOGGER.error("Release snapshot: {} failed", snapshot, e);
             }
         }
-        snapshot.setCheckPoints(checkPointList);
         byte[] snapshotData = SerializeUtil.encodeOperationSnapshot(snapshot);
 
-        context.span().ifPresent(span -> span.setAttribute("snapshotSize", snapshotData.length));
+        context.span().ifPresent(span -> {
+            span.setAttribute("delta", snapshot.isDelta());
+            span.setAttribute("snapshotSize", snapshotData.length);
+        });
 
         // append snapshot to snapshot stream
         return streamStore.append(context, snapshotStreamId, new SingleRecord(ByteBuffer.wrap(snapshotData)))
             .thenComposeAsync(appendResult -> {
                 context.span().ifPresent(span -> span.setAttribute("snapshotOffset", appendResult.baseOffset()));
+                if (snapshot.isDelta()) {
+                    status.deltaSnapshotCount().incrementAndGet();
+                } else {
+                    status.fullSnapshotOffset().set(appendResult.baseOffset());
+                    status.deltaSnapshotCount().set(0);
+                    status.fullSnapshotRequired().set(false);
+                }
                 // trim operation stream
-                return streamStore.trim(operationStreamId, snapshot.getSnapshotEndOffset() + 1);
+                CompletableFuture<Void> trimCf = streamStore.trim(operationStreamId, snapshot.getSnapshotEndOffset() + 1);
+                if (!snapshot.isDelta()) {
+                    // snapshots before the full snapshot are no longer needed to recover
+                    trimCf = trimCf.thenCompose(nil -> streamStore.trim(snapshotStreamId, appendResult.baseOffset()));
+                }
+                return trimCf;
             }, backgroundExecutor)
             .thenAcceptAsync(nil -> {
                 // complete snapshot task
@@ -206,10 +288,24 @@ public class SnapshotService implements Lifecycle, Runnable {
             }, backgroundExecutor);
     }
 
+    private List<CheckPoint> fetchCheckPoints(long topicId, int queueId, long version) throws StoreException {
+        KVReadOptions readOptions = new KVReadOptions();
+        readOptions.setSnapshotVersion(version);
+
+        byte[] tqPrefix = SerializeUtil.buildCheckPointQueuePrefix(topicId, queueId);
+        List<CheckPoint> checkPointList = new ArrayList<>();
+        kvService.iterate(MessageStoreImpl.KV_NAMESPACE_CHECK_POINT, tqPrefix, null, null, (key, value) -> {
+            CheckPoint checkPoint = SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(value));
+            checkPointList.add(checkPoint);
+        }, readOptions);
+        return checkPointList;
+    }
+
     CompletableFuture<TakeSnapshotResult> addSnapshotTask(SnapshotTask task) {
         CompletableFuture<TakeSnapshotResult> cf = new CompletableFuture<>();
         task.setCf(cf);
-        snapshotTaskQueue.add(task);
+        int index = Math.floorMod(TopicQueueId.of(task.topicId, task.queueId).hashCode(), snapshotTakers.length);
+        snapshotTakers[index].snapshotTaskQueue.add(task);
         return cf;
     }
 
@@ -16,10 +16,12 @@ import com.automq.rocketmq.store.api.MessageStateMachine;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.Operation;
 import com.automq.rocketmq.store.model.operation.OperationSnapshot;
 import com.automq.rocketmq.store.model.operation.PopOperation;
@@ -65,6 +67,11 @@ public class StreamOperationLogService implements OperationLogService {
         long endOffset = streamStore.nextOffset(operationStreamId);
         CompletableFuture<Long/*op replay start offset*/> snapshotFetch;
         long snapEndOffset = snapshotStatus.snapshotEndOffset().get();
+        // The snapshot chain is not extended across recoveries, start a new one with a full snapshot
+        snapshotStatus.fullSnapshotRequired().set(true);
+        snapshotStatus.deltaSnapshotCount().set(0);
+        snapshotStatus.operationBytes().set(0);
+        snapshotStatus.lastSnapshotTimestamp().set(System.currentTimeMillis());
 
         // Keep a reference to the snapshot so that we can write the remaining checkpoints to the kv service after replaying all operations
         AtomicReference<OperationSnapshot> operationSnapshot = new AtomicReference<>();
@@ -74,6 +81,7 @@ public class StreamOperationLogService implements OperationLogService {
         } else {
             snapshotFetch = streamStore.fetch(StoreContext.EMPTY, snapshotStreamId, snapEndOffset - 1, 1)
                 .thenApply(result -> SerializeUtil.decodeOperationSnapshot(result.recordBatchList().get(0).rawPayload()))
+                .thenCompose(snapshot -> fetchSnapshotChain(snapshotStreamId, snapshot, snapEndOffset))
                 .thenApply(snapshot -> {
                     stateMachine.loadSnapshot(snapshot);
                     operationSnapshot.set(snapshot);
@@ -120,58 +128,67 @@ public class StreamOperationLogService implements OperationLogService {
             });
     }
 
+    /**
+     * Merge the delta snapshot with the full snapshot it is based on and all delta snapshots in between.
+     */
+    private CompletableFuture<OperationSnapshot> fetchSnapshotChain(long snapshotStreamId, OperationSnapshot last,
+        long snapshotEndOffset) {
+        if (!last.isDelta()) {
+            return CompletableFuture.completedFuture(last);
+        }
+        long baseOffset = last.getBaseOffset();
+        return streamStore.fetch(StoreContext.EMPTY, snapshotStreamId, baseOffset, (int) (snapshotEndOffset - baseOffset))
+            .thenApply(result -> OperationSnapshot.merge(result.recordBatchList()
+                .stream()
+                .map(batchWithContext -> SerializeUtil.decodeOperationSnapshot(batchWithContext.rawPayload()))
+                .toList()));
+    }
+
     @Override
     public CompletableFuture<LogResult> logPopOperation(PopOperation operation) {
-        return streamStore.append(StoreContext.EMPTY, operation.operationStreamId(),
-                new SingleRecord(ByteBuffer.wrap(SerializeUtil.encodePopOperation(operation))))
-            .thenApply(result -> {
-                try {
-                    return doReplay(result, operation);
-                } catch (StoreException e) {
-                    LOGGER.error("Topic {}, queue: {}: Replay pop operation: {} failed", operation.topicId(), operation.queueId(), operation, e);
-                    throw new CompletionException(e);
-                }
-            });
+        byte[] data = SerializeUtil.encodePopOperation(operation);
+        return log(operation, data, "pop");
     }
 
     @Override
     public CompletableFuture<LogResult> logAckOperation(AckOperation operation) {
-        return streamStore.append(StoreContext.EMPTY, operation.operationStreamId(),
-                new SingleRecord(ByteBuffer.wrap(SerializeUtil.encodeAckOperation(operation))))
-            .thenApply(result -> {
-                try {
-                    return doReplay(result, operation);
-                } catch (StoreException e) {
-                    LOGGER.error("Topic {}, queue: {}: Replay ack operation: {} failed", operation.topicId(), operation.queueId(), operation, e);
-                    throw new CompletionException(e);
-                }
-            });
+        byte[] data = SerializeUtil.encodeAckOperation(operation);
+        return log(operation, data, "ack");
     }
 
     @Override
     public CompletableFuture<LogResult> logChangeInvisibleDurationOperation(
         ChangeInvisibleDurationOperation operation) {
-        return streamStore.append(StoreContext.EMPTY, operation.operationStreamId(),
-                new SingleRecord(ByteBuffer.wrap(SerializeUtil.encodeChangeInvisibleDurationOperation(operation))))
-            .thenApply(result -> {
-                try {
-                    return doReplay(result, operation);
-                } catch (StoreException e) {
-                    LOGGER.error("Topic {}, queue: {}: Replay change invisible duration operation: {} failed", operation.topicId(), operation.queueId(), operation, e);
-                    throw new CompletionException(e);
-                }
-            });
+        byte[] data = SerializeUtil.encodeChangeInvisibleDurationOperation(operation);
+        return log(operation, data, "change invisible duration");
     }
 
     @Override
     public CompletableFuture<LogResult> logResetConsumeOffsetOperation(ResetConsumeOffsetOperation operation) {
-        return streamStore.append(StoreContext.EMPTY, operation.operationStreamId(),
-                new SingleRecord(ByteBuffer.wrap(SerializeUtil.encodeResetConsumeOffsetOperation(operation))))
+        byte[] data = SerializeUtil.encodeResetConsumeOffsetOperation(operation);
+        return log(operation, data, "reset consume offset");
+    }
+
+    @Override
+    public CompletableFuture<LogResult> logClearRetryMessagesOperation(ClearRetryMessagesOperation operation) {
+        byte[] data = SerializeUtil.encodeClearRetryMessagesOperation(operation);
+        return log(operation, data, "clear retry messages");
+    }
+
+    private CompletableFuture<LogResult> log(Operation operation, byte[] data, String operationName) {
+        long startNanos = System.nanoTime();
+        return streamStore.append(StoreContext.EMPTY, operation.operationStreamId(), new SingleRecord(ByteBuffer.wrap(data)))
             .thenApply(result -> {
+                long replayStartNanos = System.nanoTime();
+                StoreMetricsManager.recordOperationLogLatency(operation.operationType(),
+                    StoreMetricsManager.OperationLogPhase.APPEND, replayStartNanos - startNanos);
                 try {
-                    return doReplay(result, operation);
+                    LogResult logResult = doReplay(result, operation, data.length);
+                    StoreMetricsManager.recordOperationLogLatency(operation.operationType(),
+                        StoreMetricsManager.OperationLogPhase.REPLAY, System.nanoTime() - replayStartNanos);
+                    return logResult;
                 } catch (StoreException e) {
-                    LOGGER.error("Topic {}, queue: {}: Replay reset consume offset operation: {} failed", operation.topicId(), operation.queueId(), operation, e);
+                    LOGGER.error("Topic {}, queue: {}: Replay {} operation: {} failed", operation.topicId(), operation.queueId(), operationName, operation, e);
                     throw new CompletionException(e);
                 }
             });
@@ -181,6 +198,8 @@ public class StreamOperationLogService implements OperationLogService {
         MessageStateMachine stateMachine = operation.stateMachine();
         SnapshotService.SnapshotStatus snapshotStatus = snapshotService.getSnapshotStatus(stateMachine.topicId(), stateMachine.queueId());
         if (snapshotStatus.takingSnapshot().compareAndSet(false, true)) {
+            snapshotStatus.operationBytes().set(0);
+            snapshotStatus.lastSnapshotTimestamp().set(System.currentTimeMillis());
             CompletableFuture<SnapshotService.TakeSnapshotResult> taskCf = snapshotService.addSnapshotTask(new SnapshotService.SnapshotTask(
                 operation.topicId(), operation.queueId(), operation.operationStreamId(), operation.snapshotStreamId(),
                 stateMachine::takeSnapshot));
@@ -200,12 +219,17 @@ public class StreamOperationLogService implements OperationLogService {
         }
     }
 
-    private LogResult doReplay(AppendResult appendResult, Operation operation) throws StoreException {
+    private LogResult doReplay(AppendResult appendResult, Operation operation, int operationSize) throws StoreException {
         long operationOffset = appendResult.baseOffset();
         LogResult logResult = replay(operationOffset, operation);
         MessageStateMachine stateMachine = operation.stateMachine();
         SnapshotService.SnapshotStatus snapshotStatus = snapshotService.getSnapshotStatus(stateMachine.topicId(), stateMachine.queueId());
-        if (operationOffset - snapshotStatus.operationStartOffset().get() + 1 >= storeConfig.operationSnapshotInterval()) {
+        long operationBytes = snapshotStatus.operationBytes().addAndGet(operationSize);
+        // Take a snapshot once enough operations are logged since the last snapshot, by count, bytes or age.
+        // The age is only checked on logging, an idle queue has nothing more to replay anyway.
+        if (operationOffset - snapshotStatus.operationStartOffset().get() + 1 >= storeConfig.operationSnapshotInterval()
+            || operationBytes >= storeConfig.operationSnapshotIntervalBytes()
+            || System.currentTimeMillis() - snapshotStatus.lastSnapshotTimestamp().get() >= storeConfig.operationSnapshotIntervalMillis()) {
             notifySnapshot(operation);
         }
         return logResult;
@@ -218,11 +242,14 @@ public class StreamOperationLogService implements OperationLogService {
                 MessageStateMachine.ReplayPopResult replayPopResult = operation.stateMachine().replayPopOperation(operationOffset, (PopOperation) operation);
                 logResult.setPopTimes(replayPopResult.getPopTimes());
             }
-            case ACK -> operation.stateMachine().replayAckOperation(operationOffset, (AckOperation) operation);
+            case ACK -> logResult.setDeletedCheckPoints(
+                operation.stateMachine().replayAckOperation(operationOffset, (AckOperation) operation));
             case CHANGE_INVISIBLE_DURATION ->
                 operation.stateMachine().replayChangeInvisibleDurationOperation(operationOffset, (ChangeInvisibleDurationOperation) operation);
-            case RESET_CONSUME_OFFSET ->
-                operation.stateMachine().replayResetConsumeOffsetOperation(operationOffset, (ResetConsumeOffsetOperation) operation);
+            case RESET_CONSUME_OFFSET -> logResult.setDeletedCheckPoints(
+                operation.stateMachine().replayResetConsumeOffsetOperation(operationOffset, (ResetConsumeOffsetOperation) operation));
+            case CLEAR_RETRY_MESSAGES -> logResult.setDeletedCheckPoints(
+                operation.stateMachine().replayClearRetryMessagesOperation(operationOffset, (ClearRetryMessagesOperation) operation));
             default -> throw new IllegalStateException("Unexpected value: " + operation.operationType());
         }
 
@@ -14,113 +14,205 @@ package com.automq.rocketmq.store.service;
 import com.automq.rocketmq.common.util.Lifecycle;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.stream.utils.FutureUtil;
-import com.automq.stream.utils.ThreadUtils;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Trim streams, typically retry streams once retry messages are acked, in the background.
+ * <p>
+ * Tasks are coalesced per stream: all tasks of a stream pending at the same time are served by a single trim to the
+ * greatest offset requested, so the number of pending trims is bounded by the number of streams rather than by the
+ * rate of acks. Trims of a stream are never run concurrently, while different streams are trimmed by several workers.
+ */
 public class StreamReclaimService implements Lifecycle, Runnable {
     // TODO: Unifying the same logic with other services
     public static final Logger LOGGER = LoggerFactory.getLogger(StreamReclaimService.class);
     private final StreamStore streamStore;
-    private final BlockingQueue<StreamReclaimTask> taskQueue;
-    private Thread streamReclaimer;
+    private final int threadNums;
+
+    // Streams with pending tasks and not being trimmed, in the order of arrival.
+    private final BlockingQueue<Long> readyQueue = new LinkedBlockingQueue<>();
+
+    // Guarded by this
+    private final Map<Long/*streamId*/, Reclaim> pendingMap = new HashMap<>();
+    private final Set<Long/*streamId*/> runningSet = new HashSet<>();
+
+    private final AtomicInteger inflightTaskNum = new AtomicInteger();
+    private final List<Thread> streamReclaimers = new ArrayList<>();
     private volatile boolean stopped = false;
-    private CompletableFuture<Void> runningCf;
-    private ExecutorService backgroundExecutor;
 
     public StreamReclaimService(StreamStore streamStore) {
+        this(streamStore, 1);
+    }
+
+    public StreamReclaimService(StreamStore streamStore, int threadNums) {
         this.streamStore = streamStore;
-        this.taskQueue = new LinkedBlockingQueue<>(1024);
-        this.backgroundExecutor = Executors.newSingleThreadExecutor(
-            ThreadUtils.createThreadFactory("stream-reclaim-background-executor", false)
-        );
+        this.threadNums = Math.max(1, threadNums);
     }
 
     @Override
-    public void start() throws Exception {
+    public synchronized void start() throws Exception {
+        if (!streamReclaimers.isEmpty()) {
+            return;
+        }
         this.stopped = false;
-        this.runningCf = new CompletableFuture<>();
-        if (this.backgroundExecutor == null || this.backgroundExecutor.isShutdown()) {
-            this.backgroundExecutor = Executors.newSingleThreadExecutor(
-                ThreadUtils.createThreadFactory("stream-reclaim-background-executor", false)
-            );
-        }
-        this.streamReclaimer = new Thread(this, "stream-reclaimer");
-        this.streamReclaimer.setDaemon(true);
-        this.streamReclaimer.start();
+        for (int i = 0; i < threadNums; i++) {
+            Thread streamReclaimer = new Thread(this, "stream-reclaimer-" + i);
+            streamReclaimer.setDaemon(true);
+            streamReclaimer.start();
+            streamReclaimers.add(streamReclaimer);
+        }
     }
 
     @Override
     public void shutdown() throws Exception {
-        this.stopped = true;
-        // 1. wait for the current task to complete
-        if (runningCf != null) {
-            runningCf.join();
-        }
-        // 2. abort all waiting snapshot task
-        List<StreamReclaimTask> tasks = new ArrayList<>();
-        taskQueue.drainTo(tasks);
-        tasks.forEach(StreamReclaimTask::abort);
-        // 3. shutdown background executor
-        if (this.backgroundExecutor != null) {
-            this.backgroundExecutor.shutdown();
-            this.backgroundExecutor = null;
+        List<Thread> threads;
+        synchronized (this) {
+            this.stopped = true;
+            threads = new ArrayList<>(streamReclaimers);
+            streamReclaimers.clear();
+        }
+        // 1. wait for the current tasks to complete
+        for (Thread thread : threads) {
+            thread.join();
         }
+        // 2. abort all waiting tasks
+        List<Reclaim> reclaims;
+        synchronized (this) {
+            reclaims = new ArrayList<>(pendingMap.values());
+            pendingMap.clear();
+            readyQueue.clear();
+        }
+        reclaims.forEach(Reclaim::abort);
     }
 
     @Override
     public void run() {
         while (!stopped) {
             try {
-                StreamReclaimTask task = taskQueue.poll(100, TimeUnit.MILLISECONDS);
-                if (task == null) {
+                Long streamId = readyQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (streamId == null) {
                     continue;
                 }
-                CompletableFuture<Void> takeCf = reclaimStream(task)
-                    .exceptionally(e -> {
-                        Throwable cause = FutureUtil.cause(e);
-                        task.completeFailure(cause);
-                        return null;
-                    });
-                takeCf.join();
+                Reclaim reclaim = take(streamId);
+                if (reclaim == null) {
+                    continue;
+                }
+                try {
+                    reclaimStream(reclaim);
+                } finally {
+                    finish(streamId);
+                }
             } catch (InterruptedException ignore) {
             } catch (Exception e) {
                 Throwable cause = FutureUtil.cause(e);
                 LOGGER.warn("Failed to reclaim stream", cause);
             }
         }
-        runningCf.complete(null);
     }
 
-    CompletableFuture<Void> reclaimStream(StreamReclaimTask task) {
-        if (stopped) {
-            task.abort();
-            return CompletableFuture.completedFuture(null);
+    void reclaimStream(Reclaim reclaim) {
+        try {
+            streamStore.trim(reclaim.streamId, reclaim.newStartOffset).join();
+            reclaim.completeSuccess(streamStore.startOffset(reclaim.streamId));
+        } catch (Throwable e) {
+            reclaim.completeFailure(FutureUtil.cause(e));
         }
-        return task.streamIdCf.thenComposeAsync(streamId -> {
-            long newStartOffset = task.newStartOffset;
-            return streamStore.trim(streamId, newStartOffset)
-                .thenAccept(nil -> task.completeSuccess(streamStore.startOffset(streamId)));
-        }, backgroundExecutor);
     }
 
     public CompletableFuture<StreamReclaimResult> addReclaimTask(StreamReclaimTask task) {
         CompletableFuture<StreamReclaimResult> cf = new CompletableFuture<>();
         task.setCf(cf);
-        taskQueue.add(task);
+        inflightTaskNum.incrementAndGet();
+        cf.whenComplete((result, e) -> inflightTaskNum.decrementAndGet());
+        task.streamIdCf.whenComplete((streamId, e) -> {
+            if (e != null) {
+                task.completeFailure(FutureUtil.cause(e));
+                return;
+            }
+            submit(streamId, task);
+        });
         return cf;
     }
 
+    private synchronized void submit(long streamId, StreamReclaimTask task) {
+        if (stopped) {
+            task.abort();
+            return;
+        }
+        Reclaim reclaim = pendingMap.get(streamId);
+        if (reclaim == null) {
+            reclaim = new Reclaim(streamId);
+            pendingMap.put(streamId, reclaim);
+            if (!runningSet.contains(streamId)) {
+                readyQueue.add(streamId);
+            }
+        }
+        reclaim.merge(task);
+    }
+
+    private synchronized Reclaim take(long streamId) {
+        Reclaim reclaim = pendingMap.remove(streamId);
+        if (reclaim != null) {
+            runningSet.add(streamId);
+        }
+        return reclaim;
+    }
+
+    private synchronized void finish(long streamId) {
+        runningSet.remove(streamId);
+        // Tasks arrived while trimming are served by the next trim
+        if (pendingMap.containsKey(streamId)) {
+            readyQueue.add(streamId);
+        }
+    }
+
+    /**
+     * @return number of tasks not completed yet, either pending or running
+     */
     public int inflightTaskNum() {
-        return taskQueue.size();
+        return inflightTaskNum.get();
+    }
+
+    /**
+     * Tasks of a stream coalesced into a single trim.
+     */
+    static class Reclaim {
+        private final long streamId;
+        private long newStartOffset = -1;
+        private final List<StreamReclaimTask> tasks = new ArrayList<>();
+
+        Reclaim(long streamId) {
+            this.streamId = streamId;
+        }
+
+        void merge(StreamReclaimTask task) {
+            newStartOffset = Math.max(newStartOffset, task.newStartOffset);
+            tasks.add(task);
+        }
+
+        void completeSuccess(long offset) {
+            tasks.forEach(task -> task.completeSuccess(offset));
+        }
+
+        void completeFailure(Throwable cause) {
+            tasks.forEach(task -> task.completeFailure(cause));
+        }
+
+        void abort() {
+            tasks.forEach(StreamReclaimTask::abort);
+        }
     }
 
     public static class StreamReclaimTask {
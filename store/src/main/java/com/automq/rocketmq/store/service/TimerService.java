@@ -14,6 +14,7 @@ package com.automq.rocketmq.store.service;
 import com.automq.rocketmq.common.ServiceThread;
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.metrics.StoreMetricsManager;
 import com.automq.rocketmq.store.model.generated.TimerHandlerType;
 import com.automq.rocketmq.store.model.generated.TimerTag;
 import com.automq.rocketmq.store.model.kv.BatchDeleteRequest;
@@ -199,6 +200,7 @@ public class TimerService extends ServiceThread {
         kvService.iterate(timerTagNamespace, null, start, end, (key, value) -> {
             // Fetch the origin message from stream store.
             TimerTag timerTag = TimerTag.getRootAsTimerTag(ByteBuffer.wrap(value));
+            StoreMetricsManager.recordTimerFiringLag(ticker.read() - timerTag.deliveryTimestamp());
             try {
                 timerHandlerMap.getOrDefault(timerTag.handlerType(), DEFAULT_HANDLER).accept(timerTag);
             } catch (Exception e) {
@@ -210,8 +212,15 @@ public class TimerService extends ServiceThread {
                 byte[] identity = new byte[buffer.remaining()];
                 buffer.get(identity);
                 BatchDeleteRequest deleteTagRequest = new BatchDeleteRequest(timerTagNamespace, key);
-                BatchDeleteRequest deleteIndexRequest = new BatchDeleteRequest(timerIndexNamespace, identity);
-                kvService.batch(deleteTagRequest, deleteIndexRequest);
+                // The handler may have enqueued the identity again with a new delivery timestamp, keep its index then.
+                byte[] index = kvService.get(timerIndexNamespace, identity);
+                if (index != null && index.length == Long.SIZE / Byte.SIZE
+                    && ByteBuffer.wrap(index).getLong() != timerTag.deliveryTimestamp()) {
+                    kvService.batch(deleteTagRequest);
+                } else {
+                    BatchDeleteRequest deleteIndexRequest = new BatchDeleteRequest(timerIndexNamespace, identity);
+                    kvService.batch(deleteTagRequest, deleteIndexRequest);
+                }
             } catch (StoreException e) {
                 log.error("Failed to delete timer tag: {}", timerTag, e);
             }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.kv.BatchDeleteRequest;
+import com.automq.rocketmq.store.model.kv.BatchRequest;
+import com.automq.rocketmq.store.service.api.KVService;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sparse index from store timestamps to offsets of data streams.
+ * <p>
+ * A sample of (offset, store timestamp) is taken every {@link StoreConfig#timestampIndexIntervalMessages()} messages
+ * or {@link StoreConfig#timestampIndexIntervalMillis()} milliseconds, whichever comes first, so the number of messages
+ * between two adjacent samples is bounded. Samples are persisted to the KV store and loaded once the stream is opened.
+ * Store timestamps of samples never decrease, so they can be binary searched.
+ */
+public class TimestampIndexService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimestampIndexService.class);
+
+    private final String namespace;
+    private final KVService kvService;
+    private final StoreConfig config;
+    private final ConcurrentMap<Long /*streamId*/, StreamIndex> indexMap = new ConcurrentHashMap<>();
+
+    public TimestampIndexService(String namespace, KVService kvService, StoreConfig config) {
+        this.namespace = namespace;
+        this.kvService = kvService;
+        this.config = config;
+    }
+
+    /**
+     * Offsets bounding the first message stored at or after a timestamp.
+     *
+     * @param lower offset of the last sample stored before the timestamp, or -1 if there is none
+     * @param upper offset of the first sample stored at or after the timestamp, or -1 if there is none
+     */
+    public record Bound(long lower, long upper) {
+    }
+
+    /**
+     * Load persisted samples of the stream, discarding those out of <code>[startOffset, endOffset)</code>.
+     */
+    public void load(long streamId, long startOffset, long endOffset) throws StoreException {
+        StreamIndex index = new StreamIndex();
+        List<BatchRequest> staleRequests = new ArrayList<>();
+        kvService.iterate(namespace, ByteBuffer.allocate(Long.BYTES).putLong(streamId).array(), null, null,
+            (key, value) -> {
+                long offset = ByteBuffer.wrap(key).getLong(Long.BYTES);
+                long timestamp = ByteBuffer.wrap(value).getLong();
+                if (offset < startOffset || offset >= endOffset || !index.add(offset, timestamp)) {
+                    staleRequests.add(new BatchDeleteRequest(namespace, key));
+                }
+            });
+        if (!staleRequests.isEmpty()) {
+            kvService.batch(staleRequests.toArray(new BatchRequest[0]));
+        }
+        indexMap.put(streamId, index);
+        LOGGER.info("Load timestamp index of stream: {}, samples: {}, discarded: {}", streamId, index.size(),
+            staleRequests.size());
+    }
+
+    public void unload(long streamId) {
+        indexMap.remove(streamId);
+    }
+
+    /**
+     * Sample a message appended to the stream if due.
+     *
+     * @return true if the message is sampled
+     */
+    public boolean onAppend(long streamId, long offset, long timestamp) {
+        StreamIndex index = indexMap.get(streamId);
+        if (index == null || timestamp <= 0) {
+            return false;
+        }
+        if (!index.sample(offset, timestamp, config.timestampIndexIntervalMessages(), config.timestampIndexIntervalMillis())) {
+            return false;
+        }
+        try {
+            kvService.put(namespace, key(streamId, offset), ByteBuffer.allocate(Long.BYTES).putLong(timestamp).array());
+        } catch (StoreException e) {
+            // The sample is still served from memory, it is lost only if the stream is reopened.
+            LOGGER.warn("Failed to persist timestamp index of stream: {}, offset: {}", streamId, offset, e);
+        }
+        return true;
+    }
+
+    /**
+     * Drop samples of messages trimmed from the stream.
+     */
+    public void trim(long streamId, long startOffset) {
+        StreamIndex index = indexMap.get(streamId);
+        if (index == null) {
+            return;
+        }
+        long[] trimmed = index.trim(startOffset);
+        if (trimmed.length == 0) {
+            return;
+        }
+        BatchRequest[] requests = new BatchRequest[trimmed.length];
+        for (int i = 0; i < trimmed.length; i++) {
+            requests[i] = new BatchDeleteRequest(namespace, key(streamId, trimmed[i]));
+        }
+        try {
+            kvService.batch(requests);
+        } catch (StoreException e) {
+            LOGGER.warn("Failed to trim timestamp index of stream: {} to offset: {}", streamId, startOffset, e);
+        }
+    }
+
+    public Bound search(long streamId, long timestamp) {
+        StreamIndex index = indexMap.get(streamId);
+        if (index == null) {
+            return new Bound(-1, -1);
+        }
+        return index.search(timestamp);
+    }
+
+    /**
+     * Estimate the store timestamp of a message, interpolating between the samples around it.
+     *
+     * @return estimated store timestamp, or -1 if no sample precedes the message
+     */
+    public long estimateTimestamp(long streamId, long offset) {
+        StreamIndex index = indexMap.get(streamId);
+        if (index == null) {
+            return -1;
+        }
+        return index.estimate(offset);
+    }
+
+    private static byte[] key(long streamId, long offset) {
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(streamId).putLong(offset).array();
+    }
+
+    /**
+     * Samples of a stream, in ascending order of both offsets and timestamps.
+     */
+    static class StreamIndex {
+        private long[] offsets = new long[16];
+        private long[] timestamps = new long[16];
+        private int size;
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Append a sample unconditionally, unless it breaks the ordering.
+         */
+        synchronized boolean add(long offset, long timestamp) {
+            if (size > 0 && (offset <= offsets[size - 1] || timestamp < timestamps[size - 1])) {
+                return false;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            offsets[size] = offset;
+            timestamps[size] = timestamp;
+            size++;
+            return true;
+        }
+
+        /**
+         * Append a sample if enough messages or time have elapsed since the last one.
+         * <p>
+         * Appends may complete out of order, and store timestamps of different producers are not ordered strictly,
+         * such messages are skipped to keep the index sorted and picked up by the next sample.
+         */
+        synchronized boolean sample(long offset, long timestamp, int intervalMessages, long intervalMillis) {
+            if (size > 0 && offset - offsets[size - 1] < intervalMessages
+                && timestamp - timestamps[size - 1] < intervalMillis) {
+                return false;
+            }
+            return add(offset, timestamp);
+        }
+
+        /**
+         * @return offsets of samples dropped
+         */
+        synchronized long[] trim(long startOffset) {
+            int count = 0;
+            while (count < size && offsets[count] < startOffset) {
+                count++;
+            }
+            if (count == 0) {
+                return new long[0];
+            }
+            long[] trimmed = Arrays.copyOf(offsets, count);
+            System.arraycopy(offsets, count, offsets, 0, size - count);
+            System.arraycopy(timestamps, count, timestamps, 0, size - count);
+            size -= count;
+            return trimmed;
+        }
+
+        synchronized Bound search(long timestamp) {
+            // Index of the first sample stored at or after the timestamp
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return new Bound(low > 0 ? offsets[low - 1] : -1, low < size ? offsets[low] : -1);
+        }
+
+        synchronized long estimate(long offset) {
+            // Index of the last sample at or before the offset
+            int low = 0;
+            int high = size - 1;
+            int floor = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (offsets[mid] <= offset) {
+                    floor = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (floor < 0) {
+                return -1;
+            }
+            if (offsets[floor] == offset || floor == size - 1) {
+                return timestamps[floor];
+            }
+            int ceiling = floor + 1;
+            return timestamps[floor] + (timestamps[ceiling] - timestamps[floor]) * (offset - offsets[floor])
+                / (offsets[ceiling] - offsets[floor]);
+        }
+    }
+}
@@ -16,18 +16,19 @@ import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.model.generated.TimerHandlerType;
 import com.automq.rocketmq.store.model.generated.TimerTag;
+import com.automq.rocketmq.store.model.transaction.HalfMessageIndex;
 import com.automq.rocketmq.store.util.SerializeUtil;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import org.apache.rocketmq.logging.org.slf4j.Logger;
-import org.apache.rocketmq.logging.org.slf4j.LoggerFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Schedule status checks of prepared transactions.
+ * <p>
+ * Half messages themselves are kept in the half stream of their queue, the timer service only holds a
+ * {@link HalfMessageIndex} per transaction, keyed by the transaction id and delivered at the next check time.
+ */
 public class TransactionService {
-    private static final Logger log = LoggerFactory.getLogger(TransactionService.class);
-
-    private static final char SPLITERATOR = '@';
-
     private final StoreConfig config;
     private final TimerService timerService;
 
@@ -36,47 +37,48 @@ public class TransactionService {
         this.timerService = timerService;
     }
 
-    public String begin(FlatMessage message) throws StoreException {
-        long duration = Math.max(config.transactionTimeoutMillis(), message.systemProperties().orphanedTransactionRecoverySeconds());
-        long deliveryTimestamp = System.currentTimeMillis() + duration;
-
-        return scheduleNextCheck(deliveryTimestamp, message);
+    /**
+     * Schedule the first check of a transaction whose half message is just appended to the half stream.
+     */
+    public void prepare(String transactionId, HalfMessageIndex index, FlatMessage message) throws StoreException {
+        long duration = Math.max(config.transactionTimeoutMillis(),
+            TimeUnit.SECONDS.toMillis(message.systemProperties().orphanedTransactionRecoverySeconds()));
+        scheduleCheck(System.currentTimeMillis() + duration, transactionId, index);
     }
 
-    public Optional<FlatMessage> commit(String transactionId) throws StoreException {
-        Optional<TimerTag> optional = timerService.get(transactionId.getBytes(StandardCharsets.UTF_8));
-        if (optional.isEmpty()) {
-            return Optional.empty();
-        }
-
-        cancelCheck(transactionId);
-
-        ByteBuffer buffer = optional.get().payloadAsByteBuffer();
-        FlatMessage message = FlatMessage.getRootAsFlatMessage(buffer);
-        return Optional.of(message);
+    /**
+     * Schedule the check of a transaction recovered from the half stream.
+     */
+    public void recover(String transactionId, HalfMessageIndex index) throws StoreException {
+        scheduleCheck(System.currentTimeMillis() + config.transactionCheckInterval(), transactionId, index);
     }
 
-    public void rollback(String transactionId) throws StoreException {
-        cancelCheck(transactionId);
+    public Optional<HalfMessageIndex> lookup(String transactionId) throws StoreException {
+        Optional<TimerTag> optional = timerService.get(transactionId.getBytes(StandardCharsets.UTF_8));
+        return optional.map(timerTag -> SerializeUtil.decodeHalfMessageIndex(timerTag.payloadAsByteBuffer()));
     }
 
-    public boolean scheduleNextCheck(FlatMessage message) throws StoreException {
-        if (message.systemProperties().orphanedTransactionCheckTimes() >= config.transactionCheckMaxTimes()) {
+    /**
+     * Schedule the next check of a transaction being checked now.
+     *
+     * @return false if the transaction has been checked too many times and should be given up
+     */
+    public boolean scheduleNextCheck(String transactionId, HalfMessageIndex index) throws StoreException {
+        if (index.checkTimes() >= config.transactionCheckMaxTimes()) {
             return false;
         }
 
-        long deliveryTimestamp = System.currentTimeMillis() + config.transactionCheckInterval();
-        scheduleNextCheck(deliveryTimestamp, message);
+        scheduleCheck(System.currentTimeMillis() + config.transactionCheckInterval(), transactionId, index.nextCheck());
         return true;
     }
 
-    protected String scheduleNextCheck(long deliveryTimestamp, FlatMessage message) throws StoreException {
-        String transactionId = message.systemProperties().messageId();
-        timerService.enqueue(deliveryTimestamp, transactionId.getBytes(StandardCharsets.UTF_8), TimerHandlerType.TRANSACTION_MESSAGE, SerializeUtil.flatBufferToByteArray(message));
-        return transactionId;
+    public void cancelCheck(String transactionId) throws StoreException {
+        timerService.cancel(transactionId.getBytes(StandardCharsets.UTF_8));
     }
 
-    protected void cancelCheck(String transactionId) throws StoreException {
-        timerService.cancel(transactionId.getBytes(StandardCharsets.UTF_8));
+    private void scheduleCheck(long deliveryTimestamp, String transactionId,
+        HalfMessageIndex index) throws StoreException {
+        timerService.enqueue(deliveryTimestamp, transactionId.getBytes(StandardCharsets.UTF_8),
+            TimerHandlerType.TRANSACTION_MESSAGE, SerializeUtil.encodeHalfMessageIndex(index));
     }
 }
@@ -14,6 +14,7 @@ package com.automq.rocketmq.store.service.api;
 import com.automq.rocketmq.store.api.MessageStateMachine;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
 import java.util.concurrent.CompletableFuture;
@@ -43,6 +44,12 @@ public interface OperationLogService {
      */
     CompletableFuture<LogResult> logResetConsumeOffsetOperation(ResetConsumeOffsetOperation operation);
 
+    /**
+     * Log clear retry messages operation to WAL.
+     * Each queue has its own operation log.
+     */
+    CompletableFuture<LogResult> logClearRetryMessagesOperation(ClearRetryMessagesOperation operation);
+
     /**
      * Recover.
      * Each queue has its own operation log.
@@ -55,6 +62,8 @@ public interface OperationLogService {
         private final long operationOffset;
         // only for pop operation
         private int popTimes = -1;
+        // only for ack, reset consume offset and clear retry messages operations
+        private int deletedCheckPoints;
         public LogResult(long operationOffset) {
             this.operationOffset = operationOffset;
         }
@@ -71,11 +80,20 @@ public interface OperationLogService {
             return popTimes;
         }
 
+        public void setDeletedCheckPoints(int deletedCheckPoints) {
+            this.deletedCheckPoints = deletedCheckPoints;
+        }
+
+        public int getDeletedCheckPoints() {
+            return deletedCheckPoints;
+        }
+
         @Override
         public String toString() {
             return "LogResult{" +
                 "operationOffset=" + operationOffset +
                 ", popTimes=" + popTimes +
+                ", deletedCheckPoints=" + deletedCheckPoints +
                 '}';
         }
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.util;
+
+import com.automq.rocketmq.store.model.generated.ReceiptHandle;
+import java.util.Arrays;
+
+/**
+ * Codec of the compact receipt handle.
+ * <p>
+ * A compact receipt handle is a fixed-layout string: a version prefix followed by fixed-width fields in a URL-safe
+ * radix-64 alphabet, so every field is read at a known position without splitting, base64 decoding or flatbuffers.
+ * <pre>
+ * | '@' | version | consumer group id | topic id | queue id | operation id | retrieve time | invisible time | checksum |
+ * |  1  |    1    |        11         |    11    |    6     |      11      |      11       |       11       |    6     |
+ * </pre>
+ * Receipt handles of the legacy format, a base64 encoded flatbuffers {@link ReceiptHandle}, are still accepted by
+ * {@link #decode(String)}.
+ */
+public final class ReceiptHandleCodec {
+    public static final char PREFIX = '@';
+    public static final char VERSION_1 = '1';
+
+    private static final int LONG_WIDTH = 11;
+    private static final int INT_WIDTH = 6;
+
+    private static final int CONSUMER_GROUP_ID_POS = 2;
+    private static final int TOPIC_ID_POS = CONSUMER_GROUP_ID_POS + LONG_WIDTH;
+    private static final int QUEUE_ID_POS = TOPIC_ID_POS + LONG_WIDTH;
+    private static final int OPERATION_ID_POS = QUEUE_ID_POS + INT_WIDTH;
+    private static final int RETRIEVE_TIME_POS = OPERATION_ID_POS + LONG_WIDTH;
+    private static final int INVISIBLE_TIME_POS = RETRIEVE_TIME_POS + LONG_WIDTH;
+    private static final int CHECKSUM_POS = INVISIBLE_TIME_POS + LONG_WIDTH;
+
+    public static final int LENGTH = CHECKSUM_POS + INT_WIDTH;
+
+    private static final char[] ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private ReceiptHandleCodec() {
+    }
+
+    /**
+     * Decoded receipt handle.
+     */
+    public record Handle(long consumerGroupId, long topicId, int queueId, long operationId, long retrieveTime,
+                         long invisibleTime) {
+    }
+
+    public static String encode(long consumerGroupId, long topicId, int queueId, long operationId,
+        long retrieveTime, long invisibleTime) {
+        char[] chars = new char[LENGTH];
+        chars[0] = PREFIX;
+        chars[1] = VERSION_1;
+        putLong(chars, CONSUMER_GROUP_ID_POS, consumerGroupId);
+        putLong(chars, TOPIC_ID_POS, topicId);
+        putInt(chars, QUEUE_ID_POS, queueId);
+        putLong(chars, OPERATION_ID_POS, operationId);
+        putLong(chars, RETRIEVE_TIME_POS, retrieveTime);
+        putLong(chars, INVISIBLE_TIME_POS, invisibleTime);
+        putInt(chars, CHECKSUM_POS, checksum(consumerGroupId, topicId, queueId, operationId, retrieveTime, invisibleTime));
+        return new String(chars);
+    }
+
+    /**
+     * Check whether <code>[from, from + LENGTH)</code> of the sequence looks like a compact receipt handle of a known
+     * version, the checksum is verified by {@link #verify(CharSequence, int)}.
+     */
+    public static boolean isCompact(CharSequence s, int from) {
+        return s.length() - from >= LENGTH && s.charAt(from) == PREFIX && s.charAt(from + 1) == VERSION_1;
+    }
+
+    /**
+     * Verify the checksum of the compact receipt handle starting at <code>from</code>.
+     *
+     * @throws IllegalArgumentException if it is not a valid compact receipt handle
+     */
+    public static void verify(CharSequence s, int from) {
+        if (!isCompact(s, from)) {
+            throw new IllegalArgumentException("Not a compact receipt handle");
+        }
+        int expected = checksum(consumerGroupId(s, from), topicId(s, from), queueId(s, from), operationId(s, from),
+            retrieveTime(s, from), invisibleTime(s, from));
+        if (getInt(s, from + CHECKSUM_POS) != expected) {
+            throw new IllegalArgumentException("Receipt handle checksum mismatch");
+        }
+    }
+
+    public static long consumerGroupId(CharSequence s, int from) {
+        return getLong(s, from + CONSUMER_GROUP_ID_POS);
+    }
+
+    public static long topicId(CharSequence s, int from) {
+        return getLong(s, from + TOPIC_ID_POS);
+    }
+
+    public static int queueId(CharSequence s, int from) {
+        return getInt(s, from + QUEUE_ID_POS);
+    }
+
+    public static long operationId(CharSequence s, int from) {
+        return getLong(s, from + OPERATION_ID_POS);
+    }
+
+    public static long retrieveTime(CharSequence s, int from) {
+        return getLong(s, from + RETRIEVE_TIME_POS);
+    }
+
+    public static long invisibleTime(CharSequence s, int from) {
+        return getLong(s, from + INVISIBLE_TIME_POS);
+    }
+
+    /**
+     * Decode a receipt handle of either the compact or the legacy format.
+     * <p>
+     * Legacy receipt handles carry no retrieve time and invisible time, both are decoded as 0.
+     *
+     * @throws IllegalArgumentException if the receipt handle is malformed
+     */
+    public static Handle decode(String receiptHandle) {
+        if (receiptHandle.length() > 0 && receiptHandle.charAt(0) == PREFIX) {
+            verify(receiptHandle, 0);
+            return new Handle(consumerGroupId(receiptHandle, 0), topicId(receiptHandle, 0), queueId(receiptHandle, 0),
+                operationId(receiptHandle, 0), retrieveTime(receiptHandle, 0), invisibleTime(receiptHandle, 0));
+        }
+        ReceiptHandle handle = SerializeUtil.decodeLegacyReceiptHandle(receiptHandle);
+        return new Handle(handle.consumerGroupId(), handle.topicId(), handle.queueId(), handle.operationId(), 0, 0);
+    }
+
+    private static void putLong(char[] chars, int pos, long value) {
+        for (int i = pos + LONG_WIDTH - 1; i >= pos; i--) {
+            chars[i] = ALPHABET[(int) (value & 0x3F)];
+            value >>>= 6;
+        }
+    }
+
+    private static void putInt(char[] chars, int pos, int value) {
+        for (int i = pos + INT_WIDTH - 1; i >= pos; i--) {
+            chars[i] = ALPHABET[value & 0x3F];
+            value >>>= 6;
+        }
+    }
+
+    private static long getLong(CharSequence s, int pos) {
+        long value = 0;
+        for (int i = pos; i < pos + LONG_WIDTH; i++) {
+            value = (value << 6) | digit(s.charAt(i));
+        }
+        return value;
+    }
+
+    private static int getInt(CharSequence s, int pos) {
+        int value = 0;
+        for (int i = pos; i < pos + INT_WIDTH; i++) {
+            value = (value << 6) | digit(s.charAt(i));
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        int digit = c < DIGITS.length ? DIGITS[c] : -1;
+        if (digit < 0) {
+            throw new IllegalArgumentException("Illegal character in receipt handle: " + c);
+        }
+        return digit;
+    }
+
+    private static int checksum(long consumerGroupId, long topicId, int queueId, long operationId, long retrieveTime,
+        long invisibleTime) {
+        long hash = VERSION_1;
+        hash = mix(hash ^ consumerGroupId);
+        hash = mix(hash ^ topicId);
+        hash = mix(hash ^ queueId);
+        hash = mix(hash ^ operationId);
+        hash = mix(hash ^ retrieveTime);
+        hash = mix(hash ^ invisibleTime);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long value) {
+        value *= 0x9E3779B97F4A7C15L;
+        return value ^ (value >>> 29);
+    }
+}
@@ -20,10 +20,12 @@ import com.automq.rocketmq.store.model.generated.ReceiptHandle;
 import com.automq.rocketmq.store.model.metadata.ConsumerGroupMetadata;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.Operation;
 import com.automq.rocketmq.store.model.operation.OperationSnapshot;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
+import com.automq.rocketmq.store.model.transaction.HalfMessageIndex;
 import com.automq.stream.s3.wal.util.WALUtil;
 import com.google.flatbuffers.FlatBufferBuilder;
 import com.google.flatbuffers.Table;
@@ -109,6 +111,21 @@ public class SerializeUtil {
         return buffer.array();
     }
 
+    // <topicId><queueId><offset><checkTimes>
+    public static byte[] encodeHalfMessageIndex(HalfMessageIndex index) {
+        ByteBuffer buffer = ByteBuffer.allocate(24);
+        buffer.putLong(index.topicId());
+        buffer.putInt(index.queueId());
+        buffer.putLong(index.offset());
+        buffer.putInt(index.checkTimes());
+        return buffer.array();
+    }
+
+    public static HalfMessageIndex decodeHalfMessageIndex(ByteBuffer buffer) {
+        return new HalfMessageIndex(buffer.getLong(buffer.position()), buffer.getInt(buffer.position() + 8),
+            buffer.getLong(buffer.position() + 12), buffer.getInt(buffer.position() + 20));
+    }
+
     public static CheckPoint decodeCheckPoint(ByteBuffer buffer) {
         return CheckPoint.getRootAsCheckPoint(buffer);
     }
@@ -129,7 +146,21 @@ public class SerializeUtil {
         return builder.sizedByteArray();
     }
 
+    /**
+     * Decode a receipt handle of either the compact or the legacy format into a flatbuffers {@link ReceiptHandle}.
+     * <p>
+     * Hot paths should use {@link ReceiptHandleCodec#decode(String)} instead.
+     */
     public static ReceiptHandle decodeReceiptHandle(String receiptHandle) {
+        if (ReceiptHandleCodec.isCompact(receiptHandle, 0)) {
+            ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
+            byte[] bytes = buildReceiptHandle(handle.consumerGroupId(), handle.topicId(), handle.queueId(), handle.operationId());
+            return ReceiptHandle.getRootAsReceiptHandle(ByteBuffer.wrap(bytes));
+        }
+        return decodeLegacyReceiptHandle(receiptHandle);
+    }
+
+    static ReceiptHandle decodeLegacyReceiptHandle(String receiptHandle) {
         byte[] bytes = Base64.getDecoder().decode(receiptHandle);
         return ReceiptHandle.getRootAsReceiptHandle(ByteBuffer.wrap(bytes));
     }
@@ -182,6 +213,12 @@ public class SerializeUtil {
                     operationStreamId, snapshotStreamId, stateMachine, resetConsumeOffsetOperation.consumerGroupId(), resetConsumeOffsetOperation.offset(),
                     resetConsumeOffsetOperation.operationTimestamp());
             }
+            case com.automq.rocketmq.store.model.generated.Operation.ClearRetryMessagesOperation -> {
+                com.automq.rocketmq.store.model.generated.ClearRetryMessagesOperation clearRetryMessagesOperation = (com.automq.rocketmq.store.model.generated.ClearRetryMessagesOperation) operationLogItem.operation(new com.automq.rocketmq.store.model.generated.ClearRetryMessagesOperation());
+                return new ClearRetryMessagesOperation(clearRetryMessagesOperation.topicId(), clearRetryMessagesOperation.queueId(),
+                    operationStreamId, snapshotStreamId, stateMachine, clearRetryMessagesOperation.consumerGroupId(), clearRetryMessagesOperation.offset(),
+                    clearRetryMessagesOperation.operationTimestamp());
+            }
             default ->
                 throw new StoreException(StoreErrorCode.ILLEGAL_ARGUMENT, "Unexpected operation type: " + operationLogItem.operationType());
         }
@@ -207,7 +244,10 @@ public class SerializeUtil {
             checkPointOffsets[i] = checkPointOffset;
         }
         int checkPointVectorOffset = com.automq.rocketmq.store.model.generated.OperationSnapshot.createCheckPointsVector(builder, checkPointOffsets);
-        int root = com.automq.rocketmq.store.model.generated.OperationSnapshot.createOperationSnapshot(builder, snapshot.getSnapshotEndOffset(), checkPointVectorOffset, consumerGroupMetadataVectorOffset);
+        long[] removedOperationIds = snapshot.getRemovedOperationIds().stream().mapToLong(Long::longValue).toArray();
+        int removedOperationIdVectorOffset = com.automq.rocketmq.store.model.generated.OperationSnapshot.createRemovedOperationIdsVector(builder, removedOperationIds);
+        int root = com.automq.rocketmq.store.model.generated.OperationSnapshot.createOperationSnapshot(builder, snapshot.getSnapshotEndOffset(), checkPointVectorOffset, consumerGroupMetadataVectorOffset,
+            snapshot.isDelta(), snapshot.getBaseOffset(), removedOperationIdVectorOffset);
         builder.finish(root);
         return prependChecksum(builder.sizedByteArray());
     }
@@ -228,7 +268,15 @@ public class SerializeUtil {
         for (int i = 0; i < snapshot.checkPointsLength(); i++) {
             checkPointList.add(snapshot.checkPoints(i));
         }
-        return new OperationSnapshot(snapshot.snapshotEndOffset(), consumerGroupMetadataList, checkPointList);
+        List<Long> removedOperationIds = new ArrayList<>(snapshot.removedOperationIdsLength());
+        for (int i = 0; i < snapshot.removedOperationIdsLength(); i++) {
+            removedOperationIds.add(snapshot.removedOperationIds(i));
+        }
+        OperationSnapshot operationSnapshot = new OperationSnapshot(snapshot.snapshotEndOffset(), consumerGroupMetadataList, checkPointList);
+        operationSnapshot.setDelta(snapshot.delta());
+        operationSnapshot.setBaseOffset(snapshot.baseOffset());
+        operationSnapshot.setRemovedOperationIds(removedOperationIds);
+        return operationSnapshot;
     }
 
     public static byte[] encodeAckOperation(AckOperation ackOperation) {
@@ -262,6 +310,14 @@ public class SerializeUtil {
         return prependChecksum(builder.sizedByteArray());
     }
 
+    public static byte[] encodeClearRetryMessagesOperation(ClearRetryMessagesOperation clearRetryMessagesOperation) {
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        int operation = com.automq.rocketmq.store.model.generated.ClearRetryMessagesOperation.createClearRetryMessagesOperation(builder, clearRetryMessagesOperation.consumerGroupId(), clearRetryMessagesOperation.topicId(), clearRetryMessagesOperation.queueId(), clearRetryMessagesOperation.offset(), clearRetryMessagesOperation.operationTimestamp());
+        int root = OperationLogItem.createOperationLogItem(builder, com.automq.rocketmq.store.model.generated.Operation.ClearRetryMessagesOperation, operation);
+        builder.finish(root);
+        return prependChecksum(builder.sizedByteArray());
+    }
+
     public static byte[] prependChecksum(byte[] data) {
         int crc32 = WALUtil.crc32(Unpooled.wrappedBuffer(data));
         ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
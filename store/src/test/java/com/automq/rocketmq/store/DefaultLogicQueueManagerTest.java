@@ -21,10 +21,14 @@ import com.automq.rocketmq.store.mock.MockStoreMetadataService;
 import com.automq.rocketmq.store.mock.MockStreamStore;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.queue.DefaultLogicQueueManager;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.RocksDBKVService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
 import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
+import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -52,11 +56,15 @@ class DefaultLogicQueueManagerTest {
         kvService = new RocksDBKVService(PATH);
         metadataService = new MockStoreMetadataService();
         streamStore = new MockStreamStore();
-        InflightService inflightService = new InflightService();
+        InflightService inflightService = new InflightService(new StoreConfig());
         operationLogService = new MockOperationLogService();
         streamReclaimService = new StreamReclaimService(streamStore);
         TimerService timerService = new TimerService(MessageStoreTest.KV_NAMESPACE_TIMER_TAG, kvService);
-        topicQueueManager = new DefaultLogicQueueManager(new StoreConfig(), streamStore, kvService, timerService, metadataService, operationLogService, inflightService, streamReclaimService);
+        TimestampIndexService timestampIndexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, new StoreConfig());
+        topicQueueManager = new DefaultLogicQueueManager(new StoreConfig(), streamStore, kvService, timerService, metadataService, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService,
+            new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService, new StoreConfig()),
+            new TransactionService(new StoreConfig(), timerService), new ConsumerLagService(timestampIndexService));
     }
 
     @AfterEach
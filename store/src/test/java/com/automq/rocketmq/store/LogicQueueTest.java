@@ -11,10 +11,14 @@
 
 package com.automq.rocketmq.store;
 
+import apache.rocketmq.controller.v1.AcceptTypes;
+import apache.rocketmq.controller.v1.MessageType;
 import apache.rocketmq.controller.v1.StreamMetadata;
+import apache.rocketmq.controller.v1.Topic;
 import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.store.api.LogicQueue;
 import com.automq.rocketmq.store.api.MessageStateMachine;
@@ -25,22 +29,31 @@ import com.automq.rocketmq.store.mock.MockStreamStore;
 import com.automq.rocketmq.store.model.StoreContext;
 import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.generated.ReceiptHandle;
+import com.automq.rocketmq.store.model.generated.TimerHandlerType;
 import com.automq.rocketmq.store.model.message.AckResult;
+import com.automq.rocketmq.store.model.message.ClearRetryMessagesResult;
 import com.automq.rocketmq.store.model.message.Filter;
 import com.automq.rocketmq.store.model.message.PopResult;
+import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
 import com.automq.rocketmq.store.model.message.TagFilter;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.queue.DefaultLogicQueueStateMachine;
 import com.automq.rocketmq.store.queue.StreamLogicQueue;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.RocksDBKVService;
 import com.automq.rocketmq.store.service.SnapshotService;
 import com.automq.rocketmq.store.service.StreamOperationLogService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
 import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
+import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
 import com.automq.rocketmq.store.service.api.OperationLogService;
 import com.automq.rocketmq.store.util.SerializeUtil;
+import com.google.flatbuffers.FlatBufferBuilder;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -76,6 +89,11 @@ public class LogicQueueTest {
     private InflightService inflightService;
     private OperationLogService operationLogService;
     private StreamReclaimService streamReclaimService;
+    private TimestampIndexService timestampIndexService;
+    private MessageIndexService messageIndexService;
+    private TimerService timerService;
+    private TransactionService transactionService;
+    private ConsumerLagService consumerLagService;
     private LogicQueue logicQueue;
 
     @BeforeEach
@@ -83,14 +101,19 @@ public class LogicQueueTest {
         kvService = new RocksDBKVService(PATH);
         metadataService = new MockStoreMetadataService();
         streamStore = new MockStreamStore();
-        TimerService timerService = new TimerService(MessageStoreTest.KV_NAMESPACE_TIMER_TAG, kvService);
+        timerService = new TimerService(MessageStoreTest.KV_NAMESPACE_TIMER_TAG, kvService);
         stateMachine = Mockito.spy(new DefaultLogicQueueStateMachine(TOPIC_ID, QUEUE_ID, kvService, timerService));
-        inflightService = new InflightService();
-        SnapshotService snapshotService = new SnapshotService(streamStore, kvService);
+        inflightService = new InflightService(new StoreConfig());
+        SnapshotService snapshotService = new SnapshotService(streamStore, kvService, new StoreConfig());
         operationLogService = new StreamOperationLogService(streamStore, snapshotService, new StoreConfig());
         streamReclaimService = new StreamReclaimService(streamStore);
+        timestampIndexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, new StoreConfig());
+        messageIndexService = new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService, new StoreConfig());
+        transactionService = new TransactionService(new StoreConfig(), timerService);
+        consumerLagService = new ConsumerLagService(timestampIndexService);
         logicQueue = new StreamLogicQueue(new StoreConfig(), TOPIC_ID, QUEUE_ID,
-            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService);
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
         streamReclaimService.start();
         logicQueue.open().join();
     }
@@ -117,6 +140,94 @@ public class LogicQueueTest {
         assertEquals(message.payloadAsByteBuffer(), messageExt.message().payloadAsByteBuffer());
     }
 
+    @Test
+    void putHalf() throws StoreException {
+        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, timerTag -> {
+        });
+        long halfStreamId = metadataService.halfStreamOf(TOPIC_ID, QUEUE_ID).join().getStreamId();
+
+        List<PutResult> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+            results.add(logicQueue.putHalf(StoreContext.EMPTY, message).join());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PutResult.Status.PUT_TRANSACTION_PREPARED, results.get(i).status());
+            assertEquals(i, results.get(i).offset());
+        }
+        // Half messages are invisible to consumers
+        assertEquals(PopResult.Status.END_OF_QUEUE, logicQueue.popNormal(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 1, 100).join().status());
+        assertTrue(transactionService.lookup(results.get(0).transactionId()).isPresent());
+
+        FlatMessage half = logicQueue.getHalf(1).join();
+        assertEquals(TOPIC_ID, half.topicId());
+        assertEquals("TagA", half.tag());
+
+        // The half stream is trimmed up to the earliest unresolved half message
+        logicQueue.resolveHalf(1).join();
+        assertFalse(logicQueue.isHalfPending(1));
+        assertEquals(0, streamStore.startOffset(halfStreamId));
+        logicQueue.resolveHalf(0).join();
+        assertEquals(2, streamStore.startOffset(halfStreamId));
+        // Resolutions are appended at offset 3, 4 and 5, and trimmed along with the last half message
+        logicQueue.resolveHalf(2).join();
+        assertEquals(6, streamStore.startOffset(halfStreamId));
+    }
+
+    @Test
+    void claimHalf() throws StoreException {
+        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, timerTag -> {
+        });
+        FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+        long offset = logicQueue.putHalf(StoreContext.EMPTY, message).join().offset();
+
+        // Claimed by one caller only until released
+        assertTrue(logicQueue.claimHalf(offset));
+        assertFalse(logicQueue.claimHalf(offset));
+        logicQueue.releaseHalf(offset);
+        assertTrue(logicQueue.claimHalf(offset));
+
+        // A resolved half message could not be claimed any more
+        logicQueue.resolveHalf(offset).join();
+        assertFalse(logicQueue.claimHalf(offset));
+    }
+
+    @Test
+    void recoverHalf() throws StoreException {
+        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, timerTag -> {
+        });
+
+        List<PutResult> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+            results.add(logicQueue.putHalf(StoreContext.EMPTY, message).join());
+        }
+        // Resolved half messages behind the pending one at offset 0 are kept in the half stream
+        logicQueue.resolveHalf(1).join();
+        logicQueue.resolveHalf(3).join();
+        logicQueue.close().join();
+
+        StoreMetadataService transactionMetadataService = Mockito.spy(metadataService);
+        Topic topic = Topic.newBuilder()
+            .setTopicId(TOPIC_ID)
+            .setName("topic")
+            .setAcceptTypes(AcceptTypes.newBuilder().addTypes(MessageType.TRANSACTION).build())
+            .build();
+        Mockito.doReturn(CompletableFuture.completedFuture(topic)).when(transactionMetadataService).topicOf(TOPIC_ID);
+        logicQueue = new StreamLogicQueue(new StoreConfig(), TOPIC_ID, QUEUE_ID,
+            transactionMetadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
+        logicQueue.open().join();
+
+        // Only unresolved half messages are recovered and checked again
+        assertTrue(logicQueue.isHalfPending(0));
+        assertFalse(logicQueue.isHalfPending(1));
+        assertTrue(logicQueue.isHalfPending(2));
+        assertFalse(logicQueue.isHalfPending(3));
+        assertTrue(transactionService.lookup(results.get(0).transactionId()).isPresent());
+        assertTrue(transactionService.lookup(results.get(2).transactionId()).isPresent());
+    }
+
     @Test
     void pop_normal() throws StoreException {
 
@@ -165,6 +276,46 @@ public class LogicQueueTest {
         assertEquals(5, stateMachine.consumeOffset(CONSUMER_GROUP_ID));
     }
 
+    @Test
+    void pop_inflightQuotaExceeded() {
+        logicQueue.close().join();
+        StoreConfig config = new StoreConfig();
+        config.setMaxInflightMessagesPerQueue(2);
+        inflightService = new InflightService(config);
+        logicQueue = new StreamLogicQueue(config, TOPIC_ID, QUEUE_ID,
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
+        logicQueue.open().join();
+
+        for (int i = 0; i < 5; i++) {
+            FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+            logicQueue.put(StoreContext.EMPTY, message).join();
+        }
+        PopResult popResult = logicQueue.popNormal(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100000).join();
+        assertEquals(PopResult.Status.FOUND, popResult.status());
+        String receiptHandle = popResult.messageList().get(0).receiptHandle().get();
+
+        popResult = logicQueue.popNormal(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100000).join();
+        assertEquals(PopResult.Status.INFLIGHT_QUOTA_EXCEEDED, popResult.status());
+        assertTrue(popResult.messageList().isEmpty());
+
+        // Inflight messages are counted again after reopening the queue
+        logicQueue.close().join();
+        logicQueue = new StreamLogicQueue(config, TOPIC_ID, QUEUE_ID,
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
+        logicQueue.open().join();
+        assertEquals(2, logicQueue.getInflightStats(CONSUMER_GROUP_ID));
+        popResult = logicQueue.popNormal(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100000).join();
+        assertEquals(PopResult.Status.INFLIGHT_QUOTA_EXCEEDED, popResult.status());
+
+        // Acking frees the quota
+        assertEquals(AckResult.Status.SUCCESS, logicQueue.ack(receiptHandle).join().status());
+        assertEquals(1, logicQueue.getInflightStats(CONSUMER_GROUP_ID));
+        popResult = logicQueue.popNormal(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100000).join();
+        assertEquals(PopResult.Status.FOUND, popResult.status());
+    }
+
     @Test
     void pop_order() throws StoreException {
         // 1. append 5 messages
@@ -642,6 +793,53 @@ public class LogicQueueTest {
         assertEquals(3, streamStore.startOffset(retryStream.getStreamId()));
     }
 
+    @Test
+    void clear_retry_messages() throws StoreException {
+        StreamMetadata retryStream = metadataService.retryStreamOf(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID).join();
+        // 1. append 5 messages to retry queue
+        for (int i = 0; i < 5; i++) {
+            FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+            logicQueue.putRetry(StoreContext.EMPTY, CONSUMER_GROUP_ID, message);
+        }
+
+        // 2. pop 2 messages
+        PopResult popResult = logicQueue.popRetry(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100).join();
+        assertEquals(PopResult.Status.FOUND, popResult.status());
+        assertEquals(2, popResult.messageList().size());
+        assertEquals(2, logicQueue.getInflightStats(CONSUMER_GROUP_ID));
+
+        // 3. clear retry messages, those in flight are no longer counted as they can never be acked
+        ClearRetryMessagesResult clearResult = logicQueue.clearRetryMessages(CONSUMER_GROUP_ID).join();
+        assertEquals(ClearRetryMessagesResult.Status.SUCCESS, clearResult.status());
+        assertEquals(0, logicQueue.getInflightStats(CONSUMER_GROUP_ID));
+        assertEquals(5, stateMachine.retryConsumeOffset(CONSUMER_GROUP_ID));
+        assertEquals(5, stateMachine.retryAckOffset(CONSUMER_GROUP_ID));
+        assertEquals(5, streamStore.startOffset(retryStream.getStreamId()));
+
+        // Check points of retry messages in flight are dropped
+        List<CheckPoint> allCheckPointList = new ArrayList<>();
+        kvService.iterate(MessageStoreImpl.KV_NAMESPACE_CHECK_POINT, (key, value) ->
+            allCheckPointList.add(CheckPoint.getRootAsCheckPoint(ByteBuffer.wrap(value))));
+        assertTrue(allCheckPointList.isEmpty());
+
+        // 4. retry messages appended later are still delivered
+        FlatMessage message = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA"));
+        logicQueue.putRetry(StoreContext.EMPTY, CONSUMER_GROUP_ID, message).join();
+        popResult = logicQueue.popRetry(StoreContext.EMPTY, CONSUMER_GROUP_ID, Filter.DEFAULT_FILTER, 2, 100).join();
+        assertEquals(PopResult.Status.FOUND, popResult.status());
+        assertEquals(1, popResult.messageList().size());
+        assertEquals(5, popResult.messageList().get(0).offset());
+
+        // 5. replaying the clear again only drops check points of retry messages before its offset
+        stateMachine.replayClearRetryMessagesOperation(100, new ClearRetryMessagesOperation(TOPIC_ID, QUEUE_ID,
+            OP_STREAM_ID, SNAPSHOT_STREAM_ID, stateMachine, CONSUMER_GROUP_ID, 5, System.currentTimeMillis()));
+        allCheckPointList.clear();
+        kvService.iterate(MessageStoreImpl.KV_NAMESPACE_CHECK_POINT, (key, value) ->
+            allCheckPointList.add(CheckPoint.getRootAsCheckPoint(ByteBuffer.wrap(value))));
+        assertEquals(1, allCheckPointList.size());
+        assertEquals(5, allCheckPointList.get(0).messageOffset());
+    }
+
     @Test
     void open_close() {
         // 1. append 5 messages
@@ -674,7 +872,8 @@ public class LogicQueueTest {
 
         // 6. open again
         logicQueue = new StreamLogicQueue(new StoreConfig(), TOPIC_ID, QUEUE_ID,
-            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService);
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
         logicQueue.open().join();
 
         // 7. check ck exist
@@ -727,7 +926,8 @@ public class LogicQueueTest {
             return CompletableFuture.completedFuture(null);
         }).when(stateMachine).clear();
         logicQueue = new StreamLogicQueue(new StoreConfig(), TOPIC_ID, QUEUE_ID,
-            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService);
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
         logicQueue.open().join();
 
         // 5. check ck exist
@@ -764,9 +964,10 @@ public class LogicQueueTest {
         assertEquals(3, logicQueue.getConsumeOffset(CONSUMER_GROUP_ID));
         assertEquals(1, logicQueue.getAckOffset(CONSUMER_GROUP_ID));
 
-        // 4. reset offset to 2
+        // 4. reset offset to 2, messages in flight are no longer counted
         ResetConsumeOffsetResult resetConsumeOffsetResult = logicQueue.resetConsumeOffset(CONSUMER_GROUP_ID, 2).join();
         assertEquals(ResetConsumeOffsetResult.Status.SUCCESS, resetConsumeOffsetResult.status());
+        assertEquals(0, logicQueue.getInflightStats(CONSUMER_GROUP_ID));
         assertEquals(2, logicQueue.getAckOffset(CONSUMER_GROUP_ID));
         assertEquals(2, logicQueue.getConsumeOffset(CONSUMER_GROUP_ID));
 
@@ -827,4 +1028,47 @@ public class LogicQueueTest {
         }
         return receiptHandleList;
     }
+
+    @Test
+    void search_offset() {
+        logicQueue.close().join();
+        StoreConfig config = new StoreConfig();
+        config.setTimestampIndexIntervalMessages(4);
+        timestampIndexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, config);
+        logicQueue = new StreamLogicQueue(config, TOPIC_ID, QUEUE_ID,
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, consumerLagService);
+        logicQueue.open().join();
+
+        // Message at offset i is stored at BASE + 10 * i, every 4th of which is sampled by the timestamp index
+        long base = 1_000_000;
+        for (int i = 0; i < 20; i++) {
+            logicQueue.put(StoreContext.EMPTY, buildMessageStoredAt(base + 10 * i)).join();
+        }
+
+        // Before the first message
+        assertEquals(0, logicQueue.searchOffset(base - 1).join());
+        // At a sample and between samples
+        assertEquals(4, logicQueue.searchOffset(base + 40).join());
+        assertEquals(6, logicQueue.searchOffset(base + 55).join());
+        assertEquals(7, logicQueue.searchOffset(base + 70).join());
+        // After the last message
+        assertEquals(20, logicQueue.searchOffset(base + 1000).join());
+
+        // Trimmed messages are skipped
+        long dataStreamId = metadataService.dataStreamOf(TOPIC_ID, QUEUE_ID).join().getStreamId();
+        streamStore.trim(dataStreamId, 10).join();
+        assertEquals(10, logicQueue.searchOffset(base - 1).join());
+        assertEquals(10, logicQueue.searchOffset(base + 55).join());
+        assertEquals(13, logicQueue.searchOffset(base + 125).join());
+        assertEquals(20, logicQueue.searchOffset(base + 1000).join());
+    }
+
+    private static FlatMessage buildMessageStoredAt(long storeTimestamp) {
+        FlatMessageT messageT = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA")).unpack();
+        messageT.getSystemProperties().setStoreTimestamp(storeTimestamp);
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        builder.finish(FlatMessage.pack(builder, messageT));
+        return FlatMessage.getRootAsFlatMessage(builder.dataBuffer());
+    }
 }
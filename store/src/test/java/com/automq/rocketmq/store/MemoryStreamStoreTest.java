@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store;
+
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.stream.SingleRecord;
+import com.automq.stream.api.FetchResult;
+import com.automq.stream.api.RecordBatchWithContext;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryStreamStoreTest {
+    private static final long STREAM_ID = 1;
+
+    @Test
+    void appendFetchAndTrim() {
+        MemoryStreamStore streamStore = new MemoryStreamStore(0, 0, 100);
+        assertThrows(IllegalStateException.class, () -> append(streamStore, 10));
+
+        streamStore.open(STREAM_ID, 0).join();
+        assertTrue(streamStore.isOpened(STREAM_ID));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, append(streamStore, 20));
+        }
+        assertEquals(5, streamStore.confirmOffset(STREAM_ID));
+        assertEquals(100, streamStore.usedBytes());
+
+        // Appends fail once the byte budget is exhausted
+        CompletionException exception = assertThrows(CompletionException.class, () -> append(streamStore, 1));
+        assertInstanceOf(StoreException.class, exception.getCause());
+
+        List<RecordBatchWithContext> records = fetch(streamStore, 1, 2);
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).baseOffset());
+        assertEquals(20, records.get(0).rawPayload().remaining());
+
+        streamStore.trim(STREAM_ID, 3).join();
+        assertEquals(3, streamStore.startOffset(STREAM_ID));
+        assertEquals(40, streamStore.usedBytes());
+        assertEquals(3, fetch(streamStore, 0, 10).get(0).baseOffset());
+        assertEquals(5, append(streamStore, 20));
+
+        // Records survive closing the stream
+        streamStore.close(List.of(STREAM_ID)).join();
+        assertFalse(streamStore.isOpened(STREAM_ID));
+        streamStore.open(STREAM_ID, 1).join();
+        assertEquals(6, streamStore.nextOffset(STREAM_ID));
+        assertEquals(3, fetch(streamStore, 3, 10).size());
+    }
+
+    @Test
+    void injectLatency() {
+        MemoryStreamStore streamStore = new MemoryStreamStore(2000, 2000, Long.MAX_VALUE);
+        streamStore.open(STREAM_ID, 0).join();
+
+        long start = System.nanoTime();
+        append(streamStore, 10);
+        assertEquals(1, fetch(streamStore, 0, 1).size());
+        assertTrue(System.nanoTime() - start >= 4_000_000);
+    }
+
+    private static long append(MemoryStreamStore streamStore, int size) {
+        SingleRecord record = new SingleRecord(ByteBuffer.allocate(size));
+        return streamStore.append(StoreContext.EMPTY, STREAM_ID, record).join().baseOffset();
+    }
+
+    private static List<RecordBatchWithContext> fetch(MemoryStreamStore streamStore, long offset, int count) {
+        FetchResult result = streamStore.fetch(StoreContext.EMPTY, STREAM_ID, offset, count).join();
+        return result.recordBatchList();
+    }
+}
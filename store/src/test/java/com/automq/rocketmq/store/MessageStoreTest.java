@@ -15,6 +15,7 @@ import apache.rocketmq.controller.v1.StreamMetadata;
 import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
 import com.automq.rocketmq.store.api.DeadLetterSender;
 import com.automq.rocketmq.store.api.LogicQueue;
@@ -30,9 +31,13 @@ import com.automq.rocketmq.store.model.message.AckResult;
 import com.automq.rocketmq.store.model.message.ChangeInvisibleDurationResult;
 import com.automq.rocketmq.store.model.message.Filter;
 import com.automq.rocketmq.store.model.message.PopResult;
+import com.automq.rocketmq.store.model.message.PutResult;
 import com.automq.rocketmq.store.model.message.ResetConsumeOffsetResult;
+import com.automq.rocketmq.store.model.transaction.TransactionResolution;
 import com.automq.rocketmq.store.queue.DefaultLogicQueueManager;
+import com.automq.rocketmq.store.service.ConsumerLagService;
 import com.automq.rocketmq.store.service.InflightService;
+import com.automq.rocketmq.store.service.MessageIndexService;
 import com.automq.rocketmq.store.service.MessageArrivalNotificationService;
 import com.automq.rocketmq.store.service.ReviveService;
 import com.automq.rocketmq.store.service.RocksDBKVService;
@@ -40,10 +45,12 @@ import com.automq.rocketmq.store.service.SnapshotService;
 import com.automq.rocketmq.store.service.StreamOperationLogService;
 import com.automq.rocketmq.store.service.StreamReclaimService;
 import com.automq.rocketmq.store.service.TimerService;
+import com.automq.rocketmq.store.service.TimestampIndexService;
 import com.automq.rocketmq.store.service.TransactionService;
 import com.automq.rocketmq.store.service.api.KVService;
 import com.automq.rocketmq.store.service.api.OperationLogService;
 import com.automq.stream.s3.operator.MemoryS3Operator;
+import com.google.flatbuffers.FlatBufferBuilder;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -89,24 +96,27 @@ public class MessageStoreTest {
         kvService = Mockito.spy(new RocksDBKVService(PATH));
         metadataService = new MockStoreMetadataService();
         streamStore = new MockStreamStore();
-        InflightService inflightService = new InflightService();
+        InflightService inflightService = new InflightService(new StoreConfig());
         config = new StoreConfig();
-        SnapshotService snapshotService = new SnapshotService(streamStore, kvService);
+        SnapshotService snapshotService = new SnapshotService(streamStore, kvService, config);
         OperationLogService operationLogService = new StreamOperationLogService(streamStore, snapshotService, config);
         StreamReclaimService streamReclaimService = new StreamReclaimService(streamStore);
         TimerService timerService = new TimerService(KV_NAMESPACE_TIMER_TAG, kvService);
-        logicQueueManager = new DefaultLogicQueueManager(config, streamStore, kvService, timerService, metadataService, operationLogService, inflightService, streamReclaimService);
+        MessageIndexService messageIndexService = new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService, config);
+        TransactionService transactionService = new TransactionService(config, timerService);
+        TimestampIndexService timestampIndexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, config);
+        logicQueueManager = new DefaultLogicQueueManager(config, streamStore, kvService, timerService, metadataService, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService, messageIndexService, transactionService, new ConsumerLagService(timestampIndexService));
         DeadLetterSender deadLetterSender = Mockito.mock(DeadLetterSender.class);
         Mockito.doReturn(CompletableFuture.completedFuture(null))
             .when(deadLetterSender).send(Mockito.any(), Mockito.anyLong(), Mockito.any(FlatMessage.class));
         MessageArrivalNotificationService messageArrivalNotificationService = new MessageArrivalNotificationService();
         reviveService = new ReviveService(KV_NAMESPACE_CHECK_POINT, kvService, timerService, metadataService, messageArrivalNotificationService,
             logicQueueManager, deadLetterSender);
-        TransactionService transactionService = new TransactionService(config, timerService);
         S3ObjectOperator operator = new S3ObjectOperatorImpl(new MemoryS3Operator());
         messageStore = new MessageStoreImpl(config, streamStore, metadataService, kvService, timerService,
             inflightService, snapshotService, logicQueueManager, reviveService, operator,
-            messageArrivalNotificationService, transactionService);
+            messageArrivalNotificationService, transactionService, messageIndexService);
         messageStore.start();
     }
 
@@ -615,6 +625,81 @@ public class MessageStoreTest {
         assertFalse(verifyStatesExist());
     }
 
+    @Test
+    public void endTransaction_commit() throws StoreException {
+        messageStore.registerTransactionCheckHandler(check -> {
+        });
+        PutResult putResult = messageStore.put(StoreContext.EMPTY, buildHalfMessage("tx-commit")).join();
+        assertEquals(PutResult.Status.PUT_TRANSACTION_PREPARED, putResult.status());
+        LogicQueue logicQueue = logicQueueManager.getOrCreate(StoreContext.EMPTY, TOPIC_ID, QUEUE_ID).join();
+
+        Optional<FlatMessage> optional = messageStore.endTransaction("tx-commit", TransactionResolution.COMMIT).join();
+        assertTrue(optional.isPresent());
+        assertFalse(optional.get().systemProperties().preparedTransactionMark());
+        // Pending until the committed message is put and the transaction is resolved
+        assertTrue(logicQueue.isHalfPending(putResult.offset()));
+
+        messageStore.resolveTransaction("tx-commit").join();
+        assertFalse(logicQueue.isHalfPending(putResult.offset()));
+        assertTrue(messageStore.endTransaction("tx-commit", TransactionResolution.COMMIT).join().isEmpty());
+    }
+
+    @Test
+    public void endTransaction_commitWithFailedPut() throws StoreException {
+        messageStore.registerTransactionCheckHandler(check -> {
+        });
+        PutResult putResult = messageStore.put(StoreContext.EMPTY, buildHalfMessage("tx-failed")).join();
+        LogicQueue logicQueue = logicQueueManager.getOrCreate(StoreContext.EMPTY, TOPIC_ID, QUEUE_ID).join();
+
+        // The put of the committed message fails, so the transaction is released rather than resolved by the caller
+        assertTrue(messageStore.endTransaction("tx-failed", TransactionResolution.COMMIT).join().isPresent());
+        messageStore.releaseTransaction("tx-failed").join();
+
+        // The half message is kept, and the transaction could be committed again
+        assertTrue(logicQueue.isHalfPending(putResult.offset()));
+        assertTrue(messageStore.endTransaction("tx-failed", TransactionResolution.COMMIT).join().isPresent());
+    }
+
+    @Test
+    public void endTransaction_retriedCommit() throws StoreException {
+        messageStore.registerTransactionCheckHandler(check -> {
+        });
+        PutResult putResult = messageStore.put(StoreContext.EMPTY, buildHalfMessage("tx-retried")).join();
+        LogicQueue logicQueue = logicQueueManager.getOrCreate(StoreContext.EMPTY, TOPIC_ID, QUEUE_ID).join();
+
+        assertTrue(messageStore.endTransaction("tx-retried", TransactionResolution.COMMIT).join().isPresent());
+
+        // The transaction is claimed by the first commit, a retried commit or a rollback has nothing to do
+        assertTrue(messageStore.endTransaction("tx-retried", TransactionResolution.COMMIT).join().isEmpty());
+        assertTrue(messageStore.endTransaction("tx-retried", TransactionResolution.ROLLBACK).join().isEmpty());
+        assertTrue(logicQueue.isHalfPending(putResult.offset()));
+
+        messageStore.resolveTransaction("tx-retried").join();
+        assertFalse(logicQueue.isHalfPending(putResult.offset()));
+        assertTrue(messageStore.endTransaction("tx-retried", TransactionResolution.COMMIT).join().isEmpty());
+    }
+
+    @Test
+    public void endTransaction_rollback() throws StoreException {
+        messageStore.registerTransactionCheckHandler(check -> {
+        });
+        PutResult putResult = messageStore.put(StoreContext.EMPTY, buildHalfMessage("tx-rollback")).join();
+        LogicQueue logicQueue = logicQueueManager.getOrCreate(StoreContext.EMPTY, TOPIC_ID, QUEUE_ID).join();
+
+        assertTrue(messageStore.endTransaction("tx-rollback", TransactionResolution.ROLLBACK).join().isEmpty());
+        assertFalse(logicQueue.isHalfPending(putResult.offset()));
+        assertTrue(messageStore.endTransaction("tx-rollback", TransactionResolution.COMMIT).join().isEmpty());
+    }
+
+    private static FlatMessage buildHalfMessage(String transactionId) {
+        FlatMessageT messageT = FlatMessage.getRootAsFlatMessage(buildMessage(TOPIC_ID, QUEUE_ID, "TagA")).unpack();
+        messageT.getSystemProperties().setMessageId(transactionId);
+        messageT.getSystemProperties().setPreparedTransactionMark(true);
+        FlatBufferBuilder builder = new FlatBufferBuilder(1024);
+        builder.finish(FlatMessage.pack(builder, messageT));
+        return FlatMessage.getRootAsFlatMessage(builder.dataBuffer());
+    }
+
     private boolean verifyStatesExist() {
         AtomicBoolean exist = new AtomicBoolean(false);
         try {
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+package com.automq.rocketmq.store;
+
+import apache.rocketmq.common.v1.Code;
+import apache.rocketmq.controller.v1.OpenStreamResult;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
+import apache.rocketmq.controller.v1.StreamMetadata;
+import com.automq.rocketmq.common.exception.ControllerException;
+import com.automq.rocketmq.metadata.api.StoreMetadataService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+class S3StreamManagerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void openStreamsInBatch() {
+        StoreMetadataService metadataService = Mockito.mock(StoreMetadataService.class);
+        CompletableFuture<List<OpenStreamResult>> firstBatch = new CompletableFuture<>();
+        when(metadataService.openStreams(anyList()))
+            .thenReturn(firstBatch)
+            .thenAnswer(invocation -> {
+                List<StreamEpoch> streams = invocation.getArgument(0);
+                return CompletableFuture.completedFuture(streams.stream()
+                    .map(stream -> stream.getStreamId() == 3 ? result(Code.FENCED, stream) : result(Code.OK, stream))
+                    .toList());
+            });
+        S3StreamManager streamManager = new S3StreamManager(metadataService);
+
+        // The first stream is sent at once, the others wait for it
+        CompletableFuture<com.automq.stream.s3.metadata.StreamMetadata> cf1 = streamManager.openStream(1, 0);
+        CompletableFuture<com.automq.stream.s3.metadata.StreamMetadata> cf2 = streamManager.openStream(2, 0);
+        CompletableFuture<com.automq.stream.s3.metadata.StreamMetadata> cf3 = streamManager.openStream(3, 0);
+        assertFalse(cf2.isDone());
+
+        firstBatch.complete(List.of(result(Code.OK, StreamEpoch.newBuilder().setStreamId(1).build())));
+        assertEquals(1, cf1.join().streamId());
+        assertEquals(2, cf2.join().streamId());
+        CompletionException e = assertThrows(CompletionException.class, cf3::join);
+        assertInstanceOf(ControllerException.class, e.getCause());
+
+        ArgumentCaptor<List<StreamEpoch>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(metadataService, Mockito.times(2)).openStreams(captor.capture());
+        assertEquals(1, captor.getAllValues().get(0).size());
+        assertEquals(2, captor.getAllValues().get(1).size());
+    }
+
+    @Test
+    void closeStreamFailed() {
+        StoreMetadataService metadataService = Mockito.mock(StoreMetadataService.class);
+        when(metadataService.closeStreams(anyList()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException()))
+            .thenReturn(CompletableFuture.completedFuture(List.of(Status.newBuilder().setCode(Code.OK).build())));
+        S3StreamManager streamManager = new S3StreamManager(metadataService);
+
+        assertThrows(CompletionException.class, () -> streamManager.closeStream(1, 0).join());
+        // The batcher keeps working after a failed batch
+        streamManager.closeStream(1, 0).join();
+    }
+
+    private static OpenStreamResult result(Code code, StreamEpoch stream) {
+        return OpenStreamResult.newBuilder()
+            .setStatus(Status.newBuilder().setCode(code).setMessage(code.name()).build())
+            .setStreamMetadata(StreamMetadata.newBuilder().setStreamId(stream.getStreamId()).setEpoch(stream.getStreamEpoch() + 1).build())
+            .build();
+    }
+}
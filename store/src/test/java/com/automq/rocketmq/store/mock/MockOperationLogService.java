@@ -14,6 +14,7 @@ package com.automq.rocketmq.store.mock;
 import com.automq.rocketmq.store.api.MessageStateMachine;
 import com.automq.rocketmq.store.model.operation.AckOperation;
 import com.automq.rocketmq.store.model.operation.ChangeInvisibleDurationOperation;
+import com.automq.rocketmq.store.model.operation.ClearRetryMessagesOperation;
 import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.operation.ResetConsumeOffsetOperation;
 import com.automq.rocketmq.store.service.api.OperationLogService;
@@ -46,6 +47,11 @@ public class MockOperationLogService implements OperationLogService {
         return null;
     }
 
+    @Override
+    public CompletableFuture<LogResult> logClearRetryMessagesOperation(ClearRetryMessagesOperation operation) {
+        return null;
+    }
+
     @Override
     public CompletableFuture<Void> recover(MessageStateMachine stateMachine, long operationStreamId,
         long snapshotStreamId) {
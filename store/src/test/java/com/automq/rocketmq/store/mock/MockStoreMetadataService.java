@@ -12,8 +12,11 @@
 package com.automq.rocketmq.store.mock;
 
 import apache.rocketmq.controller.v1.ConsumerGroup;
+import apache.rocketmq.controller.v1.OpenStreamResult;
 import apache.rocketmq.controller.v1.S3StreamObject;
 import apache.rocketmq.controller.v1.S3StreamSetObject;
+import apache.rocketmq.controller.v1.Status;
+import apache.rocketmq.controller.v1.StreamEpoch;
 import apache.rocketmq.controller.v1.StreamMetadata;
 import apache.rocketmq.controller.v1.Topic;
 import com.automq.rocketmq.common.config.BrokerConfig;
@@ -71,6 +74,17 @@ public class MockStoreMetadataService implements StoreMetadataService {
         return CompletableFuture.completedFuture(StreamMetadata.newBuilder().setStreamId(id).build());
     }
 
+    @Override
+    public CompletableFuture<StreamMetadata> halfStreamOf(long topicId, int queueId) {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        // Mark the stream type as half messages.
+        buffer.putShort(0, (short) 5);
+        buffer.putShort(2, (short) topicId);
+        buffer.putShort(4, (short) queueId);
+        long id = buffer.getLong(0);
+        return CompletableFuture.completedFuture(StreamMetadata.newBuilder().setStreamId(id).build());
+    }
+
     @Override
     public CompletableFuture<Integer> maxDeliveryAttemptsOf(long consumerGroupId) {
         return CompletableFuture.completedFuture(10);
@@ -92,6 +106,16 @@ public class MockStoreMetadataService implements StoreMetadataService {
         return null;
     }
 
+    @Override
+    public CompletableFuture<List<OpenStreamResult>> openStreams(List<StreamEpoch> streams) {
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<List<Status>> closeStreams(List<StreamEpoch> streams) {
+        return null;
+    }
+
     @Override
     public CompletableFuture<List<StreamMetadata>> listOpenStreams() {
         return null;
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.model.FlatMessageExt;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
+import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
+import com.automq.rocketmq.store.metrics.LagRecord;
+import com.automq.rocketmq.store.model.generated.CheckPoint;
+import com.automq.rocketmq.store.model.operation.PopOperation;
+import com.automq.rocketmq.store.util.ReceiptHandleCodec;
+import com.automq.rocketmq.store.util.SerializeUtil;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsumerLagServiceTest {
+    private static final long TOPIC_ID = 1;
+    private static final int QUEUE_ID = 2;
+    private static final long STREAM_ID = 3;
+    private static final long CONSUMER_GROUP_ID = 4;
+
+    private TimestampIndexService timestampIndexService;
+    private ConsumerLagService lagService;
+
+    @BeforeEach
+    public void setUp() {
+        timestampIndexService = Mockito.mock(TimestampIndexService.class);
+        lagService = new ConsumerLagService(timestampIndexService);
+    }
+
+    @Test
+    void lag() {
+        long now = System.currentTimeMillis();
+        Mockito.doReturn(now - 1000).when(timestampIndexService).estimateTimestamp(Mockito.eq(STREAM_ID), Mockito.anyLong());
+
+        lagService.load(TOPIC_ID, QUEUE_ID, STREAM_ID, 10, offset -> CompletableFuture.completedFuture(0L));
+        lagService.register(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, false, 0, 0);
+        LagRecord record = record(false);
+        assertEquals(10, record.lag());
+        assertEquals(10, record.ready());
+        assertEquals(0, record.inflight());
+        assertTrue(record.LagLatency() >= 1000);
+
+        // The oldest inflight message determines the time lag
+        lagService.onPop(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, false, 2,
+            List.of(message(100, now - 5000), message(101, now - 4000)));
+        record = record(false);
+        assertEquals(10, record.lag());
+        assertEquals(8, record.ready());
+        assertEquals(2, record.inflight());
+        assertTrue(record.LagLatency() >= 5000);
+
+        lagService.onAck(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, 100);
+        lagService.onPut(TOPIC_ID, QUEUE_ID, 11);
+        record = record(false);
+        assertEquals(10, record.lag());
+        assertEquals(1, record.inflight());
+        assertTrue(record.LagLatency() >= 4000 && record.LagLatency() < 5000);
+
+        // Retry stream
+        lagService.register(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, true, 0, 0);
+        assertEquals(0, record(true).lag());
+        lagService.onPutRetry(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, 1, now - 3000);
+        record = record(true);
+        assertEquals(1, record.ready());
+        assertTrue(record.LagLatency() >= 3000);
+
+        lagService.onPop(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, true, 1, List.of(message(102, now - 3000)));
+        lagService.onAck(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, 102);
+        record = record(true);
+        assertEquals(0, record.lag());
+        assertEquals(0, record.LagLatency());
+        assertEquals(1, record(false).inflight());
+
+        lagService.clear(TOPIC_ID, QUEUE_ID);
+        assertTrue(lagService.snapshot().isEmpty());
+    }
+
+    @Test
+    void recover() {
+        long now = System.currentTimeMillis();
+        Mockito.doReturn(now - 5000).when(timestampIndexService).estimateTimestamp(STREAM_ID, 8);
+        Mockito.doReturn(now - 1000).when(timestampIndexService).estimateTimestamp(STREAM_ID, 10);
+
+        lagService.load(TOPIC_ID, QUEUE_ID, STREAM_ID, 10, offset -> CompletableFuture.completedFuture(0L));
+        lagService.register(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, false, 10, 0);
+        lagService.register(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, true, 1, 3);
+
+        // Messages popped before the queue is opened
+        lagService.recoverInflight(TOPIC_ID, QUEUE_ID, List.of(
+            checkPoint(100, 8, PopOperation.PopOperationType.POP_NORMAL, now - 4000),
+            checkPoint(101, 0, PopOperation.PopOperationType.POP_RETRY, now - 3000)));
+        LagRecord record = record(false);
+        assertEquals(1, record.inflight());
+        assertTrue(record.LagLatency() >= 5000);
+
+        // Ready retry messages are read back once the retry stream is opened
+        lagService.onRetryReady(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, now - 2000);
+        record = record(true);
+        assertEquals(1, record.inflight());
+        assertEquals(2, record.ready());
+        assertTrue(record.LagLatency() >= 3000);
+
+        lagService.onAck(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, 101);
+        record = record(true);
+        assertEquals(0, record.inflight());
+        assertTrue(record.LagLatency() >= 2000 && record.LagLatency() < 3000);
+    }
+
+    @Test
+    void readBackWithoutSample() {
+        long now = System.currentTimeMillis();
+        Mockito.doReturn(-1L).when(timestampIndexService).estimateTimestamp(Mockito.eq(STREAM_ID), Mockito.anyLong());
+        List<Long> readOffsets = new ArrayList<>();
+        lagService.load(TOPIC_ID, QUEUE_ID, STREAM_ID, 10, offset -> {
+            readOffsets.add(offset);
+            return CompletableFuture.completedFuture(now - 1000 * (10 - offset));
+        });
+        lagService.register(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, false, 2, 0);
+
+        // The first message not popped yet is read back since no sample precedes it
+        assertEquals(0, record(false).LagLatency());
+        assertTrue(record(false).LagLatency() >= 8000);
+        assertEquals(List.of(2L), readOffsets);
+
+        // Read back again once it is popped
+        lagService.onPop(TOPIC_ID, QUEUE_ID, CONSUMER_GROUP_ID, false, 6, List.of());
+        assertEquals(0, record(false).LagLatency());
+        LagRecord record = record(false);
+        assertTrue(record.LagLatency() >= 4000 && record.LagLatency() < 8000);
+        assertEquals(List.of(2L, 6L), readOffsets);
+    }
+
+    private CheckPoint checkPoint(long operationId, long offset, PopOperation.PopOperationType operationType,
+        long deliveryTimestamp) {
+        return SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(SerializeUtil.buildCheckPointValue(TOPIC_ID, QUEUE_ID,
+            offset, 1, CONSUMER_GROUP_ID, operationId, operationType, deliveryTimestamp, deliveryTimestamp + 1000)));
+    }
+
+    private LagRecord record(boolean retry) {
+        return lagService.snapshot().stream()
+            .filter(record -> record.retry() == retry)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private FlatMessageExt message(long operationId, long storeTimestamp) {
+        FlatMessageT flatMessageT = new FlatMessageT();
+        flatMessageT.setTopicId(TOPIC_ID);
+        flatMessageT.setQueueId(QUEUE_ID);
+        flatMessageT.setPayload(new byte[0]);
+
+        SystemPropertiesT systemPropertiesT = new SystemPropertiesT();
+        systemPropertiesT.setStoreTimestamp(storeTimestamp);
+        flatMessageT.setSystemProperties(systemPropertiesT);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(128);
+        builder.finish(FlatMessage.pack(builder, flatMessageT));
+        return FlatMessageExt.Builder.builder()
+            .message(FlatMessage.getRootAsFlatMessage(builder.dataBuffer()))
+            .offset(0)
+            .receiptHandle(ReceiptHandleCodec.encode(CONSUMER_GROUP_ID, TOPIC_ID, QUEUE_ID, operationId, storeTimestamp, 1000))
+            .build();
+    }
+}
@@ -11,19 +11,47 @@
 
 package com.automq.rocketmq.store.service;
 
+import com.automq.rocketmq.common.config.StoreConfig;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InflightServiceTest {
 
     @Test
     void inflight() {
-        InflightService inflightService = new InflightService();
+        InflightService inflightService = new InflightService(new StoreConfig());
         inflightService.increaseInflightCount(0, 0, 0, 10);
         assertEquals(10, inflightService.getInflightCount(0, 0, 0));
 
         inflightService.decreaseInflightCount(0, 0, 0, 5);
         assertEquals(5, inflightService.getInflightCount(0, 0, 0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void quota() {
+        StoreConfig config = new StoreConfig();
+        config.setMaxInflightMessagesPerQueue(10);
+        config.setMaxInflightMessagesPerGroup(15);
+        InflightService inflightService = new InflightService(config);
+
+        inflightService.increaseInflightCount(0, 0, 0, 9);
+        assertFalse(inflightService.isQuotaExceeded(0, 0, 0));
+        inflightService.increaseInflightCount(0, 0, 0, 1);
+        assertTrue(inflightService.isQuotaExceeded(0, 0, 0));
+        // Other groups are not affected
+        assertFalse(inflightService.isQuotaExceeded(1, 0, 0));
+
+        inflightService.increaseInflightCount(0, 0, 1, 5);
+        assertEquals(15, inflightService.getInflightCount(0));
+        assertTrue(inflightService.isQuotaExceeded(0, 0, 2));
+
+        // Inflight messages of a closed queue no longer count
+        inflightService.clearInflightCount(0, 0);
+        assertEquals(0, inflightService.getInflightCount(0, 0, 0));
+        assertEquals(5, inflightService.getInflightCount(0));
+        assertFalse(inflightService.isQuotaExceeded(0, 0, 0));
+    }
+}
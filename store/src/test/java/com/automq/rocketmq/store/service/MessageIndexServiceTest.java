@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.common.model.generated.FlatMessage;
+import com.automq.rocketmq.common.model.generated.FlatMessageT;
+import com.automq.rocketmq.common.model.generated.SystemPropertiesT;
+import com.automq.rocketmq.store.MessageStoreImpl;
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.mock.MockStreamStore;
+import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.message.MessageIndexType;
+import com.automq.rocketmq.store.model.message.TopicQueueId;
+import com.automq.rocketmq.store.model.stream.SingleRecord;
+import com.automq.rocketmq.store.service.api.KVService;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageIndexServiceTest {
+    private static final String PATH = "/tmp/test_message_index_service";
+    private static final long TOPIC_ID = 1;
+    private static final int QUEUE_ID = 2;
+    private static final long STREAM_ID = 3;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private KVService kvService;
+    private MockStreamStore streamStore;
+    private MessageIndexService indexService;
+
+    @BeforeEach
+    public void setUp() throws StoreException {
+        kvService = new RocksDBKVService(PATH);
+        streamStore = new MockStreamStore();
+        streamStore.open(STREAM_ID, 0).join();
+        indexService = new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService,
+            new StoreConfig());
+    }
+
+    @AfterEach
+    public void tearDown() throws StoreException {
+        kvService.destroy();
+    }
+
+    @Test
+    void indexAndQuery() throws StoreException {
+        indexService.register(TOPIC_ID, QUEUE_ID, STREAM_ID);
+        append("k1 k2", "m0", 1000);
+        append("k2", "m1", 2000);
+        append("k3", "m2", HOUR + 1000);
+
+        assertTrue(indexService.indexOnce(queueIndex()).join());
+        assertFalse(indexService.indexOnce(queueIndex()).join());
+
+        assertEquals(List.of(1L, 0L), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 10));
+        assertEquals(List.of(1L), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 1));
+        assertEquals(List.of(2L), query(MessageIndexType.KEY, "k3", 0, Long.MAX_VALUE, 10));
+        assertEquals(List.of(), query(MessageIndexType.KEY, "k3", 0, HOUR - 1, 10));
+        assertEquals(List.of(1L), query(MessageIndexType.MESSAGE_ID, "m1", 0, Long.MAX_VALUE, 10));
+        assertEquals(List.of(), query(MessageIndexType.KEY, "m1", 0, Long.MAX_VALUE, 10));
+        assertEquals(List.of(), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 0));
+
+        // Entries and checkpoints are dropped once the queue is unregistered
+        indexService.unregister(TOPIC_ID, QUEUE_ID);
+        List<byte[]> remaining = new ArrayList<>();
+        kvService.iterate(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, (key, value) -> remaining.add(key));
+        kvService.iterate(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX + "_checkpoint", (key, value) -> remaining.add(key));
+        assertTrue(remaining.isEmpty());
+
+        // Retained messages are backfilled once the queue is registered again
+        indexService.register(TOPIC_ID, QUEUE_ID, STREAM_ID);
+        assertEquals(List.of(), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 10));
+        assertTrue(indexService.indexOnce(queueIndex()).join());
+        assertEquals(List.of(1L, 0L), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 10));
+        append("k2", "m3", HOUR + 2000);
+        assertTrue(indexService.indexOnce(queueIndex()).join());
+        assertEquals(List.of(3L, 1L, 0L), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 10));
+
+        // The first segment is purged once all its messages are trimmed
+        streamStore.trim(STREAM_ID, 2).join();
+        indexService.purge(queueIndex());
+        assertEquals(List.of(3L), query(MessageIndexType.KEY, "k2", 0, Long.MAX_VALUE, 10));
+        assertEquals(List.of(2L), query(MessageIndexType.KEY, "k3", 0, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void registerWithoutCheckpoint() throws StoreException {
+        StoreConfig config = new StoreConfig();
+        config.setMessageIndexMaxBackfillMessages(1);
+        indexService = new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService,
+            config);
+        append("k1", "m0", 1000);
+        append("k1", "m1", 2000);
+
+        // Only the latest messages appended before the queue is registered are backfilled
+        indexService.register(TOPIC_ID, QUEUE_ID, STREAM_ID);
+        assertTrue(indexService.indexOnce(queueIndex()).join());
+        assertFalse(indexService.indexOnce(queueIndex()).join());
+        assertEquals(List.of(1L), query(MessageIndexType.KEY, "k1", 0, Long.MAX_VALUE, 10));
+
+        append("k1", "m2", 3000);
+        assertTrue(indexService.indexOnce(queueIndex()).join());
+        assertEquals(List.of(2L, 1L), query(MessageIndexType.KEY, "k1", 0, Long.MAX_VALUE, 10));
+    }
+
+    private MessageIndexService.QueueIndex queueIndex() {
+        return indexService.queueIndex(TopicQueueId.of(TOPIC_ID, QUEUE_ID));
+    }
+
+    private List<Long> query(MessageIndexType type, String key, long beginTimestamp, long endTimestamp,
+        int maxCount) throws StoreException {
+        return indexService.query(TOPIC_ID, QUEUE_ID, type, key, beginTimestamp, endTimestamp, maxCount);
+    }
+
+    private void append(String keys, String messageId, long storeTimestamp) {
+        FlatMessageT flatMessageT = new FlatMessageT();
+        flatMessageT.setTopicId(TOPIC_ID);
+        flatMessageT.setQueueId(QUEUE_ID);
+        flatMessageT.setPayload(new byte[0]);
+        flatMessageT.setKeys(keys);
+
+        SystemPropertiesT systemPropertiesT = new SystemPropertiesT();
+        systemPropertiesT.setMessageId(messageId);
+        systemPropertiesT.setStoreTimestamp(storeTimestamp);
+        flatMessageT.setSystemProperties(systemPropertiesT);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(256);
+        builder.finish(FlatMessage.pack(builder, flatMessageT));
+        streamStore.append(StoreContext.EMPTY, STREAM_ID, new SingleRecord(builder.dataBuffer())).join();
+    }
+}
@@ -15,6 +15,7 @@ import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.common.model.FlatMessageExt;
 import com.automq.rocketmq.common.model.generated.FlatMessage;
 import com.automq.rocketmq.metadata.api.StoreMetadataService;
+import com.automq.rocketmq.store.MessageStoreImpl;
 import com.automq.rocketmq.store.MessageStoreTest;
 import com.automq.rocketmq.store.api.DeadLetterSender;
 import com.automq.rocketmq.store.api.LogicQueue;
@@ -68,15 +69,19 @@ class ReviveServiceTest {
         kvService = new RocksDBKVService(PATH);
         metadataService = Mockito.spy(new MockStoreMetadataService());
         StreamStore streamStore = new MockStreamStore();
-        InflightService inflightService = new InflightService();
+        InflightService inflightService = new InflightService(new StoreConfig());
         ticker = new FakeTicker();
         timerService = new TimerService(MessageStoreTest.KV_NAMESPACE_TIMER_TAG, kvService, ticker);
         MessageStateMachine stateMachine = new DefaultLogicQueueStateMachine(TOPIC_ID, QUEUE_ID, kvService, timerService);
-        SnapshotService snapshotService = new SnapshotService(streamStore, kvService);
+        SnapshotService snapshotService = new SnapshotService(streamStore, kvService, new StoreConfig());
         OperationLogService operationLogService = new StreamOperationLogService(streamStore, snapshotService, new StoreConfig());
         StreamReclaimService streamReclaimService = new StreamReclaimService(streamStore);
+        TimestampIndexService timestampIndexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, new StoreConfig());
         logicQueue = new StreamLogicQueue(new StoreConfig(), TOPIC_ID, QUEUE_ID,
-            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService);
+            metadataService, stateMachine, streamStore, operationLogService, inflightService, streamReclaimService,
+            timestampIndexService,
+            new MessageIndexService(MessageStoreImpl.KV_NAMESPACE_MESSAGE_INDEX, streamStore, kvService, new StoreConfig()),
+            new TransactionService(new StoreConfig(), timerService), new ConsumerLagService(timestampIndexService));
         LogicQueueManager manager = Mockito.mock(LogicQueueManager.class);
         Mockito.doAnswer(ink -> CompletableFuture.completedFuture(logicQueue)).when(manager).getOrCreate(Mockito.any(), Mockito.eq(TOPIC_ID), Mockito.eq(QUEUE_ID));
         deadLetterSender = Mockito.mock(DeadLetterSender.class);
@@ -11,17 +11,23 @@
 
 package com.automq.rocketmq.store.service;
 
+import com.automq.rocketmq.common.config.StoreConfig;
 import com.automq.rocketmq.store.api.StreamStore;
 import com.automq.rocketmq.store.exception.StoreErrorCode;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.mock.MockStreamStore;
 import com.automq.rocketmq.store.model.StoreContext;
+import com.automq.rocketmq.store.model.generated.CheckPoint;
 import com.automq.rocketmq.store.model.operation.OperationSnapshot;
+import com.automq.rocketmq.store.model.operation.PopOperation;
 import com.automq.rocketmq.store.model.stream.SingleRecord;
 import com.automq.rocketmq.store.service.api.KVService;
+import com.automq.rocketmq.store.util.SerializeUtil;
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
@@ -51,7 +57,9 @@ public class SnapshotServiceTest {
     public void setUp() throws Exception {
         kvService = new RocksDBKVService(PATH);
         streamStore = new MockStreamStore();
-        snapshotService = Mockito.spy(new SnapshotService(streamStore, kvService));
+        StoreConfig config = new StoreConfig();
+        config.setOperationSnapshotDeltaChainLength(1);
+        snapshotService = Mockito.spy(new SnapshotService(streamStore, kvService, config));
         streamStore.start();
         snapshotService.start();
         streamStore.open(OP_STREAM_ID, 0);
@@ -167,6 +175,71 @@ public class SnapshotServiceTest {
         assertEquals(1, streamStore.nextOffset(SNAPSHOT_STREAM_ID));
     }
 
+    @Test
+    public void test_take_delta_snapshot() {
+        for (int i = 0; i < 100; i++) {
+            streamStore.append(StoreContext.EMPTY, OP_STREAM_ID, buildRecord());
+        }
+
+        // 1. the first snapshot is always a full one
+        takeSnapshot(new OperationSnapshot(9, 0, Collections.emptyList()));
+        OperationSnapshot full = fetchSnapshot(0);
+        assertFalse(full.isDelta());
+
+        // 2. the next snapshot only records changed check points
+        OperationSnapshot snapshot = new OperationSnapshot(19, 0, Collections.emptyList());
+        snapshot.setCheckPoints(new ArrayList<>(List.of(buildCheckPoint(11), buildCheckPoint(12))));
+        snapshot.setRemovedOperationIds(new ArrayList<>(List.of(1L)));
+        takeSnapshot(snapshot);
+        OperationSnapshot delta = fetchSnapshot(1);
+        assertTrue(delta.isDelta());
+        assertEquals(0, delta.getBaseOffset());
+        assertEquals(19, delta.getSnapshotEndOffset());
+        assertEquals(2, delta.getCheckPoints().size());
+        assertEquals(List.of(1L), delta.getRemovedOperationIds());
+        assertEquals(20, streamStore.startOffset(OP_STREAM_ID));
+
+        // 3. the chain is compacted into a full snapshot once it is long enough
+        takeSnapshot(new OperationSnapshot(29, 0, Collections.emptyList()));
+        assertFalse(fetchSnapshot(2).isDelta());
+        assertEquals(2, streamStore.startOffset(SNAPSHOT_STREAM_ID));
+        assertEquals(3, streamStore.nextOffset(SNAPSHOT_STREAM_ID));
+    }
+
+    @Test
+    public void test_merge_snapshots() {
+        OperationSnapshot full = new OperationSnapshot(9, Collections.emptyList(),
+            new ArrayList<>(List.of(buildCheckPoint(1), buildCheckPoint(2))));
+        OperationSnapshot delta0 = new OperationSnapshot(19, Collections.emptyList(), new ArrayList<>(List.of(buildCheckPoint(3))));
+        delta0.setDelta(true);
+        delta0.setRemovedOperationIds(new ArrayList<>(List.of(1L)));
+        OperationSnapshot delta1 = new OperationSnapshot(29, Collections.emptyList(), new ArrayList<>(List.of(buildCheckPoint(1))));
+        delta1.setDelta(true);
+        delta1.setRemovedOperationIds(new ArrayList<>(List.of(3L)));
+
+        OperationSnapshot merged = OperationSnapshot.merge(List.of(full, delta0, delta1));
+        assertFalse(merged.isDelta());
+        assertEquals(29, merged.getSnapshotEndOffset());
+        assertEquals(List.of(2L, 1L), merged.getCheckPoints().stream().map(CheckPoint::operationId).toList());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> OperationSnapshot.merge(List.of(delta0)));
+    }
+
+    private void takeSnapshot(OperationSnapshot snapshot) {
+        SnapshotService.TakeSnapshotResult result = snapshotService.addSnapshotTask(new SnapshotService.SnapshotTask(TOPIC_ID,
+            QUEUE_ID, OP_STREAM_ID, SNAPSHOT_STREAM_ID, () -> snapshot)).join();
+        assertTrue(result.success());
+    }
+
+    private OperationSnapshot fetchSnapshot(long offset) {
+        return SerializeUtil.decodeOperationSnapshot(streamStore.fetch(StoreContext.EMPTY, SNAPSHOT_STREAM_ID, offset, 1).join()
+            .recordBatchList().get(0).rawPayload());
+    }
+
+    private CheckPoint buildCheckPoint(long operationId) {
+        return SerializeUtil.decodeCheckPoint(ByteBuffer.wrap(SerializeUtil.buildCheckPointValue(TOPIC_ID, QUEUE_ID, operationId,
+            1, 0, operationId, PopOperation.PopOperationType.POP_NORMAL, 0, 0)));
+    }
+
     private SingleRecord buildRecord() {
         ByteBuffer buffer = ByteBuffer.allocate(4);
         buffer.putInt(13);
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+
+package com.automq.rocketmq.store.service;
+
+import com.automq.rocketmq.common.config.StoreConfig;
+import com.automq.rocketmq.store.MessageStoreImpl;
+import com.automq.rocketmq.store.exception.StoreException;
+import com.automq.rocketmq.store.service.api.KVService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimestampIndexServiceTest {
+    private static final String PATH = "/tmp/test_timestamp_index_service";
+    private static final long STREAM_ID = 1;
+
+    private KVService kvService;
+    private TimestampIndexService indexService;
+
+    @BeforeEach
+    public void setUp() throws StoreException {
+        kvService = new RocksDBKVService(PATH);
+        StoreConfig config = new StoreConfig();
+        config.setTimestampIndexIntervalMessages(10);
+        indexService = new TimestampIndexService(MessageStoreImpl.KV_NAMESPACE_TIMESTAMP_INDEX, kvService, config);
+    }
+
+    @AfterEach
+    public void tearDown() throws StoreException {
+        kvService.destroy();
+    }
+
+    @Test
+    void sampleAndSearch() throws StoreException {
+        indexService.load(STREAM_ID, 0, 0);
+
+        // One message per millisecond, sampled every 10 messages
+        for (long offset = 0; offset < 100; offset++) {
+            assertEquals(offset % 10 == 0, indexService.onAppend(STREAM_ID, offset, 1000 + offset));
+        }
+        // Out of order timestamps are skipped
+        assertFalse(indexService.onAppend(STREAM_ID, 110, 1000));
+
+        assertEquals(new TimestampIndexService.Bound(-1, 0), indexService.search(STREAM_ID, 500));
+        assertEquals(new TimestampIndexService.Bound(20, 30), indexService.search(STREAM_ID, 1025));
+        assertEquals(new TimestampIndexService.Bound(20, 30), indexService.search(STREAM_ID, 1030));
+        assertEquals(new TimestampIndexService.Bound(90, -1), indexService.search(STREAM_ID, 2000));
+
+        assertEquals(-1, indexService.estimateTimestamp(STREAM_ID, -1));
+        assertEquals(1025, indexService.estimateTimestamp(STREAM_ID, 25));
+        assertEquals(1090, indexService.estimateTimestamp(STREAM_ID, 95));
+
+        // Samples are rebuilt from KV service once the stream is reopened
+        indexService.unload(STREAM_ID);
+        assertEquals(new TimestampIndexService.Bound(-1, -1), indexService.search(STREAM_ID, 1025));
+        indexService.load(STREAM_ID, 15, 100);
+        assertEquals(new TimestampIndexService.Bound(-1, 20), indexService.search(STREAM_ID, 1005));
+        assertEquals(new TimestampIndexService.Bound(20, 30), indexService.search(STREAM_ID, 1025));
+
+        indexService.trim(STREAM_ID, 50);
+        assertEquals(new TimestampIndexService.Bound(-1, 50), indexService.search(STREAM_ID, 1025));
+        assertTrue(indexService.onAppend(STREAM_ID, 100, 1100));
+        assertEquals(new TimestampIndexService.Bound(90, 100), indexService.search(STREAM_ID, 1095));
+    }
+}
@@ -17,15 +17,20 @@ import com.automq.rocketmq.store.MessageStoreTest;
 import com.automq.rocketmq.store.exception.StoreException;
 import com.automq.rocketmq.store.mock.MockMessageUtil;
 import com.automq.rocketmq.store.model.generated.TimerHandlerType;
+import com.automq.rocketmq.store.model.transaction.HalfMessageIndex;
 import com.automq.rocketmq.store.service.api.KVService;
+import com.automq.rocketmq.store.util.SerializeUtil;
 import com.google.common.testing.FakeTicker;
 import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class TransactionServiceTest {
@@ -42,7 +47,7 @@ class TransactionServiceTest {
         ticker = new FakeTicker();
         timerService = new TimerService(MessageStoreTest.KV_NAMESPACE_TIMER_TAG, kvService, ticker);
         config = new StoreConfig();
-        transactionService = new TransactionService(new StoreConfig(), timerService);
+        transactionService = new TransactionService(config, timerService);
     }
 
     @AfterEach
@@ -54,20 +59,36 @@ class TransactionServiceTest {
     void prepareTransaction() throws StoreException {
         ByteBuffer buffer = MockMessageUtil.buildMessage();
         FlatMessage message = FlatMessage.getRootAsFlatMessage(buffer);
+        String transactionId = message.systemProperties().messageId();
+        HalfMessageIndex index = new HalfMessageIndex(1, 2, 3, 0);
 
         AtomicInteger counter = new AtomicInteger(0);
         timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, (timerTag) -> {
-            assertEquals(buffer.remaining(), timerTag.payloadLength());
+            // Only the compact index is kept by the timer
+            assertEquals(index, SerializeUtil.decodeHalfMessageIndex(timerTag.payloadAsByteBuffer()));
             counter.incrementAndGet();
         });
 
-        String transactionId = transactionService.begin(message);
-        assertEquals(message.systemProperties().messageId(), transactionId);
+        transactionService.prepare(transactionId, index, message);
+        assertEquals(Optional.of(index), transactionService.lookup(transactionId));
 
         long dequeueTimestamp = System.currentTimeMillis() + config.transactionTimeoutMillis();
         ticker.advance(dequeueTimestamp);
         timerService.dequeue();
         assertEquals(1, counter.get());
+        assertEquals(Optional.empty(), transactionService.lookup(transactionId));
+    }
+
+    @Test
+    void scheduleNextCheck() throws StoreException {
+        timerService.registerHandler(TimerHandlerType.TRANSACTION_MESSAGE, (timerTag) -> {
+        });
+
+        HalfMessageIndex index = new HalfMessageIndex(1, 2, 3, config.transactionCheckMaxTimes() - 1);
+        assertTrue(transactionService.scheduleNextCheck("tx", index));
+        assertEquals(Optional.of(index.nextCheck()), transactionService.lookup("tx"));
+
+        assertFalse(transactionService.scheduleNextCheck("tx", index.nextCheck()));
     }
 
     @Test
@@ -76,11 +97,12 @@ class TransactionServiceTest {
 
         ByteBuffer buffer = MockMessageUtil.buildMessage();
         FlatMessage message = FlatMessage.getRootAsFlatMessage(buffer);
+        String transactionId = message.systemProperties().messageId();
 
-        String transactionId = transactionService.begin(message);
+        transactionService.prepare(transactionId, new HalfMessageIndex(1, 2, 3, 0), message);
         transactionService.cancelCheck(transactionId);
 
         ticker.advance(Long.MAX_VALUE);
         timerService.dequeue();
     }
-}
\ No newline at end of file
+}
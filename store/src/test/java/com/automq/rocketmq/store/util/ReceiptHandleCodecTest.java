@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024, AutoMQ CO.,LTD.
+ *
+ * Use of this software is governed by the Business Source License
+ * included in the file BSL.md
+ *
+ * As of the Change Date specified in that file, in accordance with
+ * the Business Source License, use of this software will be governed
+ * by the Apache License, Version 2.0
+ */
+package com.automq.rocketmq.store.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptHandleCodecTest {
+    @Test
+    void encodeAndDecode() {
+        String receiptHandle = ReceiptHandleCodec.encode(Long.MAX_VALUE, 13, Integer.MAX_VALUE, -1, 1700000000000L, 30000);
+        assertEquals(ReceiptHandleCodec.LENGTH, receiptHandle.length());
+        assertTrue(ReceiptHandleCodec.isCompact(receiptHandle, 0));
+
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(receiptHandle);
+        assertEquals(new ReceiptHandleCodec.Handle(Long.MAX_VALUE, 13, Integer.MAX_VALUE, -1, 1700000000000L, 30000), handle);
+
+        // Fields are read in place
+        String embedded = "0 " + receiptHandle + " 1";
+        ReceiptHandleCodec.verify(embedded, 2);
+        assertEquals(13, ReceiptHandleCodec.topicId(embedded, 2));
+        assertEquals(-1, ReceiptHandleCodec.operationId(embedded, 2));
+    }
+
+    @Test
+    void decodeLegacy() {
+        assertFalse(ReceiptHandleCodec.isCompact(SerializeUtilTest.RECEIPT_HANDLE, 0));
+        ReceiptHandleCodec.Handle handle = ReceiptHandleCodec.decode(SerializeUtilTest.RECEIPT_HANDLE);
+        assertEquals(new ReceiptHandleCodec.Handle(SerializeUtilTest.CONSUMER_GROUP_ID, SerializeUtilTest.TOPIC_ID,
+            SerializeUtilTest.QUEUE_ID, SerializeUtilTest.OPERATION_ID, 0, 0), handle);
+    }
+
+    @Test
+    void rejectCorrupted() {
+        String receiptHandle = ReceiptHandleCodec.encode(1, 2, 3, 4, 5, 6);
+        char[] chars = receiptHandle.toCharArray();
+        chars[ReceiptHandleCodec.LENGTH - 10] = chars[ReceiptHandleCodec.LENGTH - 10] == 'A' ? 'B' : 'A';
+        assertThrows(IllegalArgumentException.class, () -> ReceiptHandleCodec.decode(new String(chars)));
+        assertThrows(IllegalArgumentException.class, () -> ReceiptHandleCodec.decode(receiptHandle.substring(0, ReceiptHandleCodec.LENGTH - 1)));
+        assertThrows(IllegalArgumentException.class, () -> ReceiptHandleCodec.decode(receiptHandle.replace('A', ' ')));
+    }
+}